@@ -0,0 +1,623 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.FrequencySketch;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Size or weight bounded {@link UserCache} of users keyed by email, evicting with W-TinyLFU policy.
+ * <p>
+ * New users enter a small LRU admission window. When the window overflows, its oldest user is admitted to
+ * the main space only if it was seen more often than the user that would be evicted for it, according to
+ * a {@link FrequencySketch}. The main space is a segmented LRU, so users accessed twice are protected
+ * from one-off traffic like a full table scan.
+ * <p>
+ * Reads are lock free, accesses are recorded into a lossy buffer and replayed under the eviction lock.
+ * Username index points to the same nodes with email index and is only written under the eviction lock.
+ */
+public class BoundedUserCache implements UserCache {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final double WINDOW_PERCENTAGE = 0.01;
+    private static final double PROTECTED_PERCENTAGE = 0.80;
+
+    /**
+     * Read by lock free readers, same map with writeData except while content is being replaced
+     */
+    private volatile ConcurrentHashMap<Object, Node> data;
+    private ConcurrentHashMap<Object, Node> writeData;
+    private volatile ConcurrentHashMap<String, Node> usernames;
+    private ConcurrentHashMap<String, Node> writeUsernames;
+    private final UserWeigher weigher;
+    private final FrequencySketch sketch;
+    private final ReadBuffer readBuffer;
+    private final ReentrantLock evictionLock;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final int initialCapacity;
+
+    private AccessOrderDeque window;
+    private AccessOrderDeque probation;
+    private AccessOrderDeque protectedDeque;
+
+    private long windowWeight;
+    private long mainWeight;
+    private long protectedWeight;
+    private volatile long evictionCount;
+
+    private BoundedUserCache(long maximum, UserWeigher weigher, long expectedSize) {
+        this.maximum = maximum;
+        this.weigher = weigher;
+        this.windowMaximum = Math.max(1, (long) (maximum * WINDOW_PERCENTAGE));
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * PROTECTED_PERCENTAGE);
+        this.initialCapacity = (int) Math.min(expectedSize, 1 << 20);
+        this.data = new ConcurrentHashMap<>(initialCapacity);
+        this.writeData = data;
+        this.usernames = new ConcurrentHashMap<>(initialCapacity);
+        this.writeUsernames = usernames;
+        this.sketch = new FrequencySketch(expectedSize);
+        this.readBuffer = new ReadBuffer();
+        this.evictionLock = new ReentrantLock();
+        this.window = new AccessOrderDeque();
+        this.probation = new AccessOrderDeque();
+        this.protectedDeque = new AccessOrderDeque();
+    }
+
+    @Override
+    public void add(User user) {
+        notNull(user);
+        notNull(user.getEmail(), "Email of user should not be null");
+
+        int weight = weigher.weigh(user);
+
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            put(user, weight);
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void add(Collection<User> values) {
+        notNull(values);
+        for (User user : values) {
+            notNull(user);
+            notNull(user.getEmail(), "Email of user should not be null");
+        }
+
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            for (User user : values) {
+                put(user, weigher.weigh(user));
+                evict();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public User get(Object cacheId) {
+        if (cacheId == null) {
+            return null;
+        }
+
+        return read(data.get(cacheId));
+    }
+
+    @Override
+    public User getByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+
+        return read(usernames.get(username));
+    }
+
+    private User read(Node node) {
+        if (node == null) {
+            return null;
+        }
+
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * @return unmodifiable live view of cached users
+     */
+    @Override
+    public Collection<User> getAll() {
+        return new AbstractCollection<User>() {
+            @Override
+            public Iterator<User> iterator() {
+                Iterator<Node> nodes = data.values().iterator();
+                return new Iterator<User>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodes.hasNext();
+                    }
+
+                    @Override
+                    public User next() {
+                        return nodes.next().value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return data.size();
+            }
+        };
+    }
+
+    @Override
+    public void replaceAll(Collection<User> values) {
+        notNull(values);
+        for (User user : values) {
+            validate(user);
+        }
+
+        replaceAllFrom(values::forEach);
+    }
+
+    /**
+     * Fills new maps sized by cache limit under eviction lock, putting and evicting each user as it is pushed,
+     * and swaps them in, readers keep reading the old maps meanwhile. So no more users than the limit are
+     * held however many the source pushes. Frequency history is kept, so admission still prefers popular users.
+     * If source throws, current users are kept.
+     */
+    @Override
+    public void replaceAllFrom(Consumer<Consumer<User>> valueSource) {
+        notNull(valueSource);
+
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+
+            AccessOrderDeque oldWindow = window;
+            AccessOrderDeque oldProbation = probation;
+            AccessOrderDeque oldProtected = protectedDeque;
+            long oldWindowWeight = windowWeight;
+            long oldMainWeight = mainWeight;
+            long oldProtectedWeight = protectedWeight;
+
+            writeData = new ConcurrentHashMap<>(initialCapacity);
+            writeUsernames = new ConcurrentHashMap<>(initialCapacity);
+            window = new AccessOrderDeque();
+            probation = new AccessOrderDeque();
+            protectedDeque = new AccessOrderDeque();
+            windowWeight = 0;
+            mainWeight = 0;
+            protectedWeight = 0;
+
+            try {
+                valueSource.accept(user -> {
+                    validate(user);
+                    put(user, weigher.weigh(user));
+                    evict();
+                });
+            } catch (RuntimeException | Error e) {
+                writeData = data;
+                writeUsernames = usernames;
+                window = oldWindow;
+                probation = oldProbation;
+                protectedDeque = oldProtected;
+                windowWeight = oldWindowWeight;
+                mainWeight = oldMainWeight;
+                protectedWeight = oldProtectedWeight;
+                throw e;
+            }
+
+            // Accesses of old nodes still waiting in read buffer are ignored from now on
+            data.values().forEach(node -> node.queue = -1);
+
+            usernames = writeUsernames;
+            data = writeData;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * @return sum of weights of cached users, equals to entry count if cache is bounded by size
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return windowWeight + mainWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return data.size();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Called when a user is evicted because of size limit, under eviction lock. Does nothing by default.
+     * @param user evicted user
+     */
+    protected void onEviction(User user) {
+    }
+
+    private static void validate(User user) {
+        notNull(user);
+        notNull(user.getEmail(), "Email of user should not be null");
+    }
+
+    private void put(User user, int weight) {
+        Node node = writeData.get(user.getEmail());
+
+        if (node != null) {
+            int difference = weight - node.weight;
+            indexUsername(node, node.value, user);
+            node.value = user;
+            node.weight = weight;
+            if (node.queue == WINDOW) {
+                windowWeight += difference;
+            } else {
+                mainWeight += difference;
+                if (node.queue == PROTECTED) {
+                    protectedWeight += difference;
+                    demoteFromProtected();
+                }
+            }
+
+            onAccess(node);
+            return;
+        }
+
+        if (weight > maximum) {
+            // Can never fit, caching it would just flush the whole cache
+            return;
+        }
+
+        sketch.increment(user.getEmail());
+        node = new Node(user.getEmail(), user, weight);
+        writeData.put(node.key, node);
+        indexUsername(node, null, user);
+        window.addLast(node);
+        windowWeight += weight;
+    }
+
+    private void indexUsername(Node node, User previous, User user) {
+        if (previous != null && previous.getUsername() != null && !previous.getUsername().equals(user.getUsername())) {
+            writeUsernames.remove(previous.getUsername(), node);
+        }
+
+        if (user.getUsername() != null) {
+            writeUsernames.put(user.getUsername(), node);
+        }
+    }
+
+    private void afterRead(Node node) {
+        if (readBuffer.offer(node) && readBuffer.pending() < ReadBuffer.DRAIN_THRESHOLD) {
+            return;
+        }
+
+        if (evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        readBuffer.drain(this);
+    }
+
+    private void onAccess(Node node) {
+        if (node.queue < 0) {
+            // Already evicted, access is recorded by a reader that raced with eviction
+            return;
+        }
+
+        sketch.increment(node.key);
+
+        if (node.queue == WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedDeque.addLast(node);
+            protectedWeight += node.weight;
+            demoteFromProtected();
+        } else {
+            protectedDeque.moveToBack(node);
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (protectedWeight > protectedMaximum) {
+            Node demoted = protectedDeque.pollFirst();
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void evict() {
+        long mainMaximum = maximum - windowMaximum;
+
+        while (windowWeight > windowMaximum) {
+            Node candidate = window.pollFirst();
+            windowWeight -= candidate.weight;
+
+            boolean admitted = true;
+            while (mainWeight + candidate.weight > mainMaximum) {
+                Node victim = probation.peekFirst() != null ? probation.peekFirst() : protectedDeque.peekFirst();
+                if (victim == null) {
+                    admitted = false;
+                    break;
+                }
+
+                if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evictNode(victim);
+                } else {
+                    admitted = false;
+                    break;
+                }
+            }
+
+            if (admitted) {
+                candidate.queue = PROBATION;
+                probation.addLast(candidate);
+                mainWeight += candidate.weight;
+            } else {
+                candidate.queue = -1;
+                removeEvicted(candidate);
+            }
+        }
+
+        // Main space can still overflow when an already cached user gets heavier
+        while (mainWeight > mainMaximum) {
+            Node victim = probation.peekFirst() != null ? probation.peekFirst() : protectedDeque.peekFirst();
+            if (victim == null) {
+                break;
+            }
+
+            evictNode(victim);
+        }
+    }
+
+    private void evictNode(Node node) {
+        if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else if (node.queue == PROTECTED) {
+            protectedDeque.remove(node);
+            protectedWeight -= node.weight;
+        }
+
+        mainWeight -= node.weight;
+        node.queue = -1;
+        removeEvicted(node);
+    }
+
+    private void removeEvicted(Node node) {
+        writeData.remove(node.key, node);
+        if (node.value.getUsername() != null) {
+            writeUsernames.remove(node.value.getUsername(), node);
+        }
+        evictionCount++;
+        onEviction(node.value);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maximum", maximum)
+                .append("size", data.size())
+                .append("evictionCount", evictionCount)
+                .toString();
+    }
+
+    static final class Node {
+        final Object key;
+        volatile User value;
+        int weight;
+        int queue;
+        Node previous;
+        Node next;
+
+        Node(Object key, User value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.queue = WINDOW;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list, head is the least recently used
+     */
+    static final class AccessOrderDeque {
+        private Node head;
+        private Node tail;
+
+        Node peekFirst() {
+            return head;
+        }
+
+        Node pollFirst() {
+            Node first = head;
+            if (first != null) {
+                remove(first);
+            }
+            return first;
+        }
+
+        void addLast(Node node) {
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void moveToBack(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+
+            node.previous = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Bounded multi producer, single consumer ring buffer. Accesses are dropped when it is full or contended,
+     * losing some of them only makes frequency estimation a little less accurate.
+     */
+    static final class ReadBuffer {
+        static final int SIZE = 128;
+        static final int DRAIN_THRESHOLD = 32;
+
+        private final AtomicReferenceArray<Node> buffer = new AtomicReferenceArray<>(SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        boolean offer(Node node) {
+            long tail = writeCounter.get();
+            if (tail - readCounter >= SIZE) {
+                return false;
+            }
+
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & (SIZE - 1)), node);
+                return true;
+            }
+
+            return false;
+        }
+
+        long pending() {
+            return writeCounter.get() - readCounter;
+        }
+
+        void drain(BoundedUserCache cache) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+
+            while (head < tail) {
+                int index = (int) (head & (SIZE - 1));
+                Node node = buffer.get(index);
+                if (node == null) {
+                    // Writer claimed the slot but didn't publish yet
+                    break;
+                }
+
+                buffer.lazySet(index, null);
+                cache.onAccess(node);
+                head++;
+            }
+
+            readCounter = head;
+        }
+    }
+
+    public static final class Builder {
+        private long maximumSize = -1;
+        private long maximumWeight = -1;
+        private UserWeigher weigher;
+
+        private Builder() {
+        }
+
+        public static Builder aBoundedUserCache() {
+            return new Builder();
+        }
+
+        /**
+         * Bounds cache by entry count
+         */
+        public Builder withMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bounds cache by total weight of entries, weighed by {@link FieldLengthUserWeigher} unless a weigher is given
+         */
+        public Builder withMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public Builder withWeigher(UserWeigher weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public BoundedUserCache build() {
+            if ((maximumSize < 0) == (maximumWeight < 0)) {
+                throw new IllegalArgumentException("Either maximum size or maximum weight should be given");
+            }
+
+            if (maximumSize >= 0) {
+                if (weigher != null) {
+                    throw new IllegalArgumentException("Weigher can only be used with maximum weight");
+                }
+
+                return new BoundedUserCache(Math.max(1, maximumSize), user -> 1, maximumSize);
+            }
+
+            UserWeigher userWeigher = weigher == null ? new FieldLengthUserWeigher() : weigher;
+            long expectedSize = Math.max(1, maximumWeight / FieldLengthUserWeigher.USER_OVERHEAD);
+            return new BoundedUserCache(Math.max(1, maximumWeight), userWeigher, expectedSize);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.Cache;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Thread safe {@link Cache} implementation for users keyed by email and indexed by username.
+ * Reads never take a lock, writes are done by CAS or per-bin locking of {@link ConcurrentHashMap}
+ * so request threads don't serialize on a single monitor.
+ * <p>
+ * Username index is updated while the email entry is locked, so concurrent writes of the same user
+ * leave both indexes pointing to the same instance.
+ */
+public class ConcurrentUserCache implements UserCache {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+    private final int initialCapacity;
+    private volatile Indexes indexes;
+
+    public ConcurrentUserCache() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public ConcurrentUserCache(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.indexes = new Indexes(initialCapacity);
+    }
+
+    @Override
+    public void add(User user) {
+        validate(user);
+        indexes.put(user);
+    }
+
+    /**
+     * Validates all values before putting any of them, so an invalid element leaves the cache untouched.
+     */
+    @Override
+    public void add(Collection<User> values) {
+        notNull(values);
+        values.forEach(ConcurrentUserCache::validate);
+
+        Indexes current = indexes;
+        values.forEach(current::put);
+    }
+
+    @Override
+    public User get(Object cacheId) {
+        if (cacheId == null) {
+            return null;
+        }
+
+        return indexes.byEmail.get(cacheId);
+    }
+
+    @Override
+    public User getByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+
+        return indexes.byUsername.get(username);
+    }
+
+    /**
+     * @return unmodifiable live view of cached users
+     */
+    @Override
+    public Collection<User> getAll() {
+        return Collections.unmodifiableCollection(indexes.byEmail.values());
+    }
+
+    @Override
+    public long getSize() {
+        return indexes.byEmail.size();
+    }
+
+    /**
+     * Builds new indexes with given values and swaps them in at once. A write racing with replacement may be lost,
+     * callers that care should apply such writes again after replacement.
+     */
+    @Override
+    public void replaceAll(Collection<User> values) {
+        notNull(values);
+        values.forEach(ConcurrentUserCache::validate);
+
+        Indexes newIndexes = new Indexes(Math.max(initialCapacity, values.size()));
+        values.forEach(newIndexes::put);
+        indexes = newIndexes;
+    }
+
+    /**
+     * Puts values to new indexes as they are pushed and swaps them in at the end. If source throws,
+     * current indexes are kept.
+     */
+    @Override
+    public void replaceAllFrom(Consumer<Consumer<User>> valueSource) {
+        notNull(valueSource);
+
+        Indexes newIndexes = new Indexes(initialCapacity);
+        valueSource.accept(user -> {
+            validate(user);
+            newIndexes.put(user);
+        });
+        indexes = newIndexes;
+    }
+
+    private static void validate(User user) {
+        notNull(user);
+        notNull(user.getEmail(), "Email of user should not be null");
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("size", indexes.byEmail.size())
+                .toString();
+    }
+
+    private static final class Indexes {
+        final ConcurrentHashMap<Object, User> byEmail;
+        final ConcurrentHashMap<String, User> byUsername;
+
+        Indexes(int initialCapacity) {
+            this.byEmail = new ConcurrentHashMap<>(initialCapacity);
+            this.byUsername = new ConcurrentHashMap<>(initialCapacity);
+        }
+
+        void put(User user) {
+            byEmail.compute(user.getEmail(), (email, previous) -> {
+                if (previous != null && previous.getUsername() != null) {
+                    byUsername.remove(previous.getUsername(), previous);
+                }
+
+                if (user.getUsername() != null) {
+                    byUsername.put(user.getUsername(), user);
+                }
+
+                return user;
+            });
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+
+/**
+ * Estimates retained heap bytes of a user from lengths of its fields.
+ * Credential can be up to 512 characters so it dominates weight of most users.
+ */
+public class FieldLengthUserWeigher implements UserWeigher {
+
+    /**
+     * Object header and five references of user plus headers of five strings and their char arrays
+     */
+    static final int USER_OVERHEAD = 24 + 5 * (24 + 16);
+    static final int BYTES_PER_CHAR = 2;
+
+    @Override
+    public int weigh(User user) {
+        int chars = length(user.getUsername())
+                + length(user.getEmail())
+                + length(user.getFirstName())
+                + length(user.getLastName())
+                + length(user.getCredential());
+
+        return USER_OVERHEAD + chars * BYTES_PER_CHAR;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,119 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.BloomFilter;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Membership filter of all existing emails, backed by a {@link BloomFilter}.
+ * If it says an email doesn't exist, it certainly doesn't exist in the data source as of last load,
+ * so the lookup can be answered without a round trip.
+ * <p>
+ * Until it is loaded it answers every email as possibly existing. Users created by other instances
+ * are only seen after next load, so it should be reloaded periodically in multi instance deployments.
+ */
+public class KnownEmailFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownEmailFilter.class);
+
+    private final long expectedEmails;
+    private final double falsePositiveProbability;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter loadingFilter;
+
+    /**
+     * @param expectedEmails expected count of users, filter gets less accurate beyond it
+     * @param falsePositiveProbability probability of reporting a non existing email as existing
+     */
+    public KnownEmailFilter(long expectedEmails, double falsePositiveProbability) {
+        this.expectedEmails = expectedEmails;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Builds a new filter from users off to the side and swaps it in when completed.
+     * Emails added while loading are put to both filters, users are fetched only after that starts
+     * so a user created concurrently is never lost.
+     * @param usersSupplier supplies all users of data source
+     */
+    public void load(Supplier<? extends Iterable<User>> usersSupplier) {
+        loadFrom(consumer -> usersSupplier.get().forEach(consumer));
+    }
+
+    /**
+     * Same as {@link #load(Supplier)} but users are pushed one by one by given source, so they are never
+     * held in memory at once.
+     * @param usersSource passes all users of data source to the consumer it is given
+     */
+    public synchronized void loadFrom(Consumer<Consumer<User>> usersSource) {
+        BloomFilter newFilter = newBloomFilter();
+        loadingFilter = newFilter;
+
+        long[] count = new long[1];
+        try {
+            usersSource.accept(user -> {
+                newFilter.put(user.getEmail());
+                count[0]++;
+            });
+
+            filter = newFilter;
+        } finally {
+            loadingFilter = null;
+        }
+
+        logger.info("[load] Known email filter has been loaded :: emailCount={}, expectedEmails={}", count[0], expectedEmails);
+
+        if (count[0] > expectedEmails) {
+            logger.warn("[load] Email count exceeds expected emails, false positive rate is higher than configured :: emailCount={}, expectedEmails={}", count[0], expectedEmails);
+        }
+    }
+
+    BloomFilter newBloomFilter() {
+        return new BloomFilter(expectedEmails, falsePositiveProbability);
+    }
+
+    /**
+     * Adds a newly created email. Loading filter is read before current one, since load swaps in the new filter
+     * before clearing loading filter. So if a load completes in between, the email is still put to the new filter.
+     */
+    public void add(String email) {
+        BloomFilter loading = loadingFilter;
+        BloomFilter current = filter;
+
+        if (loading != null) {
+            loading.put(email);
+        }
+
+        if (current != null && current != loading) {
+            current.put(email);
+        }
+    }
+
+    /**
+     * @return false only if email certainly doesn't exist
+     */
+    public boolean mightExist(String email) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(email);
+    }
+
+    public boolean isLoaded() {
+        return filter != null;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("expectedEmails", expectedEmails)
+                .append("falsePositiveProbability", falsePositiveProbability)
+                .append("loaded", isLoaded())
+                .toString();
+    }
+}
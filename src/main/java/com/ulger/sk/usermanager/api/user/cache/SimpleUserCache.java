@@ -1,7 +1,6 @@
 package com.ulger.sk.usermanager.api.user.cache;
 
 import com.ulger.sk.usermanager.api.user.core.User;
-import com.ulger.sk.usermanager.cache.Cache;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -10,22 +9,24 @@ import java.util.stream.Collectors;
 
 import static com.ulger.sk.usermanager.SkAssertions.notNull;
 
-public class SimpleUserCache implements Cache<User> {
+public class SimpleUserCache implements UserCache {
 
     private Map<Object, User> cache;
+    private Map<String, User> usernameIndex;
 
     public SimpleUserCache() {
-        this.cache = new HashMap<>();
+        this(new HashMap<>());
     }
 
     public SimpleUserCache(Map<Object, User> cache) {
         this.cache = cache;
+        this.usernameIndex = new HashMap<>();
     }
 
     @Override
     public void add(User user) {
         notNull(user);
-        cache.put(user.getEmail(), user);
+        put(user);
     }
 
     @Override
@@ -34,7 +35,7 @@ public class SimpleUserCache implements Cache<User> {
                 .stream()
                 .collect(Collectors.toMap(User::getEmail, user -> user));
 
-        cache.putAll(newValues);
+        newValues.values().forEach(this::put);
     }
 
     @Override
@@ -42,8 +43,39 @@ public class SimpleUserCache implements Cache<User> {
         return cache.get(cacheId);
     }
 
+    @Override
+    public User getByUsername(String username) {
+        return usernameIndex.get(username);
+    }
+
     @Override
     public Collection<User> getAll() {
         return cache.values();
     }
-}
\ No newline at end of file
+
+    /**
+     * Clears and fills the backing map, so it is not atomic for concurrent readers
+     */
+    @Override
+    public void replaceAll(Collection<User> values) {
+        Map<Object, User> newValues = values
+                .stream()
+                .collect(Collectors.toMap(User::getEmail, user -> user));
+
+        cache.clear();
+        usernameIndex.clear();
+        newValues.values().forEach(this::put);
+    }
+
+    private void put(User user) {
+        User previous = cache.put(user.getEmail(), user);
+
+        if (previous != null && previous.getUsername() != null) {
+            usernameIndex.remove(previous.getUsername(), previous);
+        }
+
+        if (user.getUsername() != null) {
+            usernameIndex.put(user.getUsername(), user);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.OffHeapStore;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Two tier {@link UserCache} for large user counts. A small on-heap {@link BoundedUserCache} keeps the hot set,
+ * all users are kept serialized in an {@link OffHeapStore}, so they add almost nothing to heap and GC work.
+ * <p>
+ * A user found only in off-heap tier is deserialized and promoted to hot set. Writes go to off-heap tier
+ * and update the hot set if it has the user, so both tiers never disagree.
+ * Off-heap tier is indexed by email, lookups by username go through a second off-heap store mapping
+ * usernames to emails, which takes a quarter of maximum off-heap bytes and at least one slab on top of it.
+ */
+public class TieredUserCache implements UserCache {
+
+    private static final long DEFAULT_HOT_SET_SIZE = 10_000;
+    private static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    private final long hotSetSize;
+    private final long maximumOffHeapBytes;
+    private final int slabSize;
+    private final BoundedUserCache hotSet;
+    private final ReentrantLock writeLock;
+
+    private volatile OffHeapStore offHeapStore;
+    private volatile OffHeapStore usernameIndex;
+
+    private TieredUserCache(long hotSetSize, long maximumOffHeapBytes, int slabSize) {
+        this.hotSetSize = hotSetSize;
+        this.maximumOffHeapBytes = maximumOffHeapBytes;
+        this.slabSize = slabSize;
+        this.hotSet = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(hotSetSize).build();
+        this.writeLock = new ReentrantLock();
+        this.offHeapStore = new OffHeapStore(maximumOffHeapBytes, slabSize);
+        this.usernameIndex = newUsernameIndex();
+    }
+
+    private OffHeapStore newUsernameIndex() {
+        return new OffHeapStore(Math.max(slabSize, maximumOffHeapBytes / 4), slabSize);
+    }
+
+    @Override
+    public void add(User user) {
+        validate(user);
+        byte[] value = UserSerializer.serialize(user);
+
+        writeLock.lock();
+        try {
+            write(offHeapStore, usernameIndex, user, value);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void add(Collection<User> values) {
+        notNull(values);
+        values.forEach(TieredUserCache::validate);
+
+        writeLock.lock();
+        try {
+            OffHeapStore store = offHeapStore;
+            OffHeapStore index = usernameIndex;
+            for (User user : values) {
+                write(store, index, user, UserSerializer.serialize(user));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(OffHeapStore store, OffHeapStore index, User user, byte[] value) {
+        byte[] email = UserSerializer.toBytes(user.getEmail());
+        store.put(email, value);
+        putUsername(index, user, email);
+
+        if (hotSet.get(user.getEmail()) != null) {
+            hotSet.add(user);
+        }
+    }
+
+    /**
+     * Previous username of a renamed user is left in index, lookups check username of the user they find
+     */
+    private static void putUsername(OffHeapStore index, User user, byte[] email) {
+        if (user.getUsername() != null) {
+            index.put(UserSerializer.toBytes(user.getUsername()), email);
+        }
+    }
+
+    @Override
+    public User get(Object cacheId) {
+        if (!(cacheId instanceof String)) {
+            return null;
+        }
+
+        User user = hotSet.get(cacheId);
+        if (user != null) {
+            return user;
+        }
+
+        OffHeapStore store = offHeapStore;
+        byte[] email = UserSerializer.toBytes((String) cacheId);
+        byte[] value = store.get(email);
+        if (value == null) {
+            return null;
+        }
+
+        user = UserSerializer.deserialize(value);
+        promote(store, email, value, user);
+        return user;
+    }
+
+    /**
+     * Promotes user only if its off-heap value is still the one it is read from, so a user written or
+     * replaced after the read is never put back to hot set. Writes of other users don't prevent it.
+     */
+    private void promote(OffHeapStore store, byte[] email, byte[] value, User user) {
+        writeLock.lock();
+        try {
+            if (store == offHeapStore && Arrays.equals(value, store.get(email))) {
+                hotSet.add(user);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Looks up hot set first, then resolves email of username by off-heap username index and
+     * reads the user by {@link #get(Object)}, so it is promoted to hot set.
+     */
+    @Override
+    public User getByUsername(String username) {
+        User user = hotSet.getByUsername(username);
+        if (user != null || username == null) {
+            return user;
+        }
+
+        byte[] email = usernameIndex.get(UserSerializer.toBytes(username));
+        if (email == null) {
+            return null;
+        }
+
+        user = get(new String(email, StandardCharsets.UTF_8));
+        return user != null && username.equals(user.getUsername()) ? user : null;
+    }
+
+    /**
+     * Deserializes all users, so it is as expensive as the user count. Users of hot set are returned
+     * as they are.
+     * @return unmodifiable copy of cached users
+     */
+    @Override
+    public Collection<User> getAll() {
+        Map<String, User> users = new LinkedHashMap<>();
+        offHeapStore.forEachValue(value -> {
+            User user = UserSerializer.deserialize(value);
+            users.put(user.getEmail(), user);
+        });
+
+        // Hot set may still have users whose slab is reused
+        hotSet.getAll().forEach(user -> users.put(user.getEmail(), user));
+
+        return Collections.unmodifiableCollection(new ArrayList<>(users.values()));
+    }
+
+    /**
+     * Off-heap tier copies serialized users of a bounded index range at a time under its read lock,
+     * they are deserialized and passed after the lock is released, so only one range is held on heap
+     * and consumer may write to this cache. Users evicted from off-heap tier but still in hot set are not passed.
+     */
+    @Override
+    public void forEachValue(Consumer<? super User> consumer) {
+        notNull(consumer);
+
+        offHeapStore.forEachValue(value -> consumer.accept(UserSerializer.deserialize(value)));
+    }
+
+    /**
+     * Fills a new off-heap store aside and swaps it in with an empty hot set, so direct memory is doubled
+     * during replacement. A write racing with replacement may be lost, callers that care should apply
+     * such writes again after replacement.
+     */
+    @Override
+    public void replaceAll(Collection<User> values) {
+        notNull(values);
+        values.forEach(TieredUserCache::validate);
+
+        replaceAllFrom(values::forEach);
+    }
+
+    /**
+     * Serializes users to a new off-heap store as they are pushed, so no list of users is held on heap,
+     * and swaps it in at the end. If source throws, current store is kept.
+     */
+    @Override
+    public void replaceAllFrom(Consumer<Consumer<User>> valueSource) {
+        notNull(valueSource);
+
+        OffHeapStore newStore = new OffHeapStore(maximumOffHeapBytes, slabSize);
+        OffHeapStore newIndex = newUsernameIndex();
+        valueSource.accept(user -> {
+            validate(user);
+            byte[] email = UserSerializer.toBytes(user.getEmail());
+            newStore.put(email, UserSerializer.serialize(user));
+            putUsername(newIndex, user, email);
+        });
+
+        writeLock.lock();
+        try {
+            offHeapStore = newStore;
+            usernameIndex = newIndex;
+            hotSet.replaceAll(Collections.emptyList());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return count of users in off-heap tier
+     */
+    @Override
+    public long getSize() {
+        return offHeapStore.size();
+    }
+
+    /**
+     * @return count of users evicted from off-heap tier, users leaving hot set are not counted since they stay off-heap
+     */
+    @Override
+    public long getEvictionCount() {
+        return offHeapStore.getEvictionCount();
+    }
+
+    /**
+     * @return direct memory allocated by off-heap tier and its username index
+     */
+    public long getOffHeapBytes() {
+        return offHeapStore.getOffHeapBytes() + usernameIndex.getOffHeapBytes();
+    }
+
+    public long getHotSetSize() {
+        return hotSet.getSize();
+    }
+
+    private static void validate(User user) {
+        notNull(user);
+        notNull(user.getEmail(), "Email of user should not be null");
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("hotSetSize", hotSetSize)
+                .append("maximumOffHeapBytes", maximumOffHeapBytes)
+                .append("offHeapStore", offHeapStore)
+                .append("usernameIndex", usernameIndex)
+                .toString();
+    }
+
+    public static final class Builder {
+        private long hotSetSize = DEFAULT_HOT_SET_SIZE;
+        private long maximumOffHeapBytes = -1;
+        private int slabSize = DEFAULT_SLAB_SIZE;
+
+        private Builder() {
+        }
+
+        public static Builder aTieredUserCache() {
+            return new Builder();
+        }
+
+        /**
+         * Maximum count of users kept on heap, 10000 by default
+         */
+        public Builder withHotSetSize(long hotSetSize) {
+            this.hotSetSize = hotSetSize;
+            return this;
+        }
+
+        /**
+         * Maximum direct memory used by serialized users, required
+         */
+        public Builder withMaximumOffHeapBytes(long maximumOffHeapBytes) {
+            this.maximumOffHeapBytes = maximumOffHeapBytes;
+            return this;
+        }
+
+        /**
+         * Size of a direct memory slab, 16 MB by default. Memory is allocated and reclaimed slab by slab.
+         */
+        public Builder withSlabSize(int slabSize) {
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        public TieredUserCache build() {
+            if (maximumOffHeapBytes < 0) {
+                throw new IllegalArgumentException("Maximum off-heap bytes should be given");
+            }
+
+            if (hotSetSize < 1) {
+                throw new IllegalArgumentException("Hot set size should be positive");
+            }
+
+            return new TieredUserCache(hotSetSize, maximumOffHeapBytes, Math.min(slabSize, (int) Math.min(Integer.MAX_VALUE, maximumOffHeapBytes)));
+        }
+    }
+}
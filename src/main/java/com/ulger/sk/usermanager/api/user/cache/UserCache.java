@@ -0,0 +1,18 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.Cache;
+
+/**
+ * {@link Cache} of users indexed by both email and username. Both indexes point to the same
+ * {@link User} instances, so a user is kept in memory once and found by either key.
+ * {@link #get(Object)} looks up by email.
+ */
+public interface UserCache extends Cache<User> {
+
+    /**
+     * @param username the username of User
+     * @return cached user with given username or null
+     */
+    User getByUsername(String username);
+}
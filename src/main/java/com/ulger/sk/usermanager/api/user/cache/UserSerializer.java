@@ -0,0 +1,80 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary form of a {@link User}. Fields are written in order of username, email, first name,
+ * last name and credential, each as an int length followed by UTF-8 bytes, -1 length for null.
+ * Deserialized users are {@link DefaultUser} instances.
+ */
+public final class UserSerializer {
+
+    private static final int NULL_LENGTH = -1;
+
+    private UserSerializer() {
+    }
+
+    public static byte[] serialize(User user) {
+        byte[] username = toBytes(user.getUsername());
+        byte[] email = toBytes(user.getEmail());
+        byte[] firstName = toBytes(user.getFirstName());
+        byte[] lastName = toBytes(user.getLastName());
+        byte[] credential = toBytes(user.getCredential());
+
+        ByteBuffer buffer = ByteBuffer.allocate(5 * 4 + length(username) + length(email) + length(firstName)
+                + length(lastName) + length(credential));
+
+        put(buffer, username);
+        put(buffer, email);
+        put(buffer, firstName);
+        put(buffer, lastName);
+        put(buffer, credential);
+
+        return buffer.array();
+    }
+
+    public static User deserialize(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(getString(buffer))
+                .withEmail(getString(buffer))
+                .withFirstName(getString(buffer))
+                .withLastName(getString(buffer))
+                .withCredential(getString(buffer))
+                .build();
+    }
+
+    static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void put(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
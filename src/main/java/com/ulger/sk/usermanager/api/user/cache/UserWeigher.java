@@ -0,0 +1,15 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+
+/**
+ * Calculates weight of a cached user for weight bounded caches
+ */
+public interface UserWeigher {
+
+    /**
+     * @param user cached user, never null
+     * @return weight of user, should be positive
+     */
+    int weigh(User user);
+}
@@ -1,22 +1,62 @@
 package com.ulger.sk.usermanager.api.user.core;
 
+import com.ulger.sk.usermanager.api.user.cache.KnownEmailFilter;
+import com.ulger.sk.usermanager.cache.CacheStats;
+import com.ulger.sk.usermanager.cache.NegativeLookupCache;
+import com.ulger.sk.usermanager.cache.SingleFlight;
+import com.ulger.sk.usermanager.cache.StatsCounter;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class AbstractCachingUserManager implements UserManager {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractCachingUserManager.class);
 
+    private static final long NOT_FULLY_LOADED = -1;
+
     private Map<String, User> userCache;
     private UserManager userManager;
+    private NegativeLookupCache<String> negativeLookupCache;
+    private KnownEmailFilter knownEmailFilter;
+    private SingleFlight<String, User> emailLoads;
+    private SingleFlight<String, User> usernameLoads;
+    private RefreshAheadPolicy refreshAheadPolicy;
+    private PasswordVerifier passwordVerifier;
+    private final AtomicBoolean refreshing;
+    private final StatsCounter statsCounter;
+    private final AtomicLong usersVersion;
+    private final Object snapshotLock;
+    private volatile UserSnapshot userSnapshot;
+    private volatile Map<String, User> writesDuringRefresh;
+    private volatile long fullyLoadedEvictionCount;
+    private final AuthenticationMetrics authenticationMetrics;
 
     public AbstractCachingUserManager(UserManager userManager) {
         this.userCache = new HashMap<>();
         this.userManager = userManager;
+        this.emailLoads = new SingleFlight<>();
+        this.usernameLoads = new SingleFlight<>();
+        this.refreshing = new AtomicBoolean();
+        this.statsCounter = new StatsCounter();
+        this.authenticationMetrics = new AuthenticationMetrics();
+        this.usersVersion = new AtomicLong();
+        this.snapshotLock = new Object();
+        this.fullyLoadedEvictionCount = NOT_FULLY_LOADED;
+        this.passwordVerifier = userManager instanceof PasswordVerifier ? (PasswordVerifier) userManager : null;
         init();
     }
 
@@ -30,6 +70,62 @@ public abstract class AbstractCachingUserManager implements UserManager {
                 "this user manager needs none caching user manager :: userManager={}", userManager);
     }
 
+    /**
+     * Enables caching of emails that are not found, so repeated lookups of them don't reach data source
+     * until time to live of negative cache passes.
+     * @param negativeLookupCache cache of not found emails, null disables negative caching
+     * @return this
+     */
+    public AbstractCachingUserManager setNegativeLookupCache(NegativeLookupCache<String> negativeLookupCache) {
+        this.negativeLookupCache = negativeLookupCache;
+        return this;
+    }
+
+    /**
+     * Enables answering lookups of emails that certainly don't exist without going to data source.
+     * Filter is not used until {@link #loadKnownEmails()} is called.
+     * @param knownEmailFilter filter of existing emails, null disables it
+     * @return this
+     */
+    public AbstractCachingUserManager setKnownEmailFilter(KnownEmailFilter knownEmailFilter) {
+        this.knownEmailFilter = knownEmailFilter;
+        return this;
+    }
+
+    /**
+     * Enables expiration and refresh-ahead of cached users.
+     * @param refreshAheadPolicy policy deciding when a cached user is reloaded, null disables it
+     * @return this
+     */
+    public AbstractCachingUserManager setRefreshAheadPolicy(RefreshAheadPolicy refreshAheadPolicy) {
+        this.refreshAheadPolicy = refreshAheadPolicy;
+        return this;
+    }
+
+    /**
+     * Enables authenticating by a user resolved through this cache. By default, user manager is used
+     * if it is a {@link PasswordVerifier}.
+     * @param passwordVerifier verifier of password of resolved user, null delegates authentication to user manager
+     * @return this
+     */
+    public AbstractCachingUserManager setPasswordVerifier(PasswordVerifier passwordVerifier) {
+        this.passwordVerifier = passwordVerifier;
+        return this;
+    }
+
+    /**
+     * Loads known email filter with all users of data source. Should be called after filter is set and
+     * then periodically to see users created by other instances.
+     */
+    public void loadKnownEmails() {
+        if (knownEmailFilter == null) {
+            logger.warn("[loadKnownEmails] No known email filter is set");
+            return;
+        }
+
+        knownEmailFilter.loadFrom(userManager::forEachUser);
+    }
+
     /**
      * This method needs to overridden. Because getUserByEmail method invokes this method first and
      * if no user found than, default user manager's getUserByEmail method invoked.
@@ -39,6 +135,14 @@ public abstract class AbstractCachingUserManager implements UserManager {
      */
     protected abstract User getUserFromCache(String email);
 
+    /**
+     * This method is invoked by getUserByUsername first, if no user found than
+     * user manager's getUserByUsername method invoked and found user is put on cache.
+     * @param username
+     * @return cached user or null
+     */
+    protected abstract User getUserFromCacheByUsername(String username);
+
     /**
      * This method is calling by getUserByEmail, getAllUsers and createOrUpdateUser when user is not found in cache for first time.
      * @param user
@@ -51,78 +155,587 @@ public abstract class AbstractCachingUserManager implements UserManager {
      */
     protected abstract Collection<User> getAllUsersFromCache();
 
+    /**
+     * Passes all users in cache to given consumer, called by forEachUser and to take snapshots.
+     * Default implementation iterates getAllUsersFromCache, caches that can pass users without
+     * building a collection of all of them should override it.
+     * @param consumer called for each cached user
+     */
+    protected void forEachUserInCache(Consumer<? super User> consumer) {
+        Collection<User> users = getAllUsersFromCache();
+        if (users != null) {
+            users.forEach(consumer);
+        }
+    }
+
+    /**
+     * @return count of cached users, used by statistics
+     */
+    protected long getCacheSize() {
+        Collection<User> users = getAllUsersFromCache();
+        return users == null ? 0 : users.size();
+    }
+
+    /**
+     * @return count of users evicted from cache because of size limit, used by statistics
+     */
+    protected long getCacheEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * Returns statistics of lookups by email and username. Lookups answered without calling {@link UserManager},
+     * including the ones known to be missing, are counted as hits. Load times are durations of
+     * {@link UserManager} calls made on misses, a miss waiting for an in flight load of the same key
+     * is not counted as a load.
+     * @return snapshot of statistics
+     */
+    public CacheStats getStats() {
+        return statsCounter.snapshot(getCacheEvictionCount(), getCacheSize());
+    }
+
     /**
      * This method refresh single user on cache by query'in data source
      * @param email
      */
-    protected abstract void refreshSingleUserOnCache(String email);
+    protected void refreshSingleUserOnCache(String email) {
+        User user = userManager.getUserByEmail(email);
+        if (user == null) {
+            logger.error("User not found :: email={}", email);
+            throw new NullPointerException("User not found by email '" + email + "'");
+        }
+
+        cacheUser(user);
+    }
 
     /**
-     * Refreshes cache
+     * This method should replace all users in cache with given users at once, so readers see either
+     * old or new users but never an empty cache. Called by refreshCache.
+     * @param usersSource passes all users of data source one by one to the consumer it is given
      */
-    protected abstract void refreshCache();
+    protected abstract void replaceAllUsersInCache(Consumer<Consumer<User>> usersSource);
 
     /**
-     * Looks for user in cache by invoking getUserFromCache method. If not found calls {@link UserManager} getUserByEmail
-     * method and puts the result to cache by calling addUserToCache
+     * Reloads all users from {@link UserManager} and swaps them into cache, readers are never blocked.
+     * Users written while refreshing are applied again after swapping so they are not lost.
+     * If a refresh is already running, returns without doing anything.
+     * Known email filter is reloaded with the same users if set.
+     */
+    public void refreshCache() {
+        if (!refreshing.compareAndSet(false, true)) {
+            logger.info("[refreshCache] Cache is already being refreshed");
+            return;
+        }
+
+        try {
+            logger.info("[refreshCache] Refreshing cache");
+
+            RefreshAheadPolicy policy = refreshAheadPolicy;
+            long startedAt = policy == null ? 0 : policy.now();
+            writesDuringRefresh = new ConcurrentHashMap<>();
+            long evictionCount = getCacheEvictionCount();
+
+            long userCount = loadAllUsers();
+
+            Map<String, User> writes = writesDuringRefresh;
+            writesDuringRefresh = null;
+            writes.values().forEach(this::addUserToCache);
+            usersVersion.incrementAndGet();
+            markFullyLoaded(evictionCount);
+
+            if (policy != null) {
+                policy.onFullLoad(startedAt);
+            }
+
+            logger.info("[refreshCache] Cache refreshing completed :: userCount={}, writesDuringRefresh={}", userCount, writes.size());
+        } catch (Exception e) {
+            logger.error("[refreshCache] Unable to refresh cache", e);
+        } finally {
+            writesDuringRefresh = null;
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Streams all users into cache, and into known email filter if set, in a single pass over data source
+     * @return count of loaded users
+     */
+    private long loadAllUsers() {
+        AtomicLong userCount = new AtomicLong();
+
+        if (knownEmailFilter == null) {
+            replaceAllUsersInCache(cacheSink -> userManager.forEachUser(user -> {
+                cacheSink.accept(user);
+                userCount.incrementAndGet();
+            }));
+        } else {
+            knownEmailFilter.loadFrom(filterSink -> replaceAllUsersInCache(cacheSink -> userManager.forEachUser(user -> {
+                filterSink.accept(user);
+                cacheSink.accept(user);
+                userCount.incrementAndGet();
+            })));
+        }
+
+        return userCount.get();
+    }
+
+    /**
+     * Looks for user in cache by invoking getUserFromCache method. If not found and email is not known to be missing
+     * by known email filter or negative lookup cache, calls {@link UserManager} getUserByEmail method and puts
+     * the result to cache by calling addUserToCache. Not found emails are put to negative lookup cache.
+     * Concurrent misses of the same email are coalesced into a single load.
      * @param email the email of User
      * @return User instance from cache or data source
      */
     @Override
     public User getUserByEmail(String email) {
-        User user = getUserFromCache(email);
+        User user = getUsableCachedUser(getUserFromCache(email));
         if (user != null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("User with email found in cache :: user={}", user);
             }
 
+            statsCounter.recordHit();
+            return user;
+        }
+
+        if (isKnownToBeMissing(email)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("[getUserByEmail] User with email is known to be missing :: email={}", email);
+            }
+
+            statsCounter.recordHit();
+            return null;
+        }
+
+        statsCounter.recordMiss();
+
+        if (email == null) {
+            // Let user manager reject it, in flight loads can not be keyed by null
+            return loadUserByEmail(null);
+        }
+
+        return reloadUserByEmail(email);
+    }
+
+    private User reloadUserByEmail(String email) {
+        return emailLoads.load(email, this::loadUserByEmail);
+    }
+
+    /**
+     * Looks for user in cache by invoking getUserFromCacheByUsername method. If not found, calls {@link UserManager}
+     * getUserByUsername method and puts the result to cache, so it is found by both email and username afterwards.
+     * Concurrent misses of the same username are coalesced into a single load.
+     * @param username the username of User
+     * @return User instance from cache or data source
+     */
+    @Override
+    public User getUserByUsername(String username) {
+        User user = getUsableCachedUser(getUserFromCacheByUsername(username));
+        if (user != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("User with username found in cache :: user={}", user);
+            }
+
+            statsCounter.recordHit();
             return user;
         }
 
-        // null olma durumunda da cache'e konulabilir
-        user = userManager.getUserByEmail(email);
+        statsCounter.recordMiss();
+
+        if (username == null) {
+            // Let user manager reject it, in flight loads can not be keyed by null
+            return loadUserByUsername(null);
+        }
+
+        return usernameLoads.load(username, this::loadUserByUsername);
+    }
+
+    /**
+     * Async version of {@link #getUserByEmail(String)}. Users found in cache or known to be missing are returned
+     * by a completed future without leaving calling thread, misses are loaded on given executor and coalesced
+     * with other loads of the same email.
+     * @param executor runs loads of users not found in cache
+     * @return future of user, or of null if no user found
+     */
+    public CompletableFuture<User> getUserByEmailAsync(String email, Executor executor) {
+        User user = getUsableCachedUser(getUserFromCache(email));
         if (user != null) {
-            logger.debug("[getUserByEmail] User with email found in db and putting cache :: email={}, user={}", email, user);
+            statsCounter.recordHit();
+            return CompletableFuture.completedFuture(user);
+        }
+
+        if (isKnownToBeMissing(email)) {
+            statsCounter.recordHit();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        statsCounter.recordMiss();
+
+        if (email == null) {
+            return supplyAsync(() -> loadUserByEmail(null), executor);
+        }
+
+        return emailLoads.loadAsync(email, this::loadUserByEmail, executor);
+    }
+
+    /**
+     * Async version of {@link #getUserByUsername(String)}, users found in cache are returned by a completed future
+     * without leaving calling thread.
+     * @param executor runs loads of users not found in cache
+     * @return future of user, or of null if no user found
+     */
+    public CompletableFuture<User> getUserByUsernameAsync(String username, Executor executor) {
+        User user = getUsableCachedUser(getUserFromCacheByUsername(username));
+        if (user != null) {
+            statsCounter.recordHit();
+            return CompletableFuture.completedFuture(user);
+        }
+
+        statsCounter.recordMiss();
+
+        if (username == null) {
+            return supplyAsync(() -> loadUserByUsername(null), executor);
+        }
+
+        return usernameLoads.loadAsync(username, this::loadUserByUsername, executor);
+    }
+
+    /**
+     * Like {@link CompletableFuture#supplyAsync(Supplier, Executor)}, but rejection by executor fails the returned future
+     * instead of being thrown to caller
+     */
+    static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Splits given emails into cache hits and misses, then loads all misses by a single getUsersByEmails call
+     * of {@link UserManager} and puts them to cache. Emails known to be missing are not loaded, not found emails
+     * are put to negative lookup cache.
+     * @param emails the emails of Users
+     * @return map of email to user in the order of given emails, emails no user found are not in the map
+     */
+    @Override
+    public Map<String, User> getUsersByEmails(Collection<String> emails) {
+        if (emails == null) {
+            throw new IllegalArgumentException("Emails must given");
+        }
+
+        Set<String> distinctEmails = new LinkedHashSet<>(emails);
+        Map<String, User> usersByEmail = new HashMap<>(distinctEmails.size());
+        List<String> missingEmails = new ArrayList<>();
+
+        for (String email : distinctEmails) {
+            User user = getUsableCachedUser(getUserFromCache(email));
+            if (user != null) {
+                statsCounter.recordHit();
+                usersByEmail.put(email, user);
+            } else if (isKnownToBeMissing(email)) {
+                statsCounter.recordHit();
+            } else {
+                statsCounter.recordMiss();
+                missingEmails.add(email);
+            }
+        }
+
+        if (!missingEmails.isEmpty()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("[getUsersByEmails] Loading users not found in cache :: emailCount={}, missingEmailCount={}",
+                        distinctEmails.size(), missingEmails.size());
+            }
+
+            NegativeLookupCache<String> negatives = negativeLookupCache;
+            // Read before the query, so a user created while it runs is not marked as missing
+            long negativeGeneration = negatives != null ? negatives.getGeneration() : 0;
+
+            Map<String, User> loadedUsers = timedLoad(userManager::getUsersByEmails, missingEmails);
+
+            for (String email : missingEmails) {
+                User user = loadedUsers.get(email);
+                if (user == null) {
+                    if (negatives != null) {
+                        negatives.add(email, negativeGeneration);
+                    }
+                } else {
+                    cacheUser(user, false);
+                    usersByEmail.put(email, user);
+                }
+            }
+        }
+
+        Map<String, User> users = new LinkedHashMap<>();
+        for (String email : distinctEmails) {
+            User user = usersByEmail.get(email);
+            if (user != null) {
+                users.put(email, user);
+            }
+        }
+
+        return users;
+    }
+
+    /**
+     * @return cached user unless it is expired by refresh-ahead policy, triggers background reload
+     * if it needs refreshing
+     */
+    private User getUsableCachedUser(User user) {
+        RefreshAheadPolicy policy = refreshAheadPolicy;
+        if (user == null || policy == null) {
+            return user;
+        }
+
+        String email = user.getEmail();
+        if (policy.isExpired(email)) {
+            return null;
+        }
+
+        if (policy.needsRefresh(email)) {
+            policy.refreshAsync(email, this::reloadUserByEmail);
+        }
+
+        return user;
+    }
+
+    /**
+     * @return count of getUserByEmail misses that waited for an in flight load of the same email
+     * instead of querying user manager
+     */
+    public long getCoalescedLoadCount() {
+        return emailLoads.getCoalescedCount();
+    }
+
+    private User loadUserByEmail(String email) {
+        NegativeLookupCache<String> negatives = negativeLookupCache;
+        // Read before the query, so a user created while it runs is not marked as missing
+        long negativeGeneration = negatives != null ? negatives.getGeneration() : 0;
+
+        User user = timedLoad(userManager::getUserByEmail, email);
+        if (user == null) {
+            if (negatives != null) {
+                negatives.add(email, negativeGeneration);
+            }
+
+            return null;
+        }
+
+        logger.debug("[getUserByEmail] User with email found in db and putting cache :: email={}, user={}", email, user);
+        cacheUser(user, false);
+
+        return user;
+    }
+
+    private void cacheUser(User user) {
+        cacheUser(user, true);
+    }
+
+    /**
+     * @param written true if user is written through this manager, a user loaded by a read changes
+     * users version only if all users are loaded, since snapshot is not served otherwise
+     */
+    private void cacheUser(User user, boolean written) {
+        Map<String, User> writes = writesDuringRefresh;
+        if (writes != null) {
+            writes.put(user.getEmail(), user);
         }
 
         addUserToCache(user);
+        if (written || isFullyLoaded()) {
+            // Incremented after writing, so a snapshot tagged with a version has all writes counted by it
+            usersVersion.incrementAndGet();
+        }
+
+        RefreshAheadPolicy policy = refreshAheadPolicy;
+        if (policy != null) {
+            policy.onWrite(user.getEmail());
+        }
+    }
+
+    private User loadUserByUsername(String username) {
+        User user = timedLoad(userManager::getUserByUsername, username);
+        if (user == null) {
+            return null;
+        }
+
+        logger.debug("[getUserByUsername] User with username found in db and putting cache :: username={}, user={}", username, user);
+        cacheUser(user, false);
 
         return user;
     }
 
+    private <K, V> V timedLoad(Function<K, V> loader, K key) {
+        long startTime = System.nanoTime();
+        try {
+            V value = loader.apply(key);
+            statsCounter.recordLoadSuccess(System.nanoTime() - startTime);
+            return value;
+        } catch (RuntimeException | Error e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - startTime);
+            throw e;
+        }
+    }
+
+    private boolean isKnownToBeMissing(String email) {
+        if (StringUtils.isBlank(email)) {
+            // Let user manager reject it
+            return false;
+        }
+
+        if (knownEmailFilter != null && !knownEmailFilter.mightExist(email)) {
+            return true;
+        }
+
+        return negativeLookupCache != null && negativeLookupCache.contains(email);
+    }
+
+    private void onUserWritten(User user) {
+        if (knownEmailFilter != null) {
+            knownEmailFilter.add(user.getEmail());
+        }
+
+        if (negativeLookupCache != null) {
+            negativeLookupCache.invalidate(user.getEmail());
+        }
+    }
+
+    /**
+     * Returns snapshot of cached users. Snapshot is taken by forEachUserInCache only when cache is written
+     * since previous one, otherwise the same snapshot is returned without copying.
+     * Writes made to a shared cache bypassing this manager are not seen until next write through it.
+     * @return immutable snapshot of cached users
+     */
+    public UserSnapshot getUserSnapshot() {
+        UserSnapshot snapshot = userSnapshot;
+        if (snapshot != null && snapshot.getVersion() == usersVersion.get()) {
+            return snapshot;
+        }
+
+        synchronized (snapshotLock) {
+            snapshot = userSnapshot;
+            long version = usersVersion.get();
+            if (snapshot != null && snapshot.getVersion() == version) {
+                return snapshot;
+            }
+
+            List<User> users = new ArrayList<>();
+            forEachUserInCache(users::add);
+            snapshot = new UserSnapshot(version, users);
+            userSnapshot = snapshot;
+
+            return snapshot;
+        }
+    }
+
     /**
-     * This method tries to get users from cache by calling getAllUsersFromCache, if no user found then
-     * call {@link UserManager} getAllUsers and puts the results to the cache.
-     * @return All users from cache or data source and returns new ArrayList with result
+     * @return version of cached users, incremented on every write through this manager and on every load
+     * while all users are loaded. Cheaper than taking a snapshot to find out if anything has changed.
+     */
+    public long getUsersVersion() {
+        return usersVersion.get();
+    }
+
+    /**
+     * This method returns users of {@link #getUserSnapshot()} if all users are loaded to cache, see
+     * {@link #isFullyLoaded()}. Otherwise calls {@link UserManager} getAllUsers and puts the results to the cache.
+     * @return All users from cache as an unmodifiable list shared by callers, or from data source
      */
     @Override
     public List<User> getAllUsers() {
-        Collection<User> usersCollection = getAllUsersFromCache();
-        List<User> users = null;
+        if (isFullyLoaded()) {
+            return getUserSnapshot().getUsers();
+        }
 
-        if (usersCollection != null) {
-            users = new ArrayList<>(usersCollection);
+        if (logger.isDebugEnabled()) {
+            logger.debug("[getAllUsers] Users are not fully loaded to cache");
         }
 
-        if (users == null || users.isEmpty()) {
+        List<User> users = userManager.getAllUsers();
+
+        if (users.isEmpty()) {
             if (logger.isDebugEnabled()) {
-                logger.debug("[getAllUsers] No user found in cache");
+                logger.debug("[getAllUsers] No user found");
             }
 
-            users = userManager.getAllUsers();
+            return users;
+        }
 
-            if (users.isEmpty()) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("[getAllUsers] No user found");
-                }
+        long evictionCount = getCacheEvictionCount();
+        users.forEach(user -> cacheUser(user, false));
+        usersVersion.incrementAndGet();
+        markFullyLoaded(evictionCount);
 
-                return users;
-            }
+        return users;
+    }
+
+    /**
+     * Serves page from {@link #getUserSnapshot()} if all users are loaded to cache by refreshCache or getAllUsers
+     * and none of them is evicted since then, otherwise calls {@link UserManager} getUsers.
+     * @param pageRequest the page to be returned
+     * @return page of users ordered by username
+     */
+    @Override
+    public Page getUsers(PageRequest pageRequest) {
+        if (pageRequest == null) {
+            throw new IllegalArgumentException("Page request must given");
+        }
 
-            users.forEach(this::addUserToCache);
+        if (!isFullyLoaded()) {
+            return userManager.getUsers(pageRequest);
         }
 
-        return users;
+        int limit = pageRequest.getLimit();
+        List<User> users = getUserSnapshot().getPage(pageRequest.getContinuationToken(), (int) Math.min(limit + 1L, Integer.MAX_VALUE));
+
+        boolean hasNext = users.size() > limit;
+        return new Page(hasNext ? new ArrayList<>(users.subList(0, limit)) : users, hasNext);
+    }
+
+    /**
+     * @return true if cache has all users of data source as of last full load, so lists can be served from it.
+     * Users created by other instances are not seen until next refresh.
+     */
+    public boolean isFullyLoaded() {
+        long evictionCount = fullyLoadedEvictionCount;
+        return evictionCount != NOT_FULLY_LOADED && evictionCount == getCacheEvictionCount();
+    }
+
+    /**
+     * Cache is complete only if nothing is evicted while loading all users
+     */
+    private void markFullyLoaded(long evictionCountBeforeLoad) {
+        long evictionCount = getCacheEvictionCount();
+        fullyLoadedEvictionCount = evictionCount == evictionCountBeforeLoad ? evictionCount : NOT_FULLY_LOADED;
+
+        if (evictionCount != evictionCountBeforeLoad) {
+            logger.warn("[markFullyLoaded] Users are evicted while loading all of them, lists are not served from cache :: evictionCount={}",
+                    evictionCount - evictionCountBeforeLoad);
+        }
+    }
+
+    /**
+     * Passes cached users to given consumer without copying them if all users are loaded to cache, see
+     * {@link #isFullyLoaded()}. Otherwise users are streamed from {@link UserManager} forEachUser and are not
+     * put to the cache, so a bulk read doesn't fill up cache.
+     * @param consumer called for each user
+     */
+    @Override
+    public void forEachUser(Consumer<? super User> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer must given");
+        }
+
+        if (isFullyLoaded()) {
+            forEachUserInCache(consumer);
+            return;
+        }
+
+        userManager.forEachUser(consumer);
     }
 
     /**
@@ -136,7 +749,8 @@ public abstract class AbstractCachingUserManager implements UserManager {
         User user = userManager.createUser(modificationData);
 
         if (user != null) {
-            addUserToCache(user);
+            onUserWritten(user);
+            cacheUser(user);
 
             if (logger.isDebugEnabled()) {
                 logger.debug("[createUser] user has been created and put cache :: user={}", user);
@@ -146,6 +760,29 @@ public abstract class AbstractCachingUserManager implements UserManager {
         return user;
     }
 
+    /**
+     * Creates users by {@link UserManager} createUsers and puts created ones to cache
+     * @param modificationData records of users to be created
+     * @return result of each record
+     */
+    @Override
+    public BulkUserCreationResult createUsers(Iterable<? extends UserModificationData> modificationData) {
+        BulkUserCreationResult result = userManager.createUsers(modificationData);
+
+        for (UserCreationResult userResult : result.getResults()) {
+            if (userResult.isCreated()) {
+                onUserWritten(userResult.getUser());
+                cacheUser(userResult.getUser());
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[createUsers] Created users have been put cache :: createdCount={}", result.getCreatedCount());
+        }
+
+        return result;
+    }
+
     /**
      * Updates user with given data and then puts data to cache. If cache has already
      * user with given email, then overrides data in cache with updated user. After all, triggers events if found.
@@ -157,7 +794,8 @@ public abstract class AbstractCachingUserManager implements UserManager {
         User user = userManager.updateUser(modificationData);
 
         if (user != null) {
-            addUserToCache(user);
+            onUserWritten(user);
+            cacheUser(user);
 
             if (logger.isDebugEnabled()) {
                 logger.debug("[updateUser] user has been updated and put cache :: user={}", user);
@@ -167,10 +805,54 @@ public abstract class AbstractCachingUserManager implements UserManager {
         return user;
     }
 
+    /**
+     * Changes password by {@link UserManager} and puts returned user to cache, without reading it again.
+     * If user manager doesn't return the user, it is reloaded from data source.
+     */
     @Override
-    public void changePassword(String email, String oldPassword, String newPassword) {
-        userManager.changePassword(email, oldPassword, newPassword);
-        refreshSingleUserOnCache(email);
+    public User changePassword(String email, String oldPassword, String newPassword) {
+        User user = userManager.changePassword(email, oldPassword, newPassword);
+        if (user == null) {
+            refreshSingleUserOnCache(email);
+            return getUserFromCache(email);
+        }
+
+        cacheUser(user);
+        return user;
+    }
+
+    /**
+     * If a {@link PasswordVerifier} is set, resolves user by {@link #getUserByEmail(String)}, so a login of
+     * a cached user or of an email known to be missing doesn't reach data source, then verifies password by it.
+     * A password changed by another node is checked against cached credential until cached user is refreshed.
+     * Otherwise user manager authenticates by itself.
+     */
+    @Override
+    public AuthenticationResult authenticate(String email, CharSequence password) {
+        long startTime = System.nanoTime();
+        PasswordVerifier verifier = passwordVerifier;
+
+        if (verifier == null) {
+            return authenticationMetrics.record(userManager.authenticate(email, password), startTime);
+        }
+
+        if (StringUtils.isBlank(email) || password == null) {
+            return authenticationMetrics.record(AuthenticationResult.invalidCredentials(), startTime);
+        }
+
+        User user;
+        try {
+            user = getUserByEmail(email);
+        } catch (RuntimeException e) {
+            logger.warn("[authenticate] User could not be read :: email={}", email, e);
+            return authenticationMetrics.record(AuthenticationResult.error(e), startTime);
+        }
+
+        return authenticationMetrics.record(verifier.verifyPassword(user, password), startTime);
+    }
+
+    public AuthenticationMetrics getAuthenticationMetrics() {
+        return authenticationMetrics;
     }
 
     @Override
@@ -178,6 +860,9 @@ public abstract class AbstractCachingUserManager implements UserManager {
         return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
                 .append("userCache", userCache)
                 .append("userManager", userManager)
+                .append("negativeLookupCache", negativeLookupCache)
+                .append("knownEmailFilter", knownEmailFilter)
+                .append("refreshAheadPolicy", refreshAheadPolicy)
                 .toString();
     }
 }
\ No newline at end of file
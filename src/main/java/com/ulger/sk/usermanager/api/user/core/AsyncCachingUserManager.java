@@ -0,0 +1,96 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link AsyncUserManager} of a {@link SimpleCachingUserManager} or {@link ReferencingCachingUserManager}.
+ * Lookups answered by cache, and lists when all users are cached, complete before returning on the calling thread.
+ * Everything else runs on given executor, which should be sized for blocking data source calls.
+ */
+public class AsyncCachingUserManager implements AsyncUserManager {
+
+    private final AbstractCachingUserManager cachingUserManager;
+    private final Executor executor;
+
+    public AsyncCachingUserManager(AbstractCachingUserManager cachingUserManager, Executor executor) {
+        notNull(cachingUserManager);
+        notNull(executor);
+
+        this.cachingUserManager = cachingUserManager;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<User> getUserByEmail(String email) {
+        return cachingUserManager.getUserByEmailAsync(email, executor);
+    }
+
+    @Override
+    public CompletableFuture<User> getUserByUsername(String username) {
+        return cachingUserManager.getUserByUsernameAsync(username, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, User>> getUsersByEmails(Collection<String> emails) {
+        return AbstractCachingUserManager.supplyAsync(() -> cachingUserManager.getUsersByEmails(emails), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> getAllUsers() {
+        if (cachingUserManager.isFullyLoaded()) {
+            return CompletableFuture.completedFuture(cachingUserManager.getAllUsers());
+        }
+
+        return AbstractCachingUserManager.supplyAsync(cachingUserManager::getAllUsers, executor);
+    }
+
+    @Override
+    public CompletableFuture<Page> getUsers(PageRequest pageRequest) {
+        if (pageRequest != null && cachingUserManager.isFullyLoaded()) {
+            return CompletableFuture.completedFuture(cachingUserManager.getUsers(pageRequest));
+        }
+
+        return AbstractCachingUserManager.supplyAsync(() -> cachingUserManager.getUsers(pageRequest), executor);
+    }
+
+    @Override
+    public CompletableFuture<User> createUser(UserModificationData userModificationData) {
+        return AbstractCachingUserManager.supplyAsync(() -> cachingUserManager.createUser(userModificationData), executor);
+    }
+
+    @Override
+    public CompletableFuture<BulkUserCreationResult> createUsers(Iterable<? extends UserModificationData> userModificationData) {
+        return AbstractCachingUserManager.supplyAsync(() -> cachingUserManager.createUsers(userModificationData), executor);
+    }
+
+    @Override
+    public CompletableFuture<User> updateUser(UserModificationData userModificationData) {
+        return AbstractCachingUserManager.supplyAsync(() -> cachingUserManager.updateUser(userModificationData), executor);
+    }
+
+    @Override
+    public CompletableFuture<User> changePassword(String email, String oldPassword, String newPassword) {
+        return AbstractCachingUserManager.supplyAsync(() -> cachingUserManager.changePassword(email, oldPassword, newPassword), executor);
+    }
+
+    public AbstractCachingUserManager getCachingUserManager() {
+        return cachingUserManager;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("cachingUserManager", cachingUserManager)
+                .append("executor", executor)
+                .toString();
+    }
+}
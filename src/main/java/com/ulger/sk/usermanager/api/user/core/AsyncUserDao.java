@@ -0,0 +1,74 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import com.ulger.sk.usermanager.exception.DataAccessException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Non blocking version of {@link UserDao}. Methods return at once, returned futures are completed exceptionally
+ * by {@link DataAccessException} when any error occurred while accessing data source.
+ */
+public interface AsyncUserDao {
+
+    /**
+     * @see UserDao#findByUsername(String)
+     */
+    CompletableFuture<Optional<User>> findByUsername(String username);
+
+    /**
+     * @see UserDao#findByEmail(String)
+     */
+    CompletableFuture<Optional<User>> findByEmail(String email);
+
+    /**
+     * @see UserDao#findByEmails(Collection)
+     */
+    CompletableFuture<List<User>> findByEmails(Collection<String> emails);
+
+    /**
+     * @see UserDao#find()
+     */
+    CompletableFuture<List<User>> find();
+
+    /**
+     * Passes all users to given consumer, consumer is called on a thread of data source
+     * @see UserDao#forEach(Consumer)
+     * @return future completed when all users are passed
+     */
+    CompletableFuture<Void> forEach(Consumer<? super User> consumer);
+
+    /**
+     * @see UserDao#findPage(String, int)
+     */
+    CompletableFuture<List<User>> findPage(String afterUsername, int limit);
+
+    /**
+     * @see UserDao#create(User)
+     */
+    CompletableFuture<User> create(User user);
+
+    /**
+     * @see UserDao#createAll(List)
+     */
+    CompletableFuture<Map<Integer, DataAccessException>> createAll(List<? extends User> users);
+
+    /**
+     * @see UserDao#update(User)
+     */
+    CompletableFuture<User> update(User user);
+
+    /**
+     * @see UserDao#updatePasswordByUsername(String, String)
+     */
+    CompletableFuture<Void> updatePasswordByUsername(String username, String password);
+
+    /**
+     * @see UserDao#updateCredentialByEmail(String, String, String)
+     */
+    CompletableFuture<Optional<User>> updateCredentialByEmail(String email, String expectedCredential, String credential);
+}
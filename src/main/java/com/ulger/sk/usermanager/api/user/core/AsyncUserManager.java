@@ -0,0 +1,61 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking version of {@link UserManager}. Methods return at once, the exceptions {@link UserManager}
+ * would throw complete the returned future exceptionally.
+ */
+public interface AsyncUserManager {
+
+    /**
+     * @see UserManager#getUserByEmail(String)
+     * @return future of {@link User}, or of null if no user found matches with given email
+     */
+    CompletableFuture<User> getUserByEmail(String email);
+
+    /**
+     * @see UserManager#getUserByUsername(String)
+     * @return future of {@link User}, or of null if no user found matches with given username
+     */
+    CompletableFuture<User> getUserByUsername(String username);
+
+    /**
+     * @see UserManager#getUsersByEmails(Collection)
+     * @return future of map of email to user in the order of given emails
+     */
+    CompletableFuture<Map<String, User>> getUsersByEmails(Collection<String> emails);
+
+    /**
+     * @see UserManager#getAllUsers()
+     */
+    CompletableFuture<List<User>> getAllUsers();
+
+    /**
+     * @see UserManager#getUsers(PageRequest)
+     */
+    CompletableFuture<Page> getUsers(PageRequest pageRequest);
+
+    /**
+     * @see UserManager#createUser(UserModificationData)
+     */
+    CompletableFuture<User> createUser(UserModificationData userModificationData);
+
+    /**
+     * @see UserManager#createUsers(Iterable)
+     */
+    CompletableFuture<BulkUserCreationResult> createUsers(Iterable<? extends UserModificationData> userModificationData);
+
+    /**
+     * @see UserManager#updateUser(UserModificationData)
+     */
+    CompletableFuture<User> updateUser(UserModificationData userModificationData);
+
+    /**
+     * @see UserManager#changePassword(String, String, String)
+     */
+    CompletableFuture<User> changePassword(String email, String oldPassword, String newPassword);
+}
@@ -0,0 +1,97 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Result of {@link UserManager#authenticate(String, CharSequence)}. Outcomes other than AUTHENTICATED should
+ * be shown to the caller alike, telling them apart is for logs and metrics.
+ */
+public class AuthenticationResult {
+
+    public enum Outcome {
+
+        AUTHENTICATED,
+
+        /**
+         * User is found but password doesn't match, or email or password is not given
+         */
+        INVALID_CREDENTIALS,
+
+        /**
+         * No user has the email, a dummy hash is verified so it takes as long as INVALID_CREDENTIALS
+         */
+        USER_NOT_FOUND,
+
+        /**
+         * Password hashing is saturated, see {@link com.ulger.sk.usermanager.api.user.core.password.PasswordHashingExecutor}
+         */
+        REJECTED,
+
+        /**
+         * User could not be read or password could not be verified
+         */
+        ERROR
+    }
+
+    private final Outcome outcome;
+    private final User user;
+    private final RuntimeException failure;
+
+    private AuthenticationResult(Outcome outcome, User user, RuntimeException failure) {
+        this.outcome = outcome;
+        this.user = user;
+        this.failure = failure;
+    }
+
+    public static AuthenticationResult authenticated(User user) {
+        return new AuthenticationResult(Outcome.AUTHENTICATED, user, null);
+    }
+
+    public static AuthenticationResult invalidCredentials() {
+        return new AuthenticationResult(Outcome.INVALID_CREDENTIALS, null, null);
+    }
+
+    public static AuthenticationResult userNotFound() {
+        return new AuthenticationResult(Outcome.USER_NOT_FOUND, null, null);
+    }
+
+    public static AuthenticationResult rejected(RuntimeException failure) {
+        return new AuthenticationResult(Outcome.REJECTED, null, failure);
+    }
+
+    public static AuthenticationResult error(RuntimeException failure) {
+        return new AuthenticationResult(Outcome.ERROR, null, failure);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isAuthenticated() {
+        return outcome == Outcome.AUTHENTICATED;
+    }
+
+    /**
+     * @return authenticated user, null for other outcomes
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return cause of REJECTED and ERROR outcomes, null for others
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("outcome", outcome)
+                .append("username", user == null ? null : user.getUsername())
+                .append("failure", failure)
+                .toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Results of a bulk creation in the order of given records, with throughput of the run.
+ */
+public class BulkUserCreationResult {
+
+    private final List<UserCreationResult> results;
+    private final long createdCount;
+    private final long elapsedNanos;
+
+    public BulkUserCreationResult(List<UserCreationResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.createdCount = results.stream().filter(UserCreationResult::isCreated).count();
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return unmodifiable list of results, one per record in the order of given records
+     */
+    public List<UserCreationResult> getResults() {
+        return results;
+    }
+
+    public List<UserCreationResult> getFailures() {
+        return results.stream()
+                .filter(result -> !result.isCreated())
+                .collect(Collectors.toList());
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    public long getFailedCount() {
+        return results.size() - createdCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return records processed per second, created or failed
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : results.size() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("createdCount", createdCount)
+                .append("failedCount", getFailedCount())
+                .append("elapsedNanos", elapsedNanos)
+                .append("throughput", getThroughput())
+                .toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Refreshes cache of a caching user manager periodically in background.
+ * Next refresh is scheduled after previous one completes, so refreshes never overlap.
+ */
+public class CacheRefreshScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheRefreshScheduler.class);
+
+    private final AbstractCachingUserManager cachingUserManager;
+    private final Duration interval;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * Creates scheduler running on its own daemon thread, which is shut down on close
+     */
+    public CacheRefreshScheduler(AbstractCachingUserManager cachingUserManager, Duration interval) {
+        this(cachingUserManager, interval, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-cache-refresher");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates scheduler running on given executor, which is not shut down on close
+     */
+    public CacheRefreshScheduler(AbstractCachingUserManager cachingUserManager, Duration interval, ScheduledExecutorService executor) {
+        this(cachingUserManager, interval, executor, false);
+    }
+
+    private CacheRefreshScheduler(AbstractCachingUserManager cachingUserManager, Duration interval, ScheduledExecutorService executor, boolean ownsExecutor) {
+        notNull(cachingUserManager);
+        notNull(interval);
+        notNull(executor);
+
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Refresh interval should be positive");
+        }
+
+        this.cachingUserManager = cachingUserManager;
+        this.interval = interval;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Starts refreshing, first refresh runs immediately
+     */
+    public void start() {
+        start(Duration.ZERO);
+    }
+
+    public synchronized void start(Duration initialDelay) {
+        notNull(initialDelay);
+
+        if (scheduledRefresh != null) {
+            throw new IllegalStateException("Cache refresh scheduler is already started");
+        }
+
+        scheduledRefresh = executor.scheduleWithFixedDelay(
+                cachingUserManager::refreshCache, initialDelay.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+
+        logger.info("[start] Cache refresh scheduler is started :: interval={}", interval);
+    }
+
+    public synchronized boolean isStarted() {
+        return scheduledRefresh != null && !scheduledRefresh.isDone();
+    }
+
+    /**
+     * Stops refreshing, a refresh that is running is allowed to complete
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+
+        logger.info("[close] Cache refresh scheduler is stopped");
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("interval", interval)
+                .append("started", isStarted())
+                .toString();
+    }
+}
@@ -4,30 +4,56 @@ import com.ulger.sk.usermanager.api.user.core.password.PasswordEncoder;
 import com.ulger.sk.usermanager.api.user.validation.UserValidationResult;
 import com.ulger.sk.usermanager.api.user.validation.UserValidatorPicker;
 import com.ulger.sk.usermanager.api.user.validation.ValidationException;
+import com.ulger.sk.usermanager.exception.DataAccessException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.Optional;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
- * Simple implementation of {@link UserManager}
+ * Simple implementation of {@link UserManager}. Passwords are hashed on the calling thread by given encoder,
+ * a {@link com.ulger.sk.usermanager.api.user.core.password.PasswordHashingExecutor} moves hashing to a bounded pool.
  */
-public class DefaultUserManager implements UserManager {
+public class DefaultUserManager implements UserManager, PasswordVerifier, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultUserManager.class);
 
+    private static final int DEFAULT_EMAIL_BATCH_SIZE = 500;
+    private static final int DEFAULT_CREATION_BATCH_SIZE = 500;
+
     private UserValidatorPicker userValidatorPicker;
     private PasswordEncoder passwordEncoder;
     private UserDao userDao;
+    private int emailBatchSize = DEFAULT_EMAIL_BATCH_SIZE;
+    private int creationBatchSize = DEFAULT_CREATION_BATCH_SIZE;
+    private int creationParallelism = Runtime.getRuntime().availableProcessors();
+    private Executor creationExecutor;
+    private ThreadPoolExecutor ownedCreationExecutor;
+    private boolean closed;
+    private final AuthenticationMetrics authenticationMetrics = new AuthenticationMetrics();
+    private final String dummyCredential;
 
+    /**
+     * Encodes a dummy credential with given password encoder, so the first authentication of a missing
+     * user doesn't take longer than the others
+     */
     public DefaultUserManager(UserValidatorPicker userValidatorPicker, PasswordEncoder passwordEncoder, UserDao userDao) {
         this.userValidatorPicker = userValidatorPicker;
         this.passwordEncoder = passwordEncoder;
         this.userDao = userDao;
+        this.dummyCredential = passwordEncoder.encode(UUID.randomUUID().toString());
     }
 
     /**
@@ -58,6 +84,189 @@ public class DefaultUserManager implements UserManager {
         return null;
     }
 
+    /**
+     * Returns a {@link User} instance with given username. If no user found than returns null.
+     * @param username the username of User. If no username given than throws {@link IllegalArgumentException}
+     * @return User instance with given username
+     */
+    @Override
+    public User getUserByUsername(String username) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("[getUserByUsername] Getting user with username :: username={}", username);
+        }
+
+        if (StringUtils.isBlank(username)) {
+            throw new IllegalArgumentException("Username must given");
+        }
+
+        Optional<User> user = userDao.findByUsername(username);
+
+        if (user.isPresent()) {
+            return user.get();
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[getUserByUsername] No user found with username :: username={}", username);
+        }
+
+        return null;
+    }
+
+    /**
+     * Sets maximum count of emails queried by a single findByEmails call of {@link UserDao}
+     * @param emailBatchSize positive batch size, 500 by default
+     * @return this
+     */
+    public DefaultUserManager setEmailBatchSize(int emailBatchSize) {
+        if (emailBatchSize < 1) {
+            throw new IllegalArgumentException("Email batch size should be positive");
+        }
+
+        this.emailBatchSize = emailBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets count of records passed to a single createAll call of {@link UserDao} by createUsers
+     * @param creationBatchSize positive batch size, 500 by default
+     * @return this
+     */
+    public DefaultUserManager setCreationBatchSize(int creationBatchSize) {
+        if (creationBatchSize < 1) {
+            throw new IllegalArgumentException("Creation batch size should be positive");
+        }
+
+        this.creationBatchSize = creationBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets count of threads of the pool validating records and hashing passwords in createUsers,
+     * the pool is created by the first createUsers call and shared by later ones
+     * @param creationParallelism positive thread count, count of processors by default
+     * @return this
+     */
+    public synchronized DefaultUserManager setCreationParallelism(int creationParallelism) {
+        if (creationParallelism < 1) {
+            throw new IllegalArgumentException("Creation parallelism should be positive");
+        }
+
+        this.creationParallelism = creationParallelism;
+
+        if (ownedCreationExecutor != null) {
+            if (creationParallelism > ownedCreationExecutor.getMaximumPoolSize()) {
+                ownedCreationExecutor.setMaximumPoolSize(creationParallelism);
+                ownedCreationExecutor.setCorePoolSize(creationParallelism);
+            } else {
+                ownedCreationExecutor.setCorePoolSize(creationParallelism);
+                ownedCreationExecutor.setMaximumPoolSize(creationParallelism);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets executor validating records and hashing passwords in createUsers instead of the pool of this manager.
+     * Given executor is not shut down by close.
+     * @param creationExecutor executor to use, null uses the pool of this manager
+     * @return this
+     */
+    public synchronized DefaultUserManager setCreationExecutor(Executor creationExecutor) {
+        this.creationExecutor = creationExecutor;
+        return this;
+    }
+
+    /**
+     * Shuts down the creation pool of this manager if it is created, createUsers fails afterwards unless
+     * a creation executor is set
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+
+        if (ownedCreationExecutor != null) {
+            ownedCreationExecutor.shutdown();
+            ownedCreationExecutor = null;
+        }
+    }
+
+    private synchronized Executor creationExecutor() {
+        if (creationExecutor != null) {
+            return creationExecutor;
+        }
+
+        if (closed) {
+            throw new IllegalStateException("User manager is closed");
+        }
+
+        if (ownedCreationExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ownedCreationExecutor = new ThreadPoolExecutor(creationParallelism, creationParallelism,
+                    0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "user-creation-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        return ownedCreationExecutor;
+    }
+
+    /**
+     * Returns users with given emails by querying {@link UserDao} in batches of email batch size.
+     * @param emails the emails of Users. If any of them is blank than throws {@link IllegalArgumentException}
+     * @return map of email to user in the order of given emails, emails no user found are not in the map
+     */
+    @Override
+    public Map<String, User> getUsersByEmails(Collection<String> emails) {
+        if (emails == null) {
+            throw new IllegalArgumentException("Emails must given");
+        }
+
+        Set<String> distinctEmails = new LinkedHashSet<>(emails);
+        for (String email : distinctEmails) {
+            if (StringUtils.isBlank(email)) {
+                throw new IllegalArgumentException("Email must given");
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[getUsersByEmails] Getting users with emails :: emailCount={}", distinctEmails.size());
+        }
+
+        Map<String, User> usersByEmail = new HashMap<>();
+        List<String> batch = new ArrayList<>(Math.min(emailBatchSize, distinctEmails.size()));
+
+        for (String email : distinctEmails) {
+            batch.add(email);
+            if (batch.size() == emailBatchSize) {
+                findByEmails(batch, usersByEmail);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            findByEmails(batch, usersByEmail);
+        }
+
+        Map<String, User> users = new LinkedHashMap<>();
+        for (String email : distinctEmails) {
+            User user = usersByEmail.get(email);
+            if (user != null) {
+                users.put(email, user);
+            }
+        }
+
+        return users;
+    }
+
+    private void findByEmails(List<String> emails, Map<String, User> usersByEmail) {
+        for (User user : userDao.findByEmails(emails)) {
+            usersByEmail.put(user.getEmail(), user);
+        }
+    }
+
     /**
      * @return All users. If no user found than return empty list
      */
@@ -66,6 +275,34 @@ public class DefaultUserManager implements UserManager {
         return userDao.find();
     }
 
+    /**
+     * Streams users from {@link UserDao#forEach(Consumer)}
+     */
+    @Override
+    public void forEachUser(Consumer<? super User> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer must given");
+        }
+
+        userDao.forEach(consumer);
+    }
+
+    /**
+     * Reads one user more than limit from {@link UserDao#findPage(String, int)} to know if there is a next page
+     */
+    @Override
+    public Page getUsers(PageRequest pageRequest) {
+        if (pageRequest == null) {
+            throw new IllegalArgumentException("Page request must given");
+        }
+
+        int limit = pageRequest.getLimit();
+        List<User> users = userDao.findPage(pageRequest.getContinuationToken(), (int) Math.min(limit + 1L, Integer.MAX_VALUE));
+
+        boolean hasNext = users.size() > limit;
+        return new Page(hasNext ? new ArrayList<>(users.subList(0, limit)) : users, hasNext);
+    }
+
     @Override
     public User createUser(UserModificationData modificationData) {
         // Validate
@@ -82,6 +319,120 @@ public class DefaultUserManager implements UserManager {
         return user;
     }
 
+    /**
+     * Creates users in a two staged pipeline. Records are validated and their passwords are hashed in parallel
+     * on the creation executor, a pool of creationParallelism threads shared by all calls unless another executor
+     * is set, then they are inserted by createAll of {@link UserDao}
+     * in batches of creationBatchSize. Next batch is prepared while current one is inserted,
+     * so at most two batches are held in memory whatever the count of records is.
+     */
+    @Override
+    public BulkUserCreationResult createUsers(Iterable<? extends UserModificationData> modificationData) {
+        if (modificationData == null) {
+            throw new IllegalArgumentException("User modification data must given");
+        }
+
+        long startTime = System.nanoTime();
+        List<UserCreationResult> results = new ArrayList<>();
+
+        Executor executor = creationExecutor();
+
+        Iterator<? extends UserModificationData> iterator = modificationData.iterator();
+        List<CompletableFuture<UserCreationResult>> preparing = prepareBatch(iterator, 0, executor);
+
+        try {
+            while (!preparing.isEmpty()) {
+                List<CompletableFuture<UserCreationResult>> prepared = preparing;
+                preparing = prepareBatch(iterator, results.size() + prepared.size(), executor);
+                results.addAll(insertBatch(prepared));
+            }
+        } catch (RuntimeException | Error e) {
+            // Records of next batch that are not started yet are skipped by the shared executor
+            preparing.forEach(future -> future.cancel(false));
+            throw e;
+        }
+
+        BulkUserCreationResult result = new BulkUserCreationResult(results, System.nanoTime() - startTime);
+        logger.info("[createUsers] Users have been created :: createdCount={}, failedCount={}, elapsedMillis={}, throughput={}",
+                result.getCreatedCount(), result.getFailedCount(), TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()), result.getThroughput());
+
+        return result;
+    }
+
+    /**
+     * Submits validation and hashing of next batch of records, a prepared record is a created result with the user to insert
+     */
+    private List<CompletableFuture<UserCreationResult>> prepareBatch(Iterator<? extends UserModificationData> iterator,
+                                                                     int firstIndex, Executor executor) {
+        List<CompletableFuture<UserCreationResult>> batch = new ArrayList<>();
+        while (batch.size() < creationBatchSize && iterator.hasNext()) {
+            int index = firstIndex + batch.size();
+            UserModificationData data = iterator.next();
+            batch.add(CompletableFuture.supplyAsync(() -> prepareUser(index, data), executor));
+        }
+        return batch;
+    }
+
+    private UserCreationResult prepareUser(int index, UserModificationData modificationData) {
+        try {
+            if (modificationData == null) {
+                throw new IllegalArgumentException("User modification data must given");
+            }
+
+            validate(modificationData, UserOperation.CREATE);
+
+            // Raw password is not kept in prepared user
+            User user = DefaultUser.Builder.anUserImp()
+                    .withUsername(modificationData.getUsername())
+                    .withEmail(modificationData.getEmail())
+                    .withFirstName(modificationData.getFirstName())
+                    .withLastName(modificationData.getLastName())
+                    .withCredential(encryptRawPassword(modificationData.getRawPassword()))
+                    .build();
+
+            return UserCreationResult.created(index, user);
+        } catch (RuntimeException e) {
+            return UserCreationResult.failed(index, e);
+        }
+    }
+
+    private List<UserCreationResult> insertBatch(List<CompletableFuture<UserCreationResult>> batch) {
+        List<UserCreationResult> results = new ArrayList<>(batch.size());
+        List<User> users = new ArrayList<>(batch.size());
+        List<Integer> positions = new ArrayList<>(batch.size());
+
+        for (CompletableFuture<UserCreationResult> future : batch) {
+            UserCreationResult result = future.join();
+            if (result.isCreated()) {
+                users.add(result.getUser());
+                positions.add(results.size());
+            }
+            results.add(result);
+        }
+
+        if (users.isEmpty()) {
+            return results;
+        }
+
+        Map<Integer, DataAccessException> failures;
+        try {
+            failures = userDao.createAll(users);
+        } catch (DataAccessException e) {
+            logger.warn("[createUsers] Unable to insert batch :: firstIndex={}, userCount={}", results.get(0).getIndex(), users.size(), e);
+            failures = new HashMap<>();
+            for (int i = 0; i < users.size(); i++) {
+                failures.put(i, e);
+            }
+        }
+
+        for (Map.Entry<Integer, DataAccessException> failure : failures.entrySet()) {
+            int position = positions.get(failure.getKey());
+            results.set(position, UserCreationResult.failed(results.get(position).getIndex(), failure.getValue()));
+        }
+
+        return results;
+    }
+
     @Override
     public User updateUser(UserModificationData modificationData) {
         validate(modificationData, UserOperation.UPDATE);
@@ -92,8 +443,12 @@ public class DefaultUserManager implements UserManager {
         return user;
     }
 
+    /**
+     * Reads the user once to check that old password matches stored hash, then writes new hash by a conditional
+     * update that fails if the stored hash is changed in between.
+     */
     @Override
-    public void changePassword(String email, String oldPassword, String newPassword) {
+    public User changePassword(String email, String oldPassword, String newPassword) {
         logger.info("[changePassword] User's password is updating :: email={}", email);
 
         if (StringUtils.isBlank(email)) {
@@ -108,16 +463,86 @@ public class DefaultUserManager implements UserManager {
                 .findByEmail(email)
                 .orElseThrow(() -> new UserNotFoundException("User not found with email: " + email));
 
-        if (passwordEncoder.matches(oldPassword, user.getCredential())) {
-            throw new IllegalArgumentException("Password must be different with older");
+        if (oldPassword == null || !passwordEncoder.matches(oldPassword, user.getCredential())) {
+            logger.info("[changePassword] Old password is wrong :: email={}", user.getEmail());
+            throw new IllegalArgumentException("Old password is wrong");
         }
 
         // Update user's raw password to the hashed password
         mutableUserAdapter.setHashPassword(encryptRawPassword(newPassword));
 
-        userDao.updatePasswordByUsername(user.getUsername(), mutableUserAdapter.getHashPassword());
+        User changedUser = userDao
+                .updateCredentialByEmail(user.getEmail(), user.getCredential(), mutableUserAdapter.getHashPassword())
+                .orElseThrow(() -> {
+                    logger.warn("[changePassword] Password is changed concurrently :: email={}", user.getEmail());
+                    return new DataAccessException("Password is changed concurrently :: email=" + user.getEmail(),
+                            DataAccessException.TRANSIENT_FAILURE);
+                });
 
         logger.info("[changePassword] User's password has been changed successfully :: email={}", user.getEmail());
+        return changedUser;
+    }
+
+    /**
+     * Reads the user by {@link UserDao#findByEmail(String)} and verifies password by {@link #verifyPassword(User, CharSequence)}
+     */
+    @Override
+    public AuthenticationResult authenticate(String email, CharSequence password) {
+        long startTime = System.nanoTime();
+
+        if (StringUtils.isBlank(email) || password == null) {
+            return authenticationMetrics.record(AuthenticationResult.invalidCredentials(), startTime);
+        }
+
+        AuthenticationResult result;
+        try {
+            result = verifyPassword(userDao.findByEmail(email).orElse(null), password);
+        } catch (RuntimeException e) {
+            logger.warn("[authenticate] User could not be read :: email={}", email, e);
+            result = AuthenticationResult.error(e);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[authenticate] User is authenticated :: email={}, outcome={}", email, result.getOutcome());
+        }
+
+        return authenticationMetrics.record(result, startTime);
+    }
+
+    /**
+     * Checks given password against credential of an already resolved user, so a caching user manager can
+     * authenticate a cached user without reading it again. If user is null, dummy credential is checked
+     * so it takes as long as a wrong password. Verifies by password encoder, so hashing runs on its pool if it is a
+     * {@link com.ulger.sk.usermanager.api.user.core.password.PasswordHashingExecutor}.
+     * @param user the user to authenticate, or null if no user found
+     * @param password raw password
+     * @return result with given user if password matches, or the reason authentication failed
+     */
+    @Override
+    public AuthenticationResult verifyPassword(User user, CharSequence password) {
+        if (password == null) {
+            return AuthenticationResult.invalidCredentials();
+        }
+
+        try {
+            if (user == null || user.getCredential() == null) {
+                passwordEncoder.matches(password, dummyCredential);
+                return user == null ? AuthenticationResult.userNotFound() : AuthenticationResult.invalidCredentials();
+            }
+
+            return passwordEncoder.matches(password, user.getCredential())
+                    ? AuthenticationResult.authenticated(user)
+                    : AuthenticationResult.invalidCredentials();
+        } catch (RejectedExecutionException e) {
+            return AuthenticationResult.rejected(e);
+        } catch (RuntimeException e) {
+            logger.warn("[verifyPassword] Password could not be verified :: username={}", user == null ? null : user.getUsername(), e);
+            return AuthenticationResult.error(e);
+        }
+    }
+
+    public AuthenticationMetrics getAuthenticationMetrics() {
+        return authenticationMetrics;
     }
 
     private String encryptRawPassword(String rawPassword) {
@@ -139,6 +564,8 @@ public class DefaultUserManager implements UserManager {
                 .append("userValidatorPicker", userValidatorPicker)
                 .append("passwordEncoder", passwordEncoder)
                 .append("userDao", userDao)
+                .append("creationBatchSize", creationBatchSize)
+                .append("creationParallelism", creationParallelism)
                 .toString();
     }
 }
\ No newline at end of file
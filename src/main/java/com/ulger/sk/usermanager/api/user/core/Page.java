@@ -0,0 +1,65 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page of users ordered by username, returned for a {@link PageRequest}.
+ * Continuation token is the username of the last user of page, callers should treat it as opaque.
+ */
+public class Page {
+
+    private final List<User> users;
+    private final String continuationToken;
+
+    /**
+     * @param users users of page ordered by username
+     * @param hasNext true if there are users after this page
+     */
+    public Page(List<User> users, boolean hasNext) {
+        this.users = Collections.unmodifiableList(users);
+        this.continuationToken = hasNext && !users.isEmpty() ? users.get(users.size() - 1).getUsername() : null;
+    }
+
+    /**
+     * @return unmodifiable list of users
+     */
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return token to request next page, null if this is the last page
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    /**
+     * @param limit maximum count of users in next page
+     * @return request of next page
+     * @throws IllegalStateException if this is the last page
+     */
+    public PageRequest nextPageRequest(int limit) {
+        if (continuationToken == null) {
+            throw new IllegalStateException("There is no next page");
+        }
+
+        return PageRequest.after(continuationToken, limit);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("size", users.size())
+                .append("continuationToken", continuationToken)
+                .toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Request of a page of users ordered by username. Pages are addressed by a continuation token
+ * taken from the previous {@link Page} instead of an offset, so fetching a page costs the same
+ * however deep it is.
+ */
+public class PageRequest {
+
+    private final String continuationToken;
+    private final int limit;
+
+    private PageRequest(String continuationToken, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+
+        this.continuationToken = continuationToken;
+        this.limit = limit;
+    }
+
+    /**
+     * @param limit maximum count of users in page
+     * @return request of the first page
+     */
+    public static PageRequest first(int limit) {
+        return new PageRequest(null, limit);
+    }
+
+    /**
+     * @param continuationToken token of previous page, null for the first page
+     * @param limit maximum count of users in page
+     * @return request of the page following the page of given token
+     */
+    public static PageRequest after(String continuationToken, int limit) {
+        return new PageRequest(continuationToken, limit);
+    }
+
+    /**
+     * @return token of previous page, null for the first page
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("continuationToken", continuationToken)
+                .append("limit", limit)
+                .toString();
+    }
+}
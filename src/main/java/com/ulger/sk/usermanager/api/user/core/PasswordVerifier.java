@@ -0,0 +1,16 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+/**
+ * Verifies password of an already resolved user, so a caching user manager can authenticate a cached user
+ * without reading it from data source again.
+ */
+public interface PasswordVerifier {
+
+    /**
+     * Should take as long for a null user as for a wrong password, so missing emails can't be told by timing.
+     * @param user the user to authenticate, or null if no user found
+     * @param password raw password
+     * @return result with given user if password matches, or the reason authentication failed
+     */
+    AuthenticationResult verifyPassword(User user, CharSequence password);
+}
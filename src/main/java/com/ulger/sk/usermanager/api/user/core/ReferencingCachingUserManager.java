@@ -1,5 +1,6 @@
 package com.ulger.sk.usermanager.api.user.core;
 
+import com.ulger.sk.usermanager.api.user.cache.UserCache;
 import com.ulger.sk.usermanager.cache.Cache;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -7,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 public class ReferencingCachingUserManager extends AbstractCachingUserManager {
 
@@ -32,6 +34,16 @@ public class ReferencingCachingUserManager extends AbstractCachingUserManager {
         return userCache.get(email);
     }
 
+    @Override
+    protected User getUserFromCacheByUsername(String username) {
+        if (userCache instanceof UserCache) {
+            return ((UserCache) userCache).getByUsername(username);
+        }
+
+        // Cache is not indexed by username, so every lookup goes to user manager
+        return null;
+    }
+
     @Override
     protected void addUserToCache(User user) {
         userCache.add(user);
@@ -43,26 +55,23 @@ public class ReferencingCachingUserManager extends AbstractCachingUserManager {
     }
 
     @Override
-    protected void refreshSingleUserOnCache(String email) {
-        User user = getUserByEmail(email);
-        if (user == null) {
-            logger.error("User not found :: email={}", email);
-            throw new NullPointerException("User not found by email '" + email + "'");
-        }
+    protected void forEachUserInCache(Consumer<? super User> consumer) {
+        userCache.forEachValue(consumer);
+    }
 
-        userCache.add(user);
+    @Override
+    protected long getCacheSize() {
+        return userCache.getSize();
     }
 
     @Override
-    protected synchronized void refreshCache() {
-        try {
-            logger.info("[refreshCache] Refreshing cache");
-            userCache.add(getAllUsers());
-        } catch (Exception e) {
-            logger.error("[refreshCache] Unable to refresh cache", e);
-        }
+    protected long getCacheEvictionCount() {
+        return userCache.getEvictionCount();
+    }
 
-        logger.info("[refreshCache] Cache refreshing completed");
+    @Override
+    protected void replaceAllUsersInCache(Consumer<Consumer<User>> usersSource) {
+        userCache.replaceAllFrom(usersSource);
     }
 
     @Override
@@ -0,0 +1,180 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Expiration and refresh-ahead rules of cached users for {@link AbstractCachingUserManager}.
+ * A cached user older than refreshAfterWrite is still returned but reloaded in background,
+ * a cached user older than expireAfterWrite is reloaded synchronously.
+ * So users that are read often are reloaded before they expire and never cause a synchronous miss.
+ * <p>
+ * Write times are kept per email until they are older than expireAfterWrite, since an expired user is reloaded
+ * either way, or until next full refresh of cache, which resets all of them.
+ */
+public class RefreshAheadPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshAheadPolicy.class);
+
+    private final long refreshAfterWriteNanos;
+    private final long expireAfterWriteNanos;
+    private final Executor executor;
+    private final LongSupplier nanoTicker;
+
+    private final ConcurrentHashMap<String, Long> writeTimes;
+    /**
+     * Emails in order their write times are added, so expired write times are found without scanning all of them
+     */
+    private final ConcurrentLinkedQueue<WriteTime> writeOrder;
+    private final ReentrantLock purgeLock;
+    private final Set<String> refreshingEmails;
+    private volatile long lastFullLoadTime;
+
+    public RefreshAheadPolicy(Duration refreshAfterWrite, Duration expireAfterWrite, Executor executor) {
+        this(refreshAfterWrite, expireAfterWrite, executor, System::nanoTime);
+    }
+
+    public RefreshAheadPolicy(Duration refreshAfterWrite, Duration expireAfterWrite, Executor executor, LongSupplier nanoTicker) {
+        notNull(refreshAfterWrite);
+        notNull(expireAfterWrite);
+        notNull(executor);
+        notNull(nanoTicker);
+
+        if (refreshAfterWrite.compareTo(expireAfterWrite) >= 0) {
+            throw new IllegalArgumentException("Refresh after write should be shorter than expire after write");
+        }
+
+        this.refreshAfterWriteNanos = refreshAfterWrite.toNanos();
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        this.executor = executor;
+        this.nanoTicker = nanoTicker;
+        this.writeTimes = new ConcurrentHashMap<>();
+        this.writeOrder = new ConcurrentLinkedQueue<>();
+        this.purgeLock = new ReentrantLock();
+        this.refreshingEmails = ConcurrentHashMap.newKeySet();
+        this.lastFullLoadTime = nanoTicker.getAsLong();
+    }
+
+    long now() {
+        return nanoTicker.getAsLong();
+    }
+
+    void onWrite(String email) {
+        long now = nanoTicker.getAsLong();
+        purgeExpired(now);
+
+        if (writeTimes.put(email, now) == null) {
+            writeOrder.add(new WriteTime(email, now));
+        }
+    }
+
+    /**
+     * Removes write times older than expireAfterWrite from head of write order, a write time that is updated
+     * since is queued again when polled. Every email is polled once per expireAfterWrite, so a write costs
+     * amortized constant time. A single writer purges at a time, others skip it.
+     */
+    private void purgeExpired(long now) {
+        if (!purgeLock.tryLock()) {
+            return;
+        }
+
+        try {
+            WriteTime writeTime;
+            while ((writeTime = writeOrder.peek()) != null && now - writeTime.time >= expireAfterWriteNanos) {
+                writeOrder.poll();
+
+                Long time = writeTimes.computeIfPresent(writeTime.email, (email, current) -> now - current >= expireAfterWriteNanos ? null : current);
+                if (time != null) {
+                    writeOrder.add(new WriteTime(writeTime.email, time));
+                }
+            }
+        } finally {
+            purgeLock.unlock();
+        }
+    }
+
+    /**
+     * @return count of emails whose write time is kept
+     */
+    int getTrackedWriteCount() {
+        return writeTimes.size();
+    }
+
+    /**
+     * @param startedAt time when loading all users was started
+     */
+    void onFullLoad(long startedAt) {
+        lastFullLoadTime = startedAt;
+        writeTimes.values().removeIf(writeTime -> writeTime - startedAt <= 0);
+    }
+
+    boolean isExpired(String email) {
+        return age(email) >= expireAfterWriteNanos;
+    }
+
+    boolean needsRefresh(String email) {
+        return age(email) >= refreshAfterWriteNanos;
+    }
+
+    /**
+     * Reloads user in background unless it is already being reloaded
+     */
+    void refreshAsync(String email, Consumer<String> reloader) {
+        if (!refreshingEmails.add(email)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    reloader.accept(email);
+                } catch (Exception e) {
+                    logger.warn("[refreshAsync] Unable to refresh user :: email={}", email, e);
+                } finally {
+                    refreshingEmails.remove(email);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingEmails.remove(email);
+            logger.debug("[refreshAsync] Refresh is rejected by executor, it will be retried by next read :: email={}", email);
+        }
+    }
+
+    private long age(String email) {
+        Long writeTime = writeTimes.get(email);
+        return nanoTicker.getAsLong() - (writeTime == null ? lastFullLoadTime : writeTime);
+    }
+
+    private static final class WriteTime {
+        private final String email;
+        private final long time;
+
+        private WriteTime(String email, long time) {
+            this.email = email;
+            this.time = time;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("refreshAfterWriteNanos", refreshAfterWriteNanos)
+                .append("expireAfterWriteNanos", expireAfterWriteNanos)
+                .append("executor", executor)
+                .toString();
+    }
+}
@@ -1,22 +1,28 @@
 package com.ulger.sk.usermanager.api.user.core;
 
-import com.ulger.sk.usermanager.api.user.cache.SimpleUserCache;
+import com.ulger.sk.usermanager.api.user.cache.ConcurrentUserCache;
+import com.ulger.sk.usermanager.api.user.cache.UserCache;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
+/**
+ * Caching user manager that owns its cache. Uses a {@link ConcurrentUserCache} since
+ * it is called from every request thread.
+ */
 public class SimpleCachingUserManager extends AbstractCachingUserManager {
 
     private static final Logger logger = LoggerFactory.getLogger(SimpleCachingUserManager.class);
 
-    private SimpleUserCache userCache;
+    private UserCache userCache;
 
     public SimpleCachingUserManager(UserManager userManager) {
         super(userManager);
-        this.userCache = new SimpleUserCache();
+        this.userCache = new ConcurrentUserCache();
     }
 
     @Override
@@ -24,6 +30,11 @@ public class SimpleCachingUserManager extends AbstractCachingUserManager {
         return userCache.get(email);
     }
 
+    @Override
+    protected User getUserFromCacheByUsername(String username) {
+        return userCache.getByUsername(username);
+    }
+
     @Override
     protected void addUserToCache(User user) {
         userCache.add(user);
@@ -35,26 +46,23 @@ public class SimpleCachingUserManager extends AbstractCachingUserManager {
     }
 
     @Override
-    protected void refreshSingleUserOnCache(String email) {
-        User user = getUserByEmail(email);
-        if (user == null) {
-            logger.error("User not found :: email={}", email);
-            throw new NullPointerException("User not found by email '" + email + "'");
-        }
+    protected void forEachUserInCache(Consumer<? super User> consumer) {
+        userCache.forEachValue(consumer);
+    }
 
-        userCache.add(user);
+    @Override
+    protected long getCacheSize() {
+        return userCache.getSize();
     }
 
     @Override
-    protected synchronized void refreshCache() {
-        try {
-            logger.info("[refreshCache] Refreshing cache");
-            userCache.add(getAllUsers());
-        } catch (Exception e) {
-            logger.error("[refreshCache] Unable to refresh cache", e);
-        }
+    protected long getCacheEvictionCount() {
+        return userCache.getEvictionCount();
+    }
 
-        logger.info("[refreshCache] Cache refreshing completed");
+    @Override
+    protected void replaceAllUsersInCache(Consumer<Consumer<User>> usersSource) {
+        userCache.replaceAllFrom(usersSource);
     }
 
     @Override
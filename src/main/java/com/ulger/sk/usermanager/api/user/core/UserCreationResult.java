@@ -0,0 +1,63 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Result of creating a single record of a bulk creation, either created user or the reason of failure.
+ */
+public class UserCreationResult {
+
+    private final int index;
+    private final User user;
+    private final RuntimeException failure;
+
+    private UserCreationResult(int index, User user, RuntimeException failure) {
+        this.index = index;
+        this.user = user;
+        this.failure = failure;
+    }
+
+    public static UserCreationResult created(int index, User user) {
+        return new UserCreationResult(index, user, null);
+    }
+
+    public static UserCreationResult failed(int index, RuntimeException failure) {
+        return new UserCreationResult(index, null, failure);
+    }
+
+    /**
+     * @return position of record in given records
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return created user, null if creation failed
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return e.g. {@link com.ulger.sk.usermanager.api.user.validation.ValidationException} or
+     * {@link com.ulger.sk.usermanager.exception.DataAccessException}, null if user is created
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    public boolean isCreated() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("index", index)
+                .append("user", user)
+                .append("failure", failure)
+                .toString();
+    }
+}
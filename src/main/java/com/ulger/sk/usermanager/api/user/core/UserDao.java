@@ -2,8 +2,16 @@ package com.ulger.sk.usermanager.api.user.core;
 
 import com.ulger.sk.usermanager.exception.DataAccessException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Data source operations like writing, reading.
@@ -30,6 +38,23 @@ public interface UserDao {
      */
     Optional<User> findByEmail(String email) throws DataAccessException;
 
+    /**
+     * Searches and returns {@link User} list whose emails are in given emails. Implementations should fetch
+     * them by a single query, default implementation calls findByEmail for each email.
+     * Callers are expected to limit count of emails, e.g. to keep IN-list of a query in a sane size.
+     *
+     * @param emails, the emails of Users
+     * @throws DataAccessException
+     * @return found users in no particular order, empty list if no user found
+     */
+    default List<User> findByEmails(Collection<String> emails) throws DataAccessException {
+        List<User> users = new ArrayList<>(emails.size());
+        for (String email : emails) {
+            findByEmail(email).ifPresent(users::add);
+        }
+        return users;
+    }
+
     /**
      * Searches and returns all {@link User} list
      *
@@ -38,6 +63,37 @@ public interface UserDao {
      */
     List<User> find() throws DataAccessException;
 
+    /**
+     * Passes all {@link User}s to given consumer one by one without holding all of them in memory.
+     * Implementations should read them through a cursor and release resources when iteration ends,
+     * also when consumer throws. Default implementation iterates result of find.
+     *
+     * @param consumer, called for each user in no particular order
+     * @throws DataAccessException
+     */
+    default void forEach(Consumer<? super User> consumer) throws DataAccessException {
+        find().forEach(consumer);
+    }
+
+    /**
+     * Searches and returns users whose usernames come after given username, ordered by username.
+     * Implementations should read them by a range scan on username index, default implementation
+     * filters and sorts result of find.
+     *
+     * @param afterUsername, users after this username are returned, null for the first page
+     * @param limit, maximum count of users
+     * @throws DataAccessException
+     * @return users ordered by username, empty list if no user found
+     */
+    default List<User> findPage(String afterUsername, int limit) throws DataAccessException {
+        return find().stream()
+                .filter(user -> user.getUsername() != null)
+                .filter(user -> afterUsername == null || user.getUsername().compareTo(afterUsername) > 0)
+                .sorted(Comparator.comparing(User::getUsername))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Saves given {@link User} object.
      * If id is given than updates, if not than tries to create new instance
@@ -47,6 +103,26 @@ public interface UserDao {
      */
     User create(User user) throws DataAccessException;
 
+    /**
+     * Saves given {@link User}s. Implementations should insert them in batches, a user that can not be saved
+     * should not prevent others from being saved. Default implementation calls create for each user.
+     *
+     * @param users, users to be created
+     * @throws DataAccessException if data source can not be accessed at all
+     * @return failures by index of user in given list, empty map if all users are created
+     */
+    default Map<Integer, DataAccessException> createAll(List<? extends User> users) throws DataAccessException {
+        Map<Integer, DataAccessException> failures = new LinkedHashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            try {
+                create(users.get(i));
+            } catch (DataAccessException e) {
+                failures.put(i, e);
+            }
+        }
+        return failures;
+    }
+
     /**
      * Updates user information expect password
      *
@@ -64,4 +140,33 @@ public interface UserDao {
      * @throws DataAccessException
      */
     void updatePasswordByUsername(String username, String password) throws DataAccessException;
-}
\ No newline at end of file
+
+    /**
+     * Updates credential of user found by email only if stored credential still equals expected credential,
+     * so a change based on a stale read doesn't overwrite a concurrent one. Implementations should do it by
+     * a single conditional update, default implementation reads the user and then updates it, which is not atomic.
+     *
+     * @param email, the email of User
+     * @param expectedCredential, credential the user should still have
+     * @param credential, new credential
+     * @throws DataAccessException
+     * @return updated user, empty if no user has given email and expected credential
+     */
+    default Optional<User> updateCredentialByEmail(String email, String expectedCredential, String credential) throws DataAccessException {
+        Optional<User> current = findByEmail(email).filter(user -> Objects.equals(expectedCredential, user.getCredential()));
+        if (!current.isPresent()) {
+            return Optional.empty();
+        }
+
+        User user = current.get();
+        updatePasswordByUsername(user.getUsername(), credential);
+
+        return Optional.of(DefaultUser.Builder.anUserImp()
+                .withUsername(user.getUsername())
+                .withEmail(user.getEmail())
+                .withFirstName(user.getFirstName())
+                .withLastName(user.getLastName())
+                .withCredential(credential)
+                .build());
+    }
+}
@@ -2,7 +2,10 @@ package com.ulger.sk.usermanager.api.user.core;
 
 import com.ulger.sk.usermanager.api.user.validation.ValidationException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Simple user operations need to be implemented by implementation of this interface
@@ -18,12 +21,49 @@ public interface UserManager {
      */
     User getUserByEmail(String email);
 
+    /**
+     * Returns a {@link User} object whose username equals with given username
+     *
+     * @param username the username of User
+     * @return {@link User} or null if no user found matches with given username
+     * @throws IllegalArgumentException if the given username is null or empty
+     */
+    User getUserByUsername(String username);
+
+    /**
+     * Returns {@link User} objects whose emails are in given emails
+     *
+     * @param emails the emails of Users
+     * @return map of email to user in the order of given emails, emails no user found are not in the map
+     * @throws IllegalArgumentException if the given emails or any of them is null or empty
+     */
+    Map<String, User> getUsersByEmails(Collection<String> emails);
+
     /**
      * Returns all {@link User} from source
      * @return empty list if no user found
      */
     List<User> getAllUsers();
 
+    /**
+     * Passes all {@link User}s from source to given consumer one by one. Unlike getAllUsers
+     * it doesn't need to hold all users in memory, so it should be preferred for bulk loads.
+     *
+     * @param consumer called for each user
+     * @throws IllegalArgumentException if the given consumer is null
+     */
+    void forEachUser(Consumer<? super User> consumer);
+
+    /**
+     * Returns a page of {@link User}s ordered by username. Next page is requested by continuation token of
+     * returned page, so users created or updated between requests don't shift pages.
+     *
+     * @param pageRequest the page to be returned
+     * @return page of users, empty page if no user found
+     * @throws IllegalArgumentException if the given page request is null
+     */
+    Page getUsers(PageRequest pageRequest);
+
     /**
      * Returns a {@link User} object created by using modification data that is given as parameter
      *
@@ -32,6 +72,16 @@ public interface UserManager {
      * */
     User createUser(UserModificationData userModificationData);
 
+    /**
+     * Creates users of given records in bulk. A record that can not be created is reported in its result
+     * and doesn't stop creation of others.
+     *
+     * @param userModificationData records of users to be created
+     * @return result of each record in the order of given records, with throughput of the run
+     * @throws IllegalArgumentException if given records is null
+     */
+    BulkUserCreationResult createUsers(Iterable<? extends UserModificationData> userModificationData);
+
     /**
      * Returns a {@link User} object updated by using modification data that is given as parameter
      * This method uses id or email parameter to retrieve user from data source. If id or email both null than
@@ -42,12 +92,25 @@ public interface UserManager {
     User updateUser(UserModificationData userModificationData);
 
     /**
-     * Changes users password
+     * Changes users password. Password is changed only if it is not changed by someone else since it is checked.
      * @param email
      * @param newPassword
      * @param oldPassword
-     * @throws IllegalArgumentException if when given data is null
+     * @return {@link User} with changed password
+     * @throws IllegalArgumentException if when given data is null or old password is wrong
      * @throws ValidationException if given data is not valid
+     * @throws com.ulger.sk.usermanager.exception.DataAccessException with TRANSIENT_FAILURE reason if password is
+     * changed concurrently
+     */
+    User changePassword(String email, String oldPassword, String newPassword);
+
+    /**
+     * Checks given password of user with given email. Takes about as long whether or not the user exists,
+     * so emails can not be enumerated by timing. Failures are reported by result instead of thrown.
+     *
+     * @param email the email of User
+     * @param password raw password
+     * @return result with authenticated user, or the reason authentication failed
      */
-    void changePassword(String email, String oldPassword, String newPassword);
-}
\ No newline at end of file
+    AuthenticationResult authenticate(String email, CharSequence password);
+}
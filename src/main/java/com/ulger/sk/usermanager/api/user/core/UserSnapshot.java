@@ -0,0 +1,86 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable list of cached users tagged with the version of cache it was taken at.
+ * Same instance is shared by all readers until cache is written, so callers can compare versions
+ * to skip reprocessing unchanged users.
+ */
+public class UserSnapshot {
+
+    private final long version;
+    private final List<User> users;
+    private volatile User[] usersByUsername;
+
+    UserSnapshot(long version, List<User> users) {
+        this.version = version;
+        this.users = Collections.unmodifiableList(users);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return unmodifiable list of users
+     */
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * Returns users after given username in username order. Users are sorted once per snapshot on first call,
+     * later pages are found by binary search. Users without username are not paged.
+     * @param afterUsername users after this username are returned, null for the first page
+     * @param limit maximum count of users
+     */
+    List<User> getPage(String afterUsername, int limit) {
+        User[] sorted = usersByUsername;
+        if (sorted == null) {
+            // Racing callers sort the same users, any of the results can be kept
+            sorted = users.stream()
+                    .filter(user -> user.getUsername() != null)
+                    .sorted(Comparator.comparing(User::getUsername))
+                    .toArray(User[]::new);
+            usersByUsername = sorted;
+        }
+
+        int from = afterUsername == null ? 0 : firstIndexAfter(sorted, afterUsername);
+        int to = (int) Math.min((long) from + limit, sorted.length);
+
+        List<User> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(sorted[i]);
+        }
+        return page;
+    }
+
+    private static int firstIndexAfter(User[] sorted, String username) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].getUsername().compareTo(username) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("version", version)
+                .append("size", users.size())
+                .toString();
+    }
+}
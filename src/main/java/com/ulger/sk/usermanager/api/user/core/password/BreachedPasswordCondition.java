@@ -0,0 +1,227 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import com.ulger.sk.usermanager.cache.BloomFilter;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link PasswordPolicyCondition} rejecting passwords found in a list of breached passwords. List is a file built by
+ * {@link BreachedPasswordFileBuilder}: a header, then first 64 bits of SHA-1 of each password as sorted
+ * fixed-width keys. File is memory-mapped, so only pages touched by lookups are in memory and nothing is on heap.
+ * <p>
+ * Keys of SHA-1 are uniformly spread, so a lookup is an interpolation search touching a few pages, falling back
+ * to binary search if it doesn't narrow fast. Absent passwords can be answered from an optional Bloom filter
+ * without touching the file, at the cost of about 10 bits of heap per key. A 64 bit key makes a false rejection
+ * improbable even for billions of keys.
+ */
+public class BreachedPasswordCondition implements PasswordPolicyCondition, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BreachedPasswordCondition.class);
+
+    static final int MAGIC = 0x55534250;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int KEY_SIZE = Long.BYTES;
+
+    private static final int CHUNK_KEY_BITS = 27;
+    private static final long CHUNK_KEY_COUNT = 1L << CHUNK_KEY_BITS;
+    private static final int INTERPOLATION_STEPS = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long keyCount;
+    private BloomFilter bloomFilter;
+
+    private BreachedPasswordCondition(Path path, FileChannel channel, MappedByteBuffer[] chunks, long keyCount) {
+        this.path = path;
+        this.channel = channel;
+        this.chunks = chunks;
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * Maps file at given path
+     * @throws IOException if file can not be read or is not a breached password file
+     */
+    public static BreachedPasswordCondition open(Path path) throws IOException {
+        notNull(path);
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Read whole header
+            }
+
+            long keyCount = header.getLong(8);
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || keyCount < 0 || channel.size() != HEADER_SIZE + keyCount * KEY_SIZE) {
+                throw new IOException("Not a breached password file :: path=" + path);
+            }
+
+            // A buffer can not map more than 2GB, keys are mapped in chunks
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((keyCount + CHUNK_KEY_COUNT - 1) >>> CHUNK_KEY_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long firstKey = (long) i << CHUNK_KEY_BITS;
+                long chunkKeyCount = Math.min(CHUNK_KEY_COUNT, keyCount - firstKey);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + firstKey * KEY_SIZE, chunkKeyCount * KEY_SIZE);
+            }
+
+            logger.info("[open] Breached password file is mapped :: path={}, keyCount={}", path, keyCount);
+            return new BreachedPasswordCondition(path, channel, chunks, keyCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads all keys once into a Bloom filter checked before the file
+     * @param falsePositiveProbability share of absent passwords that still go to the file, e.g. 0.01
+     * @return this
+     */
+    public BreachedPasswordCondition loadBloomFilter(double falsePositiveProbability) {
+        long startTime = System.nanoTime();
+        BloomFilter filter = new BloomFilter(keyCount, falsePositiveProbability);
+        byte[] bytes = new byte[KEY_SIZE];
+
+        for (long i = 0; i < keyCount; i++) {
+            filter.put(toBytes(keyAt(i), bytes));
+        }
+
+        this.bloomFilter = filter;
+        logger.info("[loadBloomFilter] Bloom filter is loaded :: keyCount={}, bitCount={}, elapsedMillis={}",
+                keyCount, filter.getBitCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        return this;
+    }
+
+    @Override
+    public PasswordCheckingResult check(String password) {
+        PasswordCheckingResult result = new SimplePasswordCheckingResult();
+
+        if (password != null && isBreached(password)) {
+            result.addError("Password is found in a list of breached passwords, please choose another one");
+        }
+
+        return result;
+    }
+
+    public boolean isBreached(String password) {
+        return containsKey(keyOf(password));
+    }
+
+    boolean containsKey(long key) {
+        if (bloomFilter != null && !bloomFilter.mightContain(toBytes(key, new byte[KEY_SIZE]))) {
+            return false;
+        }
+
+        long low = 0;
+        long high = keyCount - 1;
+
+        // Interpolation narrows uniformly spread keys in a few steps, binary search bounds the worst case
+        for (int step = 0; step < INTERPOLATION_STEPS && low <= high; step++) {
+            long lowKey = keyAt(low);
+            long highKey = keyAt(high);
+            if (key < lowKey || key > highKey) {
+                return false;
+            }
+            if (lowKey == highKey) {
+                return key == lowKey;
+            }
+
+            long position = low + (long) (((double) key - lowKey) / ((double) highKey - lowKey) * (high - low));
+            position = Math.max(low, Math.min(high, position));
+
+            long positionKey = keyAt(position);
+            if (positionKey == key) {
+                return true;
+            }
+            if (positionKey < key) {
+                low = position + 1;
+            } else {
+                high = position - 1;
+            }
+        }
+
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long middleKey = keyAt(middle);
+            if (middleKey == key) {
+                return true;
+            }
+            if (middleKey < key) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return false;
+    }
+
+    public long getKeyCount() {
+        return keyCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long keyAt(long index) {
+        return chunks[(int) (index >>> CHUNK_KEY_BITS)].getLong((int) (index & (CHUNK_KEY_COUNT - 1)) * KEY_SIZE);
+    }
+
+    /**
+     * @return first 64 bits of SHA-1 of UTF-8 bytes of password
+     */
+    static long keyOf(String password) {
+        return keyOfDigest(sha1().digest(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static long keyOfDigest(byte[] digest) {
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static byte[] toBytes(long key, byte[] bytes) {
+        for (int i = KEY_SIZE - 1; i >= 0; i--) {
+            bytes[i] = (byte) key;
+            key >>>= 8;
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("path", path)
+                .append("keyCount", keyCount)
+                .append("bloomFilter", bloomFilter)
+                .toString();
+    }
+}
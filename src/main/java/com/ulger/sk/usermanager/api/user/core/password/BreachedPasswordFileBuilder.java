@@ -0,0 +1,328 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Builds the file of {@link BreachedPasswordCondition} from a text list with a password or a SHA-1 hash per line,
+ * by an external sort: keys are sorted in runs of bounded size written to temporary files, then runs are merged
+ * into the file dropping duplicates. Heap use is bounded by run size whatever the size of list.
+ * <p>
+ * Can be run as {@code BreachedPasswordFileBuilder <list> <file> [plain|sha1]}.
+ */
+public class BreachedPasswordFileBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BreachedPasswordFileBuilder.class);
+
+    private static final int DEFAULT_RUN_SIZE = 16 * 1024 * 1024;
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+    private static final int MINIMUM_RUN_BUFFER_SIZE = 64 * BreachedPasswordCondition.KEY_SIZE;
+    private static final int SHA1_HEX_LENGTH = 40;
+
+    public enum InputFormat {
+
+        /**
+         * A raw password per line, hashed by SHA-1 of its UTF-8 bytes
+         */
+        PLAIN,
+
+        /**
+         * Hex SHA-1 of a password per line, optionally followed by a colon and a count as in Pwned Passwords lists
+         */
+        SHA1_HEX
+    }
+
+    private InputFormat inputFormat = InputFormat.PLAIN;
+    private int runSize = DEFAULT_RUN_SIZE;
+    private Path tempDirectory;
+
+    public BreachedPasswordFileBuilder setInputFormat(InputFormat inputFormat) {
+        notNull(inputFormat);
+        this.inputFormat = inputFormat;
+        return this;
+    }
+
+    /**
+     * @param runSize count of keys sorted in memory at once, 8 bytes each, 16M by default
+     */
+    public BreachedPasswordFileBuilder setRunSize(int runSize) {
+        if (runSize < 1) {
+            throw new IllegalArgumentException("Run size should be positive");
+        }
+
+        this.runSize = runSize;
+        return this;
+    }
+
+    /**
+     * @param tempDirectory directory of sorted runs, directory of output file by default
+     */
+    public BreachedPasswordFileBuilder setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+        return this;
+    }
+
+    /**
+     * Output is written to a temporary file moved to given path when complete
+     * @return count of distinct keys written
+     */
+    public long build(Path list, Path output) throws IOException {
+        notNull(list);
+        notNull(output);
+
+        long startTime = System.nanoTime();
+        Path directory = tempDirectory != null ? tempDirectory : output.toAbsolutePath().getParent();
+        List<Path> runs = new ArrayList<>();
+
+        try {
+            long invalidLineCount = writeRuns(list, directory, runs);
+            long sortNanos = System.nanoTime() - startTime;
+
+            Path partial = Files.createTempFile(directory, output.getFileName().toString(), ".partial");
+            long keyCount;
+            try {
+                keyCount = merge(runs, partial);
+                Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+
+            logger.info("[build] Breached password file has been built :: output={}, keyCount={}, invalidLineCount={}, runCount={}, sortMillis={}, elapsedMillis={}",
+                    output, keyCount, invalidLineCount, runs.size(), TimeUnit.NANOSECONDS.toMillis(sortNanos),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+            return keyCount;
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * @return count of lines skipped as invalid
+     */
+    private long writeRuns(Path list, Path directory, List<Path> runs) throws IOException {
+        MessageDigest sha1 = BreachedPasswordCondition.sha1();
+        long[] keys = new long[runSize];
+        int keyCount = 0;
+        long invalidLineCount = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (inputFormat == InputFormat.PLAIN) {
+                    keys[keyCount++] = BreachedPasswordCondition.keyOfDigest(sha1.digest(line.getBytes(StandardCharsets.UTF_8)));
+                } else if (isSha1Hex(line)) {
+                    keys[keyCount++] = Long.parseUnsignedLong(line.substring(0, 16), 16);
+                } else {
+                    invalidLineCount++;
+                    continue;
+                }
+
+                if (keyCount == keys.length) {
+                    runs.add(writeRun(keys, keyCount, directory));
+                    keyCount = 0;
+                }
+            }
+        }
+
+        if (keyCount > 0 || runs.isEmpty()) {
+            runs.add(writeRun(keys, keyCount, directory));
+        }
+
+        if (invalidLineCount > 0) {
+            logger.warn("[build] Lines that are not SHA-1 hex are skipped :: list={}, invalidLineCount={}", list, invalidLineCount);
+        }
+
+        return invalidLineCount;
+    }
+
+    private static boolean isSha1Hex(String line) {
+        if (line.length() < SHA1_HEX_LENGTH || (line.length() > SHA1_HEX_LENGTH && line.charAt(SHA1_HEX_LENGTH) != ':')) {
+            return false;
+        }
+
+        for (int i = 0; i < SHA1_HEX_LENGTH; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Path writeRun(long[] keys, int keyCount, Path directory) throws IOException {
+        Arrays.sort(keys, 0, keyCount);
+
+        Path run = Files.createTempFile(directory, "breached-run", ".tmp");
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+            for (int i = 0; i < keyCount; i++) {
+                if (i > 0 && keys[i] == keys[i - 1]) {
+                    continue;
+                }
+                if (!buffer.hasRemaining()) {
+                    drain(buffer, channel);
+                }
+                buffer.putLong(keys[i]);
+            }
+            drain(buffer, channel);
+        }
+
+        return run;
+    }
+
+    /**
+     * @return count of distinct keys written
+     */
+    private static long merge(List<Path> runs, Path output) throws IOException {
+        PriorityQueue<RunReader> readers = new PriorityQueue<>((a, b) -> Long.compare(a.key, b.key));
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(FileChannel.open(run, StandardOpenOption.READ), Math.max(MINIMUM_RUN_BUFFER_SIZE, IO_BUFFER_SIZE / runs.size()));
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+            buffer.position(BreachedPasswordCondition.HEADER_SIZE);
+
+            long keyCount = 0;
+            long lastKey = 0;
+            while (!readers.isEmpty()) {
+                RunReader reader = readers.poll();
+                long key = reader.key;
+
+                if (keyCount == 0 || key != lastKey) {
+                    if (!buffer.hasRemaining()) {
+                        drain(buffer, channel);
+                    }
+                    buffer.putLong(key);
+                    lastKey = key;
+                    keyCount++;
+                }
+
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            drain(buffer, channel);
+
+            ByteBuffer header = ByteBuffer.allocate(BreachedPasswordCondition.HEADER_SIZE)
+                    .putInt(BreachedPasswordCondition.MAGIC)
+                    .putInt(BreachedPasswordCondition.VERSION)
+                    .putLong(keyCount);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+
+            return keyCount;
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BreachedPasswordFileBuilder <list> <file> [plain|sha1]");
+            System.exit(2);
+        }
+
+        BreachedPasswordFileBuilder builder = new BreachedPasswordFileBuilder();
+        if (args.length == 3) {
+            builder.setInputFormat("sha1".equalsIgnoreCase(args[2]) ? InputFormat.SHA1_HEX : InputFormat.PLAIN);
+        }
+
+        long keyCount = builder.build(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println(keyCount + " keys written to " + args[1]);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("inputFormat", inputFormat)
+                .append("runSize", runSize)
+                .append("tempDirectory", tempDirectory)
+                .toString();
+    }
+
+    private static final class RunReader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long key;
+
+        RunReader(FileChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize - bufferSize % BreachedPasswordCondition.KEY_SIZE);
+            this.buffer.flip();
+        }
+
+        /**
+         * Moves to next key of run
+         * @return false if run is consumed
+         */
+        boolean next() throws IOException {
+            if (buffer.remaining() < BreachedPasswordCondition.KEY_SIZE) {
+                buffer.compact();
+                while (buffer.position() < BreachedPasswordCondition.KEY_SIZE && channel.read(buffer) >= 0) {
+                    // Fill at least a key
+                }
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // Fill the rest if available
+                }
+                buffer.flip();
+
+                if (buffer.remaining() < BreachedPasswordCondition.KEY_SIZE) {
+                    return false;
+                }
+            }
+
+            key = buffer.getLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link PasswordPolicyManager} checking length, character class, repetition and sequence rules in a single scan
+ * of password. Rules are compiled by {@link Builder} into limits and a character class table, and error messages
+ * are built once at compile time, so checking a valid password allocates nothing and returns a shared result.
+ * <p>
+ * Conditions added by {@link Builder#withCondition(PasswordPolicyCondition)} run after the scan as they are,
+ * e.g. {@link BreachedPasswordCondition}.
+ */
+public class CompiledPasswordPolicy implements PasswordPolicyManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledPasswordPolicy.class);
+
+    private static final PasswordCheckingResult VALID = new ValidResult();
+    private static final String BLANK_PASSWORD_ERROR = "Password should be given";
+
+    public enum CharacterClass {
+
+        LOWERCASE("a lowercase letter"),
+        UPPERCASE("an uppercase letter"),
+        DIGIT("a digit"),
+        SYMBOL("a symbol");
+
+        private final String description;
+
+        CharacterClass(String description) {
+            this.description = description;
+        }
+
+        private int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    private static final int SYMBOL_BIT = CharacterClass.SYMBOL.bit();
+    private static final int ASCII_SIZE = 128;
+    private static final byte[] ASCII_CLASSES = new byte[ASCII_SIZE];
+
+    static {
+        for (char c = 0; c < ASCII_SIZE; c++) {
+            ASCII_CLASSES[c] = (byte) classOf(c);
+        }
+    }
+
+    private final int minLength;
+    private final int maxLength;
+    private final int requiredClasses;
+    private final int minimumClassCount;
+    private final int maximumRepeatedCharacters;
+    private final int maximumSequenceLength;
+    private final PasswordPolicyCondition[] conditions;
+
+    private final String minLengthError;
+    private final String maxLengthError;
+    private final String[] missingClassErrors;
+    private final String classCountError;
+    private final String repetitionError;
+    private final String sequenceError;
+
+    private CompiledPasswordPolicy(Builder builder) {
+        this.minLength = builder.minLength;
+        this.maxLength = builder.maxLength;
+        this.minimumClassCount = builder.minimumClassCount;
+        this.maximumRepeatedCharacters = builder.maximumRepeatedCharacters;
+        this.maximumSequenceLength = builder.maximumSequenceLength;
+        this.conditions = builder.conditions.toArray(new PasswordPolicyCondition[0]);
+
+        int required = 0;
+        this.missingClassErrors = new String[CharacterClass.values().length];
+        for (CharacterClass characterClass : builder.requiredClasses) {
+            required |= characterClass.bit();
+            missingClassErrors[characterClass.ordinal()] = "Password should contain " + characterClass.description;
+        }
+        this.requiredClasses = required;
+
+        this.minLengthError = "Password should be at least " + minLength + " characters long";
+        this.maxLengthError = "Password can not be longer than " + maxLength + " characters";
+        this.classCountError = "Password should contain at least " + minimumClassCount
+                + " of lowercase letters, uppercase letters, digits and symbols";
+        this.repetitionError = "Password can not repeat a character more than " + maximumRepeatedCharacters + " times in a row";
+        this.sequenceError = "Password can not contain a sequence longer than " + maximumSequenceLength + " characters, e.g. abcd or 4321";
+    }
+
+    @Override
+    public PasswordCheckingResult checkPolicy(String password) {
+        if (StringUtils.isBlank(password)) {
+            return invalid(BLANK_PASSWORD_ERROR);
+        }
+
+        int length = password.length();
+        int classes = 0;
+        int longestRepeat = 1;
+        int longestSequence = 1;
+        int repeat = 1;
+        int ascending = 1;
+        int descending = 1;
+        char previous = password.charAt(0);
+        int previousClass = classOfChar(previous);
+        classes |= previousClass;
+
+        for (int i = 1; i < length; i++) {
+            char c = password.charAt(i);
+            int characterClass = classOfChar(c);
+            classes |= characterClass;
+
+            repeat = c == previous ? repeat + 1 : 1;
+            longestRepeat = Math.max(longestRepeat, repeat);
+
+            // Sequences are of letters and digits, symbols next to each other in the code table are not
+            boolean sequential = ((characterClass | previousClass) & SYMBOL_BIT) == 0;
+            ascending = sequential && c == previous + 1 ? ascending + 1 : 1;
+            descending = sequential && c == previous - 1 ? descending + 1 : 1;
+            longestSequence = Math.max(longestSequence, Math.max(ascending, descending));
+
+            previous = c;
+            previousClass = characterClass;
+        }
+
+        boolean valid = length >= minLength
+                && length <= maxLength
+                && (classes & requiredClasses) == requiredClasses
+                && Integer.bitCount(classes) >= minimumClassCount
+                && (maximumRepeatedCharacters == 0 || longestRepeat <= maximumRepeatedCharacters)
+                && (maximumSequenceLength == 0 || longestSequence <= maximumSequenceLength);
+
+        if (valid && conditions.length == 0) {
+            return VALID;
+        }
+
+        PasswordCheckingResult result = null;
+        if (!valid) {
+            result = new SimplePasswordCheckingResult();
+            addScanErrors(result, length, classes, longestRepeat, longestSequence);
+        }
+
+        for (PasswordPolicyCondition condition : conditions) {
+            PasswordCheckingResult conditionResult = condition.check(password);
+            if (conditionResult != null && conditionResult.hasError()) {
+                if (result == null) {
+                    result = new SimplePasswordCheckingResult();
+                }
+                result.addError(conditionResult.getErrors());
+            }
+        }
+
+        if (result == null) {
+            return VALID;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[checkPolicy] Password is not valid :: errors={}", result.getErrors());
+        }
+
+        return result;
+    }
+
+    private void addScanErrors(PasswordCheckingResult result, int length, int classes, int longestRepeat, int longestSequence) {
+        if (length < minLength) {
+            result.addError(minLengthError);
+        }
+
+        if (length > maxLength) {
+            result.addError(maxLengthError);
+        }
+
+        for (CharacterClass characterClass : CharacterClass.values()) {
+            if ((requiredClasses & ~classes & characterClass.bit()) != 0) {
+                result.addError(missingClassErrors[characterClass.ordinal()]);
+            }
+        }
+
+        if (Integer.bitCount(classes) < minimumClassCount) {
+            result.addError(classCountError);
+        }
+
+        if (maximumRepeatedCharacters > 0 && longestRepeat > maximumRepeatedCharacters) {
+            result.addError(repetitionError);
+        }
+
+        if (maximumSequenceLength > 0 && longestSequence > maximumSequenceLength) {
+            result.addError(sequenceError);
+        }
+    }
+
+    private static PasswordCheckingResult invalid(String error) {
+        PasswordCheckingResult result = new SimplePasswordCheckingResult();
+        result.addError(error);
+        return result;
+    }
+
+    private static int classOfChar(char c) {
+        return c < ASCII_SIZE ? ASCII_CLASSES[c] : classOf(c);
+    }
+
+    private static int classOf(char c) {
+        if (Character.isLowerCase(c)) {
+            return CharacterClass.LOWERCASE.bit();
+        }
+        if (Character.isUpperCase(c)) {
+            return CharacterClass.UPPERCASE.bit();
+        }
+        if (Character.isDigit(c)) {
+            return CharacterClass.DIGIT.bit();
+        }
+        if (Character.isLetter(c)) {
+            // Letters without case, e.g. of CJK scripts, count as lowercase
+            return CharacterClass.LOWERCASE.bit();
+        }
+        return CharacterClass.SYMBOL.bit();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("minLength", minLength)
+                .append("maxLength", maxLength)
+                .append("requiredClasses", requiredClasses)
+                .append("minimumClassCount", minimumClassCount)
+                .append("maximumRepeatedCharacters", maximumRepeatedCharacters)
+                .append("maximumSequenceLength", maximumSequenceLength)
+                .append("conditionCount", conditions.length)
+                .toString();
+    }
+
+    /**
+     * Shared result of valid passwords, it can not take errors
+     */
+    private static final class ValidResult implements PasswordCheckingResult {
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public void addError(String error) {
+            throw new UnsupportedOperationException("Result of a valid password can not be changed");
+        }
+
+        @Override
+        public void addError(Collection<String> errors) {
+            throw new UnsupportedOperationException("Result of a valid password can not be changed");
+        }
+
+        @Override
+        public Collection<String> getErrors() {
+            return Collections.emptyList();
+        }
+    }
+
+    public static final class Builder {
+
+        private int minLength = DefaultPasswordLengthCondition.DEFAULT_MIN_LENGTH;
+        private int maxLength = DefaultPasswordLengthCondition.DEFAULT_MAX_LENGTH;
+        private Set<CharacterClass> requiredClasses = EnumSet.noneOf(CharacterClass.class);
+        private int minimumClassCount;
+        private int maximumRepeatedCharacters;
+        private int maximumSequenceLength;
+        private List<PasswordPolicyCondition> conditions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public static Builder aCompiledPasswordPolicy() {
+            return new Builder();
+        }
+
+        /**
+         * @param minLength 8 by default
+         * @param maxLength 32 by default
+         */
+        public Builder withLength(int minLength, int maxLength) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        public Builder withRequiredCharacterClasses(CharacterClass... requiredClasses) {
+            for (CharacterClass characterClass : requiredClasses) {
+                notNull(characterClass);
+                this.requiredClasses.add(characterClass);
+            }
+            return this;
+        }
+
+        /**
+         * @param minimumClassCount count of distinct character classes password should contain, e.g. 3 of 4
+         */
+        public Builder withMinimumCharacterClasses(int minimumClassCount) {
+            this.minimumClassCount = minimumClassCount;
+            return this;
+        }
+
+        /**
+         * @param maximumRepeatedCharacters longest run of the same character, e.g. 2 rejects aaa, 0 disables
+         */
+        public Builder withMaximumRepeatedCharacters(int maximumRepeatedCharacters) {
+            this.maximumRepeatedCharacters = maximumRepeatedCharacters;
+            return this;
+        }
+
+        /**
+         * @param maximumSequenceLength longest run of letters or digits ascending or descending by one,
+         *                              e.g. 3 rejects abcd and 4321, 0 disables
+         */
+        public Builder withMaximumSequenceLength(int maximumSequenceLength) {
+            this.maximumSequenceLength = maximumSequenceLength;
+            return this;
+        }
+
+        public Builder withCondition(PasswordPolicyCondition condition) {
+            notNull(condition);
+            this.conditions.add(condition);
+            return this;
+        }
+
+        public CompiledPasswordPolicy build() {
+            if (minLength < 1 || maxLength < minLength) {
+                throw new IllegalArgumentException("Length should be positive and maximum should not be less than minimum");
+            }
+
+            if (minimumClassCount < 0 || minimumClassCount > CharacterClass.values().length) {
+                throw new IllegalArgumentException("Minimum character classes should be between 0 and " + CharacterClass.values().length);
+            }
+
+            if (maximumRepeatedCharacters < 0 || maximumSequenceLength < 0) {
+                throw new IllegalArgumentException("Maximum repeated characters and sequence length should not be negative");
+            }
+
+            CompiledPasswordPolicy policy = new CompiledPasswordPolicy(this);
+            logger.info("[build] Password policy has been compiled :: policy={}", policy);
+            return policy;
+        }
+    }
+}
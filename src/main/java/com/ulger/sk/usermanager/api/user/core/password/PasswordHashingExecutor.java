@@ -0,0 +1,234 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import com.ulger.sk.usermanager.cache.LatencyHistogram;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link PasswordEncoder} running a slow encoder on a pool sized for CPU bound work, so a spike of hashing can not
+ * take every request thread. At most thread count plus queue capacity hashes are admitted at once.
+ * <p>
+ * Async methods fail with {@link RejectedExecutionException} at once when nothing more is admitted. Blocking
+ * {@link #encode(CharSequence)} and {@link #matches(CharSequence, String)} wait up to admission timeout for a
+ * place as back-pressure, then fail the same way. Can be given to {@link com.ulger.sk.usermanager.api.user.core.DefaultUserManager}
+ * as its encoder.
+ */
+public class PasswordHashingExecutor implements PasswordEncoder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingExecutor.class);
+
+    private static final Duration DEFAULT_ADMISSION_TIMEOUT = Duration.ofSeconds(1);
+    private static final int DEFAULT_QUEUE_CAPACITY_PER_THREAD = 16;
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore admissions;
+    private final int capacity;
+    private final long admissionTimeoutNanos;
+    private final LatencyHistogram hashTimes;
+    private final LatencyHistogram queueWaitTimes;
+    private final LongAdder rejectedCount;
+
+    /**
+     * Uses a thread per processor, a queue of 16 hashes per thread and 1 second admission timeout
+     */
+    public PasswordHashingExecutor(PasswordEncoder passwordEncoder) {
+        this(passwordEncoder, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * DEFAULT_QUEUE_CAPACITY_PER_THREAD, DEFAULT_ADMISSION_TIMEOUT);
+    }
+
+    /**
+     * @param threadCount count of hashes run at once, should not exceed processors that can be spent on hashing
+     * @param queueCapacity count of hashes waiting for a thread
+     * @param admissionTimeout maximum wait of blocking calls for a place in queue
+     */
+    public PasswordHashingExecutor(PasswordEncoder passwordEncoder, int threadCount, int queueCapacity, Duration admissionTimeout) {
+        notNull(passwordEncoder);
+        notNull(admissionTimeout);
+
+        if (threadCount < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Thread count should be positive and queue capacity should not be negative");
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.passwordEncoder = passwordEncoder;
+        // Queue is bounded by admissions, so tasks are never rejected by executor itself
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.capacity = threadCount + queueCapacity;
+        this.admissions = new Semaphore(capacity);
+        this.admissionTimeoutNanos = admissionTimeout.toNanos();
+        this.hashTimes = new LatencyHistogram();
+        this.queueWaitTimes = new LatencyHistogram();
+        this.rejectedCount = new LongAdder();
+    }
+
+    public CompletableFuture<String> encodeAsync(CharSequence rawPassword) {
+        return submitAsync(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matchesAsync(CharSequence rawPassword, String encodedPassword) {
+        return submitAsync(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Runs on hashing pool, calling thread waits for the result
+     * @throws RejectedExecutionException if no place is admitted within admission timeout
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submitAndWait(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Runs on hashing pool, calling thread waits for the result
+     * @throws RejectedExecutionException if no place is admitted within admission timeout
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submitAndWait(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @return count of hashes waiting for a thread
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return count of hashes running
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.99
+     * @return duration of hashing itself in nanoseconds, at most 12.5% above actual value
+     */
+    public long getHashTimePercentile(double percentile) {
+        return LatencyHistogram.percentile(hashTimes.snapshot(), percentile);
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.99
+     * @return time a hash waited in queue for a thread in nanoseconds, at most 12.5% above actual value
+     */
+    public long getQueueWaitPercentile(double percentile) {
+        return LatencyHistogram.percentile(queueWaitTimes.snapshot(), percentile);
+    }
+
+    /**
+     * Shuts down the pool after admitted hashes are done
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("[close] Admitted hashes did not end in time :: executor={}", executor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submitAsync(Supplier<T> hashing) {
+        try {
+            if (!admissions.tryAcquire()) {
+                throw reject();
+            }
+
+            return submit(hashing);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private <T> T submitAndWait(Supplier<T> hashing) {
+        try {
+            if (!admissions.tryAcquire(admissionTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw reject();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for password hashing", e);
+        }
+
+        try {
+            return submit(hashing).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Admission should be acquired, it is released when hashing ends
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> hashing) {
+        long submitTime = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startTime = System.nanoTime();
+                queueWaitTimes.record(startTime - submitTime);
+                try {
+                    return hashing.get();
+                } finally {
+                    hashTimes.record(System.nanoTime() - startTime);
+                    admissions.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            // Only after close
+            admissions.release();
+            throw e;
+        }
+    }
+
+    private RejectedExecutionException reject() {
+        rejectedCount.increment();
+        logger.warn("[submit] Password hashing is saturated :: capacity={}, queuedCount={}", capacity, getQueuedCount());
+        return new RejectedExecutionException("Password hashing is saturated");
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("passwordEncoder", passwordEncoder)
+                .append("capacity", capacity)
+                .append("admissionTimeoutNanos", admissionTimeoutNanos)
+                .append("queuedCount", getQueuedCount())
+                .append("rejectedCount", getRejectedCount())
+                .toString();
+    }
+}
@@ -0,0 +1,281 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link PasswordEncoder} of PBKDF2 by JDK. Encoded passwords describe themselves as
+ * {@code $pbkdf2-sha256$i=<iterations>$<salt>$<hash>} with base64 salt and hash, so passwords encoded by an
+ * older iteration count or algorithm still match after they are changed, and {@link #needsUpgrade(String)}
+ * tells which ones to encode again on next login.
+ * <p>
+ * Iteration count can be picked by {@link #calibrate(Algorithm, Duration, double)} on startup to meet a
+ * per-hash latency target on the host.
+ */
+public class Pbkdf2PasswordEncoder implements PasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(Pbkdf2PasswordEncoder.class);
+
+    static final int MINIMUM_ITERATIONS = 10_000;
+    private static final int SALT_LENGTH = 16;
+    private static final int CALIBRATION_ITERATIONS = 10_000;
+    private static final int CALIBRATION_SAMPLES = 20;
+    private static final int CALIBRATION_WARMUP_SAMPLES = 5;
+    private static final String PREFIX = "$";
+    private static final String ITERATIONS_PREFIX = "i=";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public enum Algorithm {
+
+        SHA256("PBKDF2WithHmacSHA256", "pbkdf2-sha256", 32),
+        SHA512("PBKDF2WithHmacSHA512", "pbkdf2-sha512", 64);
+
+        private final String jcaName;
+        private final String id;
+        private final int hashLength;
+
+        Algorithm(String jcaName, String id, int hashLength) {
+            this.jcaName = jcaName;
+            this.id = id;
+            this.hashLength = hashLength;
+        }
+
+        static Algorithm ofId(String id) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.id.equals(id)) {
+                    return algorithm;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final int iterations;
+
+    public Pbkdf2PasswordEncoder(int iterations) {
+        this(Algorithm.SHA256, iterations);
+    }
+
+    public Pbkdf2PasswordEncoder(Algorithm algorithm, int iterations) {
+        notNull(algorithm);
+
+        if (iterations < MINIMUM_ITERATIONS) {
+            throw new IllegalArgumentException("Iterations should be at least " + MINIMUM_ITERATIONS);
+        }
+
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Hashes a probe password on the calling thread and picks the iteration count whose hash time at given
+     * percentile is within latency target, not less than {@value #MINIMUM_ITERATIONS}. Should run before
+     * serving load, on a host of the same kind as production.
+     * @param latencyTarget per-hash latency target, e.g. 50ms
+     * @param percentile between 0 and 1, e.g. 0.95
+     */
+    public static Pbkdf2PasswordEncoder calibrate(Algorithm algorithm, Duration latencyTarget, double percentile) {
+        notNull(algorithm);
+        notNull(latencyTarget);
+
+        if (latencyTarget.isNegative() || latencyTarget.isZero()) {
+            throw new IllegalArgumentException("Latency target should be positive");
+        }
+
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile should be between 0 and 1");
+        }
+
+        long startTime = System.nanoTime();
+        byte[] salt = newSalt();
+        String probe = "calibration-probe";
+
+        for (int i = 0; i < CALIBRATION_WARMUP_SAMPLES; i++) {
+            hash(algorithm, probe, salt, CALIBRATION_ITERATIONS);
+        }
+
+        long probeNanos = sampleHashNanos(algorithm, probe, salt, CALIBRATION_ITERATIONS, percentile);
+        long iterations = CALIBRATION_ITERATIONS * latencyTarget.toNanos() / Math.max(1, probeNanos);
+
+        // Cost is not exactly linear in iterations, check the pick itself and step down while it is over target
+        while (iterations > MINIMUM_ITERATIONS) {
+            long nanos = sampleHashNanos(algorithm, probe, salt, (int) Math.min(iterations, Integer.MAX_VALUE), percentile);
+            if (nanos <= latencyTarget.toNanos()) {
+                break;
+            }
+            iterations = iterations * latencyTarget.toNanos() / nanos * 9 / 10;
+        }
+
+        int picked = (int) Math.max(MINIMUM_ITERATIONS, Math.min(iterations, Integer.MAX_VALUE));
+        if (iterations < MINIMUM_ITERATIONS) {
+            logger.warn("[calibrate] Latency target can not be met by minimum iterations :: latencyTarget={}, iterations={}",
+                    latencyTarget, picked);
+        }
+
+        logger.info("[calibrate] Iterations have been calibrated :: algorithm={}, latencyTarget={}, percentile={}, iterations={}, elapsedMillis={}",
+                algorithm, latencyTarget, percentile, picked, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        return new Pbkdf2PasswordEncoder(algorithm, picked);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        if (rawPassword == null) {
+            throw new IllegalArgumentException("Raw password must given");
+        }
+
+        byte[] salt = newSalt();
+        byte[] hash = hash(algorithm, rawPassword, salt, iterations);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + algorithm.id + PREFIX + ITERATIONS_PREFIX + iterations
+                + PREFIX + encoder.encodeToString(salt) + PREFIX + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Hashes by algorithm and iterations recorded in encoded password and compares in constant time.
+     * An encoded password not in this format does not match.
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null) {
+            return false;
+        }
+
+        EncodedPassword encoded = EncodedPassword.parse(encodedPassword);
+        if (encoded == null) {
+            logger.warn("[matches] Encoded password is not in PBKDF2 format");
+            return false;
+        }
+
+        byte[] hash = hash(encoded.algorithm, rawPassword, encoded.salt, encoded.iterations, encoded.hash.length);
+        return MessageDigest.isEqual(hash, encoded.hash);
+    }
+
+    /**
+     * @return true if encoded password is not in this format or is encoded by another algorithm or fewer iterations
+     */
+    public boolean needsUpgrade(String encodedPassword) {
+        EncodedPassword encoded = EncodedPassword.parse(encodedPassword);
+        return encoded == null || encoded.algorithm != algorithm || encoded.iterations < iterations;
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    private static long sampleHashNanos(Algorithm algorithm, String probe, byte[] salt, int iterations, double percentile) {
+        long[] samples = new long[CALIBRATION_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            long startTime = System.nanoTime();
+            hash(algorithm, probe, salt, iterations);
+            samples[i] = System.nanoTime() - startTime;
+        }
+
+        Arrays.sort(samples);
+        return samples[(int) Math.ceil(percentile * samples.length) - 1];
+    }
+
+    private static byte[] hash(Algorithm algorithm, CharSequence rawPassword, byte[] salt, int iterations) {
+        return hash(algorithm, rawPassword, salt, iterations, algorithm.hashLength);
+    }
+
+    private static byte[] hash(Algorithm algorithm, CharSequence rawPassword, byte[] salt, int iterations, int hashLength) {
+        char[] password = new char[rawPassword.length()];
+        for (int i = 0; i < password.length; i++) {
+            password[i] = rawPassword.charAt(i);
+        }
+
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, hashLength * 8);
+        try {
+            return SecretKeyFactory.getInstance(algorithm.jcaName).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available :: algorithm=" + algorithm, e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("algorithm", algorithm)
+                .append("iterations", iterations)
+                .toString();
+    }
+
+    private static final class EncodedPassword {
+
+        private final Algorithm algorithm;
+        private final int iterations;
+        private final byte[] salt;
+        private final byte[] hash;
+
+        private EncodedPassword(Algorithm algorithm, int iterations, byte[] salt, byte[] hash) {
+            this.algorithm = algorithm;
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        /**
+         * @return null if not in format
+         */
+        static EncodedPassword parse(String encodedPassword) {
+            if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+                return null;
+            }
+
+            String[] parts = encodedPassword.substring(PREFIX.length()).split("\\$", -1);
+            if (parts.length != 4 || !parts[1].startsWith(ITERATIONS_PREFIX)) {
+                return null;
+            }
+
+            Algorithm algorithm = Algorithm.ofId(parts[0]);
+            if (algorithm == null) {
+                return null;
+            }
+
+            try {
+                int iterations = Integer.parseInt(parts[1].substring(ITERATIONS_PREFIX.length()));
+                byte[] salt = Base64.getDecoder().decode(parts[2]);
+                byte[] hash = Base64.getDecoder().decode(parts[3]);
+
+                if (iterations < 1 || salt.length == 0 || hash.length == 0) {
+                    return null;
+                }
+
+                return new EncodedPassword(algorithm, iterations, salt, hash);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
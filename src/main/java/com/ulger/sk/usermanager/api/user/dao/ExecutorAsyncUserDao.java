@@ -0,0 +1,186 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.AsyncUserDao;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link AsyncUserDao} running a blocking {@link UserDao} on a dedicated executor, so event loop threads never
+ * block on data source. Executor has a bounded queue, when it is full calls fail with TRANSIENT_FAILURE reason
+ * instead of queueing without limit.
+ * <p>
+ * Thread count should match connections the data source can serve at once, e.g. size of connection pool.
+ */
+public class ExecutorAsyncUserDao implements AsyncUserDao, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorAsyncUserDao.class);
+
+    private final UserDao userDao;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Creates an executor of given thread count and queue capacity, shut down by close
+     */
+    public ExecutorAsyncUserDao(UserDao userDao, int threadCount, int queueCapacity) {
+        this(userDao, newExecutor(threadCount, queueCapacity), true);
+    }
+
+    /**
+     * Uses given executor, which is not shut down by close
+     */
+    public ExecutorAsyncUserDao(UserDao userDao, ExecutorService executor) {
+        this(userDao, executor, false);
+    }
+
+    private ExecutorAsyncUserDao(UserDao userDao, ExecutorService executor, boolean ownsExecutor) {
+        notNull(userDao);
+        notNull(executor);
+
+        this.userDao = userDao;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> findByUsername(String username) {
+        return submit(() -> userDao.findByUsername(username));
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> findByEmail(String email) {
+        return submit(() -> userDao.findByEmail(email));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findByEmails(Collection<String> emails) {
+        return submit(() -> userDao.findByEmails(emails));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> find() {
+        return submit(userDao::find);
+    }
+
+    @Override
+    public CompletableFuture<Void> forEach(Consumer<? super User> consumer) {
+        return submit(() -> {
+            userDao.forEach(consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findPage(String afterUsername, int limit) {
+        return submit(() -> userDao.findPage(afterUsername, limit));
+    }
+
+    @Override
+    public CompletableFuture<User> create(User user) {
+        return submit(() -> userDao.create(user));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, DataAccessException>> createAll(List<? extends User> users) {
+        return submit(() -> userDao.createAll(users));
+    }
+
+    @Override
+    public CompletableFuture<User> update(User user) {
+        return submit(() -> userDao.update(user));
+    }
+
+    @Override
+    public CompletableFuture<Void> updatePasswordByUsername(String username, String password) {
+        return submit(() -> {
+            userDao.updatePasswordByUsername(username, password);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> updateCredentialByEmail(String email, String expectedCredential, String credential) {
+        return submit(() -> userDao.updateCredentialByEmail(email, expectedCredential, credential));
+    }
+
+    /**
+     * @return count of calls waiting for a thread, or -1 if executor is not a {@link ThreadPoolExecutor}
+     */
+    public int getQueuedCount() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : -1;
+    }
+
+    /**
+     * Shuts down owned executor after queued calls are done
+     */
+    @Override
+    public void close() {
+        if (!ownsExecutor) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("[close] Queued calls did not end in time :: executor={}", executor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("[submit] Call is rejected by executor :: executor={}", executor);
+
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new DataAccessException("User dao executor is saturated", e, DataAccessException.TRANSIENT_FAILURE));
+            return future;
+        }
+    }
+
+    private static ExecutorService newExecutor(int threadCount, int queueCapacity) {
+        if (threadCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Thread count and queue capacity should be positive");
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-dao-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("userDao", userDao)
+                .append("executor", executor)
+                .toString();
+    }
+}
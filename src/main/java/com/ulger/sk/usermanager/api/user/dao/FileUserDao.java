@@ -0,0 +1,838 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.cache.UserSerializer;
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import com.ulger.sk.usermanager.log.MappedIndex;
+import com.ulger.sk.usermanager.log.SegmentLog;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Embedded {@link UserDao} keeping users in files of a directory, for deployments without a database.
+ * <p>
+ * Every write appends the whole user to a {@link SegmentLog} and returns after the log is forced to disk,
+ * concurrent writers share a single force. Email and username indexes are {@link MappedIndex} files pointing
+ * to the latest record of each user. Indexes are checkpointed when a segment is rolled over, after compaction
+ * and on close, so startup replays only the log written after last checkpoint. If the log ends with a torn
+ * record, indexes are rebuilt from the whole log.
+ * <p>
+ * Records superseded by later writes are garbage. When garbage exceeds the compaction threshold of log size,
+ * live records of sealed segments are copied to the end of log in background and sealed segments are deleted.
+ * Copies are relocation records, which are applied on replay only if the user is not written after them.
+ * <p>
+ * findPage filters and sorts all users, it is not meant for large directories.
+ */
+public class FileUserDao implements UserDao, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileUserDao.class);
+
+    private static final byte PUT = 1;
+    private static final byte RELOCATE = 2;
+
+    private static final String EMAIL_INDEX_FILE = "email.idx";
+    private static final String USERNAME_INDEX_FILE = "username.idx";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x55534350;
+    private static final int CHECKPOINT_SIZE = 44;
+
+    private final Path directory;
+    private final double compactionThreshold;
+    private final SegmentLog log;
+    private final MappedIndex emailIndex;
+    private final MappedIndex usernameIndex;
+    private final ReentrantReadWriteLock lock;
+    private final ReentrantReadWriteLock compactionLock;
+    private final ScheduledExecutorService compactor;
+
+    private long garbageBytes;
+    private int checkpointedSegmentId;
+    private boolean closed;
+
+    private FileUserDao(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.compactionThreshold = builder.compactionThreshold;
+        this.log = SegmentLog.open(directory, builder.segmentSize);
+        this.emailIndex = MappedIndex.open(directory.resolve(EMAIL_INDEX_FILE), builder.expectedUsers);
+        this.usernameIndex = MappedIndex.open(directory.resolve(USERNAME_INDEX_FILE), builder.expectedUsers);
+        this.lock = new ReentrantReadWriteLock();
+        this.compactionLock = new ReentrantReadWriteLock();
+
+        recover();
+
+        if (builder.compactionInterval == null) {
+            this.compactor = null;
+        } else {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            long interval = builder.compactionInterval.toNanos();
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws DataAccessException {
+        if (username == null) {
+            return Optional.empty();
+        }
+
+        return execute("findByUsername", () -> read(() -> Optional.ofNullable(findStored(usernameIndex, username, User::getUsername))
+                .map(stored -> stored.user)));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws DataAccessException {
+        if (email == null) {
+            return Optional.empty();
+        }
+
+        return execute("findByEmail", () -> read(() -> Optional.ofNullable(findStored(emailIndex, email, User::getEmail))
+                .map(stored -> stored.user)));
+    }
+
+    @Override
+    public List<User> find() throws DataAccessException {
+        List<User> users = new ArrayList<>();
+        forEach(users::add);
+        return users;
+    }
+
+    /**
+     * Passes users as of the time of call. Addresses of users are copied from index and read in log order,
+     * compaction waits until iteration ends.
+     */
+    @Override
+    public void forEach(Consumer<? super User> consumer) throws DataAccessException {
+        notNull(consumer);
+
+        execute("forEach", () -> {
+            compactionLock.readLock().lock();
+            try {
+                long[] addresses = read(emailIndex::addresses);
+                Arrays.sort(addresses);
+
+                for (long address : addresses) {
+                    consumer.accept(readStored(address).user);
+                }
+            } finally {
+                compactionLock.readLock().unlock();
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public User create(User user) throws DataAccessException {
+        notNull(user);
+
+        Map<Integer, DataAccessException> failures = createAll(Collections.singletonList(user));
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        return toDefaultUser(user);
+    }
+
+    /**
+     * Appends all valid users by a single write and waits for a single force
+     */
+    @Override
+    public Map<Integer, DataAccessException> createAll(List<? extends User> users) throws DataAccessException {
+        notNull(users);
+
+        return execute("createAll", () -> {
+            Map<Integer, DataAccessException> failures = new LinkedHashMap<>();
+            List<User> accepted = new ArrayList<>(users.size());
+            List<byte[]> bodies = new ArrayList<>(users.size());
+            Set<String> emails = new HashSet<>();
+            Set<String> usernames = new HashSet<>();
+
+            lock.writeLock().lock();
+            try {
+                ensureOpen();
+
+                for (int i = 0; i < users.size(); i++) {
+                    User user = users.get(i);
+                    DataAccessException failure = checkCreatable(user, emails, usernames);
+                    if (failure != null) {
+                        failures.put(i, failure);
+                        continue;
+                    }
+
+                    emails.add(user.getEmail());
+                    usernames.add(user.getUsername());
+                    accepted.add(toDefaultUser(user));
+                    bodies.add(encode(PUT, SegmentLog.NO_ADDRESS, user));
+                }
+
+                long[] addresses = log.append(bodies);
+                for (int i = 0; i < addresses.length; i++) {
+                    index(accepted.get(i), addresses[i]);
+                }
+
+                checkpointIfRolled();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.sync();
+            return failures;
+        });
+    }
+
+    /**
+     * Updates first and last name of user found by username, or by email if username is not given
+     * @throws DataAccessException with NOT_FOUND reason if no user is found
+     */
+    @Override
+    public User update(User user) throws DataAccessException {
+        notNull(user);
+
+        boolean byUsername = StringUtils.isNotBlank(user.getUsername());
+        String key = byUsername ? user.getUsername() : user.getEmail();
+
+        return write("update", () -> {
+            StoredUser current = byUsername
+                    ? findStored(usernameIndex, key, User::getUsername)
+                    : key == null ? null : findStored(emailIndex, key, User::getEmail);
+
+            if (current == null) {
+                throw new DataAccessException("User not found :: key=" + key, DataAccessException.NOT_FOUND);
+            }
+
+            User updated = DefaultUser.Builder.anUserImp()
+                    .withUsername(current.user.getUsername())
+                    .withEmail(current.user.getEmail())
+                    .withFirstName(user.getFirstName())
+                    .withLastName(user.getLastName())
+                    .withCredential(current.user.getCredential())
+                    .build();
+
+            supersede(current, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * @throws DataAccessException with NOT_FOUND reason if no user is found
+     */
+    @Override
+    public void updatePasswordByUsername(String username, String password) throws DataAccessException {
+        write("updatePasswordByUsername", () -> {
+            StoredUser current = username == null ? null : findStored(usernameIndex, username, User::getUsername);
+            if (current == null) {
+                throw new DataAccessException("User not found :: username=" + username, DataAccessException.NOT_FOUND);
+            }
+
+            User updated = DefaultUser.Builder.anUserImp()
+                    .withUsername(current.user.getUsername())
+                    .withEmail(current.user.getEmail())
+                    .withFirstName(current.user.getFirstName())
+                    .withLastName(current.user.getLastName())
+                    .withCredential(password)
+                    .build();
+
+            supersede(current, updated);
+            return null;
+        });
+    }
+
+    /**
+     * Checks expected credential and appends the new version under the same lock, so it is atomic
+     */
+    @Override
+    public Optional<User> updateCredentialByEmail(String email, String expectedCredential, String credential) throws DataAccessException {
+        return write("updateCredentialByEmail", () -> {
+            StoredUser current = email == null ? null : findStored(emailIndex, email, User::getEmail);
+            if (current == null || !Objects.equals(expectedCredential, current.user.getCredential())) {
+                return Optional.<User>empty();
+            }
+
+            User updated = DefaultUser.Builder.anUserImp()
+                    .withUsername(current.user.getUsername())
+                    .withEmail(current.user.getEmail())
+                    .withFirstName(current.user.getFirstName())
+                    .withLastName(current.user.getLastName())
+                    .withCredential(credential)
+                    .build();
+
+            supersede(current, updated);
+            return Optional.of(updated);
+        });
+    }
+
+    /**
+     * Copies live records of sealed segments to the end of log and deletes sealed segments.
+     * Writers are blocked only while a single record is copied.
+     */
+    public void compact() throws DataAccessException {
+        execute("compact", () -> {
+            compactionLock.writeLock().lock();
+            try {
+                List<Integer> sealedSegmentIds = log.getSealedSegmentIds();
+                if (sealedSegmentIds.isEmpty()) {
+                    return null;
+                }
+
+                long startTime = System.nanoTime();
+                long sealedBytes = log.getSize(sealedSegmentIds);
+                long[] liveBytes = new long[1];
+
+                for (Integer segmentId : sealedSegmentIds) {
+                    log.scan(segmentId, (address, body) -> {
+                        if (relocate(address, body)) {
+                            liveBytes[0] += SegmentLog.recordSize(body.length);
+                        }
+                    });
+                }
+
+                lock.writeLock().lock();
+                try {
+                    ensureOpen();
+
+                    // Relocations are checkpointed before their sources are deleted, so replay never needs deleted segments
+                    checkpoint();
+                    log.delete(sealedSegmentIds);
+                    garbageBytes = Math.max(0, garbageBytes - (sealedBytes - liveBytes[0]));
+                    checkpoint();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                logger.info("[compact] Log has been compacted :: segmentCount={}, reclaimedBytes={}, relocatedBytes={}, elapsedMillis={}",
+                        sealedSegmentIds.size(), sealedBytes - liveBytes[0], liveBytes[0],
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            } finally {
+                compactionLock.writeLock().unlock();
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * @return true if garbage exceeds compaction threshold of log size and there is a sealed segment to compact
+     */
+    public boolean needsCompaction() {
+        return read(() -> !closed && garbageBytes > 0 && garbageBytes >= compactionThreshold * log.getSize()
+                && !log.getSealedSegmentIds().isEmpty());
+    }
+
+    public long getUserCount() {
+        return read(emailIndex::size);
+    }
+
+    /**
+     * @return estimated size of superseded records in log
+     */
+    public long getGarbageBytes() {
+        return read(() -> garbageBytes);
+    }
+
+    public long getLogSize() {
+        return log.getSize();
+    }
+
+    /**
+     * @return count of forces of log, lower than count of writes when commits are grouped
+     */
+    public long getSyncCount() {
+        return log.getSyncCount();
+    }
+
+    /**
+     * Stops compaction, checkpoints indexes and closes files
+     */
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+
+        execute("close", () -> {
+            compactionLock.writeLock().lock();
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return null;
+                }
+
+                checkpoint();
+                closed = true;
+
+                emailIndex.close();
+                usernameIndex.close();
+                log.close();
+            } finally {
+                lock.writeLock().unlock();
+                compactionLock.writeLock().unlock();
+            }
+
+            logger.info("[close] File user dao is closed :: directory={}", directory);
+            return null;
+        });
+    }
+
+    private void recover() throws IOException {
+        long startTime = System.nanoTime();
+        Checkpoint checkpoint = readCheckpoint();
+
+        // Indexes are missing or older than checkpoint, or log is lost beyond checkpoint
+        boolean rebuild = checkpoint == null
+                || emailIndex.size() < checkpoint.userCount
+                || usernameIndex.size() != emailIndex.size()
+                || checkpoint.address < log.getFirstAddress()
+                || checkpoint.address > log.getEndAddress();
+
+        // Index files may be flushed while log records they point to are lost, e.g. log is restored from a copy
+        rebuild = rebuild || hasDanglingAddress(emailIndex) || hasDanglingAddress(usernameIndex);
+
+        if (!rebuild) {
+            garbageBytes = checkpoint.garbageBytes;
+
+            // Indexes may point to truncated records, they can only be trusted if nothing is truncated
+            rebuild = log.recover(checkpoint.address, this::apply) > 0;
+        }
+
+        if (rebuild) {
+            logger.warn("[recover] Indexes are rebuilt from log :: directory={}", directory);
+
+            emailIndex.clear();
+            usernameIndex.clear();
+            garbageBytes = 0;
+            log.recover(log.getFirstAddress(), this::apply);
+        }
+
+        checkpoint();
+
+        logger.info("[recover] File user dao is opened :: directory={}, userCount={}, rebuilt={}, elapsedMillis={}",
+                directory, emailIndex.size(), rebuild, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private boolean hasDanglingAddress(MappedIndex index) {
+        for (long address : index.addresses()) {
+            if (!log.contains(address)) {
+                logger.warn("[hasDanglingAddress] Index points outside of log :: address={}, endAddress={}", address, log.getEndAddress());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Applies a replayed record to indexes the same way it was applied when written
+     */
+    private void apply(long address, byte[] body) throws IOException {
+        Record record = decode(address, body);
+        StoredUser current = findStored(emailIndex, record.user.getEmail(), User::getEmail);
+
+        if (current == null) {
+            index(record.user, address);
+        } else if (record.type == RELOCATE) {
+            if (current.address == record.relocatedAddress) {
+                moveIndex(record.user, current.address, address);
+            } else {
+                // User is written after relocation
+                garbageBytes += SegmentLog.recordSize(body.length);
+            }
+        } else if (current.address != address) {
+            moveIndex(record.user, current.address, address);
+            garbageBytes += current.size;
+        }
+    }
+
+    /**
+     * @return true if record is live and copied to the end of log
+     */
+    private boolean relocate(long address, byte[] body) throws IOException {
+        Record record = decode(address, body);
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+
+            long hash = MappedIndex.hash(record.user.getEmail());
+            if (emailIndex.get(hash, indexed -> indexed == address) != address) {
+                return false;
+            }
+
+            long newAddress = log.append(encode(RELOCATE, address, record.user));
+            moveIndex(record.user, address, newAddress);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (needsCompaction()) {
+                compact();
+            }
+        } catch (Exception e) {
+            logger.error("[compactIfNeeded] Unable to compact log :: directory={}", directory, e);
+        }
+    }
+
+    /**
+     * Appends new version of a user and points indexes to it, caller should hold write lock
+     */
+    private void supersede(StoredUser current, User updated) throws IOException {
+        long address = log.append(encode(PUT, SegmentLog.NO_ADDRESS, updated));
+        moveIndex(updated, current.address, address);
+        garbageBytes += current.size;
+        checkpointIfRolled();
+    }
+
+    private void index(User user, long address) throws IOException {
+        emailIndex.insert(MappedIndex.hash(user.getEmail()), address);
+        usernameIndex.insert(MappedIndex.hash(user.getUsername()), address);
+    }
+
+    private void moveIndex(User user, long address, long newAddress) {
+        emailIndex.replace(MappedIndex.hash(user.getEmail()), address, newAddress);
+        usernameIndex.replace(MappedIndex.hash(user.getUsername()), address, newAddress);
+    }
+
+    private DataAccessException checkCreatable(User user, Set<String> emails, Set<String> usernames) {
+        if (user == null || user.getEmail() == null || user.getUsername() == null) {
+            return new DataAccessException("Email and username of user should be given", DataAccessException.DATA_INTEGRITY_VIOLATION);
+        }
+
+        if (emails.contains(user.getEmail()) || findStored(emailIndex, user.getEmail(), User::getEmail) != null) {
+            return new DataAccessException("Email is already used :: email=" + user.getEmail(), DataAccessException.DUPLICATE_KEY);
+        }
+
+        if (usernames.contains(user.getUsername()) || findStored(usernameIndex, user.getUsername(), User::getUsername) != null) {
+            return new DataAccessException("Username is already used :: username=" + user.getUsername(), DataAccessException.DUPLICATE_KEY);
+        }
+
+        return null;
+    }
+
+    private StoredUser findStored(MappedIndex index, String key, Function<User, String> keyOf) {
+        StoredUser[] found = new StoredUser[1];
+        index.get(MappedIndex.hash(key), address -> {
+            StoredUser stored = readStored(address);
+            if (key.equals(keyOf.apply(stored.user))) {
+                found[0] = stored;
+                return true;
+            }
+            return false;
+        });
+        return found[0];
+    }
+
+    private StoredUser readStored(long address) {
+        try {
+            byte[] body = log.read(address);
+            return new StoredUser(address, SegmentLog.recordSize(body.length), decode(address, body).user);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encode(byte type, long relocatedAddress, User user) {
+        byte[] userBytes = UserSerializer.serialize(user);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + (type == RELOCATE ? 8 : 0) + userBytes.length);
+        buffer.put(type);
+        if (type == RELOCATE) {
+            buffer.putLong(relocatedAddress);
+        }
+        return buffer.put(userBytes).array();
+    }
+
+    private static Record decode(long address, byte[] body) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte type = buffer.get();
+        if (type != PUT && type != RELOCATE) {
+            throw new IOException("Unknown record type :: address=" + address + ", type=" + type);
+        }
+
+        long relocatedAddress = type == RELOCATE ? buffer.getLong() : SegmentLog.NO_ADDRESS;
+        User user = UserSerializer.deserialize(Arrays.copyOfRange(body, buffer.position(), body.length));
+        return new Record(type, relocatedAddress, user);
+    }
+
+    private void checkpointIfRolled() throws IOException {
+        if (log.getActiveSegmentId() != checkpointedSegmentId) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Forces log and indexes, then records that indexes are complete up to the end of log.
+     * Caller should hold write lock.
+     */
+    private void checkpoint() throws IOException {
+        log.sync();
+        emailIndex.force();
+        usernameIndex.force();
+
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        buffer.putInt(CHECKPOINT_MAGIC);
+        buffer.putLong(log.getEndAddress());
+        buffer.putLong(garbageBytes);
+        buffer.putLong(emailIndex.size());
+        buffer.putLong(0);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        Path temporaryPath = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointedSegmentId = log.getActiveSegmentId();
+    }
+
+    private Checkpoint readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path) || Files.size(path) != CHECKPOINT_SIZE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, CHECKPOINT_SIZE - 8);
+
+        if (buffer.getInt() != CHECKPOINT_MAGIC || buffer.getLong(CHECKPOINT_SIZE - 8) != crc.getValue()) {
+            logger.warn("[readCheckpoint] Checkpoint is corrupted :: path={}", path);
+            return null;
+        }
+
+        return new Checkpoint(buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("File user dao is closed");
+        }
+    }
+
+    private <T> T read(IoCallback<T> callback) {
+        lock.readLock().lock();
+        try {
+            return callback.call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(String task, IoCallback<T> callback) {
+        T result = execute(task, () -> {
+            lock.writeLock().lock();
+            try {
+                ensureOpen();
+                return callback.call();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+
+        execute(task, () -> {
+            log.sync();
+            return null;
+        });
+
+        return result;
+    }
+
+    private <T> T execute(String task, IoCallback<T> callback) {
+        try {
+            return callback.call();
+        } catch (IOException | UncheckedIOException e) {
+            IOException cause = e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+            logger.warn("[{}] I/O error :: directory={}", task, directory, cause);
+            throw new DataAccessException(task + " failed :: " + cause.getMessage(), cause, DataAccessException.UNCATEGORIZED);
+        }
+    }
+
+    private static User toDefaultUser(User user) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(user.getUsername())
+                .withCredential(user.getCredential())
+                .withEmail(user.getEmail())
+                .withFirstName(user.getFirstName())
+                .withLastName(user.getLastName())
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("directory", directory)
+                .append("log", log)
+                .append("compactionThreshold", compactionThreshold)
+                .toString();
+    }
+
+    @FunctionalInterface
+    private interface IoCallback<T> {
+        T call() throws IOException;
+    }
+
+    private static final class StoredUser {
+        final long address;
+        final int size;
+        final User user;
+
+        StoredUser(long address, int size, User user) {
+            this.address = address;
+            this.size = size;
+            this.user = user;
+        }
+    }
+
+    private static final class Record {
+        final byte type;
+        final long relocatedAddress;
+        final User user;
+
+        Record(byte type, long relocatedAddress, User user) {
+            this.type = type;
+            this.relocatedAddress = relocatedAddress;
+            this.user = user;
+        }
+    }
+
+    private static final class Checkpoint {
+        final long address;
+        final long garbageBytes;
+        final long userCount;
+
+        Checkpoint(long address, long garbageBytes, long userCount) {
+            this.address = address;
+            this.garbageBytes = garbageBytes;
+            this.userCount = userCount;
+        }
+    }
+
+    public static final class Builder {
+        private Path directory;
+        private int segmentSize = 64 * 1024 * 1024;
+        private long expectedUsers = 1 << 16;
+        private Duration compactionInterval = Duration.ofMinutes(1);
+        private double compactionThreshold = 0.5;
+
+        private Builder() {
+        }
+
+        public static Builder aFileUserDao() {
+            return new Builder();
+        }
+
+        /**
+         * Directory of log segments and index files, required
+         */
+        public Builder withDirectory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Maximum size of a log segment file, 64 MB by default
+         */
+        public Builder withSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Initial capacity of index files, they grow when needed. 65536 by default
+         */
+        public Builder withExpectedUsers(long expectedUsers) {
+            this.expectedUsers = expectedUsers;
+            return this;
+        }
+
+        /**
+         * Interval of checking if log needs compaction, 1 minute by default. Null disables background compaction.
+         */
+        public Builder withCompactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+            return this;
+        }
+
+        /**
+         * Ratio of garbage to log size that triggers compaction, 0.5 by default
+         */
+        public Builder withCompactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * Opens files in directory and replays log written after last checkpoint
+         * @throws DataAccessException if files can not be opened
+         */
+        public FileUserDao build() {
+            notNull(directory, "Directory should be given");
+
+            if (compactionThreshold <= 0 || compactionThreshold >= 1) {
+                throw new IllegalArgumentException("Compaction threshold should be between 0 and 1");
+            }
+
+            if (compactionInterval != null && (compactionInterval.isNegative() || compactionInterval.isZero())) {
+                throw new IllegalArgumentException("Compaction interval should be positive");
+            }
+
+            try {
+                return new FileUserDao(this);
+            } catch (IOException | UncheckedIOException e) {
+                throw new DataAccessException("Unable to open file user dao :: directory=" + directory, e, DataAccessException.UNCATEGORIZED);
+            }
+        }
+    }
+}
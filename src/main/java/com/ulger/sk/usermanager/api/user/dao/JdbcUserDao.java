@@ -0,0 +1,450 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import com.ulger.sk.usermanager.jdbc.ConnectionPool;
+import com.ulger.sk.usermanager.jdbc.PooledConnection;
+import com.ulger.sk.usermanager.jdbc.SqlExceptionTranslator;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * JDBC implementation of {@link UserDao} on the user table. Connections come from a {@link ConnectionPool},
+ * statements are reused per connection and rows are mapped to {@link DefaultUser} by column index.
+ * {@link SQLException}s are thrown as {@link DataAccessException} with reason codes of {@link SqlExceptionTranslator}.
+ */
+public class JdbcUserDao implements UserDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcUserDao.class);
+
+    private static final String COLUMNS = "username, credential, email, first_name, last_name";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM user";
+    private static final String FIND_BY_USERNAME = SELECT + " WHERE username = ?";
+    private static final String FIND_BY_EMAIL = SELECT + " WHERE email = ?";
+    private static final String FIND_FIRST_PAGE = SELECT + " ORDER BY username LIMIT ?";
+    private static final String FIND_PAGE_AFTER_USERNAME = SELECT + " WHERE username > ? ORDER BY username LIMIT ?";
+    private static final String INSERT = "INSERT INTO user (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_BY_USERNAME = "UPDATE user SET first_name = ?, last_name = ? WHERE username = ?";
+    private static final String UPDATE_BY_EMAIL = "UPDATE user SET first_name = ?, last_name = ? WHERE email = ?";
+    private static final String UPDATE_PASSWORD = "UPDATE user SET credential = ? WHERE username = ?";
+    private static final String UPDATE_CREDENTIAL_IF_MATCHES = "UPDATE user SET credential = ? WHERE email = ? AND credential = ?";
+
+    /**
+     * IN-lists are padded to the next power of two up to this size, so a few statements serve all list sizes
+     */
+    private static final int MAXIMUM_IN_LIST_SIZE = 512;
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final ConnectionPool connectionPool;
+    private int fetchSize;
+    private int batchSize;
+
+    public JdbcUserDao(ConnectionPool connectionPool) {
+        notNull(connectionPool);
+        this.connectionPool = connectionPool;
+        this.fetchSize = DEFAULT_FETCH_SIZE;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * @param fetchSize count of rows fetched from database per round trip while iterating all users
+     */
+    public JdbcUserDao setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size should be positive");
+        }
+
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * @param batchSize count of rows inserted per JDBC batch and transaction by createAll
+     */
+    public JdbcUserDao setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
+
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws DataAccessException {
+        return execute("findByUsername", connection -> findOne(connection, FIND_BY_USERNAME, username));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws DataAccessException {
+        return execute("findByEmail", connection -> findOne(connection, FIND_BY_EMAIL, email));
+    }
+
+    @Override
+    public List<User> findByEmails(Collection<String> emails) throws DataAccessException {
+        notNull(emails);
+
+        List<String> emailList = new ArrayList<>(emails);
+        List<User> users = new ArrayList<>(emailList.size());
+        if (emailList.isEmpty()) {
+            return users;
+        }
+
+        return execute("findByEmails", connection -> {
+            for (int from = 0; from < emailList.size(); from += MAXIMUM_IN_LIST_SIZE) {
+                List<String> chunk = emailList.subList(from, Math.min(from + MAXIMUM_IN_LIST_SIZE, emailList.size()));
+                int parameterCount = Math.min(MAXIMUM_IN_LIST_SIZE, ceilingPowerOfTwo(chunk.size()));
+
+                PreparedStatement statement = connection.prepare(inListQuery(parameterCount));
+                for (int i = 0; i < parameterCount; i++) {
+                    // Padding repeats the last email, it doesn't change result
+                    statement.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        users.add(mapUser(resultSet));
+                    }
+                }
+            }
+
+            return users;
+        });
+    }
+
+    @Override
+    public List<User> find() throws DataAccessException {
+        return execute("find", connection -> {
+            List<User> users = new ArrayList<>();
+            streamAll(connection, users::add);
+            return users;
+        });
+    }
+
+    /**
+     * Streams rows through a cursor fetching fetchSize rows at a time, so memory use doesn't depend on row count.
+     * Auto commit is disabled while iterating, since some drivers (e.g. PostgreSQL) ignore fetch size otherwise.
+     */
+    @Override
+    public void forEach(Consumer<? super User> consumer) throws DataAccessException {
+        notNull(consumer);
+
+        execute("forEach", connection -> {
+            streamAll(connection, consumer);
+            return null;
+        });
+    }
+
+    private void streamAll(PooledConnection connection, Consumer<? super User> consumer) throws SQLException {
+        Connection physicalConnection = connection.getConnection();
+        boolean autoCommit = physicalConnection.getAutoCommit();
+        if (autoCommit) {
+            physicalConnection.setAutoCommit(false);
+        }
+
+        try {
+            PreparedStatement statement = connection.prepare(SELECT);
+            statement.setFetchSize(fetchSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(mapUser(resultSet));
+                }
+            }
+        } finally {
+            if (autoCommit) {
+                // Ends read only transaction of cursor
+                physicalConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Reads the page by a range scan on username primary key, so its cost doesn't depend on how deep the page is
+     */
+    @Override
+    public List<User> findPage(String afterUsername, int limit) throws DataAccessException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit should be positive");
+        }
+
+        return execute("findPage", connection -> {
+            PreparedStatement statement;
+            if (afterUsername == null) {
+                statement = connection.prepare(FIND_FIRST_PAGE);
+                statement.setInt(1, limit);
+            } else {
+                statement = connection.prepare(FIND_PAGE_AFTER_USERNAME);
+                statement.setString(1, afterUsername);
+                statement.setInt(2, limit);
+            }
+
+            List<User> users = new ArrayList<>(Math.min(limit, DEFAULT_FETCH_SIZE));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    users.add(mapUser(resultSet));
+                }
+            }
+            return users;
+        });
+    }
+
+    @Override
+    public User create(User user) throws DataAccessException {
+        notNull(user);
+
+        return execute("create", connection -> {
+            PreparedStatement statement = connection.prepare(INSERT);
+            setInsertParameters(statement, user);
+            statement.executeUpdate();
+
+            return toDefaultUser(user);
+        });
+    }
+
+    /**
+     * Inserts users in JDBC batches of batchSize, each batch in its own transaction. If a batch fails,
+     * it is rolled back and its rows are inserted one by one, so only the failing rows are reported.
+     * @throws DataAccessException if connection fails, the open batch is rolled back and rows of batches committed before are kept
+     */
+    @Override
+    public Map<Integer, DataAccessException> createAll(List<? extends User> users) throws DataAccessException {
+        notNull(users);
+
+        Map<Integer, DataAccessException> failures = new LinkedHashMap<>();
+        if (users.isEmpty()) {
+            return failures;
+        }
+
+        return execute("createAll", connection -> {
+            Connection physicalConnection = connection.getConnection();
+            boolean autoCommit = physicalConnection.getAutoCommit();
+
+            try {
+                for (int from = 0; from < users.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, users.size());
+
+                    physicalConnection.setAutoCommit(false);
+                    PreparedStatement statement = connection.prepare(INSERT);
+                    try {
+                        for (int i = from; i < to; i++) {
+                            setInsertParameters(statement, users.get(i));
+                            statement.addBatch();
+                        }
+
+                        statement.executeBatch();
+                        physicalConnection.commit();
+                    } catch (SQLException | RuntimeException e) {
+                        if (!(e instanceof BatchUpdateException) || SqlExceptionTranslator.isConnectionFailure((SQLException) e)) {
+                            rollbackQuietly(physicalConnection);
+                            throw e;
+                        }
+
+                        statement.clearBatch();
+                        physicalConnection.rollback();
+                        physicalConnection.setAutoCommit(true);
+                        logger.debug("[createAll] Batch failed, inserting its rows one by one :: from={}, to={}", from, to);
+                        createOneByOne(connection, users, from, to, failures);
+                    }
+                }
+            } finally {
+                physicalConnection.setAutoCommit(autoCommit);
+            }
+
+            return failures;
+        });
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("[rollbackQuietly] Rollback failed :: sqlState={}", e.getSQLState(), e);
+        }
+    }
+
+    private static void createOneByOne(PooledConnection connection, List<? extends User> users, int from, int to,
+                                       Map<Integer, DataAccessException> failures) throws SQLException {
+        for (int i = from; i < to; i++) {
+            try {
+                PreparedStatement statement = connection.prepare(INSERT);
+                setInsertParameters(statement, users.get(i));
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (SqlExceptionTranslator.isConnectionFailure(e)) {
+                    throw e;
+                }
+
+                failures.put(i, SqlExceptionTranslator.translate("createAll", e));
+            }
+        }
+    }
+
+    /**
+     * Updates first and last name of user found by username, or by email if username is not given
+     * @throws DataAccessException with NOT_FOUND reason if no user is found
+     */
+    @Override
+    public User update(User user) throws DataAccessException {
+        notNull(user);
+
+        boolean byUsername = StringUtils.isNotBlank(user.getUsername());
+        String key = byUsername ? user.getUsername() : user.getEmail();
+
+        return execute("update", connection -> {
+            PreparedStatement statement = connection.prepare(byUsername ? UPDATE_BY_USERNAME : UPDATE_BY_EMAIL);
+            statement.setString(1, user.getFirstName());
+            statement.setString(2, user.getLastName());
+            statement.setString(3, key);
+
+            if (statement.executeUpdate() == 0) {
+                throw new DataAccessException("User not found :: key=" + key, DataAccessException.NOT_FOUND);
+            }
+
+            return findOne(connection, byUsername ? FIND_BY_USERNAME : FIND_BY_EMAIL, key)
+                    .orElseThrow(() -> new DataAccessException("User not found :: key=" + key, DataAccessException.NOT_FOUND));
+        });
+    }
+
+    /**
+     * @throws DataAccessException with NOT_FOUND reason if no user is found
+     */
+    @Override
+    public void updatePasswordByUsername(String username, String password) throws DataAccessException {
+        execute("updatePasswordByUsername", connection -> {
+            PreparedStatement statement = connection.prepare(UPDATE_PASSWORD);
+            statement.setString(1, password);
+            statement.setString(2, username);
+
+            if (statement.executeUpdate() == 0) {
+                throw new DataAccessException("User not found :: username=" + username, DataAccessException.NOT_FOUND);
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Updates by a single conditional statement, updated user is read on the same connection only if it is updated
+     */
+    @Override
+    public Optional<User> updateCredentialByEmail(String email, String expectedCredential, String credential) throws DataAccessException {
+        return execute("updateCredentialByEmail", connection -> {
+            PreparedStatement statement = connection.prepare(UPDATE_CREDENTIAL_IF_MATCHES);
+            statement.setString(1, credential);
+            statement.setString(2, email);
+            statement.setString(3, expectedCredential);
+
+            if (statement.executeUpdate() == 0) {
+                return Optional.empty();
+            }
+
+            return findOne(connection, FIND_BY_EMAIL, email);
+        });
+    }
+
+    private <T> T execute(String task, ConnectionCallback<T> callback) {
+        PooledConnection connection = connectionPool.borrow();
+        try {
+            return callback.doInConnection(connection);
+        } catch (SQLException e) {
+            if (SqlExceptionTranslator.isConnectionFailure(e)) {
+                connection.markBroken();
+            }
+
+            logger.warn("[{}] SQL error :: sqlState={}, errorCode={}", task, e.getSQLState(), e.getErrorCode());
+            throw SqlExceptionTranslator.translate(task, e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static Optional<User> findOne(PooledConnection connection, String sql, String key) throws SQLException {
+        PreparedStatement statement = connection.prepare(sql);
+        statement.setString(1, key);
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? Optional.of(mapUser(resultSet)) : Optional.empty();
+        }
+    }
+
+    private static void setInsertParameters(PreparedStatement statement, User user) throws SQLException {
+        statement.setString(1, user.getUsername());
+        statement.setString(2, user.getCredential());
+        statement.setString(3, user.getEmail());
+        statement.setString(4, user.getFirstName());
+        statement.setString(5, user.getLastName());
+    }
+
+    private static User mapUser(ResultSet resultSet) throws SQLException {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(resultSet.getString(1))
+                .withCredential(resultSet.getString(2))
+                .withEmail(resultSet.getString(3))
+                .withFirstName(resultSet.getString(4))
+                .withLastName(resultSet.getString(5))
+                .build();
+    }
+
+    private static User toDefaultUser(User user) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(user.getUsername())
+                .withCredential(user.getCredential())
+                .withEmail(user.getEmail())
+                .withFirstName(user.getFirstName())
+                .withLastName(user.getLastName())
+                .build();
+    }
+
+    private static String inListQuery(int parameterCount) {
+        StringBuilder sql = new StringBuilder(SELECT.length() + 20 + parameterCount * 3)
+                .append(SELECT)
+                .append(" WHERE email IN (");
+
+        for (int i = 0; i < parameterCount; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+
+        return sql.append(')').toString();
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("connectionPool", connectionPool)
+                .append("fetchSize", fetchSize)
+                .append("batchSize", batchSize)
+                .toString();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionCallback<T> {
+        T doInConnection(PooledConnection connection) throws SQLException;
+    }
+}
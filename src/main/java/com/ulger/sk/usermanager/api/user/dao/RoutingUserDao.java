@@ -0,0 +1,338 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link UserDao} sending writes to a primary and reads to replicas in round robin.
+ * <p>
+ * Emails and usernames of written users are remembered for a window that should be longer than replication lag,
+ * reads of them go to primary within the window, so a caller reading right after its write sees the write.
+ * If too many keys are written within a window to be remembered, all key reads go to primary until the window
+ * passes. Reads of all users and pages are not tracked and may lag behind writes.
+ * <p>
+ * A replica read failing by connection failure, timeout or transient failure is retried on primary.
+ */
+public class RoutingUserDao implements UserDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingUserDao.class);
+
+    private static final Duration DEFAULT_READ_YOUR_WRITES_WINDOW = Duration.ofSeconds(5);
+    private static final int DEFAULT_MAXIMUM_TRACKED_KEYS = 100_000;
+
+    private static final long NO_DEADLINE = 0;
+
+    private static final String EMAIL_PREFIX = "e:";
+    private static final String USERNAME_PREFIX = "u:";
+
+    private final UserDao primary;
+    private final List<UserDao> replicas;
+    private final long windowNanos;
+    private final int maximumTrackedKeys;
+    private final LongSupplier nanoTicker;
+    private final ConcurrentHashMap<String, Long> recentWrites;
+    /**
+     * Keys in order they start to be tracked, so expired ones are found without scanning all keys
+     */
+    private final ConcurrentLinkedQueue<Expiration> expirations;
+    private final ReentrantLock purgeLock;
+    private final AtomicInteger nextReplica;
+    /**
+     * Time until which all key reads go to primary since a key could not be tracked, NO_DEADLINE if none
+     */
+    private final AtomicLong overflowDeadline;
+
+    public RoutingUserDao(UserDao primary, List<UserDao> replicas) {
+        this(primary, replicas, DEFAULT_READ_YOUR_WRITES_WINDOW, DEFAULT_MAXIMUM_TRACKED_KEYS, System::nanoTime);
+    }
+
+    /**
+     * @param readYourWritesWindow time that reads of a written key go to primary
+     * @param maximumTrackedKeys maximum count of written keys remembered at once
+     */
+    public RoutingUserDao(UserDao primary, List<UserDao> replicas, Duration readYourWritesWindow, int maximumTrackedKeys,
+                          LongSupplier nanoTicker) {
+        notNull(primary);
+        notNull(replicas);
+        notNull(readYourWritesWindow);
+        notNull(nanoTicker);
+        replicas.forEach(replica -> notNull(replica, "Replica should not be null"));
+
+        if (maximumTrackedKeys < 1) {
+            throw new IllegalArgumentException("Maximum tracked keys should be positive");
+        }
+
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.windowNanos = readYourWritesWindow.toNanos();
+        this.maximumTrackedKeys = maximumTrackedKeys;
+        this.nanoTicker = nanoTicker;
+        this.recentWrites = new ConcurrentHashMap<>();
+        this.expirations = new ConcurrentLinkedQueue<>();
+        this.purgeLock = new ReentrantLock();
+        this.nextReplica = new AtomicInteger();
+        this.overflowDeadline = new AtomicLong(NO_DEADLINE);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws DataAccessException {
+        if (isRecentlyWritten(USERNAME_PREFIX, username)) {
+            return primary.findByUsername(username);
+        }
+
+        return readFromReplica("findByUsername", dao -> dao.findByUsername(username));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws DataAccessException {
+        if (isRecentlyWritten(EMAIL_PREFIX, email)) {
+            return primary.findByEmail(email);
+        }
+
+        return readFromReplica("findByEmail", dao -> dao.findByEmail(email));
+    }
+
+    /**
+     * Goes to primary if any of emails is recently written
+     */
+    @Override
+    public List<User> findByEmails(Collection<String> emails) throws DataAccessException {
+        for (String email : emails) {
+            if (isRecentlyWritten(EMAIL_PREFIX, email)) {
+                return primary.findByEmails(emails);
+            }
+        }
+
+        return readFromReplica("findByEmails", dao -> dao.findByEmails(emails));
+    }
+
+    @Override
+    public List<User> find() throws DataAccessException {
+        return readFromReplica("find", UserDao::find);
+    }
+
+    @Override
+    public void forEach(Consumer<? super User> consumer) throws DataAccessException {
+        // Retrying on primary would pass users that were already passed, so failures are not retried
+        nextReplica().forEach(consumer);
+    }
+
+    @Override
+    public List<User> findPage(String afterUsername, int limit) throws DataAccessException {
+        return readFromReplica("findPage", dao -> dao.findPage(afterUsername, limit));
+    }
+
+    @Override
+    public User create(User user) throws DataAccessException {
+        User created = primary.create(user);
+        markWritten(created);
+        return created;
+    }
+
+    @Override
+    public Map<Integer, DataAccessException> createAll(List<? extends User> users) throws DataAccessException {
+        Map<Integer, DataAccessException> failures = primary.createAll(users);
+        for (int i = 0; i < users.size(); i++) {
+            if (!failures.containsKey(i)) {
+                markWritten(users.get(i));
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public User update(User user) throws DataAccessException {
+        User updated = primary.update(user);
+        markWritten(user);
+        markWritten(updated);
+        return updated;
+    }
+
+    /**
+     * Email of user is read from primary after update, so that reads by email also see the new password
+     */
+    @Override
+    public void updatePasswordByUsername(String username, String password) throws DataAccessException {
+        primary.updatePasswordByUsername(username, password);
+        mark(USERNAME_PREFIX, username);
+        primary.findByUsername(username).ifPresent(this::markWritten);
+    }
+
+    @Override
+    public Optional<User> updateCredentialByEmail(String email, String expectedCredential, String credential) throws DataAccessException {
+        Optional<User> updated = primary.updateCredentialByEmail(email, expectedCredential, credential);
+        updated.ifPresent(this::markWritten);
+        return updated;
+    }
+
+    public UserDao getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return count of keys currently remembered as recently written
+     */
+    public int getTrackedKeyCount() {
+        return recentWrites.size();
+    }
+
+    private <T> T readFromReplica(String task, ReplicaRead<T> read) {
+        UserDao replica = nextReplica();
+        if (replica == primary) {
+            return read.apply(primary);
+        }
+
+        try {
+            return read.apply(replica);
+        } catch (DataAccessException e) {
+            if (!isRetryableOnPrimary(e)) {
+                throw e;
+            }
+
+            logger.warn("[{}] Replica read failed, reading from primary :: replica={}, reasonCode={}", task, replica, e.getReasonCode());
+            return read.apply(primary);
+        }
+    }
+
+    private UserDao nextReplica() {
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    private static boolean isRetryableOnPrimary(DataAccessException e) {
+        int reasonCode = e.getReasonCode();
+        return reasonCode == DataAccessException.CONNECTION_FAILURE
+                || reasonCode == DataAccessException.TIMEOUT
+                || reasonCode == DataAccessException.TRANSIENT_FAILURE;
+    }
+
+    private boolean isRecentlyWritten(String prefix, String key) {
+        if (key == null) {
+            return false;
+        }
+
+        long now = nanoTicker.getAsLong();
+        long deadline = overflowDeadline.get();
+        if (deadline != NO_DEADLINE && now - deadline < 0) {
+            return true;
+        }
+
+        String trackedKey = prefix + key;
+        Long expiresAt = recentWrites.get(trackedKey);
+        if (expiresAt == null) {
+            return false;
+        }
+
+        if (now - expiresAt < 0) {
+            return true;
+        }
+
+        recentWrites.remove(trackedKey, expiresAt);
+        return false;
+    }
+
+    private void markWritten(User user) {
+        if (user != null) {
+            mark(EMAIL_PREFIX, user.getEmail());
+            mark(USERNAME_PREFIX, user.getUsername());
+        }
+    }
+
+    private void mark(String prefix, String key) {
+        if (key == null) {
+            return;
+        }
+
+        long now = nanoTicker.getAsLong();
+        long expiresAt = now + windowNanos;
+        String trackedKey = prefix + key;
+
+        purgeExpired(now);
+
+        if (recentWrites.size() >= maximumTrackedKeys && !recentWrites.containsKey(trackedKey)) {
+            // Key can not be remembered, all key reads go to primary until it would expire
+            long newDeadline = expiresAt == NO_DEADLINE ? 1 : expiresAt;
+            overflowDeadline.updateAndGet(deadline -> deadline == NO_DEADLINE || newDeadline - deadline > 0 ? newDeadline : deadline);
+            return;
+        }
+
+        if (recentWrites.put(trackedKey, expiresAt) == null) {
+            expirations.add(new Expiration(trackedKey, expiresAt));
+        }
+    }
+
+    /**
+     * Removes expired keys from head of expiration queue, a key written again is queued again with its new
+     * expiration when polled. Every key is polled once per window, so a write costs amortized constant time.
+     * A single writer purges at a time, others skip it.
+     */
+    private void purgeExpired(long now) {
+        if (!purgeLock.tryLock()) {
+            return;
+        }
+
+        try {
+            Expiration expiration;
+            while ((expiration = expirations.peek()) != null && now - expiration.expiresAt >= 0) {
+                expirations.poll();
+
+                Long expiresAt = recentWrites.computeIfPresent(expiration.trackedKey, (trackedKey, current) -> now - current >= 0 ? null : current);
+                if (expiresAt != null) {
+                    expirations.add(new Expiration(expiration.trackedKey, expiresAt));
+                }
+            }
+        } finally {
+            purgeLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("primary", primary)
+                .append("replicas", replicas)
+                .append("windowNanos", windowNanos)
+                .append("maximumTrackedKeys", maximumTrackedKeys)
+                .append("trackedKeyCount", recentWrites.size())
+                .toString();
+    }
+
+    private static final class Expiration {
+        private final String trackedKey;
+        private final long expiresAt;
+
+        private Expiration(String trackedKey, long expiresAt) {
+            this.trackedKey = trackedKey;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReplicaRead<T> {
+        T apply(UserDao dao) throws DataAccessException;
+    }
+}
@@ -0,0 +1,598 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * {@link UserDao} buffering update and updatePasswordByUsername calls and writing them to the wrapped dao
+ * in background. Buffer keeps only the latest version of each user, so a burst of writes to the same user
+ * costs a single write per changed field group when it is flushed.
+ * <p>
+ * Buffer is flushed when it has batch size users or flush interval passes, whichever comes first. Reads
+ * return buffered versions of users. Creates and conditional credential updates are not buffered, the latter
+ * flushes buffered version of the user first so its condition is checked against the data source.
+ * <p>
+ * With {@link Durability#BUFFERED} a write returns once it is buffered and is lost if the process dies
+ * before flush. With {@link Durability#FLUSHED} it returns after the flush writing it, still sharing that
+ * flush with other writes. Writes failing by connection failure, timeout or transient failure are retried
+ * on next flush, others are dropped and logged.
+ */
+public class WriteBehindUserDao implements UserDao, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindUserDao.class);
+
+    /**
+     * When a buffered write is acknowledged
+     */
+    public enum Durability {
+
+        /**
+         * After it is buffered
+         */
+        BUFFERED,
+
+        /**
+         * After it is written to the wrapped dao
+         */
+        FLUSHED
+    }
+
+    private final UserDao userDao;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Durability durability;
+    private final ConcurrentHashMap<String, PendingWrite> pendingByUsername;
+    private final ConcurrentHashMap<String, String> pendingUsernamesByEmail;
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock;
+    /**
+     * Read locked while buffering and write locked by close, so no write is buffered after close drains the buffer
+     */
+    private final ReadWriteLock closeLock;
+    private final AtomicBoolean flushScheduled;
+    private final LongAdder bufferedWriteCount;
+    private final LongAdder coalescedWriteCount;
+    private final LongAdder flushedWriteCount;
+    private final LongAdder droppedWriteCount;
+
+    private volatile boolean closed;
+
+    private WriteBehindUserDao(Builder builder) {
+        this.userDao = builder.userDao;
+        this.batchSize = builder.batchSize;
+        this.flushInterval = builder.flushInterval;
+        this.durability = builder.durability;
+        this.pendingByUsername = new ConcurrentHashMap<>();
+        this.pendingUsernamesByEmail = new ConcurrentHashMap<>();
+        this.flushLock = new Object();
+        this.closeLock = new ReentrantReadWriteLock();
+        this.flushScheduled = new AtomicBoolean();
+        this.bufferedWriteCount = new LongAdder();
+        this.coalescedWriteCount = new LongAdder();
+        this.flushedWriteCount = new LongAdder();
+        this.droppedWriteCount = new LongAdder();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws DataAccessException {
+        PendingWrite pending = username == null ? null : pendingByUsername.get(username);
+        if (pending != null) {
+            return Optional.of(pending.user);
+        }
+
+        return userDao.findByUsername(username);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws DataAccessException {
+        PendingWrite pending = findPendingByEmail(email);
+        if (pending != null) {
+            return Optional.of(pending.user);
+        }
+
+        return userDao.findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByEmails(Collection<String> emails) throws DataAccessException {
+        return overlay(userDao.findByEmails(emails));
+    }
+
+    @Override
+    public List<User> find() throws DataAccessException {
+        return overlay(userDao.find());
+    }
+
+    @Override
+    public void forEach(Consumer<? super User> consumer) throws DataAccessException {
+        notNull(consumer);
+        userDao.forEach(user -> consumer.accept(overlay(user)));
+    }
+
+    @Override
+    public List<User> findPage(String afterUsername, int limit) throws DataAccessException {
+        return overlay(userDao.findPage(afterUsername, limit));
+    }
+
+    @Override
+    public User create(User user) throws DataAccessException {
+        return userDao.create(user);
+    }
+
+    @Override
+    public Map<Integer, DataAccessException> createAll(List<? extends User> users) throws DataAccessException {
+        return userDao.createAll(users);
+    }
+
+    /**
+     * Buffers new first and last name of user found by username, or by email if username is not given.
+     * User is read from wrapped dao only if it is not buffered yet.
+     * @throws DataAccessException with NOT_FOUND reason if no user is found
+     */
+    @Override
+    public User update(User user) throws DataAccessException {
+        notNull(user);
+
+        boolean byUsername = StringUtils.isNotBlank(user.getUsername());
+        String key = byUsername ? user.getUsername() : user.getEmail();
+        User current = (byUsername ? findByUsername(key) : findByEmail(key))
+                .orElseThrow(() -> new DataAccessException("User not found :: key=" + key, DataAccessException.NOT_FOUND));
+
+        PendingWrite pending = buffer(current, latest -> copy(latest, user.getFirstName(), user.getLastName(), latest.getCredential()), true, false);
+        awaitIfFlushed(pending);
+        return pending.user;
+    }
+
+    /**
+     * Buffers new password, user is read from wrapped dao only if it is not buffered yet
+     * @throws DataAccessException with NOT_FOUND reason if no user is found
+     */
+    @Override
+    public void updatePasswordByUsername(String username, String password) throws DataAccessException {
+        User current = findByUsername(username)
+                .orElseThrow(() -> new DataAccessException("User not found :: username=" + username, DataAccessException.NOT_FOUND));
+
+        PendingWrite pending = buffer(current, latest -> copy(latest, latest.getFirstName(), latest.getLastName(), password), false, true);
+        awaitIfFlushed(pending);
+    }
+
+    /**
+     * Flushes buffered version of the user only, then updates the wrapped dao directly. Waits for at most
+     * a batch being flushed at the same time.
+     */
+    @Override
+    public Optional<User> updateCredentialByEmail(String email, String expectedCredential, String credential) throws DataAccessException {
+        if (findPendingByEmail(email) != null) {
+            synchronized (flushLock) {
+                PendingWrite pending = findPendingByEmail(email);
+                if (pending != null) {
+                    writeBatch(Collections.singletonList(pending));
+                }
+            }
+        }
+
+        return userDao.updateCredentialByEmail(email, expectedCredential, credential);
+    }
+
+    /**
+     * Writes all buffered users to wrapped dao in batches and waits until they are written. Flush lock is
+     * held per batch, so a conditional credential update doesn't wait for the whole buffer.
+     * Users buffered while flushing may be left for next flush.
+     */
+    public void flush() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        for (PendingWrite pending : pendingByUsername.values()) {
+            batch.add(pending);
+            if (batch.size() == batchSize) {
+                writeBatchLocked(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeBatchLocked(batch);
+        }
+    }
+
+    private void writeBatchLocked(List<PendingWrite> batch) {
+        synchronized (flushLock) {
+            writeBatch(batch);
+        }
+    }
+
+    /**
+     * @return count of users waiting to be written
+     */
+    public int getPendingCount() {
+        return pendingByUsername.size();
+    }
+
+    /**
+     * @return count of update and updatePasswordByUsername calls buffered
+     */
+    public long getBufferedWriteCount() {
+        return bufferedWriteCount.sum();
+    }
+
+    /**
+     * @return count of buffered writes merged into a user that was already buffered, so they didn't cost a write
+     */
+    public long getCoalescedWriteCount() {
+        return coalescedWriteCount.sum();
+    }
+
+    /**
+     * @return count of writes done on wrapped dao by flushes
+     */
+    public long getFlushedWriteCount() {
+        return flushedWriteCount.sum();
+    }
+
+    /**
+     * @return count of buffered users dropped because wrapped dao rejected them
+     */
+    public long getDroppedWriteCount() {
+        return droppedWriteCount.sum();
+    }
+
+    /**
+     * Stops background flushes and writes all buffered users. Writes after close are rejected.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushInterval.toMillis() + 10_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Retryable failures are kept in buffer, draining stops when a flush makes no progress
+        int pendingCount = pendingByUsername.size();
+        while (pendingCount > 0) {
+            flush();
+
+            int remaining = pendingByUsername.size();
+            if (remaining >= pendingCount) {
+                logger.error("[close] Buffered users could not be written :: pendingCount={}", remaining);
+                failAll(new DataAccessException("Write-behind dao is closed before flushing", DataAccessException.UNCATEGORIZED));
+                break;
+            }
+            pendingCount = remaining;
+        }
+
+        logger.info("[close] Write-behind dao is closed :: bufferedWriteCount={}, coalescedWriteCount={}, flushedWriteCount={}, droppedWriteCount={}",
+                bufferedWriteCount.sum(), coalescedWriteCount.sum(), flushedWriteCount.sum(), droppedWriteCount.sum());
+    }
+
+    private PendingWrite buffer(User current, UnaryOperator<User> change, boolean profileChanged, boolean passwordChanged) {
+        PendingWrite pending;
+
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-behind dao is closed");
+            }
+
+            pending = pendingByUsername.compute(current.getUsername(), (username, previous) -> {
+                PendingWrite buffered;
+                if (previous == null) {
+                    buffered = new PendingWrite(change.apply(current), profileChanged, passwordChanged);
+                } else {
+                    coalescedWriteCount.increment();
+                    buffered = new PendingWrite(change.apply(previous.user),
+                            previous.profileChanged || profileChanged, previous.passwordChanged || passwordChanged);
+
+                    // Acknowledges writers of previous version when merged version is written
+                    buffered.flushed.whenComplete((result, failure) -> complete(previous, failure));
+                }
+
+                // Mapped within compute, so it is never removed by a flush of the previous version
+                pendingUsernamesByEmail.put(buffered.user.getEmail(), username);
+                return buffered;
+            });
+        } finally {
+            closeLock.readLock().unlock();
+        }
+
+        bufferedWriteCount.increment();
+
+        if (pendingByUsername.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+
+        return pending;
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        long startTime = System.nanoTime();
+        int retained = 0;
+
+        for (PendingWrite pending : batch) {
+            // Already written by another flush or replaced by a newer version, which includes its changes
+            if (pendingByUsername.get(pending.user.getUsername()) != pending) {
+                continue;
+            }
+
+            try {
+                if (pending.profileChanged) {
+                    userDao.update(pending.user);
+                    flushedWriteCount.increment();
+                }
+
+                if (pending.passwordChanged) {
+                    userDao.updatePasswordByUsername(pending.user.getUsername(), pending.user.getCredential());
+                    flushedWriteCount.increment();
+                }
+
+                // A version buffered while writing stays for next flush
+                remove(pending);
+                complete(pending, null);
+            } catch (DataAccessException e) {
+                if (isRetryable(e)) {
+                    retained++;
+                    logger.warn("[writeBatch] Buffered user could not be written, retrying on next flush :: username={}, reasonCode={}",
+                            pending.user.getUsername(), e.getReasonCode());
+                } else {
+                    droppedWriteCount.increment();
+                    logger.error("[writeBatch] Buffered user is rejected and dropped :: username={}, reasonCode={}",
+                            pending.user.getUsername(), e.getReasonCode(), e);
+                    remove(pending);
+                }
+
+                complete(pending, e);
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("[writeBatch] Buffered users have been written :: batchSize={}, retained={}, elapsedMicros={}",
+                    batch.size(), retained, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * Removes email mapping within the same atomic operation, so a version buffered concurrently keeps it
+     */
+    private void remove(PendingWrite pending) {
+        pendingByUsername.computeIfPresent(pending.user.getUsername(), (username, current) -> {
+            if (current != pending) {
+                return current;
+            }
+
+            pendingUsernamesByEmail.remove(pending.user.getEmail(), username);
+            return null;
+        });
+    }
+
+    /**
+     * Acknowledges writers of a buffered version. A retained version gets a new future, so writers buffering
+     * it again wait for the retry.
+     */
+    private void complete(PendingWrite pending, Throwable failure) {
+        if (failure == null) {
+            pending.flushed.complete(null);
+            return;
+        }
+
+        pending.flushed.completeExceptionally(failure);
+        if (pendingByUsername.get(pending.user.getUsername()) == pending) {
+            pendingByUsername.replace(pending.user.getUsername(), pending,
+                    new PendingWrite(pending.user, pending.profileChanged, pending.passwordChanged));
+        }
+    }
+
+    private void failAll(DataAccessException failure) {
+        for (PendingWrite pending : pendingByUsername.values()) {
+            pending.flushed.completeExceptionally(failure);
+        }
+    }
+
+    private void awaitIfFlushed(PendingWrite pending) {
+        if (durability != Durability.FLUSHED) {
+            return;
+        }
+
+        try {
+            pending.flushed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof DataAccessException) {
+                throw (DataAccessException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("[flushQuietly] Unable to flush buffered users", e);
+        }
+    }
+
+    private PendingWrite findPendingByEmail(String email) {
+        String username = email == null ? null : pendingUsernamesByEmail.get(email);
+        return username == null ? null : pendingByUsername.get(username);
+    }
+
+    private List<User> overlay(List<User> users) {
+        if (pendingByUsername.isEmpty()) {
+            return users;
+        }
+
+        List<User> overlaid = new ArrayList<>(users.size());
+        for (User user : users) {
+            overlaid.add(overlay(user));
+        }
+        return overlaid;
+    }
+
+    private User overlay(User user) {
+        PendingWrite pending = user.getUsername() == null ? null : pendingByUsername.get(user.getUsername());
+        return pending == null ? user : pending.user;
+    }
+
+    private static boolean isRetryable(DataAccessException e) {
+        int reasonCode = e.getReasonCode();
+        return reasonCode == DataAccessException.CONNECTION_FAILURE
+                || reasonCode == DataAccessException.TIMEOUT
+                || reasonCode == DataAccessException.TRANSIENT_FAILURE;
+    }
+
+    private static User copy(User user, String firstName, String lastName, String credential) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(user.getUsername())
+                .withEmail(user.getEmail())
+                .withFirstName(firstName)
+                .withLastName(lastName)
+                .withCredential(credential)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("userDao", userDao)
+                .append("batchSize", batchSize)
+                .append("flushInterval", flushInterval)
+                .append("durability", durability)
+                .append("pendingCount", pendingByUsername.size())
+                .toString();
+    }
+
+    /**
+     * Latest buffered version of a user and field groups changed since last flush
+     */
+    private static final class PendingWrite {
+        final User user;
+        final boolean profileChanged;
+        final boolean passwordChanged;
+        final CompletableFuture<Void> flushed;
+
+        PendingWrite(User user, boolean profileChanged, boolean passwordChanged) {
+            this.user = user;
+            this.profileChanged = profileChanged;
+            this.passwordChanged = passwordChanged;
+            this.flushed = new CompletableFuture<>();
+        }
+    }
+
+    public static final class Builder {
+        private UserDao userDao;
+        private int batchSize = 100;
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private Durability durability = Durability.BUFFERED;
+
+        private Builder() {
+        }
+
+        public static Builder aWriteBehindUserDao() {
+            return new Builder();
+        }
+
+        /**
+         * Dao that buffered writes are flushed to, required
+         */
+        public Builder withUserDao(UserDao userDao) {
+            this.userDao = userDao;
+            return this;
+        }
+
+        /**
+         * Count of buffered users that triggers a flush, and users written per batch. 100 by default
+         */
+        public Builder withBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Maximum time a write stays in buffer unless batch size is reached first, 1 second by default
+         */
+        public Builder withFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * {@link Durability#BUFFERED} by default
+         */
+        public Builder withDurability(Durability durability) {
+            this.durability = durability;
+            return this;
+        }
+
+        public WriteBehindUserDao build() {
+            notNull(userDao, "User dao should be given");
+            notNull(flushInterval, "Flush interval should be given");
+            notNull(durability, "Durability should be given");
+
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size should be positive");
+            }
+
+            if (flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval should be positive");
+            }
+
+            return new WriteBehindUserDao(this);
+        }
+    }
+}
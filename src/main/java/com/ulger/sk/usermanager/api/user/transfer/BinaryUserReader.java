@@ -0,0 +1,122 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.cache.UserSerializer;
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static com.ulger.sk.usermanager.api.user.transfer.BinaryUserWriter.BLOCK_HEADER_SIZE;
+import static com.ulger.sk.usermanager.api.user.transfer.BinaryUserWriter.MAGIC;
+import static com.ulger.sk.usermanager.api.user.transfer.BinaryUserWriter.MAXIMUM_BLOCK_SIZE;
+import static com.ulger.sk.usermanager.api.user.transfer.BinaryUserWriter.VERSION;
+
+/**
+ * Reader of {@link UserTransferFormat#BINARY}, reads a block at a time and checks its CRC before
+ * returning any of its records
+ */
+final class BinaryUserReader implements UserReader {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer blockHeader;
+    private final CRC32 crc;
+    private ByteBuffer payload;
+    private int remainingRecords;
+    private long blockNumber;
+    private boolean ended;
+
+    BinaryUserReader(ReadableByteChannel channel, int blockSize) throws IOException {
+        this.channel = channel;
+        this.blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        this.crc = new CRC32();
+        this.payload = ByteBuffer.allocate(blockSize);
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(header);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary user export");
+        }
+
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported binary user export version :: version=" + header.getInt(4));
+        }
+    }
+
+    @Override
+    public User next() throws IOException {
+        while (remainingRecords == 0) {
+            if (ended || !readBlock()) {
+                return null;
+            }
+        }
+
+        remainingRecords--;
+        if (payload.remaining() < 4) {
+            throw new IOException("Block ends within a record :: block=" + blockNumber);
+        }
+
+        int length = payload.getInt();
+        if (length < 0 || length > payload.remaining()) {
+            throw new IOException("Invalid record length :: block=" + blockNumber + ", length=" + length);
+        }
+
+        int position = payload.position();
+        payload.position(position + length);
+        return UserSerializer.deserialize(Arrays.copyOfRange(payload.array(), position, position + length));
+    }
+
+    /**
+     * @return false at end marker
+     */
+    private boolean readBlock() throws IOException {
+        blockHeader.clear();
+        readFully(blockHeader);
+        blockNumber++;
+
+        int recordCount = blockHeader.getInt(0);
+        int payloadLength = blockHeader.getInt(4);
+        int checksum = blockHeader.getInt(8);
+
+        if (recordCount < 0 || payloadLength < 0) {
+            throw new IOException("Invalid block header :: block=" + blockNumber);
+        }
+
+        if (payloadLength > MAXIMUM_BLOCK_SIZE - BLOCK_HEADER_SIZE) {
+            throw new IOException("Block is larger than maximum block size :: block=" + blockNumber + ", payloadLength=" + payloadLength);
+        }
+
+        if (recordCount == 0) {
+            ended = true;
+            return false;
+        }
+
+        if (payload.capacity() < payloadLength) {
+            payload = ByteBuffer.allocate(payloadLength);
+        }
+
+        payload.clear().limit(payloadLength);
+        readFully(payload);
+
+        crc.reset();
+        crc.update(payload.array(), 0, payloadLength);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Block checksum mismatch :: block=" + blockNumber);
+        }
+
+        payload.flip();
+        remainingRecords = recordCount;
+        return true;
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Binary user export is truncated :: block=" + blockNumber);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.cache.UserSerializer;
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Writer of {@link UserTransferFormat#BINARY}, buffers records into a block and writes the block when it is full
+ */
+final class BinaryUserWriter implements UserWriter {
+
+    static final int MAGIC = 0x55535258;
+    static final int VERSION = 1;
+    static final int BLOCK_HEADER_SIZE = 12;
+    /**
+     * Upper bound of a block with its header, so a reader never allocates more for a corrupted payload length
+     */
+    static final int MAXIMUM_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final CRC32 crc;
+    private ByteBuffer block;
+    private int recordCount;
+
+    BinaryUserWriter(WritableByteChannel channel, int blockSize) throws IOException {
+        this.channel = channel;
+        this.crc = new CRC32();
+        this.block = ByteBuffer.allocate(blockSize);
+
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        writeFully(header);
+
+        block.position(BLOCK_HEADER_SIZE);
+    }
+
+    @Override
+    public void write(User user) throws IOException {
+        byte[] record = UserSerializer.serialize(user);
+        int size = 4 + record.length;
+
+        if (BLOCK_HEADER_SIZE + size > MAXIMUM_BLOCK_SIZE) {
+            throw new IOException("User is larger than maximum block size :: username=" + user.getUsername() + ", size=" + size);
+        }
+
+        if (block.remaining() < size) {
+            if (recordCount > 0) {
+                writeBlock();
+            }
+
+            if (block.remaining() < size) {
+                // A record larger than block size gets a block of its own
+                block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + size);
+                block.position(BLOCK_HEADER_SIZE);
+            }
+        }
+
+        block.putInt(record.length).put(record);
+        recordCount++;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (recordCount > 0) {
+            writeBlock();
+        }
+
+        // Empty block marks the end, so a truncated stream is told apart from a complete one
+        writeBlock();
+    }
+
+    private void writeBlock() throws IOException {
+        int payloadLength = block.position() - BLOCK_HEADER_SIZE;
+
+        crc.reset();
+        crc.update(block.array(), BLOCK_HEADER_SIZE, payloadLength);
+
+        block.putInt(0, recordCount);
+        block.putInt(4, payloadLength);
+        block.putInt(8, (int) crc.getValue());
+        block.flip();
+        writeFully(block);
+
+        block.clear();
+        block.position(BLOCK_HEADER_SIZE);
+        recordCount = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.ulger.sk.usermanager.api.user.transfer.CsvUserWriter.HEADER;
+
+/**
+ * Reader of {@link UserTransferFormat#CSV}. Quoted fields may have commas, quotes and line breaks,
+ * both LF and CRLF line endings are accepted.
+ */
+final class CsvUserReader implements UserReader {
+
+    private static final int END = -1;
+
+    private final Reader reader;
+    private final String[] fields;
+    private final StringBuilder field;
+    private long recordNumber;
+
+    CsvUserReader(ReadableByteChannel channel, int bufferSize) throws IOException {
+        this.reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), bufferSize), bufferSize);
+        this.fields = new String[HEADER.length];
+        this.field = new StringBuilder();
+
+        if (!readRecord() || !Arrays.equals(HEADER, fields)) {
+            throw new IOException("CSV header should be " + String.join(",", HEADER));
+        }
+    }
+
+    @Override
+    public User next() throws IOException {
+        if (!readRecord()) {
+            return null;
+        }
+
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(fields[0])
+                .withEmail(fields[1])
+                .withFirstName(fields[2])
+                .withLastName(fields[3])
+                .withCredential(fields[4])
+                .build();
+    }
+
+    /**
+     * Reads fields of next record into fields array
+     * @return false at the end of stream
+     */
+    private boolean readRecord() throws IOException {
+        int c = reader.read();
+        if (c == END) {
+            return false;
+        }
+
+        recordNumber++;
+        int fieldIndex = 0;
+
+        while (true) {
+            field.setLength(0);
+            boolean quoted = c == '"';
+
+            if (quoted) {
+                while (true) {
+                    c = reader.read();
+                    if (c == END) {
+                        throw new IOException("Quoted field is not closed :: record=" + recordNumber);
+                    }
+
+                    if (c == '"') {
+                        c = reader.read();
+                        if (c != '"') {
+                            break;
+                        }
+                    }
+
+                    field.append((char) c);
+                }
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != END) {
+                    field.append((char) c);
+                    c = reader.read();
+                }
+            }
+
+            if (fieldIndex == fields.length) {
+                throw new IOException("Too many fields :: record=" + recordNumber);
+            }
+            fields[fieldIndex++] = quoted || field.length() > 0 ? field.toString() : null;
+
+            if (c == ',') {
+                c = reader.read();
+                continue;
+            }
+
+            if (c == '\r') {
+                c = reader.read();
+                if (c != '\n') {
+                    throw new IOException("CR should be followed by LF :: record=" + recordNumber);
+                }
+            }
+
+            if (c != '\n' && c != END) {
+                throw new IOException("Unexpected character after quoted field :: record=" + recordNumber);
+            }
+
+            break;
+        }
+
+        if (fieldIndex != fields.length) {
+            throw new IOException("Too few fields :: record=" + recordNumber + ", fieldCount=" + fieldIndex);
+        }
+
+        return true;
+    }
+}
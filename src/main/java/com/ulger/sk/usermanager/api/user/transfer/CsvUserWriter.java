@@ -0,0 +1,83 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer of {@link UserTransferFormat#CSV}, records end with CRLF as in RFC 4180
+ */
+final class CsvUserWriter implements UserWriter {
+
+    static final String[] HEADER = {"username", "email", "first_name", "last_name", "credential"};
+    private static final String LINE_END = "\r\n";
+
+    private final Writer writer;
+
+    CsvUserWriter(WritableByteChannel channel, int bufferSize) throws IOException {
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), bufferSize), bufferSize);
+
+        for (int i = 0; i < HEADER.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(HEADER[i]);
+        }
+        writer.write(LINE_END);
+    }
+
+    @Override
+    public void write(User user) throws IOException {
+        writeField(user.getUsername());
+        writer.write(',');
+        writeField(user.getEmail());
+        writer.write(',');
+        writeField(user.getFirstName());
+        writer.write(',');
+        writeField(user.getLastName());
+        writer.write(',');
+        writeField(user.getCredential());
+        writer.write(LINE_END);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        if (!value.isEmpty() && !needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Streams all users of a source to a channel in a {@link UserTransferFormat}. Users are written as they are
+ * passed by source, so memory use doesn't depend on count of users if source streams them,
+ * e.g. {@link UserDao#forEach(Consumer)}.
+ */
+public class UserExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExporter.class);
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final UserTransferFormat format;
+    private int bufferSize;
+
+    public UserExporter(UserTransferFormat format) {
+        notNull(format);
+        this.format = format;
+        this.bufferSize = DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * @param bufferSize size of block in binary format and of write buffer in CSV format, at most 16 MB
+     */
+    public UserExporter setBufferSize(int bufferSize) {
+        if (bufferSize < BinaryUserWriter.BLOCK_HEADER_SIZE + 4) {
+            throw new IllegalArgumentException("Buffer size is too small");
+        }
+
+        if (bufferSize > BinaryUserWriter.MAXIMUM_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Buffer size is too large");
+        }
+
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Writes all users of given dao, channel is not closed
+     * @return count of written users
+     */
+    public long export(UserDao userDao, WritableByteChannel channel) throws IOException {
+        notNull(userDao);
+        return export(userDao::forEach, channel);
+    }
+
+    /**
+     * Writes users passed by given source, channel is not closed
+     * @param usersSource passes users one by one to the consumer it is given
+     * @return count of written users
+     */
+    public long export(Consumer<Consumer<User>> usersSource, WritableByteChannel channel) throws IOException {
+        notNull(usersSource);
+        notNull(channel);
+
+        long startTime = System.nanoTime();
+        UserWriter writer = newWriter(channel);
+        long[] userCount = new long[1];
+
+        try {
+            usersSource.accept(user -> {
+                try {
+                    writer.write(user);
+                    userCount[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.finish();
+
+        logger.info("[export] Users have been exported :: format={}, userCount={}, elapsedMillis={}",
+                format, userCount[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        return userCount[0];
+    }
+
+    private UserWriter newWriter(WritableByteChannel channel) throws IOException {
+        switch (format) {
+            case BINARY:
+                return new BinaryUserWriter(channel, bufferSize);
+            case CSV:
+                return new CsvUserWriter(channel, bufferSize);
+            default:
+                throw new IllegalStateException("Unknown format :: format=" + format);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("format", format)
+                .append("bufferSize", bufferSize)
+                .toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts of an import with its throughput. Failed users are logged, not kept, so the result
+ * has a fixed size whatever the count of users.
+ */
+public class UserImportResult {
+
+    private final long readCount;
+    private final long failedCount;
+    private final long elapsedNanos;
+
+    public UserImportResult(long readCount, long failedCount, long elapsedNanos) {
+        this.readCount = readCount;
+        this.failedCount = failedCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getReadCount() {
+        return readCount;
+    }
+
+    public long getCreatedCount() {
+        return readCount - failedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return users read per second, created or failed
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : readCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("readCount", readCount)
+                .append("failedCount", failedCount)
+                .append("elapsedNanos", elapsedNanos)
+                .append("throughput", getThroughput())
+                .toString();
+    }
+}
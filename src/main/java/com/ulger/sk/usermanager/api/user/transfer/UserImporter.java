@@ -0,0 +1,136 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Reads users exported by {@link UserExporter} from a channel and creates them by {@link UserDao#createAll(List)}
+ * in batches. Only a batch of users is held in memory at a time.
+ * <p>
+ * A user that can not be created is logged and counted, import goes on with the others. A data source failure
+ * for a whole batch or a corrupted stream stops the import, users of previous batches stay created.
+ */
+public class UserImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImporter.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final UserDao userDao;
+    private int batchSize;
+    private int bufferSize;
+
+    public UserImporter(UserDao userDao) {
+        notNull(userDao);
+        this.userDao = userDao;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.bufferSize = UserExporter.DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * @param batchSize count of users passed to createAll at once
+     */
+    public UserImporter setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be positive");
+        }
+
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param bufferSize initial block buffer size in binary format and read buffer size in CSV format
+     */
+    public UserImporter setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size should be positive");
+        }
+
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Creates all users read from given channel, channel is not closed
+     * @throws IOException if stream is corrupted or truncated
+     * @throws DataAccessException if a batch can not be created at all
+     */
+    public UserImportResult importUsers(ReadableByteChannel channel, UserTransferFormat format) throws IOException {
+        notNull(channel);
+        notNull(format);
+
+        long startTime = System.nanoTime();
+        UserReader reader = newReader(channel, format);
+        List<User> batch = new ArrayList<>(batchSize);
+        long readCount = 0;
+        long failedCount = 0;
+
+        for (User user = reader.next(); user != null; user = reader.next()) {
+            batch.add(user);
+            readCount++;
+
+            if (batch.size() == batchSize) {
+                failedCount += createBatch(batch, readCount - batch.size());
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            failedCount += createBatch(batch, readCount - batch.size());
+        }
+
+        UserImportResult result = new UserImportResult(readCount, failedCount, System.nanoTime() - startTime);
+        logger.info("[importUsers] Users have been imported :: format={}, result={}", format, result);
+
+        return result;
+    }
+
+    /**
+     * @return count of failed users
+     */
+    private int createBatch(List<User> batch, long firstIndex) {
+        Map<Integer, DataAccessException> failures = userDao.createAll(batch);
+
+        for (Map.Entry<Integer, DataAccessException> failure : failures.entrySet()) {
+            logger.warn("[importUsers] User could not be created :: index={}, username={}, reasonCode={}",
+                    firstIndex + failure.getKey(), batch.get(failure.getKey()).getUsername(), failure.getValue().getReasonCode());
+        }
+
+        return failures.size();
+    }
+
+    private UserReader newReader(ReadableByteChannel channel, UserTransferFormat format) throws IOException {
+        switch (format) {
+            case BINARY:
+                return new BinaryUserReader(channel, bufferSize);
+            case CSV:
+                return new CsvUserReader(channel, bufferSize);
+            default:
+                throw new IllegalStateException("Unknown format :: format=" + format);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("userDao", userDao)
+                .append("batchSize", batchSize)
+                .append("bufferSize", bufferSize)
+                .toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.io.IOException;
+
+/**
+ * Reads users one by one in a format, keeping only a fixed size buffer
+ */
+interface UserReader {
+
+    /**
+     * @return next user, null at the end of stream
+     * @throws IOException if stream is corrupted or ends before its end marker
+     */
+    User next() throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+/**
+ * Formats of exported users
+ */
+public enum UserTransferFormat {
+
+    /**
+     * Header of magic and version, then blocks of length-prefixed {@link com.ulger.sk.usermanager.api.user.cache.UserSerializer}
+     * records. A block starts with its record count, payload length and CRC32 of payload, an empty block ends the stream.
+     * A block with its header is at most 16 MB.
+     */
+    BINARY,
+
+    /**
+     * RFC 4180 CSV in UTF-8 with a header row of username, email, first_name, last_name and credential.
+     * Null fields are empty, empty strings are quoted.
+     */
+    CSV
+}
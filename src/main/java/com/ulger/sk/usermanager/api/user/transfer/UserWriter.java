@@ -0,0 +1,18 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+
+import java.io.IOException;
+
+/**
+ * Writes users one by one in a format, keeping only a fixed size buffer
+ */
+interface UserWriter {
+
+    void write(User user) throws IOException;
+
+    /**
+     * Writes buffered users and end of stream, doesn't close the channel
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,119 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter. {@link #mightContain(byte[])} never returns false for a value that was put,
+ * but may return true for a value that was not, with the probability given at construction.
+ */
+public class BloomFilter {
+
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctionCount;
+
+    /**
+     * @param expectedInsertions number of values expected to be put
+     * @param falsePositiveProbability desired false positive probability when expected insertions are reached
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability should be between 0 and 1");
+        }
+
+        long expected = Math.max(1, expectedInsertions);
+        long optimalBits = (long) (-expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        long wordCount = Math.max(1, (optimalBits + 63) >>> 6);
+
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter would be too large :: expectedInsertions=" + expectedInsertions);
+        }
+
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bitCount = wordCount << 6;
+        this.hashFunctionCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+    }
+
+    public void put(String value) {
+        put(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void put(byte[] value) {
+        long hash1 = hash(value, SEED_1);
+        long hash2 = hash(value, SEED_2) | 1;
+
+        for (int i = 0; i < hashFunctionCount; i++) {
+            long bitIndex = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+            setBit(bitIndex);
+        }
+    }
+
+    public boolean mightContain(String value) {
+        return mightContain(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean mightContain(byte[] value) {
+        long hash1 = hash(value, SEED_1);
+        long hash2 = hash(value, SEED_2) | 1;
+
+        for (int i = 0; i < hashFunctionCount; i++) {
+            long bitIndex = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+            if ((words.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return size of filter in bits
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    private void setBit(long bitIndex) {
+        int wordIndex = (int) (bitIndex >>> 6);
+        long mask = 1L << bitIndex;
+
+        long word;
+        do {
+            word = words.get(wordIndex);
+            if ((word & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(wordIndex, word, word | mask));
+    }
+
+    static long hash(byte[] value, long seed) {
+        long hash = seed ^ (value.length * 0x100000001B3L);
+        for (byte b : value) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+
+        // Finalization step of MurmurHash3, spreads bits of FNV result
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("bitCount", bitCount)
+                .append("hashFunctionCount", hashFunctionCount)
+                .toString();
+    }
+}
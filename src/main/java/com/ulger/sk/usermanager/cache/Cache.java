@@ -1,6 +1,9 @@
 package com.ulger.sk.usermanager.cache;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface Cache<T> {
 
@@ -11,4 +14,45 @@ public interface Cache<T> {
     T get(Object id);
 
     Collection<T> getAll();
-}
\ No newline at end of file
+
+    /**
+     * Passes every cached value to given consumer. Default implementation iterates {@link #getAll()},
+     * implementations that build values on every getAll call should pass them one by one instead.
+     * @param consumer called for each cached value
+     */
+    default void forEachValue(Consumer<? super T> consumer) {
+        getAll().forEach(consumer);
+    }
+
+    /**
+     * Replaces all values of cache with given values. Implementations that are accessed concurrently should
+     * build the new content aside and swap it in, so readers see either old or new content and never block.
+     * @param values new content of cache
+     */
+    void replaceAll(Collection<T> values);
+
+    /**
+     * Same as {@link #replaceAll(Collection)} but values are pushed one by one by given source, so implementations
+     * can build the new content without holding all values in a list first. Default implementation collects them.
+     * @param valueSource passes all new values of cache to the consumer it is given
+     */
+    default void replaceAllFrom(Consumer<Consumer<T>> valueSource) {
+        List<T> values = new ArrayList<>();
+        valueSource.accept(values::add);
+        replaceAll(values);
+    }
+
+    /**
+     * @return count of cached values
+     */
+    default long getSize() {
+        return getAll().size();
+    }
+
+    /**
+     * @return count of values removed because of size limit, always 0 for unbounded caches
+     */
+    default long getEvictionCount() {
+        return 0;
+    }
+}
@@ -0,0 +1,188 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Immutable snapshot of cache statistics. Load times are durations of data source calls made on misses,
+ * in nanoseconds.
+ */
+public class CacheStats {
+
+    private long hitCount;
+    private long missCount;
+    private long loadSuccessCount;
+    private long loadFailureCount;
+    private long totalLoadTime;
+    private long loadTime50thPercentile;
+    private long loadTime95thPercentile;
+    private long loadTime99thPercentile;
+    private long evictionCount;
+    private long size;
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return ratio of hits to requests, 1 if there is no request
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long getLoadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return average duration of a load, 0 if there is no load
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = getLoadCount();
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    public long getLoadTime50thPercentile() {
+        return loadTime50thPercentile;
+    }
+
+    public long getLoadTime95thPercentile() {
+        return loadTime95thPercentile;
+    }
+
+    public long getLoadTime99thPercentile() {
+        return loadTime99thPercentile;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("hitCount", hitCount)
+                .append("missCount", missCount)
+                .append("hitRate", getHitRate())
+                .append("loadSuccessCount", loadSuccessCount)
+                .append("loadFailureCount", loadFailureCount)
+                .append("totalLoadTime", totalLoadTime)
+                .append("loadTime50thPercentile", loadTime50thPercentile)
+                .append("loadTime95thPercentile", loadTime95thPercentile)
+                .append("loadTime99thPercentile", loadTime99thPercentile)
+                .append("evictionCount", evictionCount)
+                .append("size", size)
+                .toString();
+    }
+
+    public static final class Builder {
+        private long hitCount;
+        private long missCount;
+        private long loadSuccessCount;
+        private long loadFailureCount;
+        private long totalLoadTime;
+        private long loadTime50thPercentile;
+        private long loadTime95thPercentile;
+        private long loadTime99thPercentile;
+        private long evictionCount;
+        private long size;
+
+        private Builder() {
+        }
+
+        public static Builder aCacheStats() {
+            return new Builder();
+        }
+
+        public Builder withHitCount(long hitCount) {
+            this.hitCount = hitCount;
+            return this;
+        }
+
+        public Builder withMissCount(long missCount) {
+            this.missCount = missCount;
+            return this;
+        }
+
+        public Builder withLoadSuccessCount(long loadSuccessCount) {
+            this.loadSuccessCount = loadSuccessCount;
+            return this;
+        }
+
+        public Builder withLoadFailureCount(long loadFailureCount) {
+            this.loadFailureCount = loadFailureCount;
+            return this;
+        }
+
+        public Builder withTotalLoadTime(long totalLoadTime) {
+            this.totalLoadTime = totalLoadTime;
+            return this;
+        }
+
+        public Builder withLoadTime50thPercentile(long loadTime50thPercentile) {
+            this.loadTime50thPercentile = loadTime50thPercentile;
+            return this;
+        }
+
+        public Builder withLoadTime95thPercentile(long loadTime95thPercentile) {
+            this.loadTime95thPercentile = loadTime95thPercentile;
+            return this;
+        }
+
+        public Builder withLoadTime99thPercentile(long loadTime99thPercentile) {
+            this.loadTime99thPercentile = loadTime99thPercentile;
+            return this;
+        }
+
+        public Builder withEvictionCount(long evictionCount) {
+            this.evictionCount = evictionCount;
+            return this;
+        }
+
+        public Builder withSize(long size) {
+            this.size = size;
+            return this;
+        }
+
+        public CacheStats build() {
+            CacheStats stats = new CacheStats();
+            stats.hitCount = this.hitCount;
+            stats.missCount = this.missCount;
+            stats.loadSuccessCount = this.loadSuccessCount;
+            stats.loadFailureCount = this.loadFailureCount;
+            stats.totalLoadTime = this.totalLoadTime;
+            stats.loadTime50thPercentile = this.loadTime50thPercentile;
+            stats.loadTime95thPercentile = this.loadTime95thPercentile;
+            stats.loadTime99thPercentile = this.loadTime99thPercentile;
+            stats.evictionCount = this.evictionCount;
+            stats.size = this.size;
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ulger.sk.usermanager.cache;
+
+/**
+ * JMX view of {@link CacheStats}, load times are in nanoseconds
+ */
+public interface CacheStatsMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    long getTotalLoadTime();
+
+    double getAverageLoadPenalty();
+
+    long getLoadTime50thPercentile();
+
+    long getLoadTime95thPercentile();
+
+    long getLoadTime99thPercentile();
+
+    long getEvictionCount();
+
+    long getSize();
+}
@@ -0,0 +1,125 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import static com.ulger.sk.usermanager.SkAssertions.notBlankByMessage;
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Exposes statistics of a cache as an MXBean. Every attribute read takes a fresh snapshot.
+ */
+public class CacheStatsMXBeanAdapter implements CacheStatsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheStatsMXBeanAdapter.class);
+
+    private static final String DOMAIN = "com.ulger.sk.usermanager";
+
+    private final Supplier<CacheStats> statsSupplier;
+
+    public CacheStatsMXBeanAdapter(Supplier<CacheStats> statsSupplier) {
+        notNull(statsSupplier);
+        this.statsSupplier = statsSupplier;
+    }
+
+    /**
+     * Registers statistics of a cache to platform MBean server
+     * @param cacheName name of the cache, unique among registered caches
+     * @param statsSupplier supplies statistics of the cache, e.g. getStats method of caching user manager
+     * @return registered object name, to be unregistered later
+     * @throws IllegalStateException if registration fails, e.g. name is already registered
+     */
+    public static ObjectName register(String cacheName, Supplier<CacheStats> statsSupplier) {
+        notBlankByMessage(cacheName, "Cache name should be given");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = objectName(cacheName);
+            server.registerMBean(new CacheStatsMXBeanAdapter(statsSupplier), objectName);
+            logger.info("[register] Cache statistics MBean is registered :: objectName={}", objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register cache statistics MBean of cache '" + cacheName + "'", e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        notNull(objectName);
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("[unregister] Unable to unregister cache statistics MBean :: objectName={}", objectName, e);
+        }
+    }
+
+    static ObjectName objectName(String cacheName) throws JMException {
+        return new ObjectName(DOMAIN + ":type=CacheStats,name=" + ObjectName.quote(cacheName));
+    }
+
+    @Override
+    public long getHitCount() {
+        return statsSupplier.get().getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return statsSupplier.get().getMissCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return statsSupplier.get().getHitRate();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return statsSupplier.get().getLoadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return statsSupplier.get().getLoadFailureCount();
+    }
+
+    @Override
+    public long getTotalLoadTime() {
+        return statsSupplier.get().getTotalLoadTime();
+    }
+
+    @Override
+    public double getAverageLoadPenalty() {
+        return statsSupplier.get().getAverageLoadPenalty();
+    }
+
+    @Override
+    public long getLoadTime50thPercentile() {
+        return statsSupplier.get().getLoadTime50thPercentile();
+    }
+
+    @Override
+    public long getLoadTime95thPercentile() {
+        return statsSupplier.get().getLoadTime95thPercentile();
+    }
+
+    @Override
+    public long getLoadTime99thPercentile() {
+        return statsSupplier.get().getLoadTime99thPercentile();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return statsSupplier.get().getEvictionCount();
+    }
+
+    @Override
+    public long getSize() {
+        return statsSupplier.get().getSize();
+    }
+}
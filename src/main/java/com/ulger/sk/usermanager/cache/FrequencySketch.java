@@ -0,0 +1,90 @@
+package com.ulger.sk.usermanager.cache;
+
+/**
+ * Count-Min sketch of 4-bit counters used to estimate how often a key was seen recently.
+ * Counters are halved when the sample size is reached, so old popularity fades out.
+ * This class is not thread safe, callers should guard it by their own lock.
+ */
+public class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedSize number of entries the sketch is expected to track, e.g. maximum size of cache
+     */
+    public FrequencySketch(long expectedSize) {
+        int capacity = ceilingPowerOfTwo((int) Math.min(Math.max(expectedSize, 16), 1 << 26));
+        this.table = new long[capacity];
+        this.counterMask = (capacity << 4) - 1;
+        this.sampleSize = 10 * capacity;
+    }
+
+    /**
+     * @return estimated frequency of key in range of 0 to 15
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counterIndex = counterIndex(hash, i);
+            int count = (int) ((table[counterIndex >>> 4] >>> ((counterIndex & 15) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Increments popularity of key, ages all counters when sample size is reached
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counterIndex = counterIndex(hash, i);
+            int slot = counterIndex >>> 4;
+            int shift = (counterIndex & 15) << 2;
+
+            if (((table[slot] >>> shift) & 0xF) < MAX_FREQUENCY) {
+                table[slot] += 1L << shift;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+
+        additions = additions >>> 1;
+    }
+
+    private int counterIndex(int hash, int depth) {
+        int h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h ^= h >>> 16;
+        return h & counterMask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 15);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+}
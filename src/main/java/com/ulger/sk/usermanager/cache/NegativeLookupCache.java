@@ -0,0 +1,172 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Remembers keys that were looked up and not found, for a limited time.
+ * Size is bounded, keys are kept in a queue in the order they are added, which is also the order they expire,
+ * so expired keys are purged and the oldest key is evicted to make room in amortized constant time.
+ * A flood of random keys can not grow it without limit nor make adding slower. Lookups don't lock,
+ * adds lock only to maintain the queue.
+ */
+public class NegativeLookupCache<K> {
+
+    private final ConcurrentHashMap<K, Entry<K>> expirations;
+    private final ArrayDeque<Entry<K>> insertionOrder;
+    private final AtomicLong generation;
+    private final long timeToLiveNanos;
+    private final int maximumSize;
+    private final LongSupplier nanoTicker;
+
+    public NegativeLookupCache(Duration timeToLive, int maximumSize) {
+        this(timeToLive, maximumSize, System::nanoTime);
+    }
+
+    public NegativeLookupCache(Duration timeToLive, int maximumSize, LongSupplier nanoTicker) {
+        notNull(timeToLive);
+        notNull(nanoTicker);
+
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size should be positive");
+        }
+
+        this.expirations = new ConcurrentHashMap<>();
+        this.insertionOrder = new ArrayDeque<>();
+        this.generation = new AtomicLong();
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maximumSize = maximumSize;
+        this.nanoTicker = nanoTicker;
+    }
+
+    /**
+     * Marks key as not existing until time to live passes. If cache is full, the oldest key is evicted.
+     */
+    public void add(K key) {
+        synchronized (insertionOrder) {
+            long now = nanoTicker.getAsLong();
+            purgeExpired(now);
+
+            while (expirations.size() >= maximumSize && evictOldest()) {
+                // Evict until there is room
+            }
+
+            Entry<K> entry = new Entry<>(key, now + timeToLiveNanos);
+            expirations.put(key, entry);
+            insertionOrder.add(entry);
+        }
+    }
+
+    /**
+     * Marks key as not existing unless a key is invalidated since given generation was read. A lookup should read
+     * {@link #getGeneration()} before querying source, so a key created while the query runs is not marked.
+     */
+    public void add(K key, long expectedGeneration) {
+        if (generation.get() != expectedGeneration) {
+            return;
+        }
+
+        add(key);
+
+        // Invalidation may have run between the check and the put, it increments generation before removing
+        if (generation.get() != expectedGeneration) {
+            expirations.remove(key);
+        }
+    }
+
+    /**
+     * @return count of invalidations, changes whenever a key is invalidated
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return true if key was marked as not existing and time to live has not passed yet
+     */
+    public boolean contains(K key) {
+        Entry<K> entry = expirations.get(key);
+        if (entry == null) {
+            return false;
+        }
+
+        if (nanoTicker.getAsLong() - entry.expiresAt < 0) {
+            return true;
+        }
+
+        expirations.remove(key, entry);
+        return false;
+    }
+
+    /**
+     * Removes key, should be called when key is created
+     */
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        expirations.remove(key);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (insertionOrder) {
+            expirations.clear();
+            insertionOrder.clear();
+        }
+    }
+
+    public int size() {
+        return expirations.size();
+    }
+
+    /**
+     * Each queued entry is polled once, so purging is constant time amortized over adds
+     */
+    private void purgeExpired(long now) {
+        for (Entry<K> head = insertionOrder.peek(); head != null && now - head.expiresAt >= 0; head = insertionOrder.peek()) {
+            insertionOrder.poll();
+            expirations.remove(head.key, head);
+        }
+    }
+
+    /**
+     * @return false if queue is empty
+     */
+    private boolean evictOldest() {
+        Entry<K> oldest = insertionOrder.poll();
+        if (oldest == null) {
+            return false;
+        }
+
+        // Entry of a key that is re-added or invalidated since doesn't remove anything, entries are compared by identity
+        expirations.remove(oldest.key, oldest);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("timeToLiveNanos", timeToLiveNanos)
+                .append("maximumSize", maximumSize)
+                .append("size", expirations.size())
+                .toString();
+    }
+
+    private static final class Entry<K> {
+
+        private final K key;
+        private final long expiresAt;
+
+        private Entry(K key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
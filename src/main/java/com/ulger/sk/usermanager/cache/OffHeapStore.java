@@ -0,0 +1,397 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded key value store keeping both records and hash index in direct memory, so stored entries
+ * cost no heap objects and are never scanned by garbage collector.
+ * <p>
+ * Records are appended to fixed size slabs used as a ring. When the ring is full, the oldest slab is
+ * reused and all entries still in it are evicted. Overwritten and removed records stay as garbage until
+ * their slab is reused. Index is an open addressing table of 64-bit key hash and record address pairs,
+ * its capacity is bounded so slot offsets fit in an int and a new key is rejected once the index is full.
+ * <p>
+ * Reads share a read lock, writes take the write lock.
+ */
+public class OffHeapStore {
+
+    private static final long HASH_SEED = 0x27D4EB2F165667C5L;
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int SLOT_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MINIMUM_INDEX_CAPACITY = 1024;
+    // Largest power of two whose slots fit in an int sized buffer
+    private static final int MAXIMUM_INDEX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_BYTES);
+    private static final long MAXIMUM_SIZE = MAXIMUM_INDEX_CAPACITY / 4;
+    private static final int ITERATION_CHUNK_SLOTS = 1024;
+
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final int[] slabEnds;
+    private final ReadWriteLock lock;
+
+    private ByteBuffer index;
+    private int indexMask;
+    private int writeSlab;
+    private int writeOffset;
+    private long size;
+    private long tombstones;
+    private long evictionCount;
+
+    /**
+     * @param maximumBytes maximum direct memory used by records, rounded down to multiple of slab size
+     * @param slabSize size of a single slab, a record larger than it is not stored
+     */
+    public OffHeapStore(long maximumBytes, int slabSize) {
+        if (slabSize <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Slab size is too small :: slabSize=" + slabSize);
+        }
+
+        long slabCount = maximumBytes / slabSize;
+        if (slabCount < 1 || slabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum bytes should hold at least one slab :: maximumBytes=" + maximumBytes);
+        }
+
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) slabCount];
+        this.slabEnds = new int[(int) slabCount];
+        this.lock = new ReentrantReadWriteLock();
+        this.index = ByteBuffer.allocateDirect(MINIMUM_INDEX_CAPACITY * SLOT_BYTES);
+        this.indexMask = MINIMUM_INDEX_CAPACITY - 1;
+    }
+
+    /**
+     * Stores value of key, replacing previous one. If record doesn't fit in a slab, removes previous value
+     * so a stale value is never returned. A new key is not stored when index is full.
+     * @return true if value is stored
+     */
+    public boolean put(byte[] key, byte[] value) {
+        long hash = hash(key);
+        int recordSize = RECORD_HEADER_BYTES + key.length + value.length;
+
+        lock.writeLock().lock();
+        try {
+            if (recordSize > slabSize) {
+                removeEntry(key, hash);
+                return false;
+            }
+
+            if (size >= MAXIMUM_SIZE && findSlot(key, hash) < 0) {
+                return false;
+            }
+
+            long address = append(key, value, recordSize);
+
+            int slot = findSlot(key, hash);
+            if (slot >= 0) {
+                index.putLong(slot * SLOT_BYTES + 8, address);
+                return true;
+            }
+
+            insert(hash, address);
+            size++;
+
+            if ((size + tombstones) * 2 > indexMask + 1) {
+                int capacity = indexMask + 1;
+                rehash(size * 4 > capacity && capacity < MAXIMUM_INDEX_CAPACITY ? capacity * 2 : capacity);
+            }
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return copy of stored value or null
+     */
+    public byte[] get(byte[] key) {
+        long hash = hash(key);
+
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+
+            return readValue(index.getLong(slot * SLOT_BYTES + 8));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean remove(byte[] key) {
+        long hash = hash(key);
+
+        lock.writeLock().lock();
+        try {
+            return removeEntry(key, hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Walks index in bounded slot ranges, copying values of one range under read lock and passing them to
+     * consumer after releasing it, so writers wait only for a range and consumer may write to this store.
+     * Iteration is weakly consistent: a value written concurrently may or may not be passed, and if index
+     * is rehashed meanwhile some values may be passed twice or missed.
+     */
+    public void forEachValue(Consumer<byte[]> consumer) {
+        List<byte[]> values = new ArrayList<>();
+        int from = 0;
+
+        while (true) {
+            lock.readLock().lock();
+            try {
+                int to = Math.min(from + ITERATION_CHUNK_SLOTS, indexMask + 1);
+                for (int slot = from; slot < to; slot++) {
+                    long slotHash = index.getLong(slot * SLOT_BYTES);
+                    if (slotHash != EMPTY && slotHash != TOMBSTONE) {
+                        values.add(readValue(index.getLong(slot * SLOT_BYTES + 8)));
+                    }
+                }
+                from = to;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (values.isEmpty() && from > indexMask) {
+                return;
+            }
+
+            values.forEach(consumer);
+            values.clear();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return count of entries evicted because their slab was reused
+     */
+    public long getEvictionCount() {
+        lock.readLock().lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return direct memory allocated by slabs and index
+     */
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = index.capacity();
+            for (ByteBuffer slab : slabs) {
+                if (slab != null) {
+                    bytes += slab.capacity();
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long append(byte[] key, byte[] value, int recordSize) {
+        if (slabs[writeSlab] == null) {
+            slabs[writeSlab] = ByteBuffer.allocateDirect(slabSize);
+        } else if (writeOffset + recordSize > slabSize) {
+            slabEnds[writeSlab] = writeOffset;
+            writeSlab = (writeSlab + 1) % slabs.length;
+            writeOffset = 0;
+
+            if (slabs[writeSlab] == null) {
+                slabs[writeSlab] = ByteBuffer.allocateDirect(slabSize);
+            } else {
+                evictSlab(writeSlab);
+            }
+        }
+
+        ByteBuffer slab = slabs[writeSlab];
+        slab.putInt(writeOffset, key.length);
+        slab.putInt(writeOffset + 4, value.length);
+
+        ByteBuffer record = slab.duplicate();
+        record.position(writeOffset + RECORD_HEADER_BYTES);
+        record.put(key);
+        record.put(value);
+
+        long address = address(writeSlab, writeOffset);
+        writeOffset += recordSize;
+        return address;
+    }
+
+    /**
+     * Walks records of slab and evicts the ones index still points to, overwritten and removed records are skipped
+     */
+    private void evictSlab(int slabIndex) {
+        ByteBuffer slab = slabs[slabIndex];
+        int offset = 0;
+
+        while (offset < slabEnds[slabIndex]) {
+            int keyLength = slab.getInt(offset);
+            byte[] key = new byte[keyLength];
+            ByteBuffer record = slab.duplicate();
+            record.position(offset + RECORD_HEADER_BYTES);
+            record.get(key);
+
+            int slot = findSlot(key, hash(key));
+            if (slot >= 0 && index.getLong(slot * SLOT_BYTES + 8) == address(slabIndex, offset)) {
+                index.putLong(slot * SLOT_BYTES, TOMBSTONE);
+                size--;
+                tombstones++;
+                evictionCount++;
+            }
+
+            offset += RECORD_HEADER_BYTES + keyLength + slab.getInt(offset + 4);
+        }
+
+        slabEnds[slabIndex] = 0;
+    }
+
+    private boolean removeEntry(byte[] key, long hash) {
+        int slot = findSlot(key, hash);
+        if (slot < 0) {
+            return false;
+        }
+
+        index.putLong(slot * SLOT_BYTES, TOMBSTONE);
+        size--;
+        tombstones++;
+        return true;
+    }
+
+    /**
+     * @return slot of key or -1
+     */
+    private int findSlot(byte[] key, long hash) {
+        int slot = (int) hash & indexMask;
+
+        while (true) {
+            long slotHash = index.getLong(slot * SLOT_BYTES);
+            if (slotHash == EMPTY) {
+                return -1;
+            }
+
+            if (slotHash == hash && keyEquals(index.getLong(slot * SLOT_BYTES + 8), key)) {
+                return slot;
+            }
+
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    private void insert(long hash, long address) {
+        int slot = (int) hash & indexMask;
+
+        while (true) {
+            long slotHash = index.getLong(slot * SLOT_BYTES);
+            if (slotHash == EMPTY || slotHash == TOMBSTONE) {
+                if (slotHash == TOMBSTONE) {
+                    tombstones--;
+                }
+
+                index.putLong(slot * SLOT_BYTES, hash);
+                index.putLong(slot * SLOT_BYTES + 8, address);
+                return;
+            }
+
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        ByteBuffer oldIndex = index;
+        int oldCapacity = indexMask + 1;
+
+        index = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        indexMask = capacity - 1;
+        tombstones = 0;
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long slotHash = oldIndex.getLong(slot * SLOT_BYTES);
+            if (slotHash != EMPTY && slotHash != TOMBSTONE) {
+                insert(slotHash, oldIndex.getLong(slot * SLOT_BYTES + 8));
+            }
+        }
+    }
+
+    private byte[] readValue(long address) {
+        ByteBuffer slab = slabs[slabIndex(address)];
+        int offset = offset(address);
+
+        byte[] value = new byte[slab.getInt(offset + 4)];
+        ByteBuffer record = slab.duplicate();
+        record.position(offset + RECORD_HEADER_BYTES + slab.getInt(offset));
+        record.get(value);
+        return value;
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer slab = slabs[slabIndex(address)];
+        int offset = offset(address);
+
+        if (slab.getInt(offset) != key.length) {
+            return false;
+        }
+
+        int keyOffset = offset + RECORD_HEADER_BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(keyOffset + i) != key[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long hash(byte[] key) {
+        long hash = BloomFilter.hash(key, HASH_SEED);
+        // Reserved values of an index slot
+        return hash == EMPTY || hash == TOMBSTONE ? 1 : hash;
+    }
+
+    private static long address(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | offset;
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("slabSize", slabSize)
+                .append("slabCount", slabs.length)
+                .append("size", size())
+                .append("offHeapBytes", getOffHeapBytes())
+                .toString();
+    }
+}
@@ -0,0 +1,128 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key, so only one of them runs the loader and the others wait for its result.
+ * If loader throws, the same exception is thrown to all waiting callers.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightLoads;
+    private final LongAdder coalescedCount;
+
+    public SingleFlight() {
+        this.inFlightLoads = new ConcurrentHashMap<>();
+        this.coalescedCount = new LongAdder();
+    }
+
+    /**
+     * Runs loader for key unless a load of the same key is in flight, in that case waits for it.
+     * @param key key to load, should not be null
+     * @param loader function loading the value, may return null
+     * @return loaded value
+     */
+    public V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+
+        if (inFlightLoad != null) {
+            coalescedCount.increment();
+            return await(inFlightLoad);
+        }
+
+        try {
+            V value = loader.apply(key);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, load);
+        }
+    }
+
+    /**
+     * Runs loader for key on given executor unless a load of the same key is in flight, in that case returns
+     * a future of it. Coalesces with {@link #load(Object, Function)} calls of the same key.
+     * @param key key to load, should not be null
+     * @param loader function loading the value, may return null
+     * @return future of loaded value, completed exceptionally if loader throws or executor rejects the load
+     */
+    public CompletableFuture<V> loadAsync(K key, Function<? super K, ? extends V> loader, Executor executor) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+
+        if (inFlightLoad != null) {
+            coalescedCount.increment();
+            // Callers get a dependent future, so completing it doesn't complete the shared load
+            return inFlightLoad.thenApply(Function.identity());
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    load.complete(loader.apply(key));
+                } catch (RuntimeException | Error e) {
+                    load.completeExceptionally(e);
+                } finally {
+                    inFlightLoads.remove(key, load);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightLoads.remove(key, load);
+            load.completeExceptionally(e);
+        }
+
+        return load.thenApply(Function.identity());
+    }
+
+    /**
+     * @return count of loads that waited for another load instead of running loader
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @return count of keys being loaded right now
+     */
+    public int getInFlightCount() {
+        return inFlightLoads.size();
+    }
+
+    private V await(CompletableFuture<V> inFlightLoad) {
+        try {
+            return inFlightLoad.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("inFlightCount", inFlightLoads.size())
+                .append("coalescedCount", coalescedCount.sum())
+                .toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates cache statistics with {@link LongAdder} counters, so concurrent request threads
+ * don't contend on a shared counter.
+ */
+public class StatsCounter {
+
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder loadSuccessCount;
+    private final LongAdder loadFailureCount;
+    private final LongAdder totalLoadTime;
+    private final LatencyHistogram loadTimes;
+
+    public StatsCounter() {
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.loadSuccessCount = new LongAdder();
+        this.loadFailureCount = new LongAdder();
+        this.totalLoadTime = new LongAdder();
+        this.loadTimes = new LatencyHistogram();
+    }
+
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        recordLoadTime(loadTime);
+    }
+
+    public void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        recordLoadTime(loadTime);
+    }
+
+    private void recordLoadTime(long loadTime) {
+        totalLoadTime.add(loadTime);
+        loadTimes.record(loadTime);
+    }
+
+    /**
+     * @param evictionCount eviction count of the cache, counted by cache itself
+     * @param size current size of the cache
+     * @return snapshot of counters, counters are read one by one so they may be slightly off from each other
+     */
+    public CacheStats snapshot(long evictionCount, long size) {
+        long[] loadTimeCounts = loadTimes.snapshot();
+
+        return CacheStats.Builder.aCacheStats()
+                .withHitCount(hitCount.sum())
+                .withMissCount(missCount.sum())
+                .withLoadSuccessCount(loadSuccessCount.sum())
+                .withLoadFailureCount(loadFailureCount.sum())
+                .withTotalLoadTime(totalLoadTime.sum())
+                .withLoadTime50thPercentile(LatencyHistogram.percentile(loadTimeCounts, 0.50))
+                .withLoadTime95thPercentile(LatencyHistogram.percentile(loadTimeCounts, 0.95))
+                .withLoadTime99thPercentile(LatencyHistogram.percentile(loadTimeCounts, 0.99))
+                .withEvictionCount(evictionCount)
+                .withSize(size)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("hitCount", hitCount.sum())
+                .append("missCount", missCount.sum())
+                .append("loadSuccessCount", loadSuccessCount.sum())
+                .append("loadFailureCount", loadFailureCount.sum())
+                .toString();
+    }
+}
@@ -2,6 +2,46 @@ package com.ulger.sk.usermanager.exception;
 
 public class DataAccessException extends RuntimeException {
 
+    /**
+     * Reason is not known, default of constructors without reason code
+     */
+    public static final int UNCATEGORIZED = 0;
+
+    /**
+     * Data source could not be reached or connection is lost
+     */
+    public static final int CONNECTION_FAILURE = 1;
+
+    /**
+     * A unique key, e.g. username or email, is already used
+     */
+    public static final int DUPLICATE_KEY = 2;
+
+    /**
+     * A constraint other than unique keys is violated
+     */
+    public static final int DATA_INTEGRITY_VIOLATION = 3;
+
+    /**
+     * Data is not acceptable by data source, e.g. a value is too long
+     */
+    public static final int INVALID_DATA = 4;
+
+    /**
+     * Operation or waiting for a connection timed out
+     */
+    public static final int TIMEOUT = 5;
+
+    /**
+     * Operation failed because of a concurrent one, e.g. deadlock, and may succeed if retried
+     */
+    public static final int TRANSIENT_FAILURE = 6;
+
+    /**
+     * Data to be updated is not found
+     */
+    public static final int NOT_FOUND = 7;
+
     private int reasonCode;
 
     public int getReasonCode() {
@@ -0,0 +1,13 @@
+package com.ulger.sk.usermanager.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens physical connections for {@link ConnectionPool}
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+
+    Connection create() throws SQLException;
+}
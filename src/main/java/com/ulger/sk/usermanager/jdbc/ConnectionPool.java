@@ -0,0 +1,176 @@
+package com.ulger.sk.usermanager.jdbc;
+
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.ulger.sk.usermanager.SkAssertions.notNull;
+
+/**
+ * Lightweight bounded pool of JDBC connections. Connections are opened lazily up to maximum size and
+ * reused most recently returned first, so a few warm connections serve most of the load.
+ * Connections that failed by a connection error or are found closed are discarded.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final Duration DEFAULT_BORROW_TIMEOUT = Duration.ofSeconds(30);
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final ConnectionFactory connectionFactory;
+    private final int maximumSize;
+    private final long borrowTimeoutNanos;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections;
+    private final AtomicLong createdCount;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String username, String password, int maximumSize) {
+        this(() -> DriverManager.getConnection(url, username, password), maximumSize, DEFAULT_BORROW_TIMEOUT, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param connectionFactory opens physical connections
+     * @param maximumSize maximum count of open connections
+     * @param borrowTimeout maximum time to wait for a connection when all are in use
+     * @param statementCacheSize maximum count of prepared statements cached per connection
+     */
+    public ConnectionPool(ConnectionFactory connectionFactory, int maximumSize, Duration borrowTimeout, int statementCacheSize) {
+        notNull(connectionFactory);
+        notNull(borrowTimeout);
+
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size of pool should be positive");
+        }
+
+        this.connectionFactory = connectionFactory;
+        this.maximumSize = maximumSize;
+        this.borrowTimeoutNanos = borrowTimeout.toNanos();
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maximumSize, true);
+        this.idleConnections = new ConcurrentLinkedDeque<>();
+        this.createdCount = new AtomicLong();
+    }
+
+    /**
+     * Borrows a connection, it should be closed to return it to pool
+     * @throws DataAccessException with TIMEOUT reason if no connection is available in borrow timeout,
+     * with CONNECTION_FAILURE reason if a new connection can't be opened
+     */
+    public PooledConnection borrow() {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+
+        acquirePermit();
+
+        try {
+            PooledConnection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                if (isUsable(connection)) {
+                    connection.setBorrowed(true);
+                    return connection;
+                }
+
+                connection.closePhysically();
+            }
+
+            connection = new PooledConnection(this, connectionFactory.create(), statementCacheSize);
+            createdCount.incrementAndGet();
+            connection.setBorrowed(true);
+            return connection;
+        } catch (SQLException e) {
+            permits.release();
+            throw new DataAccessException("Unable to open connection", e, DataAccessException.CONNECTION_FAILURE);
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection connection) {
+        if (!connection.setBorrowed(false)) {
+            return;
+        }
+
+        try {
+            if (closed || connection.isBroken()) {
+                connection.closePhysically();
+            } else {
+                idleConnections.offerFirst(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * @return count of physical connections opened so far
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * Closes idle connections, borrowed ones are closed when they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            connection.closePhysically();
+        }
+
+        logger.info("[close] Connection pool is closed :: createdCount={}", createdCount.get());
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new DataAccessException("Timed out waiting for a connection :: maximumSize=" + maximumSize, DataAccessException.TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while waiting for a connection", e, DataAccessException.TIMEOUT);
+        }
+    }
+
+    private static boolean isUsable(PooledConnection connection) {
+        try {
+            return !connection.getConnection().isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("maximumSize", maximumSize)
+                .append("idleCount", idleConnections.size())
+                .append("createdCount", createdCount.get())
+                .toString();
+    }
+}
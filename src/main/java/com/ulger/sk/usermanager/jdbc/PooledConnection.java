@@ -0,0 +1,119 @@
+package com.ulger.sk.usermanager.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection borrowed from {@link ConnectionPool}, closing it returns it to the pool.
+ * Prepared statements are cached per connection by SQL, so they are prepared once and reused by later borrowers.
+ * It is used by a single thread at a time, so it is not thread safe.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledConnection.class);
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private boolean broken;
+    private boolean borrowed;
+
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns cached statement of sql or prepares a new one. Statement should not be closed by caller,
+     * parameters of previous use are cleared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+
+        return statement;
+    }
+
+    /**
+     * @return physical connection, e.g. to manage transactions. It should not be closed by caller.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Marks connection to be closed instead of returning to pool
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * @return true if state is changed, so a connection closed twice is returned to pool once
+     */
+    boolean setBorrowed(boolean borrowed) {
+        if (this.borrowed == borrowed) {
+            return false;
+        }
+
+        this.borrowed = borrowed;
+        return true;
+    }
+
+    int getCachedStatementCount() {
+        return statements.size();
+    }
+
+    /**
+     * Returns connection to pool
+     */
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    void closePhysically() {
+        statements.values().forEach(PooledConnection::closeQuietly);
+        statements.clear();
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("[closePhysically] Unable to close connection", e);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("[closeQuietly] Unable to close statement", e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ulger.sk.usermanager.jdbc;
+
+import com.ulger.sk.usermanager.exception.DataAccessException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Maps {@link SQLException} to {@link DataAccessException} reason codes by SQL state classes of SQL standard
+ */
+public final class SqlExceptionTranslator {
+
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String MYSQL_DUPLICATE_ENTRY = "23000";
+    private static final int MYSQL_DUPLICATE_ENTRY_ERROR_CODE = 1062;
+
+    private SqlExceptionTranslator() {
+    }
+
+    public static DataAccessException translate(String task, SQLException e) {
+        int reasonCode = reasonCode(e);
+        return new DataAccessException(task + " failed with SQL state " + e.getSQLState() + " :: " + e.getMessage(), e, reasonCode);
+    }
+
+    public static int reasonCode(SQLException e) {
+        if (e instanceof SQLTimeoutException) {
+            return DataAccessException.TIMEOUT;
+        }
+
+        if (isConnectionFailure(e)) {
+            return DataAccessException.CONNECTION_FAILURE;
+        }
+
+        String sqlState = e.getSQLState();
+        if (sqlState == null || sqlState.length() < 2) {
+            return DataAccessException.UNCATEGORIZED;
+        }
+
+        if (UNIQUE_VIOLATION.equals(sqlState)
+                || (MYSQL_DUPLICATE_ENTRY.equals(sqlState) && e.getErrorCode() == MYSQL_DUPLICATE_ENTRY_ERROR_CODE)) {
+            return DataAccessException.DUPLICATE_KEY;
+        }
+
+        switch (sqlState.substring(0, 2)) {
+            case "22":
+                return DataAccessException.INVALID_DATA;
+            case "23":
+                return DataAccessException.DATA_INTEGRITY_VIOLATION;
+            case "40":
+                return DataAccessException.TRANSIENT_FAILURE;
+            default:
+                return DataAccessException.UNCATEGORIZED;
+        }
+    }
+
+    /**
+     * @return true if connection that threw the exception should not be used again
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLTransientConnectionException) {
+            return true;
+        }
+
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+}
@@ -0,0 +1,267 @@
+package com.ulger.sk.usermanager.log;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * Open addressing hash index from keys to log addresses, kept in a memory-mapped file so it survives restarts
+ * without being rebuilt and doesn't live on heap. A slot is the 64 bit hash of key and the address of the record
+ * holding the key, keys themselves are not stored. Colliding hashes are told apart by a predicate
+ * checking the record at an address, so lookups of absent keys rarely touch the log.
+ * <p>
+ * Table is doubled when it is half full, into a new file that replaces the old one.
+ * It is not thread safe, callers should lock.
+ */
+public class MappedIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x55534958;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final long MAXIMUM_CAPACITY = 1L << 26;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long capacity;
+    private long size;
+
+    private MappedIndex(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens index file at given path, creates an empty one if it doesn't exist or is not a valid index
+     * @param initialCapacity expected count of keys, rounded up to a power of two
+     */
+    public static MappedIndex open(Path path, long initialCapacity) throws IOException {
+        MappedIndex index = new MappedIndex(path);
+
+        if (Files.exists(path) && Files.size(path) >= HEADER_SIZE) {
+            index.map();
+            if (index.buffer.getInt(0) == MAGIC && index.isValidCapacity(index.buffer.getLong(8))) {
+                index.capacity = index.buffer.getLong(8);
+                index.size = index.buffer.getLong(16);
+                return index;
+            }
+
+            index.channel.close();
+        }
+
+        index.create(tableSizeFor(initialCapacity));
+        return index;
+    }
+
+    /**
+     * 64 bit hash of a key, spread so that low bits are usable as slot index
+     */
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @param isKey tells if record at an address holds the key, called only for slots with the same hash
+     * @return address of key or {@link SegmentLog#NO_ADDRESS}
+     */
+    public long get(long hash, LongPredicate isKey) {
+        long mask = capacity - 1;
+        for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long address = addressAt(slot);
+            if (address == SegmentLog.NO_ADDRESS) {
+                return SegmentLog.NO_ADDRESS;
+            }
+
+            if (hashAt(slot) == hash && isKey.test(address)) {
+                return address;
+            }
+        }
+    }
+
+    /**
+     * Adds a key that is known to be absent
+     */
+    public void insert(long hash, long address) throws IOException {
+        if (size + 1 > capacity >>> 1) {
+            resize();
+        }
+
+        long mask = capacity - 1;
+        long slot = hash & mask;
+        while (addressAt(slot) != SegmentLog.NO_ADDRESS) {
+            slot = (slot + 1) & mask;
+        }
+
+        setSlot(slot, hash, address);
+        buffer.putLong(16, ++size);
+    }
+
+    /**
+     * Moves a key from expected address to given address
+     * @return false if no key with given hash is at expected address
+     */
+    public boolean replace(long hash, long expectedAddress, long address) {
+        long mask = capacity - 1;
+        for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long current = addressAt(slot);
+            if (current == SegmentLog.NO_ADDRESS) {
+                return false;
+            }
+
+            if (current == expectedAddress && hashAt(slot) == hash) {
+                setSlot(slot, hash, address);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return addresses of all keys, in no particular order
+     */
+    public long[] addresses() {
+        long[] addresses = new long[(int) size];
+        int count = 0;
+        for (long slot = 0; slot < capacity && count < addresses.length; slot++) {
+            long address = addressAt(slot);
+            if (address != SegmentLog.NO_ADDRESS) {
+                addresses[count++] = address;
+            }
+        }
+        return addresses;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes all keys
+     */
+    public void clear() throws IOException {
+        long initialCapacity = capacity;
+        close();
+        Files.deleteIfExists(path);
+        create(initialCapacity);
+    }
+
+    /**
+     * Writes changed pages to disk
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void resize() throws IOException {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            throw new IOException("Index is full :: path=" + path);
+        }
+
+        Path resizedPath = path.resolveSibling(path.getFileName() + ".resize");
+        Files.deleteIfExists(resizedPath);
+
+        MappedIndex resized = new MappedIndex(resizedPath);
+        resized.create(capacity << 1);
+
+        long mask = resized.capacity - 1;
+        for (long slot = 0; slot < capacity; slot++) {
+            long address = addressAt(slot);
+            if (address != SegmentLog.NO_ADDRESS) {
+                long hash = hashAt(slot);
+                long target = hash & mask;
+                while (resized.addressAt(target) != SegmentLog.NO_ADDRESS) {
+                    target = (target + 1) & mask;
+                }
+                resized.setSlot(target, hash, address);
+            }
+        }
+
+        resized.size = size;
+        resized.buffer.putLong(16, size);
+        resized.close();
+        channel.close();
+
+        Files.move(resizedPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map();
+        capacity = buffer.getLong(8);
+    }
+
+    private void create(long capacity) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.truncate(0);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * SLOT_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(8, capacity);
+        buffer.putLong(16, 0);
+
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+
+    private boolean isValidCapacity(long capacity) {
+        return capacity > 0 && Long.bitCount(capacity) == 1 && capacity <= MAXIMUM_CAPACITY
+                && buffer.capacity() == HEADER_SIZE + capacity * SLOT_SIZE;
+    }
+
+    private long hashAt(long slot) {
+        return buffer.getLong((int) (HEADER_SIZE + slot * SLOT_SIZE));
+    }
+
+    private long addressAt(long slot) {
+        return buffer.getLong((int) (HEADER_SIZE + slot * SLOT_SIZE + 8));
+    }
+
+    private void setSlot(long slot, long hash, long address) {
+        int position = (int) (HEADER_SIZE + slot * SLOT_SIZE);
+        buffer.putLong(position, hash);
+        buffer.putLong(position + 8, address);
+    }
+
+    private static long tableSizeFor(long expectedSize) {
+        long capacity = 16;
+        while (capacity < expectedSize << 1 && capacity < MAXIMUM_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("path", path)
+                .append("capacity", capacity)
+                .append("size", size)
+                .toString();
+    }
+}
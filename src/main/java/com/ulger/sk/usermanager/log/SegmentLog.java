@@ -0,0 +1,528 @@
+package com.ulger.sk.usermanager.log;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records kept in segment files of a directory. A record is an int body length,
+ * CRC32 of body and the body. Active segment is rolled over when it would exceed segment size,
+ * sealed segments are forced on roll over and never written again.
+ * <p>
+ * A record is addressed by its segment id in high 32 bits and its offset in low 32 bits, so addresses
+ * grow in append order. Segment ids start at 1, so 0 is never a valid address.
+ * <p>
+ * Appends are serialized, {@link #sync()} forces appended records to disk and is group committed:
+ * callers waiting while a force is in progress are all covered by the next single force.
+ * Reads may run concurrently with appends, callers should not delete segments that are being read.
+ */
+public class SegmentLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+
+    public static final long NO_ADDRESS = 0;
+
+    static final int HEADER_SIZE = 8;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int READ_AHEAD_SIZE = 512;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Integer, Segment> segments;
+    private final Object appendLock;
+    private final Object syncLock;
+    private final LongAdder syncCount;
+
+    private volatile Segment active;
+    private volatile long endAddress;
+    private volatile long durableAddress;
+
+    private SegmentLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segments = new ConcurrentSkipListMap<>();
+        this.appendLock = new Object();
+        this.syncLock = new Object();
+        this.syncCount = new LongAdder();
+    }
+
+    /**
+     * Opens segments of given directory, creating the directory and first segment if they don't exist.
+     * {@link #recover(long, RecordVisitor)} should be called before appending, since a torn record may be left
+     * at the end of last segment.
+     * @param segmentSize maximum size of a segment file in bytes
+     */
+    public static SegmentLog open(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + 1) {
+            throw new IllegalArgumentException("Segment size is too small");
+        }
+
+        Files.createDirectories(directory);
+        SegmentLog log = new SegmentLog(directory, segmentSize);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                log.segments.put(id, new Segment(id, file, FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)));
+            }
+        }
+
+        if (log.segments.isEmpty()) {
+            log.newSegment(1);
+        }
+
+        log.active = log.segments.lastEntry().getValue();
+        log.endAddress = address(log.active.id, log.active.size);
+        log.durableAddress = log.endAddress;
+
+        return log;
+    }
+
+    public static long address(int segmentId, long offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    public static int segmentId(long address) {
+        return (int) (address >>> 32);
+    }
+
+    static long offset(long address) {
+        return address & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return size of a record with given body length in log
+     */
+    public static int recordSize(int bodyLength) {
+        return HEADER_SIZE + bodyLength;
+    }
+
+    /**
+     * Visits records from given address to the end of log and truncates the last segment at the first
+     * torn or corrupted record.
+     * @param fromAddress address of first record to visit, records before it are skipped
+     * @return count of truncated bytes, 0 if log ends with a complete record
+     * @throws IOException if a sealed segment is corrupted
+     */
+    public long recover(long fromAddress, RecordVisitor visitor) throws IOException {
+        synchronized (appendLock) {
+            long truncated = 0;
+
+            for (Segment segment : segments.tailMap(Math.max(segmentId(fromAddress), segments.firstKey())).values()) {
+                long startOffset = segment.id == segmentId(fromAddress) ? offset(fromAddress) : 0;
+                long validEnd = scan(segment, startOffset, segment.size, visitor);
+
+                if (validEnd < segment.size) {
+                    if (segment != active) {
+                        throw new IOException("Sealed segment is corrupted :: segment=" + segment.path + ", offset=" + validEnd);
+                    }
+
+                    truncated = segment.size - validEnd;
+                    segment.channel.truncate(validEnd);
+                    segment.channel.force(true);
+                    segment.size = validEnd;
+
+                    logger.warn("[recover] Torn records are truncated :: segment={}, offset={}, truncatedBytes={}",
+                            segment.path, validEnd, truncated);
+                }
+            }
+
+            endAddress = address(active.id, active.size);
+            durableAddress = endAddress;
+
+            return truncated;
+        }
+    }
+
+    /**
+     * @return address of appended record
+     */
+    public long append(byte[] body) throws IOException {
+        return append(Collections.singletonList(body))[0];
+    }
+
+    /**
+     * Appends given records with as few writes as possible
+     * @return addresses of appended records in given order
+     */
+    public long[] append(List<byte[]> bodies) throws IOException {
+        long[] addresses = new long[bodies.size()];
+
+        synchronized (appendLock) {
+            int index = 0;
+            while (index < bodies.size()) {
+                if (active.size > 0 && active.size + recordSize(bodies.get(index).length) > segmentSize) {
+                    roll();
+                }
+
+                // Records fitting in active segment are written at once
+                int end = index;
+                long size = 0;
+                while (end < bodies.size() && (end == index || active.size + size + recordSize(bodies.get(end).length) <= segmentSize)) {
+                    size += recordSize(bodies.get(end).length);
+                    end++;
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                for (int i = index; i < end; i++) {
+                    addresses[i] = address(active.id, active.size + buffer.position());
+                    putRecord(buffer, bodies.get(i));
+                }
+                buffer.flip();
+
+                writeFully(active.channel, buffer, active.size);
+                active.size += size;
+                index = end;
+            }
+
+            endAddress = address(active.id, active.size);
+        }
+
+        return addresses;
+    }
+
+    /**
+     * Forces all records appended before this call to disk. Callers arriving while another caller is forcing
+     * wait for it and are then covered by a single force of the next caller.
+     */
+    public void sync() throws IOException {
+        long target = endAddress;
+        if (durableAddress >= target) {
+            return;
+        }
+
+        synchronized (syncLock) {
+            if (durableAddress >= target) {
+                return;
+            }
+
+            Segment segment;
+            long end;
+            synchronized (appendLock) {
+                segment = active;
+                end = endAddress;
+            }
+
+            // Sealed segments are forced on roll over, so only the segment being appended needs forcing
+            segment.channel.force(false);
+            durableAddress = end;
+            syncCount.increment();
+        }
+    }
+
+    /**
+     * @return body of record at given address
+     */
+    public byte[] read(long address) throws IOException {
+        Segment segment = segments.get(segmentId(address));
+        if (segment == null) {
+            throw new IOException("Segment not found :: address=" + address);
+        }
+
+        long offset = offset(address);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD_SIZE);
+        readFully(segment.channel, buffer, offset, HEADER_SIZE);
+
+        int length = buffer.getInt(0);
+        byte[] body = new byte[length];
+        int available = Math.min(length, buffer.position() - HEADER_SIZE);
+        buffer.position(HEADER_SIZE);
+        buffer.get(body, 0, available);
+
+        if (available < length) {
+            ByteBuffer rest = ByteBuffer.wrap(body, available, length - available);
+            readFully(segment.channel, rest, offset + HEADER_SIZE + available, length - available);
+        }
+
+        return body;
+    }
+
+    /**
+     * Visits all records of a segment in order
+     */
+    public void scan(int segmentId, RecordVisitor visitor) throws IOException {
+        Segment segment = segments.get(segmentId);
+        if (segment == null) {
+            throw new IOException("Segment not found :: segmentId=" + segmentId);
+        }
+
+        scan(segment, 0, segment.size, visitor);
+    }
+
+    /**
+     * @return ids of segments that are not appended anymore, in order
+     */
+    public List<Integer> getSealedSegmentIds() {
+        synchronized (appendLock) {
+            return new ArrayList<>(segments.headMap(active.id).keySet());
+        }
+    }
+
+    /**
+     * @return size of given segments in bytes
+     */
+    public long getSize(List<Integer> segmentIds) {
+        long size = 0;
+        for (Integer segmentId : segmentIds) {
+            Segment segment = segments.get(segmentId);
+            size += segment == null ? 0 : segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return size of all segments in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public int getActiveSegmentId() {
+        return active.id;
+    }
+
+    /**
+     * @return address that next record will be appended at, unless active segment is rolled over
+     */
+    public long getEndAddress() {
+        return endAddress;
+    }
+
+    public long getFirstAddress() {
+        return address(segments.firstKey(), 0);
+    }
+
+    /**
+     * @return true if segment of given address exists and address is before its end, so a record may start at it
+     */
+    public boolean contains(long address) {
+        Segment segment = segments.get(segmentId(address));
+        return segment != null && offset(address) < segment.size;
+    }
+
+    /**
+     * @return count of forces done by sync, lower than count of sync calls when commits are grouped
+     */
+    public long getSyncCount() {
+        return syncCount.sum();
+    }
+
+    /**
+     * Deletes given sealed segments, active segment can not be deleted
+     */
+    public void delete(List<Integer> segmentIds) throws IOException {
+        for (Integer segmentId : segmentIds) {
+            if (segmentId == active.id) {
+                throw new IllegalArgumentException("Active segment can not be deleted");
+            }
+
+            Segment segment = segments.remove(segmentId);
+            if (segment != null) {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+        }
+
+        forceDirectory();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            active.channel.force(false);
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        active.channel.force(false);
+        active = newSegment(active.id + 1);
+
+        logger.debug("[roll] Segment is rolled over :: segment={}", active.path);
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Segment segment = new Segment(id, path, FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+
+        segments.put(id, segment);
+        forceDirectory();
+
+        return segment;
+    }
+
+    /**
+     * Makes creation and deletion of segment files durable, not supported on every platform
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("[forceDirectory] Directory can not be forced :: directory={}", directory);
+        }
+    }
+
+    /**
+     * @return offset after the last valid record
+     */
+    private static long scan(Segment segment, long fromOffset, long toOffset, RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        buffer.limit(0);
+
+        CRC32 crc = new CRC32();
+        long offset = fromOffset;
+        long bufferOffset = fromOffset;
+
+        while (offset < toOffset) {
+            if (toOffset - offset < HEADER_SIZE) {
+                return offset;
+            }
+
+            int position = (int) (offset - bufferOffset);
+            if (buffer.limit() - position < HEADER_SIZE) {
+                buffer = refill(segment, buffer, position, bufferOffset += position, HEADER_SIZE, toOffset);
+                position = 0;
+            }
+
+            int length = buffer.getInt(position);
+            int checksum = buffer.getInt(position + 4);
+            if (length < 0 || toOffset - offset - HEADER_SIZE < length) {
+                return offset;
+            }
+
+            if (buffer.limit() - position < HEADER_SIZE + length) {
+                buffer = refill(segment, buffer, position, bufferOffset += position, HEADER_SIZE + length, toOffset);
+                position = 0;
+            }
+
+            byte[] body = new byte[length];
+            buffer.position(position + HEADER_SIZE);
+            buffer.get(body);
+
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return offset;
+            }
+
+            visitor.visit(address(segment.id, offset), body);
+            offset += HEADER_SIZE + length;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Moves unread bytes to the beginning of buffer, grows it if needed, and reads the following bytes of segment
+     */
+    private static ByteBuffer refill(Segment segment, ByteBuffer buffer, int position, long bufferOffset,
+                                     int required, long toOffset) throws IOException {
+        int remaining = buffer.limit() - position;
+        ByteBuffer target = buffer.capacity() >= required ? buffer : ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+
+        if (target != buffer) {
+            buffer.position(position);
+            target.put(buffer);
+        } else {
+            buffer.position(position);
+            buffer.compact();
+        }
+
+        long readOffset = bufferOffset + remaining;
+        target.limit((int) Math.min(target.capacity(), toOffset - bufferOffset));
+        while (target.hasRemaining()) {
+            if (segment.channel.read(target, readOffset + target.position() - remaining) < 0) {
+                break;
+            }
+        }
+
+        target.flip();
+        return target;
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        buffer.putInt(body.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Reads at least minimum bytes, more if available up to buffer capacity
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int minimum) throws IOException {
+        int start = buffer.position();
+        while (buffer.position() - start < minimum) {
+            int read = channel.read(buffer, position + buffer.position() - start);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment :: position=" + position);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("directory", directory)
+                .append("segmentSize", segmentSize)
+                .append("segmentCount", segments.size())
+                .append("endAddress", endAddress)
+                .toString();
+    }
+
+    /**
+     * Visitor of records, called in address order
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(long address, byte[] body) throws IOException;
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        volatile long size;
+
+        Segment(int id, Path path, FileChannel channel) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = channel.size();
+        }
+    }
+}
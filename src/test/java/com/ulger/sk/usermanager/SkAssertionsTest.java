@@ -3,7 +3,6 @@ package com.ulger.sk.usermanager;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.Matchers.anyString;
 
 class SkAssertionsTest {
 
@@ -12,13 +11,13 @@ class SkAssertionsTest {
         assertThrows(IllegalArgumentException.class, () -> SkAssertions.notNull(null));
         assertThrows(IllegalArgumentException.class, () -> SkAssertions.notNull(null, null));
         SkAssertions.notNull(new Object());
-        SkAssertions.notNull(new Object(), anyString());
+        SkAssertions.notNull(new Object(), "message");
     }
 
     @Test
     void test_blank_check() {
-        assertThrows(IllegalArgumentException.class, () -> SkAssertions.notBlank(anyString(), null));
-        assertThrows(IllegalArgumentException.class, () -> SkAssertions.notBlank(anyString(), " "));
-        SkAssertions.notBlank(anyString(), "a ");
+        assertThrows(IllegalArgumentException.class, () -> SkAssertions.notBlank("message", null));
+        assertThrows(IllegalArgumentException.class, () -> SkAssertions.notBlank("message", " "));
+        SkAssertions.notBlank("message", "a ");
     }
 }
\ No newline at end of file
@@ -0,0 +1,233 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.Cache;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.ulger.sk.usermanager.api.user.cache.SimpleUserCacheTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedUserCacheTest {
+
+    private static final int USER_COUNT = 20_000;
+    private static final int MAXIMUM_SIZE = 1_000;
+    private static final int ACCESS_COUNT = 500_000;
+
+    private final List<User> users = createUsers(USER_COUNT);
+
+    @Test
+    void test_builder_requires_single_bound() {
+        assertThrows(IllegalArgumentException.class, () -> BoundedUserCache.Builder.aBoundedUserCache().build());
+        assertThrows(IllegalArgumentException.class, () -> BoundedUserCache.Builder.aBoundedUserCache()
+                .withMaximumSize(10)
+                .withMaximumWeight(10)
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> BoundedUserCache.Builder.aBoundedUserCache()
+                .withMaximumSize(10)
+                .withWeigher(user -> 1)
+                .build());
+    }
+
+    @Test
+    void test_adding_and_overriding() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(10).build();
+
+        User user1 = users.get(1);
+        User user1Copy = newInstance(user1.getUsername(), user1.getEmail(), "fnCopy", "lnCopy", "crCopy");
+
+        cache.add(user1);
+        assertSame(user1, cache.get(user1.getEmail()));
+
+        cache.add(Arrays.asList(users.get(2), users.get(3)));
+        assertEquals(3, cache.getAll().size());
+
+        cache.add(user1Copy);
+        assertSame(user1Copy, cache.get(user1.getEmail()));
+        assertEquals(3, cache.getAll().size());
+        assertNull(cache.get(null));
+        assertThrows(IllegalArgumentException.class, () -> cache.add((User) null));
+    }
+
+    @Test
+    void test_size_is_bounded() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(MAXIMUM_SIZE).build();
+
+        cache.add(users);
+
+        assertTrue(cache.getAll().size() <= MAXIMUM_SIZE);
+        assertEquals(cache.getAll().size(), cache.getWeightedSize());
+        assertEquals(USER_COUNT - cache.getAll().size(), cache.getEvictionCount());
+    }
+
+    @Test
+    void test_weight_is_bounded() {
+        FieldLengthUserWeigher weigher = new FieldLengthUserWeigher();
+        long maximumWeight = 100L * weigher.weigh(users.get(0));
+
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumWeight(maximumWeight).build();
+
+        users.forEach(cache::add);
+        assertTrue(cache.getWeightedSize() <= maximumWeight);
+
+        // A user whose credential is 512 characters long weighs more than the short ones
+        User heavy = newInstance("heavy", "heavy@gmail.com", "fn", "ln", StringUtils.repeat('x', 512));
+        assertTrue(weigher.weigh(heavy) > 2 * weigher.weigh(users.get(0)));
+
+        cache.add(heavy);
+        assertTrue(cache.getWeightedSize() <= maximumWeight);
+    }
+
+    @Test
+    void test_replace_all() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(MAXIMUM_SIZE).build();
+
+        cache.add(users.subList(0, 10));
+        cache.replaceAll(users.subList(10, 20));
+
+        assertNull(cache.get(users.get(0).getEmail()));
+        assertSame(users.get(10), cache.get(users.get(10).getEmail()));
+        assertEquals(10, cache.getAll().size());
+        assertEquals(10, cache.getWeightedSize());
+
+        cache.replaceAll(users);
+        assertTrue(cache.getAll().size() <= MAXIMUM_SIZE);
+        assertEquals(cache.getAll().size(), cache.getWeightedSize());
+    }
+
+    @Test
+    void test_replace_all_from_stays_bounded_and_keeps_users_if_source_throws() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(MAXIMUM_SIZE).build();
+
+        cache.replaceAllFrom(users::forEach);
+        assertTrue(cache.getAll().size() <= MAXIMUM_SIZE);
+        assertEquals(cache.getAll().size(), cache.getWeightedSize());
+
+        cache.replaceAll(users.subList(0, 10));
+        assertThrows(IllegalStateException.class, () -> cache.replaceAllFrom(consumer -> {
+            consumer.accept(users.get(10));
+            throw new IllegalStateException();
+        }));
+
+        assertSame(users.get(0), cache.get(users.get(0).getEmail()));
+        assertNull(cache.get(users.get(10).getEmail()));
+        assertEquals(10, cache.getWeightedSize());
+    }
+
+    @Test
+    void test_username_index_follows_eviction() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(MAXIMUM_SIZE).build();
+
+        User user1 = users.get(1);
+        cache.add(user1);
+        assertSame(user1, cache.getByUsername(user1.getUsername()));
+
+        User user1Copy = newInstance(user1.getUsername(), user1.getEmail(), "fnCopy", "lnCopy", "crCopy");
+        cache.add(user1Copy);
+        assertSame(user1Copy, cache.getByUsername(user1.getUsername()));
+
+        cache.add(users);
+        for (User user : users) {
+            User byUsername = cache.getByUsername(user.getUsername());
+            assertSame(cache.get(user.getEmail()), byUsername);
+        }
+    }
+
+    @Test
+    void test_user_heavier_than_maximum_is_not_cached() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache()
+                .withMaximumWeight(10)
+                .withWeigher(user -> 11)
+                .build();
+
+        cache.add(users.get(0));
+        assertNull(cache.get(users.get(0).getEmail()));
+    }
+
+    @Test
+    void test_zipf_hit_ratio_is_better_than_lru() {
+        int[] trace = zipfTrace(USER_COUNT, 0.99, ACCESS_COUNT, 42);
+
+        double boundedHitRatio = hitRatio(BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(MAXIMUM_SIZE).build(), trace);
+        double lruHitRatio = hitRatio(new SimpleUserCache(lruMap(MAXIMUM_SIZE)), trace);
+
+        assertTrue(boundedHitRatio > 0.55, "hit ratio: " + boundedHitRatio);
+        assertTrue(boundedHitRatio > lruHitRatio, "bounded: " + boundedHitRatio + ", lru: " + lruHitRatio);
+    }
+
+    @Test
+    void test_scan_does_not_flush_hot_users() {
+        BoundedUserCache cache = BoundedUserCache.Builder.aBoundedUserCache().withMaximumSize(MAXIMUM_SIZE).build();
+        int[] trace = zipfTrace(USER_COUNT, 0.99, ACCESS_COUNT / 5, 7);
+        hitRatio(cache, trace);
+
+        List<User> hotUsers = users.subList(0, MAXIMUM_SIZE / 10);
+        hotUsers.forEach(user -> assertNotNull(cache.get(user.getEmail())));
+
+        // Same as getAllUsers pushing the whole table into the cache
+        cache.add(createUsers(USER_COUNT * 2).subList(USER_COUNT, USER_COUNT * 2));
+
+        long survivors = hotUsers.stream().filter(user -> cache.get(user.getEmail()) != null).count();
+        assertTrue(survivors >= hotUsers.size() * 0.9, "survivors: " + survivors);
+    }
+
+    private double hitRatio(Cache<User> cache, int[] trace) {
+        int hits = 0;
+        for (int index : trace) {
+            User user = users.get(index);
+            if (cache.get(user.getEmail()) != null) {
+                hits++;
+            } else {
+                cache.add(user);
+            }
+        }
+
+        return (double) hits / trace.length;
+    }
+
+    /**
+     * Generates indexes where index i is accessed with probability proportional to 1 / (i + 1)^exponent
+     */
+    static int[] zipfTrace(int itemCount, double exponent, int length, long seed) {
+        double[] cumulative = new double[itemCount];
+        double sum = 0;
+        for (int i = 0; i < itemCount; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+
+        Random random = new Random(seed);
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            double value = random.nextDouble() * sum;
+            int index = Arrays.binarySearch(cumulative, value);
+            trace[i] = index >= 0 ? index : Math.min(-index - 1, itemCount - 1);
+        }
+
+        return trace;
+    }
+
+    private static Map<Object, User> lruMap(int maximumSize) {
+        return new LinkedHashMap<Object, User>(maximumSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, User> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    private static List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(newInstance("user" + i, "user" + i + "@gmail.com", "fn" + i, "ln" + i, "cr" + i));
+        }
+        return users;
+    }
+}
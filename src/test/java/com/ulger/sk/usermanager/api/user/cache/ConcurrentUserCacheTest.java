@@ -0,0 +1,156 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.api.user.cache.SimpleUserCacheTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class ConcurrentUserCacheTest {
+
+    private ConcurrentUserCache cache;
+
+    private User user1 = newInstance("1", "1@gmail.com", "fn1", "ln1", "cr1");
+    private User user2 = newInstance("2", "2@gmail.com", "fn2", "ln2", "cr2");
+    private User user3 = newInstance("3", "3@gmail.com", "fn3", "ln3", "cr3");
+    private User user1Copy = newInstance("1", "1@gmail.com", "fn1User1Copy", "ln1User1Copy", "cr1");
+
+    @BeforeEach
+    void setUp() {
+        cache = new ConcurrentUserCache();
+    }
+
+    @Test
+    void test_empty_cache() {
+        assertTrue(cache.getAll().isEmpty());
+        assertNull(cache.get(user1.getEmail()));
+        assertNull(cache.get(null));
+    }
+
+    @Test
+    void test_adding_and_overriding() {
+        cache.add(user1);
+        assertSame(user1, cache.get(user1.getEmail()));
+
+        cache.add(Arrays.asList(user2, user3));
+        assertSame(user2, cache.get(user2.getEmail()));
+        assertSame(user3, cache.get(user3.getEmail()));
+        assertEquals(3, cache.getAll().size());
+
+        cache.add(user1Copy);
+        assertSame(user1Copy, cache.get(user1.getEmail()));
+        assertEquals(3, cache.getAll().size());
+    }
+
+    @Test
+    void test_replace_all() {
+        cache.add(Arrays.asList(user1, user2));
+        cache.replaceAll(Arrays.asList(user1Copy, user3));
+
+        assertSame(user1Copy, cache.get(user1.getEmail()));
+        assertNull(cache.get(user2.getEmail()));
+        assertSame(user3, cache.get(user3.getEmail()));
+        assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    void test_replace_all_from_source() {
+        cache.add(Arrays.asList(user1, user2));
+        cache.replaceAllFrom(consumer -> {
+            consumer.accept(user1Copy);
+            consumer.accept(user3);
+        });
+
+        assertSame(user1Copy, cache.get(user1.getEmail()));
+        assertSame(user1Copy, cache.getByUsername(user1.getUsername()));
+        assertNull(cache.get(user2.getEmail()));
+        assertEquals(2, cache.getAll().size());
+
+        assertThrows(IllegalStateException.class, () -> cache.replaceAllFrom(consumer -> {
+            consumer.accept(user2);
+            throw new IllegalStateException();
+        }));
+        assertNull(cache.get(user2.getEmail()));
+        assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    void test_username_index() {
+        cache.add(user1);
+        assertSame(user1, cache.getByUsername(user1.getUsername()));
+        assertSame(cache.get(user1.getEmail()), cache.getByUsername(user1.getUsername()));
+        assertNull(cache.getByUsername(null));
+
+        cache.add(user1Copy);
+        assertSame(user1Copy, cache.getByUsername(user1.getUsername()));
+
+        User renamed = newInstance("1renamed", "1@gmail.com", "fn1", "ln1", "cr1");
+        cache.add(renamed);
+        assertNull(cache.getByUsername(user1.getUsername()));
+        assertSame(renamed, cache.getByUsername("1renamed"));
+
+        cache.replaceAll(Arrays.asList(user2));
+        assertNull(cache.getByUsername("1renamed"));
+        assertSame(user2, cache.getByUsername(user2.getUsername()));
+    }
+
+    @Test
+    void test_get_all_is_not_modifiable() {
+        cache.add(user1);
+        assertThrows(UnsupportedOperationException.class, () -> cache.getAll().clear());
+    }
+
+    @Test
+    void adding_invalid_values_fail_case() {
+        assertThrows(IllegalArgumentException.class, () -> cache.add((User) null));
+
+        User noEmail = Mockito.mock(User.class);
+        when(noEmail.getEmail()).thenReturn(null);
+
+        assertThrows(IllegalArgumentException.class, () -> cache.add(Arrays.asList(user1, noEmail)));
+        assertNull(cache.get(user1.getEmail()));
+    }
+
+    @Test
+    void test_concurrent_writers_and_readers() throws Exception {
+        int threadCount = 8;
+        int usersPerThread = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threadCount; t++) {
+            int threadNo = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < usersPerThread; i++) {
+                    String id = threadNo + "-" + i;
+                    cache.add(newInstance(id, id + "@gmail.com", "fn", "ln", "cr"));
+                    assertNotNull(cache.get(id + "@gmail.com"));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threadCount * usersPerThread, cache.getAll().size());
+    }
+}
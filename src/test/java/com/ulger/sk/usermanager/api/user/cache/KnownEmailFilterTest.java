@@ -0,0 +1,92 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnownEmailFilterTest {
+
+    @Test
+    void test_loaded_filter_answers_missing_emails() {
+        KnownEmailFilter filter = new KnownEmailFilter(100, 0.01);
+        assertTrue(filter.mightExist("1@gmail.com"));
+
+        filter.load(() -> Arrays.asList(newUser("1@gmail.com"), newUser("2@gmail.com")));
+
+        assertTrue(filter.isLoaded());
+        assertTrue(filter.mightExist("1@gmail.com"));
+        assertFalse(filter.mightExist("3@gmail.com"));
+
+        filter.add("3@gmail.com");
+        assertTrue(filter.mightExist("3@gmail.com"));
+    }
+
+    @Test
+    void test_email_added_while_load_completes_is_not_lost() throws Exception {
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch finishScan = new CountDownLatch(1);
+        Thread[] loader = new Thread[1];
+
+        KnownEmailFilter filter = new KnownEmailFilter(100, 0.01) {
+            private boolean first = true;
+
+            @Override
+            BloomFilter newBloomFilter() {
+                if (!first) {
+                    return super.newBloomFilter();
+                }
+
+                first = false;
+                return new BloomFilter(100, 0.01) {
+                    @Override
+                    public void put(String value) {
+                        super.put(value);
+
+                        // Completes the load while add is between its reads of the two filters
+                        if (loader[0] != null) {
+                            finishScan.countDown();
+                            try {
+                                loader[0].join();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+                };
+            }
+        };
+
+        filter.load(Collections::emptyList);
+
+        // User is created after the scan has read past it
+        loader[0] = new Thread(() -> filter.loadFrom(consumer -> {
+            scanning.countDown();
+            try {
+                finishScan.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        loader[0].start();
+        assertTrue(scanning.await(5, TimeUnit.SECONDS));
+
+        filter.add("created@gmail.com");
+
+        assertTrue(filter.mightExist("created@gmail.com"));
+    }
+
+    private static User newUser(String email) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername("username-" + email)
+                .withEmail(email)
+                .build();
+    }
+}
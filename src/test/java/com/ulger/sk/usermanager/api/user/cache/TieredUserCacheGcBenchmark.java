@@ -0,0 +1,108 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.cache.Cache;
+import com.ulger.sk.usermanager.api.user.core.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.ulger.sk.usermanager.api.user.cache.SimpleUserCacheTest.newInstance;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Heap usage and GC time of an all-heap {@link ConcurrentUserCache} against {@link TieredUserCache},
+ * both holding the same users while the application allocates short living garbage.
+ * Run with {@code gradle benchmark}, user count can be changed by {@code -Dbenchmark.userCount}.
+ */
+@Tag("benchmark")
+class TieredUserCacheGcBenchmark {
+
+    private static final int USER_COUNT = Integer.getInteger("benchmark.userCount", 500_000);
+    private static final int FULL_GC_COUNT = 5;
+    private static final int ALLOCATION_ROUNDS = 2_000;
+
+    @Test
+    void compare_heap_and_tiered_cache() {
+        Result heap = run(new ConcurrentUserCache(USER_COUNT));
+        Result tiered = run(TieredUserCache.Builder.aTieredUserCache()
+                .withHotSetSize(10_000)
+                .withMaximumOffHeapBytes(USER_COUNT * 256L)
+                .build());
+
+        System.out.printf("users=%,d%n", USER_COUNT);
+        System.out.printf("ConcurrentUserCache : %s%n", heap);
+        System.out.printf("TieredUserCache     : %s%n", tiered);
+
+        assertTrue(tiered.liveHeapBytes < heap.liveHeapBytes);
+    }
+
+    private Result run(Cache<User> cache) {
+        for (int i = 0; i < USER_COUNT; i++) {
+            cache.add(newInstance("username" + i, "user" + i + "@gmail.com", "firstName" + i, "lastName" + i,
+                    "$2a$10$credentialcredentialcredentialcredentialcredential" + i));
+        }
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long liveHeapBytes = runtime.totalMemory() - runtime.freeMemory();
+
+        long gcTimeBefore = totalGcTime();
+        long startTime = System.nanoTime();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sink = 0;
+        for (int round = 0; round < ALLOCATION_ROUNDS; round++) {
+            // Short living garbage plus reads of random users, like request threads do
+            byte[][] garbage = new byte[64][];
+            for (int i = 0; i < garbage.length; i++) {
+                garbage[i] = new byte[4096];
+            }
+
+            User user = cache.get("user" + random.nextInt(USER_COUNT) + "@gmail.com");
+            sink += garbage.length + (user == null ? 0 : user.getUsername().length());
+        }
+
+        for (int i = 0; i < FULL_GC_COUNT; i++) {
+            System.gc();
+        }
+
+        long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+        long gcTimeMillis = totalGcTime() - gcTimeBefore;
+        long offHeapBytes = cache instanceof TieredUserCache ? ((TieredUserCache) cache).getOffHeapBytes() : 0;
+
+        return new Result(liveHeapBytes, offHeapBytes, gcTimeMillis, elapsedMillis, sink);
+    }
+
+    private static long totalGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static final class Result {
+        final long liveHeapBytes;
+        final long offHeapBytes;
+        final long gcTimeMillis;
+        final long elapsedMillis;
+        final long sink;
+
+        Result(long liveHeapBytes, long offHeapBytes, long gcTimeMillis, long elapsedMillis, long sink) {
+            this.liveHeapBytes = liveHeapBytes;
+            this.offHeapBytes = offHeapBytes;
+            this.gcTimeMillis = gcTimeMillis;
+            this.elapsedMillis = elapsedMillis;
+            this.sink = sink;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("liveHeap=%,d MB, offHeap=%,d MB, gcTime=%,d ms, elapsed=%,d ms",
+                    liveHeapBytes >> 20, offHeapBytes >> 20, gcTimeMillis, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.ulger.sk.usermanager.api.user.cache.SimpleUserCacheTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredUserCacheTest {
+
+    private final User user1 = newInstance("1", "1@gmail.com", "fn1", "ln1", "cr1");
+    private final User user2 = newInstance("2", "2@gmail.com", "fn2", null, "cr2");
+    private final User user1Copy = newInstance("1", "1@gmail.com", "fn1User1Copy", "ln1User1Copy", "cr1");
+
+    private TieredUserCache newCache(long hotSetSize) {
+        return TieredUserCache.Builder.aTieredUserCache()
+                .withHotSetSize(hotSetSize)
+                .withMaximumOffHeapBytes(1024 * 1024)
+                .withSlabSize(64 * 1024)
+                .build();
+    }
+
+    @Test
+    void test_user_is_serialized_off_heap_and_promoted() {
+        TieredUserCache cache = newCache(10);
+        cache.add(user1);
+
+        assertEquals(0, cache.getHotSetSize());
+
+        User found = cache.get(user1.getEmail());
+        assertNotSame(user1, found);
+        assertUserEquals(user1, found);
+
+        // Promoted to hot set, same instance is returned afterwards
+        assertSame(found, cache.get(user1.getEmail()));
+        assertSame(found, cache.getByUsername("1"));
+        assertTrue(cache.getOffHeapBytes() > 0);
+    }
+
+    @Test
+    void test_write_updates_both_tiers() {
+        TieredUserCache cache = newCache(10);
+        cache.add(Arrays.asList(user1, user2));
+        cache.get(user1.getEmail());
+
+        cache.add(user1Copy);
+        assertSame(user1Copy, cache.get(user1.getEmail()));
+
+        cache.add(newInstance("2", "2@gmail.com", "fn2Copy", null, "cr2"));
+        assertEquals("fn2Copy", cache.get(user2.getEmail()).getFirstName());
+        assertNull(cache.get(user2.getEmail()).getLastName());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void test_user_is_found_off_heap_by_username() {
+        TieredUserCache cache = newCache(10);
+        cache.add(Arrays.asList(user1, user2));
+
+        User found = cache.getByUsername("2");
+        assertUserEquals(user2, found);
+        assertSame(found, cache.get(user2.getEmail()));
+        assertNull(cache.getByUsername("unknown"));
+        assertNull(cache.getByUsername(null));
+
+        cache.add(newInstance("renamed", "1@gmail.com", "fn1", "ln1", "cr1"));
+        assertNull(cache.getByUsername("1"));
+        assertEquals("1@gmail.com", cache.getByUsername("renamed").getEmail());
+
+        cache.replaceAll(Arrays.asList(user1Copy));
+        assertNull(cache.getByUsername("2"));
+        assertUserEquals(user1Copy, cache.getByUsername("1"));
+    }
+
+    @Test
+    void test_promotion_is_not_prevented_by_writes_of_other_users() {
+        TieredUserCache cache = newCache(10);
+        cache.add(user1);
+
+        User found = cache.get(user1.getEmail());
+        cache.add(user2);
+
+        assertSame(found, cache.get(user1.getEmail()));
+        assertEquals(1, cache.getHotSetSize());
+    }
+
+    @Test
+    void test_for_each_value_passes_users_one_by_one() {
+        TieredUserCache cache = newCache(10);
+        cache.add(Arrays.asList(user1, user2));
+
+        List<String> emails = new ArrayList<>();
+        cache.forEachValue(user -> {
+            emails.add(user.getEmail());
+            // Writing to cache while iterating doesn't block
+            cache.add(user);
+        });
+
+        emails.sort(null);
+        assertEquals(Arrays.asList("1@gmail.com", "2@gmail.com"), emails);
+        assertEquals(0, cache.getHotSetSize());
+    }
+
+    @Test
+    void test_get_all_and_replace_all() {
+        TieredUserCache cache = newCache(10);
+        cache.add(Arrays.asList(user1, user2));
+
+        assertEquals(2, cache.getAll().size());
+
+        cache.replaceAll(Arrays.asList(user1Copy));
+        List<User> users = new ArrayList<>(cache.getAll());
+        assertEquals(1, users.size());
+        assertUserEquals(user1Copy, users.get(0));
+        assertNull(cache.get(user2.getEmail()));
+    }
+
+    @Test
+    void test_holds_more_users_than_hot_set() {
+        TieredUserCache cache = newCache(10);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.add(newInstance("u" + i, i + "@gmail.com", "fn", "ln", "cr"));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("u" + i, cache.get(i + "@gmail.com").getUsername());
+        }
+
+        assertTrue(cache.getHotSetSize() <= 10);
+        assertEquals(1000, cache.getSize());
+    }
+
+    @Test
+    void test_builder_requires_off_heap_bytes() {
+        assertThrows(IllegalArgumentException.class, () -> TieredUserCache.Builder.aTieredUserCache().build());
+    }
+
+    private static void assertUserEquals(User expected, User actual) {
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getFirstName(), actual.getFirstName());
+        assertEquals(expected.getLastName(), actual.getLastName());
+        assertEquals(expected.getCredential(), actual.getCredential());
+    }
+}
@@ -0,0 +1,102 @@
+package com.ulger.sk.usermanager.api.user.cache;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.cache.Cache;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.api.user.cache.SimpleUserCacheTest.newInstance;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Multi-threaded read/write throughput of {@link ConcurrentUserCache} against a synchronized {@link SimpleUserCache}.
+ * Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class UserCacheThroughputBenchmark {
+
+    private static final int USER_COUNT = 100_000;
+    private static final int WRITE_PERCENT = 10;
+    private static final long DURATION_MILLIS = 3_000;
+
+    private final List<User> users = createUsers();
+
+    @Test
+    void compare_concurrent_and_synchronized_cache() throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        // Warm up both implementations before measuring
+        run(new ConcurrentUserCache(), threads, DURATION_MILLIS / 3);
+        run(new SimpleUserCache(Collections.synchronizedMap(new HashMap<>())), threads, DURATION_MILLIS / 3);
+
+        long concurrent = run(new ConcurrentUserCache(), threads, DURATION_MILLIS);
+        long synchronizedOps = run(new SimpleUserCache(Collections.synchronizedMap(new HashMap<>())), threads, DURATION_MILLIS);
+
+        System.out.printf("threads=%d, writes=%d%%%n", threads, WRITE_PERCENT);
+        System.out.printf("ConcurrentUserCache          : %,d ops/s%n", concurrent * 1000 / DURATION_MILLIS);
+        System.out.printf("synchronized SimpleUserCache : %,d ops/s%n", synchronizedOps * 1000 / DURATION_MILLIS);
+
+        assertTrue(concurrent > 0 && synchronizedOps > 0);
+    }
+
+    private long run(Cache<User> cache, int threads, long durationMillis) throws Exception {
+        cache.add(users);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long operations = 0;
+
+                start.await();
+                long deadline = System.currentTimeMillis() + durationMillis;
+
+                while (System.currentTimeMillis() < deadline) {
+                    for (int i = 0; i < 1000; i++) {
+                        User user = users.get(random.nextInt(USER_COUNT));
+                        if (random.nextInt(100) < WRITE_PERCENT) {
+                            cache.add(user);
+                        } else {
+                            cache.get(user.getEmail());
+                        }
+                    }
+                    operations += 1000;
+                }
+
+                return operations;
+            }));
+        }
+
+        start.countDown();
+
+        long total = 0;
+        for (Future<Long> future : futures) {
+            total += future.get(durationMillis * 10, TimeUnit.MILLISECONDS);
+        }
+
+        executor.shutdown();
+        return total;
+    }
+
+    private static List<User> createUsers() {
+        List<User> users = new ArrayList<>(USER_COUNT);
+        for (int i = 0; i < USER_COUNT; i++) {
+            users.add(newInstance("user" + i, "user" + i + "@gmail.com", "fn" + i, "ln" + i, "cr" + i));
+        }
+        return users;
+    }
+}
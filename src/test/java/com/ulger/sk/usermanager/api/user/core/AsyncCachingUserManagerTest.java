@@ -0,0 +1,120 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.ulger.sk.usermanager.api.user.core.SimpleCachingUserManagerTest.newUser;
+import static com.ulger.sk.usermanager.api.user.core.SimpleCachingUserManagerTest.streaming;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncCachingUserManagerTest {
+
+    @Mock
+    private UserManager userManager;
+
+    private List<Runnable> tasks;
+    private SimpleCachingUserManager cachingUserManager;
+    private AsyncCachingUserManager asyncUserManager;
+
+    @BeforeEach
+    void setUp() {
+        tasks = new ArrayList<>();
+        cachingUserManager = new SimpleCachingUserManager(userManager);
+        asyncUserManager = new AsyncCachingUserManager(cachingUserManager, tasks::add);
+    }
+
+    @Test
+    void test_miss_is_loaded_on_executor_and_hit_completes_synchronously() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user);
+
+        CompletableFuture<User> miss = asyncUserManager.getUserByEmail("emailX");
+        assertFalse(miss.isDone());
+        assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        assertSame(user, miss.join());
+
+        CompletableFuture<User> byEmail = asyncUserManager.getUserByEmail("emailX");
+        CompletableFuture<User> byUsername = asyncUserManager.getUserByUsername(user.getUsername());
+        assertTrue(byEmail.isDone());
+        assertTrue(byUsername.isDone());
+        assertSame(user, byEmail.join());
+        assertSame(user, byUsername.join());
+        assertTrue(tasks.isEmpty());
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUserByEmail(any());
+
+        assertEquals(2, cachingUserManager.getStats().getHitCount());
+        assertEquals(1, cachingUserManager.getStats().getMissCount());
+    }
+
+    @Test
+    void test_concurrent_misses_are_coalesced() {
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(newUser("emailX"));
+
+        CompletableFuture<User> first = asyncUserManager.getUserByEmail("emailX");
+        CompletableFuture<User> second = asyncUserManager.getUserByEmail("emailX");
+        assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        assertSame(first.join(), second.join());
+        assertEquals(1, cachingUserManager.getCoalescedLoadCount());
+    }
+
+    @Test
+    void test_failure_completes_future_exceptionally() {
+        IllegalArgumentException exception = new IllegalArgumentException("Email must given");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenThrow(exception);
+
+        CompletableFuture<User> load = asyncUserManager.getUserByEmail("emailX");
+        tasks.remove(0).run();
+
+        CompletionException thrown = assertThrows(CompletionException.class, load::join);
+        assertSame(exception, thrown.getCause());
+    }
+
+    @Test
+    void test_lists_complete_synchronously_when_fully_loaded() {
+        Mockito
+                .doAnswer(streaming(newUser("email1"), newUser("email2")))
+                .when(userManager)
+                .forEachUser(any());
+
+        CompletableFuture<List<User>> beforeLoad = asyncUserManager.getAllUsers();
+        assertFalse(beforeLoad.isDone());
+
+        cachingUserManager.refreshCache();
+
+        CompletableFuture<List<User>> users = asyncUserManager.getAllUsers();
+        CompletableFuture<Page> page = asyncUserManager.getUsers(PageRequest.first(1));
+        assertTrue(users.isDone());
+        assertTrue(page.isDone());
+        assertEquals(2, users.join().size());
+        assertTrue(page.join().hasNext());
+        assertEquals(1, tasks.size());
+    }
+}
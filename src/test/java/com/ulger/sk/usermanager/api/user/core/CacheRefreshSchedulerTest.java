@@ -0,0 +1,75 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.api.user.core.SimpleCachingUserManagerTest.newUser;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+class CacheRefreshSchedulerTest {
+
+    @Mock
+    private UserManager userManager;
+
+    @Test
+    void test_cache_is_refreshed_periodically() throws Exception {
+        CountDownLatch refreshes = new CountDownLatch(3);
+
+        Mockito
+                .doAnswer(invocation -> {
+                    refreshes.countDown();
+                    invocation.<Consumer<User>>getArgument(0).accept(newUser("email" + refreshes.getCount()));
+                    return null;
+                })
+                .when(userManager).forEachUser(any());
+
+        SimpleCachingUserManager cachingUserManager = new SimpleCachingUserManager(userManager);
+
+        try (CacheRefreshScheduler scheduler = new CacheRefreshScheduler(cachingUserManager, Duration.ofMillis(10))) {
+            scheduler.start();
+            assertTrue(scheduler.isStarted());
+            assertTrue(refreshes.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, cachingUserManager.getAllUsers().size());
+    }
+
+    @Test
+    void test_close_does_not_shut_down_given_executor() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            CacheRefreshScheduler scheduler = new CacheRefreshScheduler(
+                    new SimpleCachingUserManager(userManager), Duration.ofHours(1), executor);
+
+            scheduler.start(Duration.ofHours(1));
+            assertThrows(IllegalStateException.class, scheduler::start);
+
+            scheduler.close();
+            assertFalse(scheduler.isStarted());
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_interval_should_be_positive() {
+        SimpleCachingUserManager cachingUserManager = new SimpleCachingUserManager(userManager);
+
+        assertThrows(IllegalArgumentException.class, () -> new CacheRefreshScheduler(cachingUserManager, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new CacheRefreshScheduler(cachingUserManager, null));
+    }
+}
@@ -1,5 +1,6 @@
 package com.ulger.sk.usermanager.api.user.core;
 
+import com.ulger.sk.usermanager.api.user.core.password.MockPasswordEncoder;
 import com.ulger.sk.usermanager.api.user.core.password.PasswordEncoder;
 import com.ulger.sk.usermanager.api.user.validation.UserValidationResult;
 import com.ulger.sk.usermanager.api.user.validation.UserValidator;
@@ -7,6 +8,7 @@ import com.ulger.sk.usermanager.api.user.validation.UserValidatorPicker;
 import com.ulger.sk.usermanager.api.user.validation.ValidationException;
 import com.ulger.sk.usermanager.apiresult.ErrorBag;
 import com.ulger.sk.usermanager.apiresult.SimpleErrorBag;
+import com.ulger.sk.usermanager.exception.DataAccessException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.platform.runner.JUnitPlatform;
@@ -16,12 +18,18 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.Arrays;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 @ExtendWith(MockitoExtension.class)
@@ -70,6 +78,98 @@ class DefaultUserManagerTest {
                 .equals("emailX");
     }
 
+    @Test
+    void test_get_user_by_username_blank_input() {
+        assertThrows(IllegalArgumentException.class, () -> userManager.getUserByUsername(null));
+        assertThrows(IllegalArgumentException.class, () -> userManager.getUserByUsername(" "));
+    }
+
+    @Test
+    void test_get_user_by_username_successfully() {
+        MockUser userTobeReturned = new MockUser();
+        userTobeReturned.setUsername("usernameX");
+
+        Mockito
+                .when(userDao.findByUsername(eq("usernameX")))
+                .thenReturn(Optional.of(userTobeReturned));
+
+        Mockito
+                .when(userDao.findByUsername(eq("unknownX")))
+                .thenReturn(Optional.empty());
+
+        assert userManager
+                .getUserByUsername("usernameX")
+                .getUsername()
+                .equals("usernameX");
+
+        assert null == userManager.getUserByUsername("unknownX");
+    }
+
+    @Test
+    void test_get_users_by_emails_blank_input() {
+        assertThrows(IllegalArgumentException.class, () -> userManager.getUsersByEmails(null));
+        assertThrows(IllegalArgumentException.class, () -> userManager.getUsersByEmails(Arrays.asList("emailX", " ")));
+    }
+
+    @Test
+    void test_get_users_by_emails_in_batches() {
+        userManager.setEmailBatchSize(2);
+
+        Mockito
+                .when(userDao.findByEmails(any()))
+                .thenAnswer(invocation -> {
+                    Collection<String> emails = invocation.getArgument(0);
+                    assert emails.size() <= 2;
+
+                    List<User> users = new ArrayList<>();
+                    for (String email : emails) {
+                        if (!email.startsWith("unknown")) {
+                            MockUser user = new MockUser();
+                            user.setEmail(email);
+                            users.add(0, user);
+                        }
+                    }
+                    return users;
+                });
+
+        Map<String, User> users = userManager.getUsersByEmails(
+                Arrays.asList("email3X", "email1X", "unknownX", "email3X", "email2X", "email4X"));
+
+        assert new ArrayList<>(users.keySet()).equals(Arrays.asList("email3X", "email1X", "email2X", "email4X"));
+
+        Mockito
+                .verify(userDao, times(3))
+                .findByEmails(any());
+    }
+
+    @Test
+    void test_get_users_by_page() {
+        MockUser user1 = new MockUser();
+        user1.setUsername("user1X");
+
+        MockUser user2 = new MockUser();
+        user2.setUsername("user2X");
+
+        Mockito
+                .when(userDao.findPage(null, 2))
+                .thenReturn(new ArrayList<>(Arrays.asList(user1, user2)));
+
+        Mockito
+                .when(userDao.findPage("user1X", 2))
+                .thenReturn(new ArrayList<>(Arrays.asList(user2)));
+
+        Page page = userManager.getUsers(PageRequest.first(1));
+        assert page.getUsers().equals(Arrays.asList(user1));
+        assert page.hasNext();
+
+        page = userManager.getUsers(page.nextPageRequest(1));
+        assert page.getUsers().equals(Arrays.asList(user2));
+        assert !page.hasNext();
+
+        assertThrows(IllegalArgumentException.class, () -> userManager.getUsers(null));
+        assertThrows(IllegalArgumentException.class, () -> PageRequest.first(0));
+    }
+
     @Test
     void test_find_all_user() {
         MockUser userTobeReturned1 = new MockUser();
@@ -147,6 +247,104 @@ class DefaultUserManagerTest {
                 .equals("emailX");
     }
 
+    @Test
+    void test_create_users_reports_failed_records() {
+        userManager.setCreationBatchSize(2).setCreationParallelism(2);
+
+        UserValidator mockValidator = Mockito.mock(UserValidator.class);
+
+        ErrorBag errorBag = new SimpleErrorBag();
+        errorBag.addErrorMessage("errorMessage1X");
+
+        Mockito
+                .when(userValidatorPicker.pick(UserOperation.CREATE))
+                .thenReturn(mockValidator);
+
+        Mockito
+                .when(mockValidator.validate(any()))
+                .thenAnswer(invocation -> {
+                    UserModificationData data = invocation.getArgument(0);
+                    return data.getEmail().startsWith("invalid") ? new UserValidationResult(errorBag) : new UserValidationResult();
+                });
+
+        Mockito
+                .when(passwordEncoder.encode(any()))
+                .thenAnswer(invocation -> "hashed-" + invocation.getArgument(0));
+
+        Mockito
+                .when(userDao.createAll(any()))
+                .thenAnswer(invocation -> {
+                    List<User> users = invocation.getArgument(0);
+                    assert users.size() <= 2;
+
+                    Map<Integer, DataAccessException> failures = new HashMap<>();
+                    for (int i = 0; i < users.size(); i++) {
+                        if (users.get(i).getEmail().startsWith("duplicate")) {
+                            failures.put(i, new DataAccessException("duplicate", DataAccessException.DUPLICATE_KEY));
+                        }
+                    }
+                    return failures;
+                });
+
+        List<MockUserModificationData> records = new ArrayList<>();
+        for (String email : Arrays.asList("email1X", "invalidX", "email2X", "duplicateX", "email3X")) {
+            MockUserModificationData data = new MockUserModificationData();
+            data.setEmail(email);
+            data.setRawPassword("password-" + email);
+            records.add(data);
+        }
+
+        BulkUserCreationResult result = userManager.createUsers(records);
+
+        assert result.getResults().size() == 5;
+        assert result.getCreatedCount() == 3;
+        assert result.getFailedCount() == 2;
+        assert result.getThroughput() > 0;
+
+        UserCreationResult invalid = result.getResults().get(1);
+        assert invalid.getIndex() == 1;
+        assert invalid.getFailure() instanceof ValidationException;
+
+        UserCreationResult duplicate = result.getResults().get(3);
+        assert duplicate.getIndex() == 3;
+        assert ((DataAccessException) duplicate.getFailure()).getReasonCode() == DataAccessException.DUPLICATE_KEY;
+
+        User created = result.getResults().get(4).getUser();
+        assert created.getEmail().equals("email3X");
+        assert created.getCredential().equals("hashed-password-email3X");
+
+        Mockito
+                .verify(userDao, times(3))
+                .createAll(any());
+
+        assertThrows(IllegalArgumentException.class, () -> userManager.createUsers(null));
+    }
+
+    @Test
+    void test_create_users_runs_on_given_creation_executor_and_close_shuts_own_pool() {
+        AtomicInteger executedCount = new AtomicInteger();
+        userManager.setCreationExecutor(runnable -> {
+            executedCount.incrementAndGet();
+            runnable.run();
+        });
+
+        Mockito
+                .when(userValidatorPicker.pick(UserOperation.CREATE))
+                .thenReturn(Mockito.mock(UserValidator.class, invocation -> new UserValidationResult()));
+
+        Mockito
+                .when(userDao.createAll(any()))
+                .thenReturn(Collections.emptyMap());
+
+        List<MockUserModificationData> records = Arrays.asList(new MockUserModificationData(), new MockUserModificationData());
+        assertEquals(2, userManager.createUsers(records).getCreatedCount());
+        assertEquals(2, executedCount.get());
+
+        userManager.setCreationExecutor(null);
+        userManager.close();
+        assertThrows(IllegalStateException.class, () -> userManager.createUsers(records));
+    }
+
     @Test
     void test_update_user_null_validator_picker() {
 
@@ -291,7 +489,7 @@ class DefaultUserManagerTest {
 
         Mockito
                 .when(passwordEncoder.matches(any(), any()))
-                .thenReturn(true);
+                .thenReturn(false);
 
         Mockito
                 .when(userDao.findByEmail(eq(("emailX"))))
@@ -329,13 +527,188 @@ class DefaultUserManagerTest {
                 .when(passwordEncoder.encode(any()))
                 .thenReturn("encodedX");
 
-        userManager.changePassword("emailX", "", "");
+        Mockito
+                .when(passwordEncoder.matches(any(), any()))
+                .thenReturn(true);
+
+        MockUser changedUser = new MockUser();
+        changedUser.setEmail("emailX");
 
         Mockito
-                .verify(userDao, times(1))
-                .updatePasswordByUsername(
-                        eq("usernameX"),
-                        eq("encodedX")
-                );
+                .when(userDao.updateCredentialByEmail(eq("emailX"), any(), eq("encodedX")))
+                .thenReturn(Optional.of(changedUser));
+
+        assertSame(changedUser, userManager.changePassword("emailX", "", ""));
+
+        Mockito
+                .verify(userDao, never())
+                .updatePasswordByUsername(any(), any());
+    }
+
+    @Test
+    void test_change_password_concurrently_changed() {
+        UserValidator mockValidator = Mockito.mock(UserValidator.class);
+
+        Mockito
+                .when(mockValidator.validate(any()))
+                .thenReturn(new UserValidationResult());
+
+        Mockito
+                .when(userValidatorPicker.pick(UserOperation.CHANGE_PASSWORD))
+                .thenReturn(mockValidator);
+
+        MockUser user = new MockUser();
+        user.setEmail("emailX");
+        user.setCredential("hashX");
+
+        Mockito
+                .when(userDao.findByEmail(eq(("emailX"))))
+                .thenReturn(Optional.of(user));
+
+        Mockito
+                .when(passwordEncoder.encode(any()))
+                .thenReturn("encodedX");
+
+        Mockito
+                .when(passwordEncoder.matches(any(), any()))
+                .thenReturn(true);
+
+        Mockito
+                .when(userDao.updateCredentialByEmail(eq("emailX"), eq("hashX"), eq("encodedX")))
+                .thenReturn(Optional.empty());
+
+        DataAccessException exception = assertThrows(
+                DataAccessException.class,
+                () -> userManager.changePassword("emailX", "", ""));
+
+        assertEquals(DataAccessException.TRANSIENT_FAILURE, exception.getReasonCode());
+    }
+
+    @Test
+    void test_authenticate_outcomes() {
+        MockUser user = new MockUser();
+        user.setEmail("emailX");
+        user.setCredential("hashX");
+
+        Mockito
+                .when(userDao.findByEmail(eq("emailX")))
+                .thenReturn(Optional.of(user));
+
+        Mockito
+                .when(passwordEncoder.matches(any(), eq("hashX")))
+                .thenAnswer(invocation -> "right".contentEquals(invocation.<CharSequence>getArgument(0)));
+
+        AuthenticationResult authenticated = userManager.authenticate("emailX", "right");
+        assertEquals(AuthenticationResult.Outcome.AUTHENTICATED, authenticated.getOutcome());
+        assertSame(user, authenticated.getUser());
+
+        assertEquals(AuthenticationResult.Outcome.INVALID_CREDENTIALS, userManager.authenticate("emailX", "wrong").getOutcome());
+        assertEquals(AuthenticationResult.Outcome.INVALID_CREDENTIALS, userManager.authenticate(" ", "right").getOutcome());
+        assertEquals(AuthenticationResult.Outcome.INVALID_CREDENTIALS, userManager.authenticate("emailX", null).getOutcome());
+
+        AuthenticationMetrics metrics = userManager.getAuthenticationMetrics();
+        assertEquals(1, metrics.getCount(AuthenticationResult.Outcome.AUTHENTICATED));
+        assertEquals(3, metrics.getCount(AuthenticationResult.Outcome.INVALID_CREDENTIALS));
+    }
+
+    @Test
+    void test_authenticate_unknown_user_verifies_dummy_hash() {
+        PasswordEncoder dummyEncoder = Mockito.mock(PasswordEncoder.class);
+
+        Mockito
+                .when(dummyEncoder.encode(any()))
+                .thenReturn("dummyHash");
+
+        Mockito
+                .when(userDao.findByEmail(any()))
+                .thenReturn(Optional.empty());
+
+        DefaultUserManager manager = new DefaultUserManager(userValidatorPicker, dummyEncoder, userDao);
+
+        // Dummy hash is encoded when created, not by the first miss
+        Mockito
+                .verify(dummyEncoder, times(1))
+                .encode(any());
+
+        assertEquals(AuthenticationResult.Outcome.USER_NOT_FOUND, manager.authenticate("email1", "pw").getOutcome());
+        assertEquals(AuthenticationResult.Outcome.USER_NOT_FOUND, manager.authenticate("email2", "pw").getOutcome());
+
+        // Dummy hash is verified on each miss without encoding again
+        Mockito
+                .verify(dummyEncoder, times(1))
+                .encode(any());
+
+        Mockito
+                .verify(dummyEncoder, times(2))
+                .matches(eq("pw"), eq("dummyHash"));
+    }
+
+    @Test
+    void test_authenticate_reports_failures_instead_of_throwing() {
+        MockUser user = new MockUser();
+        user.setEmail("emailX");
+        user.setCredential("hashX");
+
+        Mockito
+                .when(userDao.findByEmail(eq("emailX")))
+                .thenReturn(Optional.of(user));
+
+        Mockito
+                .when(userDao.findByEmail(eq("emailY")))
+                .thenThrow(new DataAccessException("down", DataAccessException.CONNECTION_FAILURE));
+
+        Mockito
+                .when(passwordEncoder.matches(any(), eq("hashX")))
+                .thenThrow(new RejectedExecutionException("saturated"));
+
+        AuthenticationResult rejected = userManager.authenticate("emailX", "pw");
+        assertEquals(AuthenticationResult.Outcome.REJECTED, rejected.getOutcome());
+        assertTrue(rejected.getFailure() instanceof RejectedExecutionException);
+
+        AuthenticationResult error = userManager.authenticate("emailY", "pw");
+        assertEquals(AuthenticationResult.Outcome.ERROR, error.getOutcome());
+        assertTrue(error.getFailure() instanceof DataAccessException);
+        assertNull(error.getUser());
+    }
+
+    @Test
+    void test_change_password_requires_right_old_password() {
+        UserValidator mockValidator = Mockito.mock(UserValidator.class);
+
+        Mockito
+                .when(mockValidator.validate(any()))
+                .thenReturn(new UserValidationResult());
+
+        Mockito
+                .when(userValidatorPicker.pick(UserOperation.CHANGE_PASSWORD))
+                .thenReturn(mockValidator);
+
+        MockUser user = new MockUser();
+        user.setEmail("emailX");
+        user.setCredential("hash:oldPassword");
+
+        Mockito
+                .when(userDao.findByEmail(eq("emailX")))
+                .thenReturn(Optional.of(user));
+
+        MockUser changedUser = new MockUser();
+        changedUser.setEmail("emailX");
+
+        Mockito
+                .when(userDao.updateCredentialByEmail(eq("emailX"), eq("hash:oldPassword"), eq("hash:newPassword")))
+                .thenReturn(Optional.of(changedUser));
+
+        DefaultUserManager manager = new DefaultUserManager(userValidatorPicker, new MockPasswordEncoder("hash:"), userDao);
+
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> manager.changePassword("emailX", "wrongPassword", "newPassword"));
+        assertEquals("Old password is wrong", exception.getMessage());
+
+        Mockito
+                .verify(userDao, never())
+                .updateCredentialByEmail(any(), any(), any());
+
+        assertSame(changedUser, manager.changePassword("emailX", "oldPassword", "newPassword"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,746 @@
+package com.ulger.sk.usermanager.api.user.core;
+
+import com.ulger.sk.usermanager.api.user.cache.KnownEmailFilter;
+import com.ulger.sk.usermanager.cache.CacheStats;
+import com.ulger.sk.usermanager.cache.CacheStatsMXBeanAdapter;
+import com.ulger.sk.usermanager.cache.NegativeLookupCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+class SimpleCachingUserManagerTest {
+
+    @Mock
+    private UserManager userManager;
+
+    private SimpleCachingUserManager cachingUserManager;
+    private AtomicLong nanoTime;
+
+    @BeforeEach
+    void setUp() {
+        cachingUserManager = new SimpleCachingUserManager(userManager);
+        nanoTime = new AtomicLong();
+    }
+
+    @Test
+    void test_found_user_is_cached() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user);
+
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUserByEmail(eq("emailX"));
+    }
+
+    @Test
+    void test_not_found_user_without_negative_cache() {
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .verify(userManager, times(2))
+                .getUserByEmail(eq("emailX"));
+    }
+
+    @Test
+    void test_not_found_user_is_negatively_cached_until_expired() {
+        cachingUserManager.setNegativeLookupCache(new NegativeLookupCache<>(Duration.ofSeconds(10), 100, nanoTime::get));
+
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUserByEmail(eq("emailX"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .verify(userManager, times(2))
+                .getUserByEmail(eq("emailX"));
+    }
+
+    @Test
+    void test_created_user_is_removed_from_negative_cache() {
+        cachingUserManager.setNegativeLookupCache(new NegativeLookupCache<>(Duration.ofSeconds(10), 100, nanoTime::get));
+        MockUser user = newUser("emailX");
+
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .when(userManager.createUser(any()))
+                .thenReturn(user);
+
+        cachingUserManager.createUser(new MockUserModificationData());
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+    }
+
+    @Test
+    void test_negative_cache_is_bounded() {
+        NegativeLookupCache<String> negativeLookupCache = new NegativeLookupCache<>(Duration.ofSeconds(10), 2, nanoTime::get);
+        cachingUserManager.setNegativeLookupCache(negativeLookupCache);
+
+        cachingUserManager.getUserByEmail("email1");
+        cachingUserManager.getUserByEmail("email2");
+        cachingUserManager.getUserByEmail("email3");
+
+        assertEquals(2, negativeLookupCache.size());
+    }
+
+    @Test
+    void test_user_created_during_miss_is_not_negatively_cached() {
+        NegativeLookupCache<String> negativeLookupCache = new NegativeLookupCache<>(Duration.ofSeconds(10), 100, nanoTime::get);
+        cachingUserManager.setNegativeLookupCache(negativeLookupCache);
+
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.createUser(any()))
+                .thenReturn(user);
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenAnswer(invocation -> {
+                    // Created after the query has read nothing, before its result is cached
+                    cachingUserManager.createUser(new MockUserModificationData());
+                    return null;
+                });
+
+        assertNull(cachingUserManager.getUserByEmail("emailX"));
+        assertFalse(negativeLookupCache.contains("emailX"));
+    }
+
+    @Test
+    void test_user_created_during_bulk_miss_is_not_negatively_cached() {
+        NegativeLookupCache<String> negativeLookupCache = new NegativeLookupCache<>(Duration.ofSeconds(10), 100, nanoTime::get);
+        cachingUserManager.setNegativeLookupCache(negativeLookupCache);
+
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.createUser(any()))
+                .thenReturn(user);
+
+        Mockito
+                .when(userManager.getUsersByEmails(any()))
+                .thenAnswer(invocation -> {
+                    // Created after the query has read nothing, before its result is cached
+                    cachingUserManager.createUser(new MockUserModificationData());
+                    return new HashMap<String, User>();
+                });
+
+        assertTrue(cachingUserManager.getUsersByEmails(Arrays.asList("emailX", "emailY")).isEmpty());
+        assertFalse(negativeLookupCache.contains("emailX"));
+    }
+
+    @Test
+    void test_unknown_email_is_answered_by_known_email_filter() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .doAnswer(streaming(user))
+                .when(userManager).forEachUser(any());
+
+        cachingUserManager.setKnownEmailFilter(new KnownEmailFilter(1000, 0.01));
+        cachingUserManager.loadKnownEmails();
+
+        assertNull(cachingUserManager.getUserByEmail("unknownX"));
+
+        Mockito
+                .verify(userManager, never())
+                .getUserByEmail(any());
+    }
+
+    @Test
+    void test_created_user_is_added_to_known_email_filter() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.createUser(any()))
+                .thenReturn(user);
+
+        KnownEmailFilter filter = new KnownEmailFilter(1000, 0.01);
+        filter.load(Arrays::asList);
+        cachingUserManager.setKnownEmailFilter(filter);
+
+        assertFalse(filter.mightExist("emailX"));
+        cachingUserManager.createUser(new MockUserModificationData());
+        assertTrue(filter.mightExist("emailX"));
+    }
+
+    @Test
+    void test_blank_email_is_rejected_by_user_manager() {
+        cachingUserManager.setKnownEmailFilter(new KnownEmailFilter(1000, 0.01));
+        cachingUserManager.loadKnownEmails();
+
+        Mockito
+                .when(userManager.getUserByEmail(" "))
+                .thenThrow(new IllegalArgumentException());
+
+        assertThrows(IllegalArgumentException.class, () -> cachingUserManager.getUserByEmail(" "));
+    }
+
+    @Test
+    void test_refresh_reloads_from_user_manager() {
+        MockUser user1 = newUser("email1");
+        MockUser user2 = newUser("email2");
+
+        Mockito
+                .when(userManager.getAllUsers())
+                .thenReturn(new ArrayList<>(Arrays.asList(user1)));
+
+        Mockito
+                .doAnswer(streaming(user2))
+                .when(userManager).forEachUser(any());
+
+        assertEquals(1, cachingUserManager.getAllUsers().size());
+
+        cachingUserManager.refreshCache();
+
+        List<User> users = cachingUserManager.getAllUsers();
+        assertEquals(1, users.size());
+        assertSame(user2, users.get(0));
+        assertSame(user2, cachingUserManager.getUserByEmail("email2"));
+
+        Mockito
+                .verify(userManager, never())
+                .getUserByEmail(any());
+    }
+
+    @Test
+    void test_refresh_failure_keeps_cached_users() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.getAllUsers())
+                .thenReturn(new ArrayList<>(Arrays.asList(user)));
+
+        Mockito
+                .doAnswer(invocation -> {
+                    // Fails after streaming some users, cache should not be replaced with them
+                    invocation.<Consumer<User>>getArgument(0).accept(newUser("partialX"));
+                    throw new IllegalStateException();
+                })
+                .when(userManager).forEachUser(any());
+
+        cachingUserManager.getAllUsers();
+        cachingUserManager.refreshCache();
+
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+        assertEquals(1, cachingUserManager.getAllUsers().size());
+    }
+
+    @Test
+    void test_user_written_during_refresh_is_not_lost() {
+        MockUser created = newUser("created");
+
+        Mockito
+                .when(userManager.createUser(any()))
+                .thenReturn(created);
+
+        Mockito
+                .doAnswer(invocation -> {
+                    // Created after data source is read, so it is not in the loaded users
+                    cachingUserManager.createUser(new MockUserModificationData());
+                    invocation.<Consumer<User>>getArgument(0).accept(newUser("emailX"));
+                    return null;
+                })
+                .when(userManager).forEachUser(any());
+
+        cachingUserManager.refreshCache();
+
+        assertSame(created, cachingUserManager.getUserByEmail("created"));
+        assertEquals(2, cachingUserManager.getAllUsers().size());
+    }
+
+    @Test
+    void test_hot_user_is_refreshed_ahead_of_expiration() {
+        MockUser user = newUser("emailX");
+        MockUser reloaded = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user)
+                .thenReturn(reloaded);
+
+        List<Runnable> refreshes = new ArrayList<>();
+        cachingUserManager.setRefreshAheadPolicy(
+                new RefreshAheadPolicy(Duration.ofSeconds(10), Duration.ofSeconds(20), refreshes::add, nanoTime::get));
+
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+        assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        assertSame(reloaded, cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .verify(userManager, times(2))
+                .getUserByEmail(eq("emailX"));
+    }
+
+    @Test
+    void test_expired_user_is_reloaded_synchronously() {
+        MockUser user = newUser("emailX");
+        MockUser reloaded = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user)
+                .thenReturn(reloaded);
+
+        cachingUserManager.setRefreshAheadPolicy(
+                new RefreshAheadPolicy(Duration.ofSeconds(10), Duration.ofSeconds(20), Runnable::run, nanoTime::get));
+
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(21).toNanos());
+        assertSame(reloaded, cachingUserManager.getUserByEmail("emailX"));
+    }
+
+    @Test
+    void test_refresh_ahead_policy_drops_expired_write_times() {
+        RefreshAheadPolicy policy = new RefreshAheadPolicy(Duration.ofSeconds(10), Duration.ofSeconds(20), Runnable::run, nanoTime::get);
+
+        for (int i = 0; i < 100; i++) {
+            policy.onWrite("email" + i);
+        }
+
+        nanoTime.addAndGet(Duration.ofSeconds(15).toNanos());
+        policy.onWrite("email0");
+        assertEquals(100, policy.getTrackedWriteCount());
+
+        nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+        policy.onWrite("emailY");
+
+        // Only email0 is written again within expireAfterWrite
+        assertEquals(2, policy.getTrackedWriteCount());
+        assertFalse(policy.isExpired("email0"));
+        assertTrue(policy.isExpired("email1"));
+    }
+
+    @Test
+    void test_refresh_ahead_policy_requires_refresh_before_expiration() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RefreshAheadPolicy(Duration.ofSeconds(20), Duration.ofSeconds(10), Runnable::run));
+    }
+
+    @Test
+    void test_user_found_by_username_is_cached_for_both_keys() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByUsername(eq("username-emailX")))
+                .thenReturn(user);
+
+        assertSame(user, cachingUserManager.getUserByUsername("username-emailX"));
+        assertSame(user, cachingUserManager.getUserByUsername("username-emailX"));
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUserByUsername(any());
+
+        Mockito
+                .verify(userManager, never())
+                .getUserByEmail(any());
+    }
+
+    @Test
+    void test_both_keys_are_refreshed_on_change_password() {
+        MockUser user = newUser("emailX");
+        MockUser changed = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user);
+
+        Mockito
+                .when(userManager.changePassword(eq("emailX"), eq("old"), eq("new")))
+                .thenReturn(changed);
+
+        assertSame(user, cachingUserManager.getUserByEmail("emailX"));
+
+        assertSame(changed, cachingUserManager.changePassword("emailX", "old", "new"));
+
+        assertSame(changed, cachingUserManager.getUserByEmail("emailX"));
+        assertSame(changed, cachingUserManager.getUserByUsername("username-emailX"));
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUserByEmail(any());
+    }
+
+    @Test
+    void test_stats_are_recorded() {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user);
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("failingX")))
+                .thenThrow(new IllegalStateException());
+
+        cachingUserManager.getUserByEmail("emailX");
+        cachingUserManager.getUserByEmail("emailX");
+        cachingUserManager.getUserByUsername("username-emailX");
+        assertThrows(IllegalStateException.class, () -> cachingUserManager.getUserByEmail("failingX"));
+
+        CacheStats stats = cachingUserManager.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRate());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertTrue(stats.getLoadTime99thPercentile() >= stats.getLoadTime50thPercentile());
+        assertEquals(1, stats.getSize());
+        assertEquals(0, stats.getEvictionCount());
+    }
+
+    @Test
+    void test_stats_are_exposed_as_mbean() throws Exception {
+        MockUser user = newUser("emailX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user);
+
+        cachingUserManager.getUserByEmail("emailX");
+        cachingUserManager.getUserByEmail("emailX");
+
+        ObjectName objectName = CacheStatsMXBeanAdapter.register("users", cachingUserManager::getStats);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(objectName, "HitCount"));
+            assertEquals(1L, server.getAttribute(objectName, "MissCount"));
+            assertEquals(1L, server.getAttribute(objectName, "Size"));
+
+            assertThrows(IllegalStateException.class,
+                    () -> CacheStatsMXBeanAdapter.register("users", cachingUserManager::getStats));
+        } finally {
+            CacheStatsMXBeanAdapter.unregister(objectName);
+        }
+    }
+
+    @Test
+    void test_bulk_lookup_loads_only_misses_at_once() {
+        MockUser cached = newUser("cachedX");
+        MockUser missing = newUser("missingX");
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("cachedX")))
+                .thenReturn(cached);
+
+        Mockito
+                .when(userManager.getUsersByEmails(any()))
+                .thenAnswer(invocation -> {
+                    Map<String, User> users = new HashMap<>();
+                    users.put("missingX", missing);
+                    return users;
+                });
+
+        cachingUserManager.setNegativeLookupCache(new NegativeLookupCache<>(Duration.ofSeconds(10), 100, nanoTime::get));
+        cachingUserManager.getUserByEmail("cachedX");
+
+        Map<String, User> users = cachingUserManager.getUsersByEmails(Arrays.asList("missingX", "unknownX", "cachedX"));
+        assertEquals(Arrays.asList("missingX", "cachedX"), new ArrayList<>(users.keySet()));
+        assertSame(missing, users.get("missingX"));
+        assertSame(cached, users.get("cachedX"));
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUsersByEmails(eq(Arrays.asList("missingX", "unknownX")));
+
+        // Loaded and not found emails are not loaded again
+        cachingUserManager.getUsersByEmails(Arrays.asList("missingX", "unknownX", "cachedX"));
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUsersByEmails(any());
+    }
+
+    @Test
+    void test_snapshot_is_shared_until_cache_is_written() {
+        MockUser created = newUser("createdX");
+
+        Mockito
+                .when(userManager.getAllUsers())
+                .thenReturn(new ArrayList<>(Arrays.asList(newUser("email1"), newUser("email2"))));
+
+        Mockito
+                .when(userManager.createUser(any()))
+                .thenReturn(created);
+
+        List<User> users = cachingUserManager.getAllUsers();
+        assertEquals(2, users.size());
+
+        UserSnapshot snapshot = cachingUserManager.getUserSnapshot();
+        assertSame(snapshot.getUsers(), cachingUserManager.getAllUsers());
+        assertSame(snapshot, cachingUserManager.getUserSnapshot());
+        assertEquals(snapshot.getVersion(), cachingUserManager.getUsersVersion());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getUsers().clear());
+
+        cachingUserManager.createUser(new MockUserModificationData());
+
+        UserSnapshot newSnapshot = cachingUserManager.getUserSnapshot();
+        assertTrue(newSnapshot.getVersion() > snapshot.getVersion());
+        assertEquals(3, newSnapshot.getUsers().size());
+        assertEquals(2, snapshot.getUsers().size());
+
+        Mockito
+                .verify(userManager, times(1))
+                .getAllUsers();
+    }
+
+    @Test
+    void test_all_users_are_not_served_from_partial_cache() {
+        MockUser cached = newUser("email1");
+
+        Mockito
+                .when(userManager.getUserByEmail("email1"))
+                .thenReturn(cached);
+
+        Mockito
+                .when(userManager.getAllUsers())
+                .thenReturn(new ArrayList<>(Arrays.asList(cached, newUser("email2"))));
+
+        assertSame(cached, cachingUserManager.getUserByEmail("email1"));
+        assertEquals(0, cachingUserManager.getUsersVersion());
+
+        assertEquals(2, cachingUserManager.getAllUsers().size());
+        assertTrue(cachingUserManager.isFullyLoaded());
+
+        UserSnapshot snapshot = cachingUserManager.getUserSnapshot();
+        assertEquals(2, snapshot.getUsers().size());
+        assertSame(snapshot.getUsers(), cachingUserManager.getAllUsers());
+
+        Mockito
+                .verify(userManager, times(1))
+                .getAllUsers();
+    }
+
+    @Test
+    void test_for_each_user_streams_from_user_manager_when_cache_is_empty() {
+        Mockito
+                .doAnswer(streaming(newUser("email1"), newUser("email2")))
+                .when(userManager).forEachUser(any());
+
+        List<User> users = new ArrayList<>();
+        cachingUserManager.forEachUser(users::add);
+
+        assertEquals(2, users.size());
+        assertEquals(0, cachingUserManager.getUsersVersion());
+    }
+
+    @Test
+    void test_for_each_user_iterates_cached_users() {
+        Mockito
+                .doAnswer(streaming(newUser("email1")))
+                .when(userManager).forEachUser(any());
+
+        cachingUserManager.refreshCache();
+
+        List<User> users = new ArrayList<>();
+        cachingUserManager.forEachUser(users::add);
+
+        assertEquals(1, users.size());
+        Mockito
+                .verify(userManager, times(1))
+                .forEachUser(any());
+    }
+
+    @Test
+    void test_for_each_user_streams_from_user_manager_when_cache_is_partial() {
+        MockUser cached = newUser("email1");
+
+        Mockito
+                .when(userManager.getUserByEmail("email1"))
+                .thenReturn(cached);
+
+        Mockito
+                .doAnswer(streaming(cached, newUser("email2"), newUser("email3")))
+                .when(userManager).forEachUser(any());
+
+        assertSame(cached, cachingUserManager.getUserByEmail("email1"));
+
+        List<User> users = new ArrayList<>();
+        cachingUserManager.forEachUser(users::add);
+
+        assertEquals(3, users.size());
+        assertFalse(cachingUserManager.isFullyLoaded());
+    }
+
+    @Test
+    void test_pages_are_served_from_cache_when_fully_loaded() {
+        PageRequest pageRequest = PageRequest.first(2);
+
+        Mockito
+                .when(userManager.getUsers(pageRequest))
+                .thenReturn(new Page(new ArrayList<>(), false));
+
+        Mockito
+                .doAnswer(streaming(newUser("email3"), newUser("email1"), newUser("email2")))
+                .when(userManager).forEachUser(any());
+
+        assertFalse(cachingUserManager.isFullyLoaded());
+        assertTrue(cachingUserManager.getUsers(pageRequest).getUsers().isEmpty());
+
+        cachingUserManager.refreshCache();
+        assertTrue(cachingUserManager.isFullyLoaded());
+
+        Page page = cachingUserManager.getUsers(pageRequest);
+        assertEquals(Arrays.asList("username-email1", "username-email2"), usernames(page));
+        assertTrue(page.hasNext());
+
+        page = cachingUserManager.getUsers(page.nextPageRequest(2));
+        assertEquals(Arrays.asList("username-email3"), usernames(page));
+        assertFalse(page.hasNext());
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUsers(any());
+    }
+
+    @Test
+    void test_users_created_in_bulk_are_cached() {
+        MockUser created = newUser("createdX");
+
+        Mockito
+                .when(userManager.createUsers(any()))
+                .thenReturn(new BulkUserCreationResult(new ArrayList<>(Arrays.asList(
+                        UserCreationResult.created(0, created),
+                        UserCreationResult.failed(1, new IllegalArgumentException()))), 1));
+
+        BulkUserCreationResult result = cachingUserManager.createUsers(new ArrayList<>());
+        assertEquals(1, result.getCreatedCount());
+        assertEquals(1, result.getFailures().size());
+        assertSame(created, cachingUserManager.getUserByEmail("createdX"));
+
+        Mockito
+                .verify(userManager, never())
+                .getUserByEmail(any());
+    }
+
+    private static List<String> usernames(Page page) {
+        List<String> usernames = new ArrayList<>();
+        page.getUsers().forEach(user -> usernames.add(user.getUsername()));
+        return usernames;
+    }
+
+    static Answer<Void> streaming(User... users) {
+        return invocation -> {
+            Consumer<User> consumer = invocation.getArgument(0);
+            for (User user : users) {
+                consumer.accept(user);
+            }
+            return null;
+        };
+    }
+
+    @Test
+    void test_authenticate_resolves_user_from_cache() {
+        PasswordVerifier passwordVerifier = Mockito.mock(PasswordVerifier.class);
+        cachingUserManager.setPasswordVerifier(passwordVerifier);
+
+        MockUser user = newUser("emailX");
+        AuthenticationResult authenticated = AuthenticationResult.authenticated(user);
+
+        Mockito
+                .when(userManager.getUserByEmail(eq("emailX")))
+                .thenReturn(user);
+
+        Mockito
+                .when(passwordVerifier.verifyPassword(eq(user), eq("pw")))
+                .thenReturn(authenticated);
+
+        assertSame(authenticated, cachingUserManager.authenticate("emailX", "pw"));
+        assertSame(authenticated, cachingUserManager.authenticate("emailX", "pw"));
+        assertEquals(AuthenticationResult.Outcome.INVALID_CREDENTIALS, cachingUserManager.authenticate(null, "pw").getOutcome());
+
+        Mockito
+                .verify(userManager, times(1))
+                .getUserByEmail(eq("emailX"));
+
+        Mockito
+                .verify(userManager, never())
+                .authenticate(any(), any());
+
+        assertEquals(2, cachingUserManager.getAuthenticationMetrics().getCount(AuthenticationResult.Outcome.AUTHENTICATED));
+    }
+
+    @Test
+    void test_user_manager_verifies_password_if_it_is_a_password_verifier() {
+        DefaultUserManager defaultUserManager = Mockito.mock(DefaultUserManager.class);
+        cachingUserManager = new SimpleCachingUserManager(defaultUserManager);
+
+        AuthenticationResult notFound = AuthenticationResult.userNotFound();
+
+        Mockito
+                .when(defaultUserManager.verifyPassword(eq(null), eq("pw")))
+                .thenReturn(notFound);
+
+        assertSame(notFound, cachingUserManager.authenticate("emailX", "pw"));
+
+        Mockito
+                .verify(defaultUserManager, never())
+                .authenticate(any(), any());
+    }
+
+    @Test
+    void test_authenticate_is_delegated_to_other_user_managers() {
+        AuthenticationResult notFound = AuthenticationResult.userNotFound();
+
+        Mockito
+                .when(userManager.authenticate(eq("emailX"), eq("pw")))
+                .thenReturn(notFound);
+
+        assertSame(notFound, cachingUserManager.authenticate("emailX", "pw"));
+        assertEquals(1, cachingUserManager.getAuthenticationMetrics().getCount(AuthenticationResult.Outcome.USER_NOT_FOUND));
+
+        Mockito
+                .verify(userManager, never())
+                .getUserByEmail(any());
+    }
+
+    static MockUser newUser(String email) {
+        MockUser user = new MockUser();
+        user.setEmail(email);
+        user.setUsername("username-" + email);
+        return user;
+    }
+}
@@ -0,0 +1,165 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import com.ulger.sk.usermanager.cache.LatencyHistogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lookup latency of {@link BreachedPasswordCondition} over 500M uniformly spread keys, with and without Bloom filter,
+ * and throughput of {@link BreachedPasswordFileBuilder} on a 20M line list. Needs about 5GB of disk.
+ * Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class BreachedPasswordConditionBenchmark {
+
+    private static final long KEY_COUNT = 500_000_000L;
+    private static final int PROBE_COUNT = 1_000_000;
+    private static final int LIST_SIZE = 20_000_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void lookup_latency_with_five_hundred_million_keys() throws IOException {
+        Path file = directory.resolve("breached.bin");
+        long startTime = System.nanoTime();
+        long[] presentKeys = writeUniformKeys(file);
+        long writeNanos = System.nanoTime() - startTime;
+
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file)) {
+            assertEquals(KEY_COUNT, condition.getKeyCount());
+            System.out.printf("file of %d keys: %d MB written in %d s%n",
+                    KEY_COUNT, Files.size(file) >> 20, TimeUnit.NANOSECONDS.toSeconds(writeNanos));
+
+            measure("first lookups, hits", condition, presentKeys, true);
+            measure("hits", condition, presentKeys, true);
+            measure("misses", condition, randomKeys(7), false);
+
+            startTime = System.nanoTime();
+            condition.loadBloomFilter(0.01);
+            System.out.printf("bloom filter loaded in %d s, heap used %d MB%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime),
+                    (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20);
+
+            measure("hits with bloom filter", condition, presentKeys, true);
+            measure("misses with bloom filter", condition, randomKeys(11), false);
+        }
+    }
+
+    @Test
+    void build_from_twenty_million_line_list() throws IOException {
+        Path list = directory.resolve("list.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(list, StandardCharsets.UTF_8)) {
+            Random random = new Random(3);
+            for (int i = 0; i < LIST_SIZE; i++) {
+                writer.write("pw" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+                writer.newLine();
+            }
+        }
+
+        Path file = directory.resolve("breached.bin");
+        long startTime = System.nanoTime();
+        long keyCount = new BreachedPasswordFileBuilder().setRunSize(4 * 1024 * 1024).build(list, file);
+        long buildNanos = System.nanoTime() - startTime;
+
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file)) {
+            assertTrue(condition.isBreached("pw" + Long.toString(new Random(3).nextLong() & Long.MAX_VALUE, 36)));
+        }
+
+        System.out.printf("built %d keys from %d MB list in %d s, %.0f lines/s%n", keyCount, Files.size(list) >> 20,
+                TimeUnit.NANOSECONDS.toSeconds(buildNanos), LIST_SIZE / (buildNanos / 1e9));
+    }
+
+    private static void measure(String name, BreachedPasswordCondition condition, long[] keys, boolean expected) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (long key : keys) {
+            long startTime = System.nanoTime();
+            boolean found = condition.containsKey(key);
+            latencies.record(System.nanoTime() - startTime);
+
+            if (found != expected) {
+                // A random miss key may exist with probability of about 3e-11
+                assertFalse(expected);
+            }
+        }
+
+        long[] counts = latencies.snapshot();
+        System.out.printf("%s: p50 %.1f us, p99 %.1f us, p99.9 %.1f us%n", name,
+                LatencyHistogram.percentile(counts, 0.50) / 1e3,
+                LatencyHistogram.percentile(counts, 0.99) / 1e3,
+                LatencyHistogram.percentile(counts, 0.999) / 1e3);
+    }
+
+    /**
+     * Writes sorted keys spread uniformly over the long range by random gaps
+     * @return keys of the file picked at random positions
+     */
+    private static long[] writeUniformKeys(Path file) throws IOException {
+        Random random = new Random(5);
+        long averageGap = (long) (Math.pow(2, 64) / KEY_COUNT * 0.99);
+        long sampleInterval = KEY_COUNT / PROBE_COUNT;
+        long[] samples = new long[PROBE_COUNT];
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(8 * 1024 * 1024);
+            buffer.putInt(BreachedPasswordCondition.MAGIC).putInt(BreachedPasswordCondition.VERSION).putLong(KEY_COUNT);
+
+            long key = Long.MIN_VALUE;
+            for (long i = 0; i < KEY_COUNT; i++) {
+                key += 1 + (long) (random.nextDouble() * 2 * averageGap);
+                if (i % sampleInterval == 0 && i / sampleInterval < PROBE_COUNT) {
+                    samples[(int) (i / sampleInterval)] = key;
+                }
+
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.putLong(key);
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        // Probe in random order, not in file order
+        for (int i = samples.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long sample = samples[i];
+            samples[i] = samples[j];
+            samples[j] = sample;
+        }
+
+        return samples;
+    }
+
+    private static long[] randomKeys(long seed) {
+        Random random = new Random(seed);
+        long[] keys = new long[PROBE_COUNT];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+}
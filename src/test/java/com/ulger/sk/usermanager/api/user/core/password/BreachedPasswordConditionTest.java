@@ -0,0 +1,148 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BreachedPasswordConditionTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void test_breached_passwords_are_rejected() throws IOException {
+        List<String> passwords = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            passwords.add("password" + i);
+        }
+        passwords.add("password1");
+        passwords.add("şifre123");
+
+        Path list = directory.resolve("list.txt");
+        Files.write(list, passwords, StandardCharsets.UTF_8);
+        Path file = directory.resolve("breached.bin");
+
+        // Small runs so that several runs are merged
+        long keyCount = new BreachedPasswordFileBuilder().setRunSize(700).build(list, file);
+        assertEquals(5_001, keyCount);
+
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file)) {
+            assertEquals(5_001, condition.getKeyCount());
+
+            for (String password : passwords) {
+                assertTrue(condition.isBreached(password), password);
+            }
+            for (int i = 0; i < 5_000; i++) {
+                assertFalse(condition.isBreached("unique-password" + i));
+            }
+
+            assertTrue(condition.check("password42").hasError());
+            assertFalse(condition.check("correct horse battery staple").hasError());
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void test_sha1_hex_list_with_counts() throws IOException {
+        Path list = directory.resolve("list.txt");
+        Files.write(list, Arrays.asList(
+                "5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8:3861493",
+                "7c4a8d09ca3762af61e59520943dc26494f8941b",
+                "not a hash",
+                "5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8X"), StandardCharsets.UTF_8);
+        Path file = directory.resolve("breached.bin");
+
+        long keyCount = new BreachedPasswordFileBuilder()
+                .setInputFormat(BreachedPasswordFileBuilder.InputFormat.SHA1_HEX)
+                .build(list, file);
+        assertEquals(2, keyCount);
+
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file)) {
+            assertTrue(condition.isBreached("password"));
+            assertTrue(condition.isBreached("123456"));
+            assertFalse(condition.isBreached("Password"));
+        }
+    }
+
+    @Test
+    void test_bloom_filter_keeps_answers() throws IOException {
+        Path list = directory.resolve("list.txt");
+        List<String> passwords = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            passwords.add("pw" + i);
+        }
+        Files.write(list, passwords, StandardCharsets.UTF_8);
+        Path file = directory.resolve("breached.bin");
+        new BreachedPasswordFileBuilder().build(list, file);
+
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file).loadBloomFilter(0.01)) {
+            for (String password : passwords) {
+                assertTrue(condition.isBreached(password));
+            }
+            assertFalse(condition.isBreached("pw-1"));
+        }
+    }
+
+    @Test
+    void test_empty_list_and_invalid_file() throws IOException {
+        Path list = directory.resolve("list.txt");
+        Files.write(list, new byte[0]);
+        Path file = directory.resolve("breached.bin");
+
+        assertEquals(0, new BreachedPasswordFileBuilder().build(list, file));
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file)) {
+            assertFalse(condition.isBreached("password"));
+        }
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> BreachedPasswordCondition.open(file));
+    }
+
+    @Test
+    void test_search_over_skewed_keys() throws IOException {
+        // Keys far from uniform make interpolation guess badly, binary search should still find them
+        long[] keys = new long[1_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i < 990 ? i : Long.MAX_VALUE - (keys.length - i);
+        }
+        Path file = directory.resolve("skewed.bin");
+        writeKeys(file, keys);
+
+        try (BreachedPasswordCondition condition = BreachedPasswordCondition.open(file)) {
+            for (long key : keys) {
+                assertTrue(condition.containsKey(key));
+            }
+            assertFalse(condition.containsKey(-1));
+            assertFalse(condition.containsKey(995));
+            assertFalse(condition.containsKey(Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Writes given sorted keys as a breached password file
+     */
+    static void writeKeys(Path file, long[] keys) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BreachedPasswordCondition.HEADER_SIZE + keys.length * BreachedPasswordCondition.KEY_SIZE)
+                .putInt(BreachedPasswordCondition.MAGIC)
+                .putInt(BreachedPasswordCondition.VERSION)
+                .putLong(keys.length);
+        for (long key : keys) {
+            buffer.putLong(key);
+        }
+        Files.write(file, buffer.array());
+    }
+}
@@ -0,0 +1,98 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledPasswordPolicyTest {
+
+    private final CompiledPasswordPolicy policy = CompiledPasswordPolicy.Builder.aCompiledPasswordPolicy()
+            .withLength(8, 16)
+            .withRequiredCharacterClasses(CompiledPasswordPolicy.CharacterClass.DIGIT)
+            .withMinimumCharacterClasses(3)
+            .withMaximumRepeatedCharacters(2)
+            .withMaximumSequenceLength(3)
+            .build();
+
+    @Test
+    void test_valid_password_returns_shared_result() {
+        PasswordCheckingResult result = policy.checkPolicy("Tr0ub4dor&3x");
+
+        assertFalse(result.hasError());
+        assertTrue(result.getErrors().isEmpty());
+        assertSame(result, policy.checkPolicy("Correct9Horse"));
+        assertThrows(UnsupportedOperationException.class, () -> result.addError("error"));
+    }
+
+    @Test
+    void test_blank_password() {
+        assertEquals(Arrays.asList("Password should be given"), new ArrayList<>(policy.checkPolicy(" ").getErrors()));
+        assertTrue(policy.checkPolicy(null).hasError());
+    }
+
+    @Test
+    void test_length() {
+        assertEquals(Arrays.asList("Password should be at least 8 characters long"), errorsOf("Ab1x"));
+        assertEquals(Arrays.asList("Password can not be longer than 16 characters"), errorsOf("Ab1xAb1xAb1xAb1xA"));
+    }
+
+    @Test
+    void test_character_classes() {
+        assertEquals(Arrays.asList("Password should contain a digit"), errorsOf("Abxyqwe!"));
+        assertEquals(Arrays.asList("Password should contain at least 3 of lowercase letters, uppercase letters, digits and symbols"),
+                errorsOf("ab1xqwe9"));
+        // Letters of other scripts are classified by their case
+        assertFalse(policy.checkPolicy("Şifre9xqö").hasError());
+    }
+
+    @Test
+    void test_repetition_and_sequence() {
+        assertEquals(Arrays.asList("Password can not repeat a character more than 2 times in a row"), errorsOf("Abx1qqqz"));
+        assertEquals(Arrays.asList("Password can not contain a sequence longer than 3 characters, e.g. abcd or 4321"), errorsOf("Xqabcd1z"));
+        assertEquals(Arrays.asList("Password can not contain a sequence longer than 3 characters, e.g. abcd or 4321"), errorsOf("Xq4321az"));
+        assertFalse(policy.checkPolicy("Xqabc1z9").hasError());
+        // Symbols next to each other in code table are not a sequence
+        assertFalse(policy.checkPolicy("Xq1z#$%&").hasError());
+    }
+
+    @Test
+    void test_all_errors_are_reported() {
+        assertEquals(Arrays.asList(
+                "Password should be at least 8 characters long",
+                "Password should contain a digit",
+                "Password should contain at least 3 of lowercase letters, uppercase letters, digits and symbols",
+                "Password can not repeat a character more than 2 times in a row",
+                "Password can not contain a sequence longer than 3 characters, e.g. abcd or 4321"), errorsOf("aaabcd"));
+    }
+
+    @Test
+    void test_conditions_run_after_scan() {
+        CompiledPasswordPolicy withCondition = CompiledPasswordPolicy.Builder.aCompiledPasswordPolicy()
+                .withCondition(new PasswordPolicyConditionMock((password, result) -> {
+                    if (password.contains("secret")) {
+                        result.addError("conditionError");
+                    }
+                }))
+                .build();
+
+        assertFalse(withCondition.checkPolicy("anything").hasError());
+        assertEquals(Arrays.asList("conditionError"), new ArrayList<>(withCondition.checkPolicy("mysecret").getErrors()));
+        assertEquals(Arrays.asList("Password should be at least 8 characters long", "conditionError"),
+                new ArrayList<>(withCondition.checkPolicy("secret").getErrors()));
+    }
+
+    @Test
+    void test_invalid_rules() {
+        assertThrows(IllegalArgumentException.class, () -> CompiledPasswordPolicy.Builder.aCompiledPasswordPolicy().withLength(10, 5).build());
+        assertThrows(IllegalArgumentException.class, () -> CompiledPasswordPolicy.Builder.aCompiledPasswordPolicy().withMinimumCharacterClasses(5).build());
+        assertThrows(IllegalArgumentException.class, () -> CompiledPasswordPolicy.Builder.aCompiledPasswordPolicy().withMaximumSequenceLength(-1).build());
+    }
+
+    private List<String> errorsOf(String password) {
+        return new ArrayList<>(policy.checkPolicy(password).getErrors());
+    }
+}
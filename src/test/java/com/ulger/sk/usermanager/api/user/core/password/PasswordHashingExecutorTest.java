@@ -0,0 +1,134 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHashingExecutor hashingExecutor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (hashingExecutor != null) {
+            hashingExecutor.close();
+        }
+    }
+
+    @Test
+    void test_encode_and_matches_run_on_hashing_pool() throws Exception {
+        hashingExecutor = new PasswordHashingExecutor(new ThreadRecordingEncoder(), 2, 4, Duration.ofSeconds(1));
+
+        assertTrue(hashingExecutor.encode("pw").startsWith("password-hashing-"));
+        assertTrue(hashingExecutor.encodeAsync("pw").get(1, TimeUnit.SECONDS).startsWith("password-hashing-"));
+        assertTrue(hashingExecutor.matches("pw", "hash"));
+        assertFalse(hashingExecutor.matchesAsync("other", "hash").get(1, TimeUnit.SECONDS));
+        assertTrue(hashingExecutor.getHashTimePercentile(0.99) >= 0);
+    }
+
+    @Test
+    void test_async_calls_are_rejected_when_saturated() throws Exception {
+        hashingExecutor = new PasswordHashingExecutor(new BlockingEncoder(release), 1, 1, Duration.ofMillis(10));
+
+        CompletableFuture<String> running = hashingExecutor.encodeAsync("pw1");
+        CompletableFuture<String> queued = hashingExecutor.encodeAsync("pw2");
+        CompletableFuture<String> rejected = hashingExecutor.encodeAsync("pw3");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertThrows(RejectedExecutionException.class, () -> hashingExecutor.encode("pw4"));
+        assertEquals(2, hashingExecutor.getRejectedCount());
+        waitUntil(() -> hashingExecutor.getQueuedCount() == 1 && hashingExecutor.getActiveCount() == 1);
+
+        release.countDown();
+        assertEquals("hash:pw1", running.get(1, TimeUnit.SECONDS));
+        assertEquals("hash:pw2", queued.get(1, TimeUnit.SECONDS));
+
+        // Places are given back after hashing
+        assertEquals("hash:pw5", hashingExecutor.encodeAsync("pw5").get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void test_blocking_call_waits_for_a_place() throws Exception {
+        hashingExecutor = new PasswordHashingExecutor(new BlockingEncoder(release), 1, 0, Duration.ofSeconds(5));
+        CompletableFuture<String> running = hashingExecutor.encodeAsync("pw1");
+
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> hashingExecutor.encode("pw2"));
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        release.countDown();
+        assertEquals("hash:pw1", running.get(1, TimeUnit.SECONDS));
+        assertEquals("hash:pw2", waiting.get(1, TimeUnit.SECONDS));
+        assertEquals(0, hashingExecutor.getRejectedCount());
+    }
+
+    @Test
+    void test_encoder_failure_is_thrown_to_caller() {
+        hashingExecutor = new PasswordHashingExecutor(new ThreadRecordingEncoder(), 1, 1, Duration.ofSeconds(1));
+
+        assertThrows(IllegalArgumentException.class, () -> hashingExecutor.encode(null));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> hashingExecutor.encodeAsync(null).get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        assertTrue(hashingExecutor.encodeAsync("pw").join().startsWith("password-hashing-"));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition is not met in time");
+            Thread.sleep(1);
+        }
+    }
+
+    private static class ThreadRecordingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (rawPassword == null) {
+                throw new IllegalArgumentException("Password must given");
+            }
+            return Thread.currentThread().getName();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return Thread.currentThread().getName().startsWith("password-hashing-") && "pw".contentEquals(rawPassword);
+        }
+    }
+
+    private static class BlockingEncoder implements PasswordEncoder {
+
+        private final CountDownLatch release;
+
+        BlockingEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
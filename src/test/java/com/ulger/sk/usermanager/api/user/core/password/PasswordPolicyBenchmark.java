@@ -0,0 +1,133 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Time and heap allocation per check of {@link CompiledPasswordPolicy} against {@link DefaultPasswordPolicyManager}
+ * with conditions of the same rules, for valid and invalid passwords. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class PasswordPolicyBenchmark {
+
+    private static final int PASSWORD_COUNT = 1024;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 5_000;
+
+    @Test
+    void compiled_policy_against_condition_loop() {
+        PasswordPolicyManager compiled = CompiledPasswordPolicy.Builder.aCompiledPasswordPolicy()
+                .withLength(8, 32)
+                .withRequiredCharacterClasses(CompiledPasswordPolicy.CharacterClass.DIGIT)
+                .withMinimumCharacterClasses(3)
+                .withMaximumRepeatedCharacters(2)
+                .withMaximumSequenceLength(3)
+                .build();
+
+        PasswordPolicyManager conditionLoop = new DefaultPasswordPolicyManager(Arrays.asList(
+                new DefaultPasswordLengthCondition(8, 32),
+                new PasswordPolicyConditionMock((password, result) -> {
+                    if (password.chars().noneMatch(Character::isDigit)) {
+                        result.addError("Password should contain a digit");
+                    }
+                }),
+                new PasswordPolicyConditionMock((password, result) -> {
+                    int classes = (password.chars().anyMatch(Character::isLowerCase) ? 1 : 0)
+                            + (password.chars().anyMatch(Character::isUpperCase) ? 1 : 0)
+                            + (password.chars().anyMatch(Character::isDigit) ? 1 : 0)
+                            + (password.chars().anyMatch(c -> !Character.isLetterOrDigit(c)) ? 1 : 0);
+                    if (classes < 3) {
+                        result.addError("Password should contain at least " + 3 + " character classes");
+                    }
+                }),
+                new PasswordPolicyConditionMock((password, result) -> {
+                    for (int i = 2; i < password.length(); i++) {
+                        if (password.charAt(i) == password.charAt(i - 1) && password.charAt(i) == password.charAt(i - 2)) {
+                            result.addError("Password can not repeat a character more than " + 2 + " times in a row");
+                            return;
+                        }
+                    }
+                }),
+                new PasswordPolicyConditionMock((password, result) -> {
+                    for (int i = 3; i < password.length(); i++) {
+                        int step = password.charAt(i) - password.charAt(i - 1);
+                        if ((step == 1 || step == -1) && password.charAt(i - 1) - password.charAt(i - 2) == step
+                                && password.charAt(i - 2) - password.charAt(i - 3) == step
+                                && Character.isLetterOrDigit(password.charAt(i)) && Character.isLetterOrDigit(password.charAt(i - 3))) {
+                            result.addError("Password can not contain a sequence longer than " + 3 + " characters");
+                            return;
+                        }
+                    }
+                })));
+
+        List<String> valid = passwords(true);
+        List<String> invalid = passwords(false);
+
+        for (List<String> passwords : Arrays.asList(valid, invalid)) {
+            for (String password : passwords) {
+                assertEquals(conditionLoop.checkPolicy(password).hasError(), compiled.checkPolicy(password).hasError(), password);
+            }
+        }
+
+        measure("condition loop, valid", conditionLoop, valid);
+        measure("compiled, valid", compiled, valid);
+        measure("condition loop, invalid", conditionLoop, invalid);
+        measure("compiled, invalid", compiled, invalid);
+    }
+
+    private static void measure(String name, PasswordPolicyManager policyManager, List<String> passwords) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int errorCount = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String password : passwords) {
+                errorCount += policyManager.checkPolicy(password).hasError() ? 1 : 0;
+            }
+        }
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (String password : passwords) {
+                errorCount += policyManager.checkPolicy(password).hasError() ? 1 : 0;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long checkCount = (long) MEASURED_ROUNDS * passwords.size();
+        System.out.printf("%s: %.1f ns/check, %.1f bytes/check (%d errors)%n",
+                name, (double) elapsedNanos / checkCount, (double) allocated / checkCount, errorCount);
+    }
+
+    private static List<String> passwords(boolean valid) {
+        Random random = new Random(valid ? 1 : 2);
+        String[] generated = new String[PASSWORD_COUNT];
+        for (int i = 0; i < PASSWORD_COUNT; i++) {
+            StringBuilder password = new StringBuilder();
+            int length = 10 + random.nextInt(8);
+            while (password.length() < length) {
+                password.append("Kq7#mWz2xP!r9Tb4".charAt(random.nextInt(16)));
+            }
+            password.setCharAt(random.nextInt(length), '5');
+
+            String candidate = password.toString().replaceAll("(.)\\1\\1+", "$1$1");
+            if (!valid) {
+                // Same length, broken rules: repeats, sequences, missing classes
+                candidate = i % 3 == 0 ? candidate.replaceAll("[0-9]", "a")
+                        : i % 3 == 1 ? candidate.substring(0, 4) + "aaaa" + candidate.substring(4)
+                        : candidate + "abcde";
+            }
+            generated[i] = candidate;
+        }
+        return Arrays.asList(generated);
+    }
+}
@@ -0,0 +1,81 @@
+package com.ulger.sk.usermanager.api.user.core.password;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Pbkdf2PasswordEncoderTest {
+
+    private final Pbkdf2PasswordEncoder passwordEncoder = new Pbkdf2PasswordEncoder(Pbkdf2PasswordEncoder.MINIMUM_ITERATIONS);
+
+    @Test
+    void test_encoded_password_describes_itself() {
+        String encoded = passwordEncoder.encode("secret");
+
+        assertTrue(encoded.matches("\\$pbkdf2-sha256\\$i=10000\\$[A-Za-z0-9+/]{22}\\$[A-Za-z0-9+/]{43}"), encoded);
+        assertNotEquals(encoded, passwordEncoder.encode("secret"));
+    }
+
+    @Test
+    void test_matches() {
+        String encoded = passwordEncoder.encode("secret");
+
+        assertTrue(passwordEncoder.matches("secret", encoded));
+        assertFalse(passwordEncoder.matches("Secret", encoded));
+        assertFalse(passwordEncoder.matches("", encoded));
+        assertFalse(passwordEncoder.matches(null, encoded));
+    }
+
+    @Test
+    void test_matches_by_recorded_algorithm_and_iterations() {
+        String encoded = new Pbkdf2PasswordEncoder(Pbkdf2PasswordEncoder.Algorithm.SHA512, 12_000).encode("secret");
+        assertTrue(encoded.startsWith("$pbkdf2-sha512$i=12000$"));
+
+        assertTrue(passwordEncoder.matches("secret", encoded));
+        assertTrue(passwordEncoder.needsUpgrade(encoded));
+        assertFalse(passwordEncoder.needsUpgrade(passwordEncoder.encode("secret")));
+        assertTrue(new Pbkdf2PasswordEncoder(20_000).needsUpgrade(passwordEncoder.encode("secret")));
+    }
+
+    @Test
+    void test_malformed_encoded_password_does_not_match() {
+        String encoded = passwordEncoder.encode("secret");
+
+        assertFalse(passwordEncoder.matches("secret", null));
+        assertFalse(passwordEncoder.matches("secret", "secret"));
+        assertFalse(passwordEncoder.matches("secret", encoded.replace("pbkdf2-sha256", "pbkdf2-md5")));
+        assertFalse(passwordEncoder.matches("secret", encoded.replace("i=10000", "i=x")));
+        assertFalse(passwordEncoder.matches("secret", encoded.substring(0, encoded.lastIndexOf('$'))));
+        assertFalse(passwordEncoder.matches("secret", encoded + "$extra"));
+        assertTrue(passwordEncoder.needsUpgrade("plain"));
+    }
+
+    @Test
+    void test_too_few_iterations_are_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new Pbkdf2PasswordEncoder(1_000));
+    }
+
+    @Test
+    void test_calibration_meets_latency_target() {
+        Duration target = Duration.ofMillis(40);
+        Pbkdf2PasswordEncoder calibrated = Pbkdf2PasswordEncoder.calibrate(Pbkdf2PasswordEncoder.Algorithm.SHA256, target, 0.95);
+
+        assertTrue(calibrated.getIterations() >= Pbkdf2PasswordEncoder.MINIMUM_ITERATIONS);
+
+        String encoded = calibrated.encode("secret");
+        long startTime = System.nanoTime();
+        assertTrue(calibrated.matches("secret", encoded));
+        // Generous bound, a shared test host may be slower than during calibration
+        assertTrue(System.nanoTime() - startTime < target.toNanos() * 5);
+    }
+
+    @Test
+    void test_calibration_arguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Pbkdf2PasswordEncoder.calibrate(Pbkdf2PasswordEncoder.Algorithm.SHA256, Duration.ZERO, 0.95));
+        assertThrows(IllegalArgumentException.class,
+                () -> Pbkdf2PasswordEncoder.calibrate(Pbkdf2PasswordEncoder.Algorithm.SHA256, Duration.ofMillis(10), 0));
+    }
+}
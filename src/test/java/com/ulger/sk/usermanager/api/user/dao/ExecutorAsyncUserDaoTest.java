@@ -0,0 +1,62 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutorAsyncUserDaoTest {
+
+    @Test
+    void test_calls_run_on_executor() {
+        InMemoryUserDao userDao = new InMemoryUserDao();
+
+        try (ExecutorAsyncUserDao asyncUserDao = new ExecutorAsyncUserDao(userDao, 2, 16)) {
+            asyncUserDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1")).join();
+
+            assertTrue(asyncUserDao.findByEmail("user1@gmail.com").join().isPresent());
+            assertEquals(1, asyncUserDao.find().join().size());
+
+            CompletionException duplicate = assertThrows(CompletionException.class,
+                    () -> asyncUserDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1")).join());
+            assertEquals(DataAccessException.DUPLICATE_KEY, ((DataAccessException) duplicate.getCause()).getReasonCode());
+        }
+    }
+
+    @Test
+    void test_saturated_executor_fails_calls() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryUserDao userDao = new InMemoryUserDao() {
+            @Override
+            public List<User> find() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.find();
+            }
+        };
+
+        try (ExecutorAsyncUserDao asyncUserDao = new ExecutorAsyncUserDao(userDao, 1, 1)) {
+            CompletableFuture<?> running = asyncUserDao.find();
+            CompletableFuture<?> queued = asyncUserDao.find();
+            CompletableFuture<?> rejected = asyncUserDao.find();
+
+            CompletionException thrown = assertThrows(CompletionException.class, rejected::join);
+            assertEquals(DataAccessException.TRANSIENT_FAILURE, ((DataAccessException) thrown.getCause()).getReasonCode());
+
+            release.countDown();
+            running.get(10, TimeUnit.SECONDS);
+            queued.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Write throughput of {@link FileUserDao} with 1M users created by batches and by concurrent single creates,
+ * and startup time from a checkpoint against rebuilding indexes from the whole log. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class FileUserDaoBenchmark {
+
+    private static final int USER_COUNT = 1_000_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int CONCURRENT_CREATE_COUNT = 100_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_throughput_and_startup_with_one_million_users() throws Exception {
+        long startTime = System.nanoTime();
+        try (FileUserDao userDao = open()) {
+            List<User> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < USER_COUNT; i++) {
+                batch.add(newInstance("user" + i, "user" + i + "@gmail.com", "fn" + i, "ln" + i, "cr" + i));
+                if (batch.size() == BATCH_SIZE) {
+                    userDao.createAll(batch);
+                    batch.clear();
+                }
+            }
+        }
+        long batchNanos = System.nanoTime() - startTime;
+
+        long cleanStartNanos;
+        long concurrentNanos;
+        long syncCount;
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+        startTime = System.nanoTime();
+        try (FileUserDao userDao = open()) {
+            cleanStartNanos = System.nanoTime() - startTime;
+            assertEquals(USER_COUNT, userDao.getUserCount());
+
+            long syncCountBefore = userDao.getSyncCount();
+            AtomicInteger sequence = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            startTime = System.nanoTime();
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = sequence.incrementAndGet(); i <= CONCURRENT_CREATE_COUNT; i = sequence.incrementAndGet()) {
+                            userDao.create(newInstance("new" + i, "new" + i + "@gmail.com", "fn", "ln", "cr"));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            concurrentNanos = System.nanoTime() - startTime;
+            syncCount = userDao.getSyncCount() - syncCountBefore;
+        }
+
+        Files.delete(directory.resolve("checkpoint"));
+
+        startTime = System.nanoTime();
+        try (FileUserDao userDao = open()) {
+            long rebuildNanos = System.nanoTime() - startTime;
+            assertEquals(USER_COUNT + CONCURRENT_CREATE_COUNT, userDao.getUserCount());
+
+            System.out.printf("createAll by %d: %.0f users/s%n", BATCH_SIZE, USER_COUNT / seconds(batchNanos));
+            System.out.printf("create on %d threads: %.0f users/s, %d syncs for %d creates%n",
+                    threads, CONCURRENT_CREATE_COUNT / seconds(concurrentNanos), syncCount, CONCURRENT_CREATE_COUNT);
+            System.out.printf("startup from checkpoint: %d ms, rebuild from log: %d ms, log size: %d MB%n",
+                    TimeUnit.NANOSECONDS.toMillis(cleanStartNanos), TimeUnit.NANOSECONDS.toMillis(rebuildNanos),
+                    userDao.getLogSize() >> 20);
+        }
+    }
+
+    private FileUserDao open() {
+        return FileUserDao.Builder.aFileUserDao()
+                .withDirectory(directory)
+                .withExpectedUsers(USER_COUNT)
+                .withCompactionInterval(Duration.ofMinutes(10))
+                .build();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
@@ -0,0 +1,263 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUserDaoTest {
+
+    @TempDir
+    Path directory;
+
+    private FileUserDao userDao;
+
+    @AfterEach
+    void tearDown() {
+        if (userDao != null) {
+            userDao.close();
+        }
+    }
+
+    @Test
+    void test_create_find_and_update() {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        userDao.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+
+        assertEquals("user1", userDao.findByEmail("user1@gmail.com").get().getUsername());
+        assertEquals("user2@gmail.com", userDao.findByUsername("user2").get().getEmail());
+        assertFalse(userDao.findByEmail("unknown@gmail.com").isPresent());
+
+        User updated = userDao.update(newInstance("user1", null, "new-fn", "new-ln", null));
+        assertEquals("new-fn", updated.getFirstName());
+        assertEquals("cr1", updated.getCredential());
+
+        userDao.updatePasswordByUsername("user2", "new-cr");
+        assertEquals("new-cr", userDao.findByEmail("user2@gmail.com").get().getCredential());
+
+        assertEquals(Arrays.asList("user1", "user2"), usernamesOf(userDao.find()));
+        assertEquals(2, userDao.getUserCount());
+        assertTrue(userDao.getGarbageBytes() > 0);
+    }
+
+    @Test
+    void test_update_credential_by_email_if_matches() {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        assertEquals("cr2", userDao.updateCredentialByEmail("user1@gmail.com", "cr1", "cr2").get().getCredential());
+        assertFalse(userDao.updateCredentialByEmail("user1@gmail.com", "cr1", "cr3").isPresent());
+        assertFalse(userDao.updateCredentialByEmail("unknown@gmail.com", "cr2", "cr3").isPresent());
+        assertEquals("cr2", userDao.findByUsername("user1").get().getCredential());
+    }
+
+    @Test
+    void test_duplicate_key_and_not_found() {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        DataAccessException byUsername = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance("user1", "other@gmail.com", "fn1", "ln1", "cr1")));
+        assertEquals(DataAccessException.DUPLICATE_KEY, byUsername.getReasonCode());
+
+        DataAccessException byEmail = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance("other", "user1@gmail.com", "fn1", "ln1", "cr1")));
+        assertEquals(DataAccessException.DUPLICATE_KEY, byEmail.getReasonCode());
+
+        DataAccessException missing = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance(null, "other@gmail.com", "fn1", "ln1", "cr1")));
+        assertEquals(DataAccessException.DATA_INTEGRITY_VIOLATION, missing.getReasonCode());
+
+        DataAccessException notFound = assertThrows(DataAccessException.class,
+                () -> userDao.updatePasswordByUsername("unknown", "cr"));
+        assertEquals(DataAccessException.NOT_FOUND, notFound.getReasonCode());
+
+        assertEquals(1, userDao.getUserCount());
+    }
+
+    @Test
+    void test_create_all_reports_failures_by_index() {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        Map<Integer, DataAccessException> failures = userDao.createAll(Arrays.asList(
+                newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"),
+                newInstance("user1", "other@gmail.com", "fn", "ln", "cr"),
+                newInstance("user3", "user2@gmail.com", "fn", "ln", "cr"),
+                newInstance("user4", "user4@gmail.com", "fn4", "ln4", "cr4")));
+
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(failures.keySet()));
+        assertEquals(Arrays.asList("user1", "user2", "user4"), usernamesOf(userDao.find()));
+    }
+
+    @Test
+    void test_reopen_replays_log_after_checkpoint() {
+        userDao = open(256);
+        for (int i = 0; i < 20; i++) {
+            userDao.create(newInstance("user" + i, "user" + i + "@gmail.com", "fn" + i, "ln" + i, "cr" + i));
+        }
+        userDao.updatePasswordByUsername("user3", "new-cr");
+        userDao.close();
+
+        userDao = open(256);
+        assertEquals(20, userDao.getUserCount());
+        assertEquals("new-cr", userDao.findByUsername("user3").get().getCredential());
+        assertEquals("user7", userDao.findByEmail("user7@gmail.com").get().getUsername());
+    }
+
+    @Test
+    void test_reopen_without_checkpoint_rebuilds_indexes() throws IOException {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        userDao.updatePasswordByUsername("user1", "new-cr");
+        userDao.close();
+
+        Files.delete(directory.resolve("checkpoint"));
+        Files.delete(directory.resolve("email.idx"));
+
+        userDao = open(1 << 20);
+        assertEquals(1, userDao.getUserCount());
+        assertEquals("new-cr", userDao.findByEmail("user1@gmail.com").get().getCredential());
+    }
+
+    @Test
+    void test_reopen_rebuilds_indexes_pointing_outside_of_log() throws IOException {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        userDao.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().endsWith(".log")).max(Path::compareTo).get();
+        }
+        byte[] segmentCopy = Files.readAllBytes(segment);
+        byte[] checkpointCopy = Files.readAllBytes(directory.resolve("checkpoint"));
+
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+        userDao.close();
+        userDao = null;
+
+        // Indexes keep user2 while log and checkpoint go back to before it is written
+        Files.write(segment, segmentCopy);
+        Files.write(directory.resolve("checkpoint"), checkpointCopy);
+
+        userDao = open(1 << 20);
+        assertEquals(1, userDao.getUserCount());
+        assertFalse(userDao.findByEmail("user2@gmail.com").isPresent());
+        assertFalse(userDao.findByUsername("user2").isPresent());
+
+        userDao.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+        assertEquals(Arrays.asList("user1", "user2"), usernamesOf(userDao.find()));
+    }
+
+    @Test
+    void test_torn_tail_is_truncated_on_reopen() throws IOException {
+        userDao = open(1 << 20);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        userDao.close();
+        userDao = null;
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().endsWith(".log")).max(Path::compareTo).get();
+        }
+        long size = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        userDao = open(1 << 20);
+        assertEquals(1, userDao.getUserCount());
+        assertEquals(size, Files.size(segment));
+
+        userDao.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+        assertEquals(Arrays.asList("user1", "user2"), usernamesOf(userDao.find()));
+    }
+
+    @Test
+    void test_compaction_reclaims_superseded_records() {
+        userDao = open(512);
+        for (int i = 0; i < 5; i++) {
+            userDao.create(newInstance("user" + i, "user" + i + "@gmail.com", "fn" + i, "ln" + i, "cr" + i));
+        }
+        for (int round = 0; round < 10; round++) {
+            userDao.updatePasswordByUsername("user0", "cr-" + round);
+        }
+
+        long logSize = userDao.getLogSize();
+        assertTrue(userDao.needsCompaction());
+
+        userDao.compact();
+
+        assertTrue(userDao.getLogSize() < logSize);
+        assertEquals(5, userDao.getUserCount());
+        assertEquals("cr-9", userDao.findByUsername("user0").get().getCredential());
+        userDao.close();
+
+        userDao = open(512);
+        assertEquals(5, userDao.getUserCount());
+        assertEquals("cr-9", userDao.findByUsername("user0").get().getCredential());
+        assertEquals("user4", userDao.findByEmail("user4@gmail.com").get().getUsername());
+    }
+
+    @Test
+    void test_concurrent_creates_share_syncs() throws Exception {
+        userDao = open(1 << 20);
+        int threads = 8;
+        int usersPerThread = 50;
+        long syncCountBefore = userDao.getSyncCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < usersPerThread; i++) {
+                        String username = "user" + thread + "-" + i;
+                        userDao.create(newInstance(username, username + "@gmail.com", "fn", "ln", "cr"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * usersPerThread, userDao.getUserCount());
+        assertTrue(userDao.getSyncCount() - syncCountBefore <= threads * usersPerThread);
+    }
+
+    private FileUserDao open(int segmentSize) {
+        return FileUserDao.Builder.aFileUserDao()
+                .withDirectory(directory)
+                .withSegmentSize(segmentSize)
+                .withExpectedUsers(16)
+                .withCompactionInterval(null)
+                .build();
+    }
+
+    private static List<String> usernamesOf(List<User> users) {
+        return users.stream().map(User::getUsername).sorted().collect(Collectors.toList());
+    }
+}
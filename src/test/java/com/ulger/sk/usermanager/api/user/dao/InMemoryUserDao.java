@@ -0,0 +1,100 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link UserDao} keeping users in a map, a replica of another instance is updated only when
+ * {@link #replicateFrom(InMemoryUserDao)} is called, which simulates replication lag.
+ */
+class InMemoryUserDao implements UserDao {
+
+    private final Map<String, User> usersByEmail = new ConcurrentHashMap<>();
+    private final AtomicInteger readCount = new AtomicInteger();
+    private volatile DataAccessException readFailure;
+
+    void replicateFrom(InMemoryUserDao primary) {
+        usersByEmail.clear();
+        usersByEmail.putAll(primary.usersByEmail);
+    }
+
+    void failReadsWith(DataAccessException readFailure) {
+        this.readFailure = readFailure;
+    }
+
+    int getReadCount() {
+        return readCount.get();
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        read();
+        return usersByEmail.values().stream().filter(user -> user.getUsername().equals(username)).findFirst();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        read();
+        return Optional.ofNullable(usersByEmail.get(email));
+    }
+
+    @Override
+    public List<User> find() {
+        read();
+        return new ArrayList<>(usersByEmail.values());
+    }
+
+    @Override
+    public User create(User user) {
+        if (usersByEmail.containsKey(user.getEmail()) || usersByEmail.values().stream().anyMatch(u -> u.getUsername().equals(user.getUsername()))) {
+            throw new DataAccessException("User exists", DataAccessException.DUPLICATE_KEY);
+        }
+
+        usersByEmail.put(user.getEmail(), user);
+        return user;
+    }
+
+    @Override
+    public User update(User user) {
+        User current = findByUsername(user.getUsername())
+                .orElseThrow(() -> new DataAccessException("User not found", DataAccessException.NOT_FOUND));
+
+        User updated = copy(current, user.getFirstName(), user.getLastName(), current.getCredential());
+        usersByEmail.put(updated.getEmail(), updated);
+        return updated;
+    }
+
+    @Override
+    public void updatePasswordByUsername(String username, String password) {
+        User current = findByUsername(username)
+                .orElseThrow(() -> new DataAccessException("User not found", DataAccessException.NOT_FOUND));
+
+        usersByEmail.put(current.getEmail(), copy(current, current.getFirstName(), current.getLastName(), password));
+    }
+
+    private void read() {
+        readCount.incrementAndGet();
+        if (readFailure != null) {
+            throw readFailure;
+        }
+    }
+
+    private static User copy(User user, String firstName, String lastName, String credential) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(user.getUsername())
+                .withEmail(user.getEmail())
+                .withFirstName(firstName)
+                .withLastName(lastName)
+                .withCredential(credential)
+                .build();
+    }
+}
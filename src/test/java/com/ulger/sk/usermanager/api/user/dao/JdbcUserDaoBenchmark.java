@@ -0,0 +1,143 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.jdbc.ConnectionPool;
+import com.ulger.sk.usermanager.jdbc.PooledConnection;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newDatabase;
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newInstance;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput of {@link JdbcUserDao} findByEmail and create on H2 in-memory database, against opening a connection
+ * and preparing the statement on every call, and of batched createAll against create. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class JdbcUserDaoBenchmark {
+
+    private static final int USER_COUNT = 10_000;
+    private static final long DURATION_MILLIS = 3_000;
+
+    @Test
+    void find_by_email_and_create_throughput() throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        try (ConnectionPool pool = newDatabase(threads)) {
+            JdbcUserDao userDao = new JdbcUserDao(pool);
+            for (int i = 0; i < USER_COUNT; i++) {
+                userDao.create(newInstance("user" + i, "user" + i + "@gmail.com", "fn" + i, "ln" + i, "cr" + i));
+            }
+
+            String url = urlOf(pool);
+
+            // Warm up
+            run(threads, DURATION_MILLIS / 3, () -> userDao.findByEmail(randomEmail()));
+            run(threads, DURATION_MILLIS / 3, () -> findByEmailWithNewConnection(url, randomEmail()));
+
+            long pooledFinds = run(threads, DURATION_MILLIS, () -> userDao.findByEmail(randomEmail()));
+            long unpooledFinds = run(threads, DURATION_MILLIS, () -> findByEmailWithNewConnection(url, randomEmail()));
+
+            AtomicInteger sequence = new AtomicInteger();
+            long creates = run(threads, DURATION_MILLIS, () -> {
+                int i = sequence.incrementAndGet();
+                userDao.create(newInstance("new" + i, "new" + i + "@gmail.com", "fn", "ln", "cr"));
+            });
+
+            System.out.printf("threads=%d, users=%,d%n", threads, USER_COUNT);
+            System.out.printf("findByEmail pooled             : %,d ops/s%n", pooledFinds * 1000 / DURATION_MILLIS);
+            System.out.printf("findByEmail connection per call: %,d ops/s%n", unpooledFinds * 1000 / DURATION_MILLIS);
+            System.out.printf("create pooled                  : %,d ops/s%n", creates * 1000 / DURATION_MILLIS);
+
+            assertTrue(pooledFinds > 0 && unpooledFinds > 0 && creates > 0);
+        }
+    }
+
+    @Test
+    void create_all_against_create_throughput() throws Exception {
+        try (ConnectionPool pool = newDatabase(1)) {
+            JdbcUserDao userDao = new JdbcUserDao(pool);
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < USER_COUNT; i++) {
+                userDao.create(newInstance("single" + i, "single" + i + "@gmail.com", "fn", "ln", "cr"));
+            }
+            long singleNanos = System.nanoTime() - startTime;
+
+            List<User> users = new ArrayList<>(USER_COUNT);
+            for (int i = 0; i < USER_COUNT; i++) {
+                users.add(newInstance("batched" + i, "batched" + i + "@gmail.com", "fn", "ln", "cr"));
+            }
+
+            startTime = System.nanoTime();
+            assertTrue(userDao.createAll(users).isEmpty());
+            long batchedNanos = System.nanoTime() - startTime;
+
+            System.out.printf("users=%,d%n", USER_COUNT);
+            System.out.printf("create one by one: %,d ops/s%n", USER_COUNT * 1_000_000_000L / singleNanos);
+            System.out.printf("createAll batched: %,d ops/s%n", USER_COUNT * 1_000_000_000L / batchedNanos);
+        }
+    }
+
+    private static String randomEmail() {
+        return "user" + ThreadLocalRandom.current().nextInt(USER_COUNT) + "@gmail.com";
+    }
+
+    private static String urlOf(ConnectionPool pool) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            return connection.getConnection().getMetaData().getURL();
+        }
+    }
+
+    private static void findByEmailWithNewConnection(String url, String email) {
+        try (Connection connection = DriverManager.getConnection(url);
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT username, credential, email, first_name, last_name FROM user WHERE email = ?")) {
+            statement.setString(1, email);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long run(int threads, long durationMillis, Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        List<Future<Long>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                long operations = 0;
+                while (System.nanoTime() < deadline) {
+                    operation.run();
+                    operations++;
+                }
+                return operations;
+            }));
+        }
+
+        long total = 0;
+        for (Future<Long> future : futures) {
+            total += future.get();
+        }
+
+        executor.shutdown();
+        return total;
+    }
+}
@@ -0,0 +1,290 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import com.ulger.sk.usermanager.jdbc.ConnectionPool;
+import com.ulger.sk.usermanager.jdbc.PooledConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcUserDaoTest {
+
+    private ConnectionPool connectionPool;
+    private JdbcUserDao userDao;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connectionPool = newDatabase(4);
+        userDao = new JdbcUserDao(connectionPool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.close();
+    }
+
+    @Test
+    void test_create_and_find() {
+        User user = newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1");
+
+        User created = userDao.create(user);
+        assertEquals("user1", created.getUsername());
+
+        User byEmail = userDao.findByEmail("user1@gmail.com").get();
+        assertEquals("user1", byEmail.getUsername());
+        assertEquals("cr1", byEmail.getCredential());
+        assertEquals("fn1", byEmail.getFirstName());
+        assertEquals("ln1", byEmail.getLastName());
+
+        assertEquals("user1@gmail.com", userDao.findByUsername("user1").get().getEmail());
+        assertFalse(userDao.findByEmail("unknown@gmail.com").isPresent());
+        assertEquals(1, userDao.find().size());
+    }
+
+    @Test
+    void test_duplicate_key() {
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        DataAccessException byUsername = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance("user1", "other@gmail.com", "fn1", "ln1", "cr1")));
+        assertEquals(DataAccessException.DUPLICATE_KEY, byUsername.getReasonCode());
+
+        DataAccessException byEmail = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance("other", "user1@gmail.com", "fn1", "ln1", "cr1")));
+        assertEquals(DataAccessException.DUPLICATE_KEY, byEmail.getReasonCode());
+    }
+
+    @Test
+    void test_invalid_and_missing_data() {
+        DataAccessException tooLong = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance(new String(new char[64]).replace('\0', 'x'), "a@gmail.com", "fn", "ln", "cr")));
+        assertEquals(DataAccessException.INVALID_DATA, tooLong.getReasonCode());
+
+        DataAccessException missing = assertThrows(DataAccessException.class,
+                () -> userDao.create(newInstance("user1", "a@gmail.com", null, "ln", "cr")));
+        assertEquals(DataAccessException.DATA_INTEGRITY_VIOLATION, missing.getReasonCode());
+    }
+
+    @Test
+    void test_update() {
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        User updated = userDao.update(newInstance("user1", null, "fn1Updated", "ln1Updated", null));
+        assertEquals("fn1Updated", updated.getFirstName());
+        assertEquals("cr1", updated.getCredential());
+
+        updated = userDao.update(newInstance(null, "user1@gmail.com", "fn1ByEmail", "ln1", null));
+        assertEquals("fn1ByEmail", updated.getFirstName());
+
+        DataAccessException notFound = assertThrows(DataAccessException.class,
+                () -> userDao.update(newInstance("unknown", null, "fn", "ln", null)));
+        assertEquals(DataAccessException.NOT_FOUND, notFound.getReasonCode());
+    }
+
+    @Test
+    void test_update_password() {
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        userDao.updatePasswordByUsername("user1", "cr1Updated");
+        assertEquals("cr1Updated", userDao.findByUsername("user1").get().getCredential());
+
+        DataAccessException notFound = assertThrows(DataAccessException.class,
+                () -> userDao.updatePasswordByUsername("unknown", "cr"));
+        assertEquals(DataAccessException.NOT_FOUND, notFound.getReasonCode());
+    }
+
+    @Test
+    void test_update_credential_by_email_if_matches() {
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        User updated = userDao.updateCredentialByEmail("user1@gmail.com", "cr1", "cr2").get();
+        assertEquals("cr2", updated.getCredential());
+        assertEquals("user1", updated.getUsername());
+
+        assertFalse(userDao.updateCredentialByEmail("user1@gmail.com", "cr1", "cr3").isPresent());
+        assertFalse(userDao.updateCredentialByEmail("unknown@gmail.com", "cr2", "cr3").isPresent());
+        assertEquals("cr2", userDao.findByEmail("user1@gmail.com").get().getCredential());
+    }
+
+    @Test
+    void test_find_by_emails() {
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 700; i++) {
+            userDao.create(newInstance("user" + i, "user" + i + "@gmail.com", "fn", "ln", "cr"));
+            emails.add("user" + i + "@gmail.com");
+        }
+        emails.add("unknown@gmail.com");
+
+        List<User> users = userDao.findByEmails(emails);
+        assertEquals(700, users.size());
+        assertEquals(700, users.stream().map(User::getEmail).distinct().count());
+
+        List<String> found = userDao.findByEmails(Arrays.asList("user3@gmail.com", "user5@gmail.com", "user7@gmail.com"))
+                .stream()
+                .map(User::getUsername)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("user3", "user5", "user7"), found);
+        assertTrue(userDao.findByEmails(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    void test_create_all_reports_failed_rows() {
+        userDao.create(newInstance("existing", "existing@gmail.com", "fn", "ln", "cr"));
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            users.add(newInstance("user" + i, "user" + i + "@gmail.com", "fn", "ln", "cr"));
+        }
+        users.set(3, newInstance("existing", "other@gmail.com", "fn", "ln", "cr"));
+        users.set(7, newInstance("user7", "user7@gmail.com", null, "ln", "cr"));
+
+        Map<Integer, DataAccessException> failures = userDao.setBatchSize(4).createAll(users);
+
+        assertEquals(Arrays.asList(3, 7), new ArrayList<>(failures.keySet()));
+        assertEquals(DataAccessException.DUPLICATE_KEY, failures.get(3).getReasonCode());
+        assertEquals(9, userDao.find().size());
+        assertTrue(userDao.findByUsername("user8").isPresent());
+        assertTrue(userDao.createAll(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    void test_create_all_rolls_back_batch_when_commit_fails() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute(readSchema());
+        }
+
+        AtomicBoolean failCommit = new AtomicBoolean(true);
+        ConnectionPool failingPool = new ConnectionPool(() -> {
+            Connection connection = DriverManager.getConnection(url);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("commit") && failCommit.getAndSet(false)) {
+                            throw new SQLException("commit failed", "40001");
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }, 1, Duration.ofSeconds(1), 16);
+
+        try {
+            JdbcUserDao failingDao = new JdbcUserDao(failingPool);
+            List<User> users = Arrays.asList(
+                    newInstance("user1", "user1@gmail.com", "fn", "ln", "cr"),
+                    newInstance("user2", "user2@gmail.com", "fn", "ln", "cr"));
+
+            assertThrows(DataAccessException.class, () -> failingDao.createAll(users));
+            assertTrue(failingDao.find().isEmpty());
+
+            failingDao.create(newInstance("user3", "user3@gmail.com", "fn", "ln", "cr"));
+            assertEquals(1, failingDao.find().size());
+        } finally {
+            failingPool.close();
+        }
+    }
+
+    @Test
+    void test_find_page() {
+        for (int i = 9; i >= 0; i--) {
+            userDao.create(newInstance("user" + i, "user" + i + "@gmail.com", "fn", "ln", "cr"));
+        }
+
+        List<String> page = userDao.findPage(null, 3).stream().map(User::getUsername).collect(Collectors.toList());
+        assertEquals(Arrays.asList("user0", "user1", "user2"), page);
+
+        page = userDao.findPage("user2", 3).stream().map(User::getUsername).collect(Collectors.toList());
+        assertEquals(Arrays.asList("user3", "user4", "user5"), page);
+
+        assertEquals(1, userDao.findPage("user8", 3).size());
+        assertTrue(userDao.findPage("user9", 3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> userDao.findPage(null, 0));
+    }
+
+    @Test
+    void test_for_each_streams_all_users() throws SQLException {
+        for (int i = 0; i < 25; i++) {
+            userDao.create(newInstance("user" + i, "user" + i + "@gmail.com", "fn", "ln", "cr"));
+        }
+
+        List<User> users = new ArrayList<>();
+        userDao.setFetchSize(10).forEach(users::add);
+
+        assertEquals(25, users.size());
+        assertEquals(25, users.stream().map(User::getEmail).distinct().count());
+        assertEquals(25, userDao.find().size());
+
+        // Connection is returned to pool with auto commit restored, also when consumer throws
+        assertThrows(IllegalStateException.class, () -> userDao.forEach(user -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(connectionPool.getCreatedCount(), connectionPool.getIdleCount());
+        try (PooledConnection connection = connectionPool.borrow()) {
+            assertTrue(connection.getConnection().getAutoCommit());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> userDao.setFetchSize(0));
+    }
+
+    static User newInstance(String username, String email, String firstName, String lastName, String credential) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(username)
+                .withEmail(email)
+                .withFirstName(firstName)
+                .withLastName(lastName)
+                .withCredential(credential)
+                .build();
+    }
+
+    /**
+     * Creates a new in-memory H2 database with schema.sql and returns a pool connecting to it
+     */
+    static ConnectionPool newDatabase(int poolSize) throws SQLException, IOException {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute(readSchema());
+        }
+
+        return new ConnectionPool(url, "", "", poolSize);
+    }
+
+    private static String readSchema() throws IOException {
+        try (InputStream stream = JdbcUserDaoTest.class.getResourceAsStream("/schema.sql")) {
+            byte[] bytes = new byte[8192];
+            int length = 0;
+            int read;
+            while ((read = stream.read(bytes, length, bytes.length - length)) > 0) {
+                length += read;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingUserDaoTest {
+
+    private InMemoryUserDao primary;
+    private InMemoryUserDao replica1;
+    private InMemoryUserDao replica2;
+    private AtomicLong nanoTime;
+    private RoutingUserDao userDao;
+
+    @BeforeEach
+    void setUp() {
+        primary = new InMemoryUserDao();
+        replica1 = new InMemoryUserDao();
+        replica2 = new InMemoryUserDao();
+        nanoTime = new AtomicLong();
+        userDao = newRoutingUserDao(1000);
+    }
+
+    @Test
+    void test_reads_follow_writes_within_window() {
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        // Replicas have not received the write yet
+        assertTrue(userDao.findByEmail("user1@gmail.com").isPresent());
+        assertTrue(userDao.findByUsername("user1").isPresent());
+        assertEquals(1, userDao.findByEmails(Collections.singletonList("user1@gmail.com")).size());
+        assertEquals(0, replica1.getReadCount() + replica2.getReadCount());
+
+        replica1.replicateFrom(primary);
+        replica2.replicateFrom(primary);
+        nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+
+        int primaryReads = primary.getReadCount();
+        assertTrue(userDao.findByEmail("user1@gmail.com").isPresent());
+        assertEquals(primaryReads, primary.getReadCount());
+        assertEquals(1, userDao.getTrackedKeyCount());
+    }
+
+    @Test
+    void test_password_update_is_visible_by_email() {
+        primary.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        replica1.replicateFrom(primary);
+        replica2.replicateFrom(primary);
+
+        userDao.updatePasswordByUsername("user1", "new-cr");
+
+        assertEquals("new-cr", userDao.findByEmail("user1@gmail.com").get().getCredential());
+        assertEquals("cr1", replica1.findByEmail("user1@gmail.com").get().getCredential());
+    }
+
+    @Test
+    void test_reads_are_balanced_across_replicas() {
+        primary.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        replica1.replicateFrom(primary);
+        replica2.replicateFrom(primary);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(userDao.findByEmail("user1@gmail.com").isPresent());
+        }
+        userDao.find();
+        userDao.findPage(null, 10);
+
+        assertEquals(6, replica1.getReadCount());
+        assertEquals(6, replica2.getReadCount());
+        assertEquals(0, primary.getReadCount());
+    }
+
+    @Test
+    void test_transient_replica_failure_is_retried_on_primary() {
+        primary.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        replica1.failReadsWith(new DataAccessException("Lost", DataAccessException.CONNECTION_FAILURE));
+        userDao = new RoutingUserDao(primary, Collections.singletonList(replica1));
+
+        assertTrue(userDao.findByEmail("user1@gmail.com").isPresent());
+        assertEquals(1, primary.getReadCount());
+
+        replica1.failReadsWith(new DataAccessException("Invalid", DataAccessException.INVALID_DATA));
+        assertThrows(DataAccessException.class, () -> userDao.findByEmail("user1@gmail.com"));
+    }
+
+    @Test
+    void test_overflow_of_tracked_keys_sends_key_reads_to_primary() {
+        userDao = newRoutingUserDao(2);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        userDao.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+
+        // Keys of user2 could not be tracked
+        assertTrue(userDao.findByEmail("user2@gmail.com").isPresent());
+        assertEquals(0, replica1.getReadCount() + replica2.getReadCount());
+
+        nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+        userDao.findByEmail("user2@gmail.com");
+        assertEquals(1, replica1.getReadCount() + replica2.getReadCount());
+    }
+
+    @Test
+    void test_expired_keys_are_purged_on_write_and_rewritten_keys_are_kept() {
+        userDao = newRoutingUserDao(4);
+        userDao.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(3).toNanos());
+        userDao.updatePasswordByUsername("user1", "new-cr");
+
+        nanoTime.addAndGet(Duration.ofSeconds(3).toNanos());
+        userDao.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+
+        // Keys of user1 are written again within window, so they are not purged
+        assertEquals(4, userDao.getTrackedKeyCount());
+        assertEquals("new-cr", userDao.findByEmail("user1@gmail.com").get().getCredential());
+
+        nanoTime.addAndGet(Duration.ofSeconds(3).toNanos());
+        userDao.create(newInstance("user3", "user3@gmail.com", "fn3", "ln3", "cr3"));
+
+        // Keys of user1 are purged, so keys of user3 are tracked instead of overflowing
+        assertEquals(4, userDao.getTrackedKeyCount());
+        assertTrue(userDao.findByEmail("user3@gmail.com").isPresent());
+        assertEquals(0, replica1.getReadCount() + replica2.getReadCount());
+
+        userDao.findByEmail("user1@gmail.com");
+        assertEquals(1, replica1.getReadCount() + replica2.getReadCount());
+    }
+
+    private RoutingUserDao newRoutingUserDao(int maximumTrackedKeys) {
+        return new RoutingUserDao(primary, Arrays.<UserDao>asList(replica1, replica2), Duration.ofSeconds(5),
+                maximumTrackedKeys, nanoTime::get);
+    }
+}
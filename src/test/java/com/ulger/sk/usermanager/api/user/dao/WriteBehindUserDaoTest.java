@@ -0,0 +1,231 @@
+package com.ulger.sk.usermanager.api.user.dao;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ulger.sk.usermanager.api.user.dao.JdbcUserDaoTest.newInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindUserDaoTest {
+
+    private CountingUserDao delegate;
+    private WriteBehindUserDao userDao;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new CountingUserDao();
+        delegate.create(newInstance("user1", "user1@gmail.com", "fn1", "ln1", "cr1"));
+        delegate.create(newInstance("user2", "user2@gmail.com", "fn2", "ln2", "cr2"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.close();
+    }
+
+    @Test
+    void test_writes_are_coalesced_and_visible_before_flush() {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.BUFFERED);
+
+        for (int i = 0; i < 5; i++) {
+            userDao.update(newInstance("user1", null, "fn-" + i, "ln-" + i, null));
+        }
+        userDao.updatePasswordByUsername("user1", "new-cr");
+        userDao.update(newInstance(null, "user2@gmail.com", "fn2-new", "ln2", null));
+
+        assertEquals(0, delegate.writeCount.get());
+        assertEquals("fn-4", userDao.findByEmail("user1@gmail.com").get().getFirstName());
+        assertEquals("new-cr", userDao.findByUsername("user1").get().getCredential());
+        assertEquals("fn2-new", userDao.find().stream().filter(user -> user.getUsername().equals("user2")).findFirst().get().getFirstName());
+        assertEquals("fn1", delegate.findByEmail("user1@gmail.com").get().getFirstName());
+
+        userDao.flush();
+
+        assertEquals(3, delegate.writeCount.get());
+        assertEquals("fn-4", delegate.findByEmail("user1@gmail.com").get().getFirstName());
+        assertEquals("new-cr", delegate.findByEmail("user1@gmail.com").get().getCredential());
+        assertEquals(7, userDao.getBufferedWriteCount());
+        assertEquals(5, userDao.getCoalescedWriteCount());
+        assertEquals(3, userDao.getFlushedWriteCount());
+        assertEquals(0, userDao.getPendingCount());
+    }
+
+    @Test
+    void test_batch_size_triggers_flush() throws Exception {
+        userDao = newWriteBehindUserDao(2, WriteBehindUserDao.Durability.BUFFERED);
+
+        userDao.update(newInstance("user1", null, "fn1-new", "ln1", null));
+        userDao.update(newInstance("user2", null, "fn2-new", "ln2", null));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (delegate.writeCount.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(2, delegate.writeCount.get());
+    }
+
+    @Test
+    void test_flushed_durability_waits_for_flush() throws Exception {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.FLUSHED);
+
+        CompletableFuture<User> update = CompletableFuture.supplyAsync(() -> userDao.update(newInstance("user1", null, "fn1-new", "ln1", null)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (userDao.getPendingCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(update.isDone());
+
+        userDao.flush();
+
+        assertEquals("fn1-new", update.get(10, TimeUnit.SECONDS).getFirstName());
+        assertEquals("fn1-new", delegate.findByUsername("user1").get().getFirstName());
+    }
+
+    @Test
+    void test_not_found_is_thrown_and_retryable_failure_is_retried() {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.BUFFERED);
+
+        DataAccessException notFound = assertThrows(DataAccessException.class,
+                () -> userDao.update(newInstance("unknown", null, "fn", "ln", null)));
+        assertEquals(DataAccessException.NOT_FOUND, notFound.getReasonCode());
+
+        userDao.update(newInstance("user1", null, "fn1-new", "ln1", null));
+        delegate.failWrites.set(1);
+
+        userDao.flush();
+        assertEquals(1, userDao.getPendingCount());
+        assertEquals("fn1-new", userDao.findByUsername("user1").get().getFirstName());
+
+        userDao.flush();
+        assertEquals(0, userDao.getPendingCount());
+        assertEquals("fn1-new", delegate.findByUsername("user1").get().getFirstName());
+    }
+
+    @Test
+    void test_close_drains_buffer_and_conditional_update_sees_buffered_password() {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.BUFFERED);
+
+        userDao.updatePasswordByUsername("user1", "buffered-cr");
+        assertTrue(userDao.updateCredentialByEmail("user1@gmail.com", "buffered-cr", "new-cr").isPresent());
+        assertEquals("new-cr", userDao.findByEmail("user1@gmail.com").get().getCredential());
+
+        userDao.update(newInstance("user2", null, "fn2-new", "ln2", null));
+        userDao.close();
+
+        assertEquals("fn2-new", delegate.findByUsername("user2").get().getFirstName());
+        assertThrows(IllegalStateException.class, () -> userDao.updatePasswordByUsername("user1", "cr"));
+    }
+
+    @Test
+    void test_conditional_update_flushes_only_its_user() {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.BUFFERED);
+
+        userDao.updatePasswordByUsername("user1", "buffered-cr");
+        userDao.update(newInstance("user2", null, "fn2-new", "ln2", null));
+
+        assertTrue(userDao.updateCredentialByEmail("user1@gmail.com", "buffered-cr", "new-cr").isPresent());
+
+        // Buffered password of user1 and the conditional update itself
+        assertEquals(2, delegate.writeCount.get());
+        assertEquals(1, userDao.getPendingCount());
+        assertEquals("fn2", delegate.findByUsername("user2").get().getFirstName());
+        assertEquals("fn2-new", userDao.findByEmail("user2@gmail.com").get().getFirstName());
+    }
+
+    @Test
+    void test_version_buffered_while_flushing_stays_visible_by_email() {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.BUFFERED);
+        delegate.onWrite = () -> {
+            delegate.onWrite = null;
+            userDao.updatePasswordByUsername("user1", "newer-cr");
+        };
+
+        userDao.updatePasswordByUsername("user1", "buffered-cr");
+        userDao.flush();
+
+        assertEquals(1, userDao.getPendingCount());
+        assertEquals("newer-cr", userDao.findByEmail("user1@gmail.com").get().getCredential());
+        assertFalse(userDao.updateCredentialByEmail("user1@gmail.com", "buffered-cr", "new-cr").isPresent());
+        assertEquals("newer-cr", delegate.findByEmail("user1@gmail.com").get().getCredential());
+    }
+
+    @Test
+    void test_writes_racing_with_close_are_never_left_waiting() throws Exception {
+        userDao = newWriteBehindUserDao(100, WriteBehindUserDao.Durability.FLUSHED);
+
+        CompletableFuture<Integer> writer = CompletableFuture.supplyAsync(() -> {
+            int writes = 0;
+            try {
+                while (true) {
+                    userDao.updatePasswordByUsername("user1", "cr-" + writes++);
+                }
+            } catch (IllegalStateException e) {
+                return writes;
+            }
+        });
+
+        CompletableFuture.runAsync(() -> {
+            while (true) {
+                userDao.flush();
+                if (writer.isDone()) {
+                    return;
+                }
+            }
+        });
+
+        Thread.sleep(20);
+        userDao.close();
+
+        writer.get(10, TimeUnit.SECONDS);
+        assertEquals(0, userDao.getPendingCount());
+    }
+
+    private WriteBehindUserDao newWriteBehindUserDao(int batchSize, WriteBehindUserDao.Durability durability) {
+        return WriteBehindUserDao.Builder.aWriteBehindUserDao()
+                .withUserDao(delegate)
+                .withBatchSize(batchSize)
+                .withFlushInterval(Duration.ofHours(1))
+                .withDurability(durability)
+                .build();
+    }
+
+    private static class CountingUserDao extends InMemoryUserDao {
+        final AtomicInteger writeCount = new AtomicInteger();
+        final AtomicInteger failWrites = new AtomicInteger();
+        volatile Runnable onWrite;
+
+        @Override
+        public User update(User user) {
+            countWrite();
+            return super.update(user);
+        }
+
+        @Override
+        public void updatePasswordByUsername(String username, String password) {
+            countWrite();
+            super.updatePasswordByUsername(username, password);
+        }
+
+        private void countWrite() {
+            Runnable hook = onWrite;
+            if (hook != null) {
+                hook.run();
+            }
+
+            if (failWrites.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                throw new DataAccessException("Lost", DataAccessException.CONNECTION_FAILURE);
+            }
+            writeCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.ulger.sk.usermanager.api.user.transfer.UserTransferTest.newUser;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Export and import throughput of 10M synthetic users in both formats, with the highest used heap seen meanwhile
+ * to show memory does not grow with count of users. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class UserTransferBenchmark {
+
+    private static final int USER_COUNT = 10_000_000;
+    private static final int HEAP_SAMPLE_INTERVAL = 500_000;
+
+    @TempDir
+    Path directory;
+
+    private long maximumUsedHeap;
+
+    @Test
+    void export_and_import_ten_million_users() throws IOException {
+        for (UserTransferFormat format : UserTransferFormat.values()) {
+            Path file = directory.resolve("users." + format.name().toLowerCase());
+            maximumUsedHeap = 0;
+
+            long startTime = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                assertEquals(USER_COUNT, new UserExporter(format).export(this::generateUsers, channel));
+            }
+            long exportNanos = System.nanoTime() - startTime;
+            long exportHeap = maximumUsedHeap;
+
+            AtomicLong createdCount = new AtomicLong();
+            UserDao userDao = mock(UserDao.class);
+            when(userDao.createAll(anyList())).thenAnswer(invocation -> {
+                createdCount.addAndGet(invocation.<List<?>>getArgument(0).size());
+                if (createdCount.get() % HEAP_SAMPLE_INTERVAL == 0) {
+                    sampleHeap();
+                }
+                return Collections.emptyMap();
+            });
+
+            maximumUsedHeap = 0;
+            UserImportResult result;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                result = new UserImporter(userDao).importUsers(channel, format);
+            }
+            assertEquals(USER_COUNT, result.getCreatedCount());
+            assertEquals(USER_COUNT, createdCount.get());
+
+            System.out.printf("%s: file %d MB, export %.0f users/s, import %.0f users/s, max used heap export %d MB, import %d MB%n",
+                    format, Files.size(file) >> 20, USER_COUNT / seconds(exportNanos), result.getThroughput(),
+                    exportHeap >> 20, maximumUsedHeap >> 20);
+        }
+    }
+
+    private void generateUsers(Consumer<User> consumer) {
+        for (int i = 0; i < USER_COUNT; i++) {
+            consumer.accept(newUser("user" + i, "user" + i + "@gmail.com", "First" + i, "Last, " + i,
+                    "$2a$10$" + Integer.toHexString(i * 31) + "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQR"));
+            if (i % HEAP_SAMPLE_INTERVAL == 0) {
+                sampleHeap();
+            }
+        }
+    }
+
+    private void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        maximumUsedHeap = Math.max(maximumUsedHeap, runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
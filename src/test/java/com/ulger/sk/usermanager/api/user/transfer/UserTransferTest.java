@@ -0,0 +1,199 @@
+package com.ulger.sk.usermanager.api.user.transfer;
+
+import com.ulger.sk.usermanager.api.user.core.DefaultUser;
+import com.ulger.sk.usermanager.api.user.core.User;
+import com.ulger.sk.usermanager.api.user.core.UserDao;
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserTransferTest {
+
+    private static final List<User> USERS = Arrays.asList(
+            newUser("user1", "user1@gmail.com", "fn1", "ln1", "cr1"),
+            newUser("user2", "user2@gmail.com", null, "", "cr2"),
+            newUser("user,3", "user3@gmail.com", "say \"hi\"", "multi\r\nline\nname", "cr3"),
+            newUser("kullanıcı4", "user4@gmail.com", "Şükrü", "Öztürk 日本", "cr,\"4\""));
+
+    @Mock
+    private UserDao userDao;
+
+    @Test
+    void test_binary_round_trip_keeps_all_fields() throws IOException {
+        byte[] exported = export(UserTransferFormat.BINARY, 64, USERS);
+        assertUsersEqual(USERS, importToList(exported, UserTransferFormat.BINARY));
+    }
+
+    @Test
+    void test_csv_round_trip_keeps_all_fields() throws IOException {
+        byte[] exported = export(UserTransferFormat.CSV, 64, USERS);
+        assertUsersEqual(USERS, importToList(exported, UserTransferFormat.CSV));
+    }
+
+    @Test
+    void test_csv_is_readable_text() throws IOException {
+        String exported = new String(export(UserTransferFormat.CSV, 64, USERS.subList(0, 3)), StandardCharsets.UTF_8);
+
+        assertEquals("username,email,first_name,last_name,credential\r\n"
+                + "user1,user1@gmail.com,fn1,ln1,cr1\r\n"
+                + "user2,user2@gmail.com,,\"\",cr2\r\n"
+                + "\"user,3\",user3@gmail.com,\"say \"\"hi\"\"\",\"multi\r\nline\nname\",cr3\r\n", exported);
+    }
+
+    @Test
+    void test_empty_export_round_trip() throws IOException {
+        for (UserTransferFormat format : UserTransferFormat.values()) {
+            assertTrue(importToList(export(format, 64, Collections.emptyList()), format).isEmpty());
+        }
+    }
+
+    @Test
+    void test_binary_corrupted_block_is_detected() throws IOException {
+        byte[] exported = export(UserTransferFormat.BINARY, 64, USERS);
+        exported[exported.length / 2] ^= 0x10;
+
+        IOException e = assertThrows(IOException.class, () -> importToList(exported, UserTransferFormat.BINARY));
+        assertFalse(e instanceof EOFException);
+    }
+
+    @Test
+    void test_binary_oversized_block_header_is_rejected_before_reading_payload() throws IOException {
+        byte[] exported = export(UserTransferFormat.BINARY, 64, USERS);
+        // Payload length of first block, right after file header and record count
+        ByteBuffer.wrap(exported).putInt(8 + 4, Integer.MAX_VALUE);
+
+        IOException e = assertThrows(IOException.class, () -> importToList(exported, UserTransferFormat.BINARY));
+        assertFalse(e instanceof EOFException);
+        assertTrue(e.getMessage().contains("maximum block size"));
+    }
+
+    @Test
+    void test_binary_truncation_is_detected() throws IOException {
+        byte[] exported = export(UserTransferFormat.BINARY, 64, USERS);
+
+        // Even without a torn block, a missing end marker means export was not finished
+        assertThrows(EOFException.class, () -> importToList(Arrays.copyOf(exported, exported.length - 12), UserTransferFormat.BINARY));
+        assertThrows(EOFException.class, () -> importToList(Arrays.copyOf(exported, exported.length - 20), UserTransferFormat.BINARY));
+    }
+
+    @Test
+    void test_csv_malformed_input_is_rejected() {
+        assertThrows(IOException.class, () -> importToList(csv("user,email\r\n"), UserTransferFormat.CSV));
+        assertThrows(IOException.class, () -> importToList(
+                csv("username,email,first_name,last_name,credential\r\nuser1,user1@gmail.com,fn1\r\n"), UserTransferFormat.CSV));
+        assertThrows(IOException.class, () -> importToList(
+                csv("username,email,first_name,last_name,credential\r\n\"user1,user1@gmail.com,fn1,ln1,cr1\r\n"), UserTransferFormat.CSV));
+    }
+
+    @Test
+    void test_import_creates_users_in_batches_and_counts_failures() throws IOException {
+        List<Integer> batchSizes = new ArrayList<>();
+        when(userDao.createAll(anyList())).thenAnswer(invocation -> {
+            List<User> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return batchSizes.size() == 1
+                    ? Collections.singletonMap(1, new DataAccessException("duplicate", DataAccessException.DUPLICATE_KEY))
+                    : Collections.emptyMap();
+        });
+
+        byte[] exported = export(UserTransferFormat.BINARY, 64, USERS);
+        UserImportResult result = new UserImporter(userDao)
+                .setBatchSize(3)
+                .importUsers(Channels.newChannel(new ByteArrayInputStream(exported)), UserTransferFormat.BINARY);
+
+        assertEquals(Arrays.asList(3, 1), batchSizes);
+        assertEquals(4, result.getReadCount());
+        assertEquals(3, result.getCreatedCount());
+        assertEquals(1, result.getFailedCount());
+    }
+
+    @Test
+    void test_batch_failure_stops_import() throws IOException {
+        when(userDao.createAll(anyList())).thenThrow(new DataAccessException("down", DataAccessException.CONNECTION_FAILURE));
+
+        byte[] exported = export(UserTransferFormat.CSV, 64, USERS);
+        UserImporter importer = new UserImporter(userDao).setBatchSize(2);
+
+        assertThrows(DataAccessException.class,
+                () -> importer.importUsers(Channels.newChannel(new ByteArrayInputStream(exported)), UserTransferFormat.CSV));
+        verify(userDao, times(1)).createAll(anyList());
+    }
+
+    @Test
+    void test_export_from_dao_streams_users() throws IOException {
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(0);
+            USERS.forEach(consumer);
+            return null;
+        }).when(userDao).forEach(any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new UserExporter(UserTransferFormat.BINARY).export(userDao, Channels.newChannel(out));
+
+        assertEquals(USERS.size(), count);
+        assertUsersEqual(USERS, importToList(out.toByteArray(), UserTransferFormat.BINARY));
+    }
+
+    private static byte[] export(UserTransferFormat format, int bufferSize, List<User> users) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new UserExporter(format).setBufferSize(bufferSize).export(users::forEach, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static List<User> importToList(byte[] exported, UserTransferFormat format) throws IOException {
+        List<User> users = new ArrayList<>();
+        UserReader reader = format == UserTransferFormat.BINARY
+                ? new BinaryUserReader(Channels.newChannel(new ByteArrayInputStream(exported)), 16)
+                : new CsvUserReader(Channels.newChannel(new ByteArrayInputStream(exported)), 16);
+
+        for (User user = reader.next(); user != null; user = reader.next()) {
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static byte[] csv(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertUsersEqual(List<User> expected, List<User> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUsername(), actual.get(i).getUsername());
+            assertEquals(expected.get(i).getEmail(), actual.get(i).getEmail());
+            assertEquals(expected.get(i).getFirstName(), actual.get(i).getFirstName());
+            assertEquals(expected.get(i).getLastName(), actual.get(i).getLastName());
+            assertEquals(expected.get(i).getCredential(), actual.get(i).getCredential());
+        }
+    }
+
+    static User newUser(String username, String email, String firstName, String lastName, String credential) {
+        return DefaultUser.Builder.anUserImp()
+                .withUsername(username)
+                .withEmail(email)
+                .withFirstName(firstName)
+                .withLastName(lastName)
+                .withCredential(credential)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    private static final int INSERTIONS = 100_000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    @Test
+    void test_invalid_probability() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+    }
+
+    @Test
+    void test_no_false_negatives() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, FALSE_POSITIVE_PROBABILITY);
+
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put("user" + i + "@gmail.com");
+        }
+
+        for (int i = 0; i < INSERTIONS; i++) {
+            assertTrue(filter.mightContain("user" + i + "@gmail.com"));
+        }
+    }
+
+    @Test
+    void test_false_positive_rate() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, FALSE_POSITIVE_PROBABILITY);
+
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put("user" + i + "@gmail.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < INSERTIONS; i++) {
+            if (filter.mightContain("unknown" + i + "@gmail.com")) {
+                falsePositives++;
+            }
+        }
+
+        double rate = (double) falsePositives / INSERTIONS;
+        assertTrue(rate < FALSE_POSITIVE_PROBABILITY * 2, "false positive rate: " + rate);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void test_empty_histogram() {
+        assertEquals(0, LatencyHistogram.percentile(new LatencyHistogram().snapshot(), 0.99));
+    }
+
+    @Test
+    void test_bucket_bounds_cover_values() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE};
+
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.upperBound(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    void test_percentiles_are_within_precision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        long[] counts = histogram.snapshot();
+        assertWithinPrecision(5_000_000, LatencyHistogram.percentile(counts, 0.50));
+        assertWithinPrecision(9_500_000, LatencyHistogram.percentile(counts, 0.95));
+        assertWithinPrecision(9_900_000, LatencyHistogram.percentile(counts, 0.99));
+        assertWithinPrecision(10_000_000, LatencyHistogram.percentile(counts, 1));
+    }
+
+    @Test
+    void test_invalid_percentile() {
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.percentile(new long[0], 1.5));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NegativeLookupCacheTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final NegativeLookupCache<String> cache = new NegativeLookupCache<>(Duration.ofSeconds(10), 3, nanoTime::get);
+
+    @Test
+    void test_key_expires() {
+        cache.add("key1");
+        assertTrue(cache.contains("key1"));
+
+        nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertFalse(cache.contains("key1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void test_oldest_key_is_evicted_when_full() {
+        cache.add("key1");
+        cache.add("key2");
+        cache.add("key3");
+        cache.add("key4");
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains("key1"));
+        assertTrue(cache.contains("key2"));
+        assertTrue(cache.contains("key4"));
+    }
+
+    @Test
+    void test_expired_keys_are_purged_on_add() {
+        cache.add("key1");
+        cache.add("key2");
+        nanoTime.addAndGet(Duration.ofSeconds(5).toNanos());
+        cache.add("key3");
+        nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+
+        cache.add("key4");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains("key3"));
+        assertTrue(cache.contains("key4"));
+    }
+
+    @Test
+    void test_readded_and_invalidated_keys_are_not_evicted_by_stale_entries() {
+        cache.add("key1");
+        cache.invalidate("key1");
+        cache.add("key2");
+        cache.add("key3");
+        cache.add("key1");
+
+        // Queue entry of first key1 is stale, evicting it makes no room, so key2 is evicted
+        cache.add("key4");
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.contains("key1"));
+        assertFalse(cache.contains("key2"));
+    }
+
+    @Test
+    void test_add_is_skipped_after_invalidation() {
+        long generation = cache.getGeneration();
+        cache.invalidate("key1");
+
+        cache.add("key1", generation);
+        assertFalse(cache.contains("key1"));
+
+        cache.add("key1", cache.getGeneration());
+        assertTrue(cache.contains("key1"));
+    }
+}
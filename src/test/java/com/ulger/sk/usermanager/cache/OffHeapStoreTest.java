@@ -0,0 +1,130 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStoreTest {
+
+    @Test
+    void test_put_get_and_overwrite() {
+        OffHeapStore store = new OffHeapStore(1024 * 1024, 64 * 1024);
+
+        assertNull(store.get(bytes("key1")));
+        assertTrue(store.put(bytes("key1"), bytes("value1")));
+        assertTrue(store.put(bytes("key2"), bytes("value2")));
+        assertEquals("value1", string(store.get(bytes("key1"))));
+
+        assertTrue(store.put(bytes("key1"), bytes("value1-updated")));
+        assertEquals("value1-updated", string(store.get(bytes("key1"))));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void test_remove() {
+        OffHeapStore store = new OffHeapStore(1024 * 1024, 64 * 1024);
+        store.put(bytes("key1"), bytes("value1"));
+
+        assertTrue(store.remove(bytes("key1")));
+        assertFalse(store.remove(bytes("key1")));
+        assertNull(store.get(bytes("key1")));
+        assertEquals(0, store.size());
+
+        store.put(bytes("key1"), bytes("value1-again"));
+        assertEquals("value1-again", string(store.get(bytes("key1"))));
+    }
+
+    @Test
+    void test_index_grows() {
+        OffHeapStore store = new OffHeapStore(16 * 1024 * 1024, 1024 * 1024);
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(store.put(bytes("key" + i), bytes("value" + i)));
+        }
+
+        assertEquals(100_000, store.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals("value" + i, string(store.get(bytes("key" + i))));
+        }
+    }
+
+    @Test
+    void test_oldest_slab_is_evicted_when_full() {
+        OffHeapStore store = new OffHeapStore(4 * 1024, 1024);
+
+        for (int i = 0; i < 1000; i++) {
+            store.put(bytes("key" + i), bytes("value" + i));
+        }
+
+        assertTrue(store.getEvictionCount() > 0);
+        assertEquals(1000, store.size() + store.getEvictionCount());
+        assertNull(store.get(bytes("key0")));
+        assertEquals("value999", string(store.get(bytes("key999"))));
+        assertTrue(store.getOffHeapBytes() <= 4 * 1024 + 1024 * 16);
+
+        List<String> values = new ArrayList<>();
+        store.forEachValue(value -> values.add(string(value)));
+        assertEquals(store.size(), values.size());
+    }
+
+    @Test
+    void test_overwritten_key_survives_reuse_of_its_old_slab() {
+        OffHeapStore store = new OffHeapStore(4 * 1024, 1024);
+        store.put(bytes("key0"), bytes("value0"));
+
+        for (int i = 1; i < 1000; i++) {
+            store.put(bytes("key" + i), bytes("value" + i));
+            // Keeps key0 in a recent slab
+            store.put(bytes("key0"), bytes("value0-" + i));
+        }
+
+        assertEquals("value0-999", string(store.get(bytes("key0"))));
+        assertEquals(1000, store.size() + store.getEvictionCount());
+    }
+
+    @Test
+    void test_for_each_value_allows_writes_from_consumer() {
+        OffHeapStore store = new OffHeapStore(16 * 1024 * 1024, 1024 * 1024);
+        for (int i = 0; i < 10_000; i++) {
+            store.put(bytes("key" + i), bytes("value" + i));
+        }
+
+        Set<String> values = new HashSet<>();
+        store.forEachValue(value -> {
+            values.add(string(value));
+            store.put(bytes(string(value).replace("value", "key")), bytes("updated"));
+        });
+
+        assertEquals(10_000, values.size());
+        assertEquals("updated", string(store.get(bytes("key1"))));
+    }
+
+    @Test
+    void test_record_larger_than_slab_is_not_stored() {
+        OffHeapStore store = new OffHeapStore(4 * 1024, 1024);
+        store.put(bytes("key1"), bytes("value1"));
+
+        assertFalse(store.put(bytes("key1"), new byte[2048]));
+        assertNull(store.get(bytes("key1")));
+    }
+
+    @Test
+    void test_invalid_sizes() {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapStore(1024, 4));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapStore(512, 1024));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ulger.sk.usermanager.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int THREAD_COUNT = 8;
+
+    @Test
+    void test_sequential_loads_are_not_coalesced() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loadCount = new AtomicInteger();
+
+        assertEquals("valueX", singleFlight.load("keyX", key -> {loadCount.incrementAndGet(); return "valueX";}));
+        assertEquals("valueX", singleFlight.load("keyX", key -> {loadCount.incrementAndGet(); return "valueX";}));
+
+        assertEquals(2, loadCount.get());
+        assertEquals(0, singleFlight.getCoalescedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void test_concurrent_loads_are_coalesced() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = loadConcurrently(singleFlight, key -> {
+            loadCount.incrementAndGet();
+            await(release);
+            return "valueX";
+        }, release);
+
+        for (Future<String> result : results) {
+            assertEquals("valueX", result.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, loadCount.get());
+        assertEquals(THREAD_COUNT - 1, singleFlight.getCoalescedCount());
+    }
+
+    @Test
+    void test_exception_is_propagated_to_all_waiters() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        IllegalStateException exception = new IllegalStateException("loadError");
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = loadConcurrently(singleFlight, key -> {
+            await(release);
+            throw exception;
+        }, release);
+
+        for (Future<String> result : results) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertSame(exception, thrown.getCause());
+        }
+
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void test_async_loads_are_coalesced_with_sync_loads() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loadCount = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+
+        CompletableFuture<String> first = singleFlight.loadAsync("keyX", key -> {loadCount.incrementAndGet(); return "valueX";}, tasks::add);
+        CompletableFuture<String> second = singleFlight.loadAsync("keyX", key -> {loadCount.incrementAndGet(); return "valueY";}, tasks::add);
+
+        assertEquals(1, tasks.size());
+        assertFalse(first.isDone());
+
+        tasks.get(0).run();
+
+        assertEquals("valueX", first.get());
+        assertEquals("valueX", second.get());
+        assertEquals(1, loadCount.get());
+        assertEquals(1, singleFlight.getCoalescedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void test_rejected_async_load_fails_future() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        CompletableFuture<String> load = singleFlight.loadAsync("keyX", key -> "valueX", task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        CompletionException thrown = assertThrows(CompletionException.class, load::join);
+        assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    private List<Future<String>> loadConcurrently(
+            SingleFlight<String, String> singleFlight,
+            Function<String, String> loader,
+            CountDownLatch release) throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            results.add(executor.submit(() -> singleFlight.load("keyX", loader)));
+        }
+
+        // Wait until all callers but the loading one are waiting for in flight load
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (singleFlight.getCoalescedCount() < THREAD_COUNT - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        release.countDown();
+        executor.shutdown();
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
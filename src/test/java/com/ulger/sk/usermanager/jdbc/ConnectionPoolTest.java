@@ -0,0 +1,95 @@
+package com.ulger.sk.usermanager.jdbc;
+
+import com.ulger.sk.usermanager.exception.DataAccessException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:connectionPoolTest";
+
+    private ConnectionPool newPool(int maximumSize) {
+        return new ConnectionPool(() -> DriverManager.getConnection(URL), maximumSize, Duration.ofMillis(50), 2);
+    }
+
+    @Test
+    void test_connections_and_statements_are_reused() throws SQLException {
+        try (ConnectionPool pool = newPool(2)) {
+            PreparedStatement statement;
+            try (PooledConnection connection = pool.borrow()) {
+                statement = connection.prepare("SELECT 1");
+            }
+
+            try (PooledConnection connection = pool.borrow()) {
+                assertSame(statement, connection.prepare("SELECT 1"));
+            }
+
+            assertEquals(1, pool.getCreatedCount());
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void test_statement_cache_is_bounded() throws SQLException {
+        try (ConnectionPool pool = newPool(1);
+             PooledConnection connection = pool.borrow()) {
+            PreparedStatement first = connection.prepare("SELECT 1");
+            connection.prepare("SELECT 2");
+            connection.prepare("SELECT 3");
+
+            assertEquals(2, connection.getCachedStatementCount());
+            assertTrue(first.isClosed());
+        }
+    }
+
+    @Test
+    void test_borrow_times_out_when_exhausted() throws SQLException {
+        try (ConnectionPool pool = newPool(1);
+             PooledConnection borrowed = pool.borrow()) {
+            assertFalse(borrowed.getConnection().isClosed());
+            DataAccessException e = assertThrows(DataAccessException.class, pool::borrow);
+            assertEquals(DataAccessException.TIMEOUT, e.getReasonCode());
+        }
+    }
+
+    @Test
+    void test_broken_and_closed_connections_are_discarded() throws SQLException {
+        try (ConnectionPool pool = newPool(1)) {
+            PooledConnection connection = pool.borrow();
+            connection.markBroken();
+            connection.close();
+            connection.close();
+            assertEquals(0, pool.getIdleCount());
+
+            connection = pool.borrow();
+            connection.getConnection().close();
+            connection.close();
+
+            try (PooledConnection usable = pool.borrow()) {
+                assertFalse(usable.getConnection().isClosed());
+            }
+
+            assertEquals(3, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    void test_connection_failure() {
+        ConnectionPool pool = new ConnectionPool(() -> {
+            throw new SQLException("refused", "08001");
+        }, 1, Duration.ofMillis(50), 2);
+
+        DataAccessException e = assertThrows(DataAccessException.class, pool::borrow);
+        assertEquals(DataAccessException.CONNECTION_FAILURE, e.getReasonCode());
+
+        // Permit is given back, so next borrow fails the same way instead of timing out
+        e = assertThrows(DataAccessException.class, pool::borrow);
+        assertEquals(DataAccessException.CONNECTION_FAILURE, e.getReasonCode());
+    }
+}